@@ -3,7 +3,6 @@ package io.ap2.a2a.extension.common;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.UUID;
 
 import io.a2a.spec.DataPart;
 import io.a2a.spec.Message;
@@ -19,8 +18,17 @@ public class A2aMessageBuilder {
     private final List<Part<?>> parts = new ArrayList<>();
 
     public A2aMessageBuilder() {
+        this(IdGenerator.timeOrdered());
+    }
+
+    /**
+     * Creates a builder whose message ID is generated by the given generator.
+     *
+     * @param idGenerator the generator of the message ID
+     */
+    public A2aMessageBuilder(IdGenerator idGenerator) {
         this.messageBuilder = new Message.Builder()
-                .messageId(UUID.randomUUID().toString())
+                .messageId(idGenerator.nextId())
                 .role(Message.Role.AGENT);
     }
 
@@ -0,0 +1,204 @@
+package io.ap2.a2a.extension.common;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
+import java.util.logging.Logger;
+
+import io.a2a.A2A;
+import io.a2a.client.http.A2AHttpClient;
+import io.a2a.spec.A2AClientError;
+import io.a2a.spec.A2AClientJSONError;
+import io.a2a.spec.AgentCard;
+import io.ap2.a2a.extension.util.Assert;
+
+/**
+ * A cache for the agent card of a remote agent.
+ * <p>
+ * The card is fetched by {@link A2A#getAgentCard(A2AHttpClient, String)} from
+ * base_url + /.well-known/agent-card.json and is considered fresh for the
+ * configured time-to-live. Once it is stale, it is still served for up to the
+ * configured stale period while it is fetched again in the background. A card
+ * fetched again that is equal to the cached one replaces it by the cached
+ * instance, so callers can tell that it did not change by identity. Past the
+ * stale period, callers wait for the card to be fetched again.
+ * <p>
+ * Loads are single-flight: concurrent callers share one request to the remote
+ * agent. This class is thread-safe.
+ */
+public class AgentCardCache {
+
+    private static final Logger logger = Logger.getLogger(AgentCardCache.class.getName());
+
+    /**
+     * The default time for which a fetched agent card is fresh.
+     */
+    public static final Duration DEFAULT_TTL = Duration.ofMinutes(5);
+
+    /**
+     * The default time for which a stale agent card may be served while it is revalidated.
+     */
+    public static final Duration DEFAULT_STALE_WHILE_REVALIDATE = Duration.ofMinutes(30);
+
+    private static final ExecutorService REFRESH_EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "agent-card-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final String baseUrl;
+    private final Fetcher fetcher;
+    private final long ttlNanos;
+    private final long staleNanos;
+    private final LongSupplier nanoTime;
+    private final AtomicReference<CompletableFuture<CachedCard>> inFlight = new AtomicReference<>();
+    private volatile CachedCard cachedCard;
+    private volatile long revalidationFailedAtNanos;
+    private volatile boolean revalidationFailed;
+
+    /**
+     * Creates a new AgentCardCache with the default time-to-live and stale period.
+     *
+     * @param httpClient the HTTP client that fetches the agent card
+     * @param baseUrl the base URL where the remote agent is hosted
+     */
+    public AgentCardCache(A2AHttpClient httpClient, String baseUrl) {
+        this(httpClient, baseUrl, DEFAULT_TTL, DEFAULT_STALE_WHILE_REVALIDATE);
+    }
+
+    /**
+     * Creates a new AgentCardCache.
+     *
+     * @param httpClient the HTTP client that fetches the agent card
+     * @param baseUrl the base URL where the remote agent is hosted
+     * @param ttl how long a fetched agent card is fresh
+     * @param staleWhileRevalidate how long a stale agent card may be served while it is revalidated
+     */
+    public AgentCardCache(A2AHttpClient httpClient, String baseUrl, Duration ttl, Duration staleWhileRevalidate) {
+        this(baseUrl, () -> A2A.getAgentCard(Assert.checkNotNullParam("httpClient", httpClient), baseUrl),
+                ttl, staleWhileRevalidate, System::nanoTime);
+    }
+
+    AgentCardCache(String baseUrl, Fetcher fetcher, Duration ttl, Duration staleWhileRevalidate,
+                   LongSupplier nanoTime) {
+        this.baseUrl = Assert.checkNotNullParam("baseUrl", baseUrl);
+        this.fetcher = Assert.checkNotNullParam("fetcher", fetcher);
+        this.ttlNanos = Assert.checkNotNullParam("ttl", ttl).toNanos();
+        this.staleNanos = Assert.checkNotNullParam("staleWhileRevalidate", staleWhileRevalidate).toNanos();
+        this.nanoTime = nanoTime;
+    }
+
+    /**
+     * Gets the agent card, fetching or revalidating it if needed.
+     *
+     * @return the agent card
+     * @throws A2AClientError if an HTTP error occurs fetching the card
+     * @throws A2AClientJSONError if the response body cannot be decoded as JSON
+     */
+    public AgentCard get() throws A2AClientError, A2AClientJSONError {
+        CachedCard current = cachedCard;
+        if (current == null) {
+            return await(load(false)).card();
+        }
+
+        long age = nanoTime.getAsLong() - current.fetchedAtNanos();
+        if (age < ttlNanos) {
+            return current.card();
+        }
+        if (age < ttlNanos + staleNanos) {
+            // Serve the stale card and revalidate it off the request path, backing off after a failure
+            if (!revalidationFailed || nanoTime.getAsLong() - revalidationFailedAtNanos >= ttlNanos) {
+                load(true);
+            }
+            return current.card();
+        }
+        return await(load(false)).card();
+    }
+
+    /**
+     * Discards the cached agent card, so that the next call fetches it again.
+     */
+    public void invalidate() {
+        cachedCard = null;
+    }
+
+    private CompletableFuture<CachedCard> load(boolean async) {
+        CompletableFuture<CachedCard> future;
+        while (true) {
+            CompletableFuture<CachedCard> existing = inFlight.get();
+            if (existing != null) {
+                return existing;
+            }
+            future = new CompletableFuture<>();
+            if (inFlight.compareAndSet(null, future)) {
+                break;
+            }
+        }
+
+        CompletableFuture<CachedCard> loading = future;
+        Runnable task = () -> {
+            try {
+                CachedCard fetched = fetch(cachedCard);
+                cachedCard = fetched;
+                revalidationFailed = false;
+                loading.complete(fetched);
+            } catch (Throwable t) {
+                if (async) {
+                    logger.warning("Failed to revalidate agent card of " + baseUrl + ": " + t.getMessage());
+                    revalidationFailedAtNanos = nanoTime.getAsLong();
+                    revalidationFailed = true;
+                }
+                loading.completeExceptionally(t);
+            } finally {
+                inFlight.compareAndSet(loading, null);
+            }
+        };
+
+        if (async) {
+            REFRESH_EXECUTOR.execute(task);
+        } else {
+            task.run();
+        }
+        return loading;
+    }
+
+    private CachedCard fetch(CachedCard previous) throws A2AClientError, A2AClientJSONError {
+        AgentCard card = fetcher.fetch();
+        long now = nanoTime.getAsLong();
+        if (previous != null && previous.card().equals(card)) {
+            return new CachedCard(previous.card(), now);
+        }
+        return new CachedCard(card, now);
+    }
+
+    private static CachedCard await(CompletableFuture<CachedCard> future) throws A2AClientError, A2AClientJSONError {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof A2AClientError clientError) {
+                throw clientError;
+            }
+            if (cause instanceof A2AClientJSONError jsonError) {
+                throw jsonError;
+            }
+            throw new A2AClientError("Failed to obtain agent card: " + cause.getMessage(), cause);
+        }
+    }
+
+    /**
+     * Fetches the agent card of the remote agent.
+     */
+    @FunctionalInterface
+    interface Fetcher {
+
+        AgentCard fetch() throws A2AClientError, A2AClientJSONError;
+    }
+
+    private record CachedCard(AgentCard card, long fetchedAtNanos) {
+    }
+}
@@ -0,0 +1,319 @@
+package io.ap2.a2a.extension.common;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Logger;
+
+import static io.ap2.a2a.extension.util.Assert.checkNotNullParam;
+
+/**
+ * An asynchronous writer of the watch log.
+ * <p>
+ * Entries are published to a preallocated ring buffer by the request threads,
+ * and a single writer thread appends them to a {@link WatchLogSink} in
+ * batches. Publishing an entry is lock-free: producers claim a slot of the
+ * ring with a compare-and-set on its tail, and each slot has a sequence number
+ * that tells the writer when the slot is published and the producers when it
+ * is free again. Values are only redacted by their {@link WatchLogPolicy} and
+ * encoded on the writer thread, so they must not be modified once logged.
+ * <p>
+ * When the ring is full, an entry is either dropped, and the number of
+ * dropped entries is written to the sink, or the producer waits for the
+ * writer to free a slot, depending on the {@link OverflowPolicy}.
+ * <p>
+ * This class is thread-safe.
+ */
+public final class AsyncWatchLog implements AutoCloseable {
+
+    private static final Logger logger = Logger.getLogger(AsyncWatchLog.class.getName());
+
+    /**
+     * The default number of entries the ring buffer holds.
+     */
+    public static final int DEFAULT_CAPACITY = 8192;
+
+    private static final int MAX_BATCH_ENTRIES = 1024;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long FULL_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+    private static final long CLOSE_TIMEOUT_MILLIS = 5000;
+
+    /**
+     * What to do with an entry when the ring buffer is full.
+     */
+    public enum OverflowPolicy {
+
+        /**
+         * Drop the entry, and count it.
+         */
+        DROP,
+
+        /**
+         * Wait until the writer frees a slot.
+         */
+        BLOCK
+    }
+
+    private final WatchLogSink sink;
+    private final OverflowPolicy overflowPolicy;
+    private final int mask;
+    private final AtomicLongArray sequences;
+    private final long[] timestamps;
+    private final WatchLogEvent[] events;
+    private final String[] contextIds;
+    private final String[] taskIds;
+    private final String[] subjects;
+    private final Object[] values;
+    private final String[] keys;
+    private final WatchLogPolicy[] policies;
+    private final AtomicLong tail = new AtomicLong();
+    private final LongAdder dropped = new LongAdder();
+    private final Thread writer;
+    private long head;
+    private volatile boolean sleeping;
+    private volatile boolean closed;
+
+    /**
+     * Creates a watch log that appends entries to a text file, and starts its
+     * writer thread. Each entry is written as a {@code [title: subject]} line
+     * followed by the value, and the elements of a collection value are
+     * written one per line.
+     *
+     * @param file the file to append to
+     * @param capacity the number of entries the ring buffer holds, rounded up to a power of two
+     * @param overflowPolicy what to do with an entry when the ring buffer is full
+     */
+    public AsyncWatchLog(Path file, int capacity, OverflowPolicy overflowPolicy) {
+        this(new TextWatchLogSink(file), capacity, overflowPolicy);
+    }
+
+    /**
+     * Creates a watch log that appends entries to a sink, and starts its
+     * writer thread. The watch log closes the sink when it is closed.
+     *
+     * @param sink the sink to append to
+     * @param capacity the number of entries the ring buffer holds, rounded up to a power of two
+     * @param overflowPolicy what to do with an entry when the ring buffer is full
+     */
+    public AsyncWatchLog(WatchLogSink sink, int capacity, OverflowPolicy overflowPolicy) {
+        this.sink = checkNotNullParam("sink", sink);
+        this.overflowPolicy = checkNotNullParam("overflowPolicy", overflowPolicy);
+        if (capacity <= 0 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("capacity must be between 1 and 2^30");
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.mask = size - 1;
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+        this.timestamps = new long[size];
+        this.events = new WatchLogEvent[size];
+        this.contextIds = new String[size];
+        this.taskIds = new String[size];
+        this.subjects = new String[size];
+        this.values = new Object[size];
+        this.keys = new String[size];
+        this.policies = new WatchLogPolicy[size];
+        this.writer = new Thread(this::run, "watch-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Logs an entry.
+     *
+     * @param event the type of the entry
+     * @param contextId the context ID of the request, or {@code null}
+     * @param taskId the task ID of the request, or {@code null}
+     * @param subject what the entry is about, or {@code null}
+     * @param value the value, encoded on the writer thread
+     * @return {@code true} if the entry was logged, or {@code false} if it was
+     *         dropped or the watch log is closed
+     */
+    public boolean log(WatchLogEvent event, String contextId, String taskId, String subject, Object value) {
+        checkNotNullParam("event", event);
+        return publish(event, contextId, taskId, subject, value, null, null);
+    }
+
+    /**
+     * Logs an entry whose value is redacted by a policy, on the writer thread.
+     *
+     * @param event the type of the entry
+     * @param contextId the context ID of the request, or {@code null}
+     * @param taskId the task ID of the request, or {@code null}
+     * @param subject what the entry is about, or {@code null}
+     * @param policy the policy that redacts the value
+     * @param key the data key of the value
+     * @param value the value, redacted and encoded on the writer thread
+     * @return {@code true} if the entry was logged, or {@code false} if it was
+     *         dropped or the watch log is closed
+     */
+    public boolean log(WatchLogEvent event, String contextId, String taskId, String subject, WatchLogPolicy policy,
+                       String key, Object value) {
+        checkNotNullParam("event", event);
+        checkNotNullParam("policy", policy);
+        checkNotNullParam("key", key);
+        return publish(event, contextId, taskId, subject, value, key, policy);
+    }
+
+    private boolean publish(WatchLogEvent event, String contextId, String taskId, String subject, Object value,
+                            String key, WatchLogPolicy policy) {
+        long position = claim();
+        if (position < 0) {
+            return false;
+        }
+        int slot = (int) position & mask;
+        timestamps[slot] = System.currentTimeMillis();
+        events[slot] = event;
+        contextIds[slot] = contextId;
+        taskIds[slot] = taskId;
+        subjects[slot] = subject;
+        values[slot] = value;
+        keys[slot] = key;
+        policies[slot] = policy;
+        // Publish the slot to the writer
+        sequences.set(slot, position + 1);
+        if (sleeping) {
+            LockSupport.unpark(writer);
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of entries dropped because the ring buffer was full.
+     *
+     * @return the number of dropped entries
+     */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * Returns whether the watch log is closed, so that entries logged to it are dropped.
+     *
+     * @return {@code true} if the watch log is closed
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Writes the logged entries, including those being logged while it is
+     * closed, stops the writer thread and closes the sink. Entries logged
+     * afterwards are dropped.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(CLOSE_TIMEOUT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private long claim() {
+        long position = tail.get();
+        while (!closed) {
+            long sequence = sequences.get((int) position & mask);
+            if (sequence == position) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    return position;
+                }
+                position = tail.get();
+            } else if (sequence < position) {
+                // The ring is full: the writer has not freed this slot yet
+                if (overflowPolicy == OverflowPolicy.DROP) {
+                    dropped.increment();
+                    return -1;
+                }
+                LockSupport.unpark(writer);
+                LockSupport.parkNanos(this, FULL_PARK_NANOS);
+                position = tail.get();
+            } else {
+                position = tail.get();
+            }
+        }
+        return -1;
+    }
+
+    private void run() {
+        long reportedDrops = 0;
+        while (true) {
+            int written = drain();
+            long drops = dropped.sum();
+            if (drops != reportedDrops) {
+                append(System.currentTimeMillis(), WatchLogEvent.ENTRIES_DROPPED, null, null, null,
+                        drops - reportedDrops, null, null);
+                reportedDrops = drops;
+                written++;
+            }
+            if (written > 0) {
+                try {
+                    sink.flush();
+                } catch (IOException e) {
+                    logger.warning("Failed to write watch log: " + e.getMessage());
+                }
+                continue;
+            }
+            // A producer that claimed a slot before the watch log was closed still publishes it
+            if (closed && head == tail.get()) {
+                break;
+            }
+            sleeping = true;
+            if (!isPublished(head)) {
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+            }
+            sleeping = false;
+        }
+        try {
+            sink.close();
+        } catch (IOException e) {
+            logger.warning("Failed to close watch log: " + e.getMessage());
+        }
+    }
+
+    private int drain() {
+        int drained = 0;
+        while (drained < MAX_BATCH_ENTRIES && isPublished(head)) {
+            int slot = (int) head & mask;
+            append(timestamps[slot], events[slot], contextIds[slot], taskIds[slot], subjects[slot], values[slot],
+                    keys[slot], policies[slot]);
+            events[slot] = null;
+            contextIds[slot] = null;
+            taskIds[slot] = null;
+            subjects[slot] = null;
+            values[slot] = null;
+            keys[slot] = null;
+            policies[slot] = null;
+            // Free the slot for the producers of the next lap
+            sequences.set(slot, head + mask + 1);
+            head++;
+            drained++;
+        }
+        return drained;
+    }
+
+    private void append(long timestamp, WatchLogEvent event, String contextId, String taskId, String subject,
+                        Object value, String key, WatchLogPolicy policy) {
+        try {
+            Object logged = policy == null ? value : policy.apply(key, value);
+            sink.append(timestamp, event, contextId, taskId, subject, logged);
+        } catch (IOException | RuntimeException e) {
+            logger.warning("Failed to write watch log: " + e.getMessage());
+        }
+    }
+
+    private boolean isPublished(long position) {
+        return sequences.get((int) position & mask) == position + 1;
+    }
+}
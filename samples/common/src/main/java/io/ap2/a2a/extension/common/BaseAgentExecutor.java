@@ -1,7 +1,5 @@
 package io.ap2.a2a.extension.common;
 
-import static io.ap2.a2a.extension.spec.AP2Constants.PAYMENT_MANDATE_DATA_KEY;
-
 import io.a2a.server.agentexecution.AgentExecutor;
 import io.a2a.server.agentexecution.RequestContext;
 import io.a2a.server.events.EventQueue;
@@ -16,7 +14,6 @@ import io.a2a.spec.TaskNotCancelableError;
 import io.a2a.spec.TaskState;
 import io.a2a.spec.TextPart;
 import io.ap2.a2a.extension.spec.AP2Exception;
-import io.ap2.a2a.extension.spec.PaymentMandate;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -29,8 +26,9 @@ import java.util.stream.Collectors;
  * This provides common functionality for A2A agents:
  * 1. It accepts a list of supported A2A extensions. Upon receiving a message, it
  *    activates any requested extensions that the agent supports.
- * 2. It leverages AI (via LangChain4j) to identify the appropriate tool to
- *    use for a given request, and invoking it to complete the task.
+ * 2. It identifies the appropriate tool to use for a given request, and invokes
+ *    it to complete the task. Known requests are resolved by a {@link ToolRouter};
+ *    anything else is resolved by AI (via LangChain4j).
  * 3. It logs key events in the Agent Payments Protocol to the watch log.
  */
 public abstract class BaseAgentExecutor implements AgentExecutor {
@@ -39,15 +37,34 @@ public abstract class BaseAgentExecutor implements AgentExecutor {
 
     private final Set<String> supportedExtensionUris;
     private final ToolSelectorAgent agent;
+    private final ToolRouter toolRouter;
+    private final MandateVerifier mandateVerifier;
 
     /**
      * Constructor for BaseAgentExecutor.
      *
      * @param supportedExtensions the list of extensions this agent supports (from agent card)
      * @param agent the AI agent for tool selection (configured with system prompt)
+     * @param mandateVerifier the verifier of the signatures of the mandates in a message
      */
     protected BaseAgentExecutor(final List<AgentExtension> supportedExtensions,
-                                final ToolSelectorAgent agent) {
+                                final ToolSelectorAgent agent,
+                                final MandateVerifier mandateVerifier) {
+        this(supportedExtensions, agent, null, mandateVerifier);
+    }
+
+    /**
+     * Constructor for BaseAgentExecutor.
+     *
+     * @param supportedExtensions the list of extensions this agent supports (from agent card)
+     * @param agent the AI agent for tool selection (configured with system prompt)
+     * @param toolRouter the router consulted before the AI agent for tool selection, or null for none
+     * @param mandateVerifier the verifier of the signatures of the mandates in a message
+     */
+    protected BaseAgentExecutor(final List<AgentExtension> supportedExtensions,
+                                final ToolSelectorAgent agent,
+                                final ToolRouter toolRouter,
+                                final MandateVerifier mandateVerifier) {
         if (supportedExtensions != null) {
             this.supportedExtensionUris = supportedExtensions.stream()
                 .map(AgentExtension::uri)
@@ -56,6 +73,9 @@ public abstract class BaseAgentExecutor implements AgentExecutor {
             this.supportedExtensionUris = Collections.emptySet();
         }
         this.agent = agent;
+        // An executor without rules gets an empty router of its own, so its hit and miss counts are its own
+        this.toolRouter = toolRouter != null ? toolRouter : ToolRouter.builder().build();
+        this.mandateVerifier = mandateVerifier;
     }
 
     /**
@@ -78,33 +98,29 @@ public abstract class BaseAgentExecutor implements AgentExecutor {
         }
         updater.startWork();
 
+        DataPartIndex dataParts = DataPartIndex.EMPTY;
         try {
             // Log requested extensions to watch log
-            WatchLog.logA2aRequestExtensions(context.getCallContext().getRequestedExtensions());
+            WatchLog.logA2aRequestExtensions(context.getCallContext().getRequestedExtensions(),
+                    context.getContextId(), context.getTaskId());
 
             // Parse the request
             List<TextPart> textParts = new ArrayList<>();
-            List<DataPart> dataParts = new ArrayList<>();
-            parseRequest(context.getMessage(), textParts, dataParts);
+            dataParts = parseRequest(context.getMessage(), textParts);
 
             // Log message parts to watch log
             List<String> textStrings = textParts.stream()
                 .map(TextPart::getText)
                 .toList();
-            WatchLog.logA2aMessageParts(textStrings, dataParts);
+            WatchLog.logA2aMessageParts(textStrings, dataParts, context.getContextId(), context.getTaskId());
 
             // Handle extension activation
             handleExtensions(context);
 
             // Verify that the AP2 extension is activated
             if (context.getCallContext().getActivatedExtensions().contains(A2aExtensionUtils.EXTENSION_URI)) {
-                // Validate payment mandate signature if present
-                Object paymentMandateData = MessageUtils.findDataPart(PAYMENT_MANDATE_DATA_KEY, dataParts);
-                if (paymentMandateData != null) {
-                    PaymentMandate paymentMandate = MessageUtils.parseCanonicalObject(
-                        PAYMENT_MANDATE_DATA_KEY, dataParts, PaymentMandate.class);
-                    Validation.validatePaymentMandateSignature(paymentMandate);
-                }
+                // Validate the signatures of all the mandates in the message
+                mandateVerifier.verify(dataParts, updater.getContextId());
             } else {
                 throw new AP2Exception(
                     "Payment extension not activated: " + context.getCallContext().getActivatedExtensions());
@@ -119,10 +135,12 @@ public abstract class BaseAgentExecutor implements AgentExecutor {
 
         } catch (AP2Exception e) {
             logger.severe("AP2 error: " + e.getMessage());
+            WatchLog.logA2aRequestFailure(dataParts, context.getContextId(), context.getTaskId(), e.getMessage());
             updater.fail(updater.newAgentMessage(
                 List.of(new TextPart("An error occurred: " + e.getMessage())), null));
         } catch (Exception e) {
             logger.severe("Unexpected error: " + e.getMessage());
+            WatchLog.logA2aRequestFailure(dataParts, context.getContextId(), context.getTaskId(), e.toString());
             updater.fail(updater.newAgentMessage(
                 List.of(new TextPart("An unexpected error occurred: " + e.getMessage())), null));
         }
@@ -150,15 +168,15 @@ public abstract class BaseAgentExecutor implements AgentExecutor {
      *
      * @param message the incoming message
      * @param textParts list to populate with text parts
-     * @param dataParts list to populate with data parts
+     * @return the data parts, indexed by key
      */
-    private void parseRequest(final Message message,
-                              final List<TextPart> textParts,
-                              final List<DataPart> dataParts) {
+    private DataPartIndex parseRequest(final Message message,
+                                       final List<TextPart> textParts) {
         if (message == null || message.getParts() == null) {
-            return;
+            return DataPartIndex.EMPTY;
         }
 
+        List<DataPart> dataParts = new ArrayList<>();
         for (Part<?> part : message.getParts()) {
             if (part instanceof TextPart textPart) {
                 textParts.add(textPart);
@@ -166,6 +184,7 @@ public abstract class BaseAgentExecutor implements AgentExecutor {
                 dataParts.add(dataPart);
             }
         }
+        return DataPartIndex.of(dataParts);
     }
 
     /**
@@ -178,7 +197,8 @@ public abstract class BaseAgentExecutor implements AgentExecutor {
      * This mirrors the Python _handle_request() method.
      *
      * @param textParts the text parts from the request
-     * @param dataParts the data parts from the request
+     * @param dataParts the data parts from the request, a {@link DataPartIndex} that
+     *                  {@link MessageUtils} looks up in constant time
      * @param updater the task updater
      * @param currentTask the current task
      * @throws AP2Exception if an error occurs during request handling
@@ -201,6 +221,40 @@ public abstract class BaseAgentExecutor implements AgentExecutor {
         return toolName;
     }
 
+    /**
+     * Selects the appropriate tool based on the user's request.
+     * The tool router is consulted first, and the AI agent is only used if
+     * none of the router's rules match the request. The AI agent is given the
+     * DataPart keys of the request as well as the prompt, which a
+     * {@link CachingToolSelectorAgent} uses to key its cache.
+     *
+     * @param userPrompt the user's request
+     * @param dataParts the data parts from the request
+     * @return the name of the selected tool
+     */
+    protected String selectTool(final String userPrompt, final List<DataPart> dataParts) {
+        Set<String> dataKeys = ToolRouter.dataKeys(dataParts);
+        String toolName = toolRouter.route(userPrompt, dataKeys);
+        if (toolName != null) {
+            logger.info("Router selected tool: " + toolName + " (router hits: "
+                + toolRouter.getHitCount() + ", misses: " + toolRouter.getMissCount() + ")");
+            return toolName;
+        }
+
+        toolName = agent.selectTool(userPrompt, dataKeys);
+        logger.info("Agent selected tool: " + toolName);
+        return toolName;
+    }
+
+    /**
+     * Gets the tool router consulted before the AI agent.
+     *
+     * @return the tool router
+     */
+    protected ToolRouter getToolRouter() {
+        return toolRouter;
+    }
+
     /**
      * A helper function to fail a task with a given error message.
      *
@@ -0,0 +1,253 @@
+package io.ap2.a2a.extension.common;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import io.ap2.a2a.extension.spec.CartMandate;
+
+import static io.a2a.util.Utils.OBJECT_MAPPER;
+import static io.ap2.a2a.extension.util.Assert.checkNotNullParam;
+
+/**
+ * A {@link WatchLogSink} that writes entries as compact binary records to
+ * memory-mapped segment files, which {@link WatchLogDecoder} renders as text
+ * or JSON.
+ * <p>
+ * Each segment is a file of a fixed size named {@code watch-<sequence>.ap2w},
+ * which starts with a header of a magic number and a format version, followed
+ * by records. A record is its length as an int followed by:
+ * <ul>
+ *     <li>the timestamp, in milliseconds since the epoch, as a long</li>
+ *     <li>the code of the {@link WatchLogEvent}, as a byte</li>
+ *     <li>the context ID, the task ID and the subject, as strings</li>
+ *     <li>the kind of value, as a byte, followed by the value</li>
+ * </ul>
+ * Strings and values are encoded as by {@link MandateCodec}: cart mandates
+ * with its field encoding, and other values as tagged JSON values. The unused
+ * end of a segment is zero, so a record length of zero ends it. The length of
+ * a record is written after its body, so that a crash while a record is
+ * written leaves a zero length rather than a record that is cut off.
+ * <p>
+ * When a record does not fit in the current segment, the sink starts a new
+ * one, and deletes the oldest segments to keep at most the maximum number of
+ * segments. A value too large for a segment is replaced by a note of its size.
+ */
+public final class BinaryWatchLogSink implements WatchLogSink {
+
+    /**
+     * The default size of a segment file, in bytes.
+     */
+    public static final int DEFAULT_SEGMENT_SIZE = 16 * 1024 * 1024;
+
+    /**
+     * The default number of segment files kept.
+     */
+    public static final int DEFAULT_MAX_SEGMENTS = 8;
+
+    static final int MAGIC = 0x41503257;
+    static final byte FORMAT_VERSION = 1;
+    static final int HEADER_SIZE = 8;
+    static final String SEGMENT_PREFIX = "watch-";
+    static final String SEGMENT_SUFFIX = ".ap2w";
+
+    static final byte VALUE_NULL = 0;
+    static final byte VALUE_CART_MANDATE = 1;
+    static final byte VALUE_TAGGED = 2;
+
+    private static final int MIN_SEGMENT_SIZE = 64 * 1024;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final int maxSegments;
+    private final MandateCodec.Writer record = new MandateCodec.Writer(1024);
+    private final ArrayDeque<Path> segments = new ArrayDeque<>();
+    private long nextSequence = -1;
+    private MappedByteBuffer segment;
+    private boolean failed;
+
+    /**
+     * Creates a sink that writes segments to a directory, which is created
+     * on the first write if it does not exist. Segments already in the
+     * directory are kept, and count towards the maximum number of segments.
+     *
+     * @param directory the directory of the segment files
+     * @param segmentSize the size of a segment file, in bytes, at least 64 KiB
+     * @param maxSegments the number of segment files kept, at least 1
+     */
+    public BinaryWatchLogSink(Path directory, int segmentSize, int maxSegments) {
+        this.directory = checkNotNullParam("directory", directory);
+        if (segmentSize < MIN_SEGMENT_SIZE) {
+            throw new IllegalArgumentException("segmentSize must be at least " + MIN_SEGMENT_SIZE);
+        }
+        if (maxSegments < 1) {
+            throw new IllegalArgumentException("maxSegments must be at least 1");
+        }
+        this.segmentSize = segmentSize;
+        this.maxSegments = maxSegments;
+    }
+
+    @Override
+    public void append(long timestampMillis, WatchLogEvent event, String contextId, String taskId, String subject,
+                       Object value) throws IOException {
+        if (failed) {
+            return;
+        }
+        record.truncate(0);
+        record.writeLong(timestampMillis);
+        record.writeByte((byte) event.ordinal());
+        record.writeString(contextId);
+        record.writeString(taskId);
+        record.writeString(subject);
+        int valueOffset = record.size();
+        writeValue(event, value, valueOffset);
+        int maxRecordSize = segmentSize - HEADER_SIZE - Integer.BYTES;
+        if (record.size() > maxRecordSize) {
+            int valueSize = record.size() - valueOffset;
+            record.truncate(valueOffset);
+            writeTagged("<value of " + valueSize + " bytes omitted>");
+        }
+        if (segment == null || segment.remaining() < Integer.BYTES + record.size()) {
+            try {
+                rotate();
+            } catch (IOException e) {
+                failed = true;
+                segment = null;
+                throw e;
+            }
+        }
+        // Publish the length last, once the body is in place
+        int start = segment.position();
+        segment.position(start + Integer.BYTES);
+        record.writeTo(segment);
+        segment.putInt(start, record.size());
+    }
+
+    @Override
+    public void flush() {
+        // The records are in the page cache as soon as they are written to the mapped segment
+    }
+
+    @Override
+    public void close() {
+        if (segment != null) {
+            segment.force();
+            segment = null;
+        }
+    }
+
+    private void writeValue(WatchLogEvent event, Object value, int valueOffset) {
+        if (value == null) {
+            record.writeByte(VALUE_NULL);
+            return;
+        }
+        CartMandate cartMandate = asCartMandate(event, value);
+        if (cartMandate != null) {
+            try {
+                record.writeByte(VALUE_CART_MANDATE);
+                MandateCodec.writeCartMandate(record, cartMandate);
+                return;
+            } catch (RuntimeException e) {
+                // Log it as a JSON value instead
+                record.truncate(valueOffset);
+            }
+        }
+        try {
+            writeTagged(isJson(value) ? value : OBJECT_MAPPER.convertValue(value, Object.class));
+        } catch (RuntimeException e) {
+            record.truncate(valueOffset);
+            writeTagged(String.valueOf(value));
+        }
+    }
+
+    private void writeTagged(Object value) {
+        record.writeByte(VALUE_TAGGED);
+        record.writeValue(value);
+    }
+
+    private static CartMandate asCartMandate(WatchLogEvent event, Object value) {
+        if (value instanceof CartMandate cartMandate) {
+            return cartMandate;
+        }
+        if (event != WatchLogEvent.CART_MANDATE || !(value instanceof Map<?, ?>)) {
+            return null;
+        }
+        try {
+            return RecordReaders.read(value, CartMandate.class);
+        } catch (IllegalArgumentException e) {
+            // Log the value as it was received
+            return null;
+        }
+    }
+
+    private static boolean isJson(Object value) {
+        return value instanceof String || value instanceof Number || value instanceof Boolean
+                || value instanceof List<?> || value instanceof Map<?, ?>;
+    }
+
+    private void rotate() throws IOException {
+        if (segment != null) {
+            segment.force();
+            segment = null;
+        }
+        if (nextSequence < 0) {
+            Files.createDirectories(directory);
+            List<Path> existing = listSegments(directory);
+            segments.addAll(existing);
+            nextSequence = existing.isEmpty() ? 0 : sequenceOf(existing.get(existing.size() - 1)) + 1;
+        }
+        while (segments.size() >= maxSegments) {
+            Files.deleteIfExists(segments.removeFirst());
+        }
+        Path file = directory.resolve(String.format("%s%016d%s", SEGMENT_PREFIX, nextSequence++, SEGMENT_SUFFIX));
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            // The mapping stays valid once the channel is closed
+            segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        }
+        segments.addLast(file);
+        segment.putInt(MAGIC);
+        segment.put(FORMAT_VERSION);
+        segment.position(HEADER_SIZE);
+    }
+
+    /**
+     * Returns the segment files in a directory, oldest first.
+     *
+     * @param directory the directory
+     * @return the segment files
+     * @throws IOException if the directory cannot be listed
+     */
+    static List<Path> listSegments(Path directory) throws IOException {
+        List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory,
+                SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path segment : stream) {
+                if (sequenceOf(segment) >= 0) {
+                    segments.add(segment);
+                }
+            }
+        }
+        // Sequences are zero-padded, so the names sort in order
+        Collections.sort(segments);
+        return segments;
+    }
+
+    private static long sequenceOf(Path segment) {
+        String name = segment.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException | IndexOutOfBoundsException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package io.ap2.a2a.extension.common;
+
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+import io.ap2.a2a.extension.util.Assert;
+
+/**
+ * A {@link ToolSelectorAgent} that caches the selections of another agent.
+ * <p>
+ * Agent-to-agent traffic is highly repetitive, so identical prompts sent with
+ * the same DataPart keys are answered from a {@link ToolSelectionCache}
+ * instead of the LLM. Only selections that name one of the known tools are
+ * cached, so that an invalid answer from the LLM is retried next time.
+ * <p>
+ * This class is thread-safe.
+ */
+public class CachingToolSelectorAgent implements ToolSelectorAgent {
+
+    private static final Logger logger = Logger.getLogger(CachingToolSelectorAgent.class.getName());
+
+    private final String namespace;
+    private final ToolSelectorAgent delegate;
+    private final ToolSelectionCache cache;
+    private final Set<String> toolNames;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder missNanos = new LongAdder();
+
+    /**
+     * Creates a new CachingToolSelectorAgent.
+     *
+     * @param namespace the cache namespace, unique to the agent executor
+     * @param delegate the agent consulted on a cache miss
+     * @param cache the cache of tool selections
+     * @param toolNames the names of the tools that may be selected
+     */
+    public CachingToolSelectorAgent(String namespace, ToolSelectorAgent delegate,
+                                    ToolSelectionCache cache, Set<String> toolNames) {
+        this.namespace = Assert.checkNotNullParam("namespace", namespace);
+        this.delegate = Assert.checkNotNullParam("delegate", delegate);
+        this.cache = Assert.checkNotNullParam("cache", cache);
+        this.toolNames = Set.copyOf(Assert.checkNotNullParam("toolNames", toolNames));
+    }
+
+    @Override
+    public String selectTool(String userPrompt) {
+        return selectTool(userPrompt, Set.of());
+    }
+
+    /**
+     * Selects the appropriate tool based on the user's request, using the
+     * cached selection if there is one.
+     *
+     * @param userPrompt the user's request
+     * @param dataKeys the DataPart keys of the request
+     * @return the name of the selected tool
+     */
+    @Override
+    public String selectTool(String userPrompt, Set<String> dataKeys) {
+        String key = ToolSelectionCache.key(namespace, userPrompt, dataKeys);
+        String toolName = cache.get(key);
+        if (toolName != null) {
+            hits.increment();
+            logger.fine(() -> "Cached tool selection (" + this + ")");
+            return toolName;
+        }
+
+        long start = System.nanoTime();
+        toolName = delegate.selectTool(userPrompt);
+        missNanos.add(System.nanoTime() - start);
+        misses.increment();
+
+        if (toolName != null && toolNames.contains(toolName.strip())) {
+            cache.put(key, toolName.strip());
+        } else {
+            logger.warning("Not caching unknown tool selection: " + toolName);
+        }
+        logger.fine(() -> "Uncached tool selection (" + this + ")");
+        return toolName;
+    }
+
+    /**
+     * Returns the number of selections answered from the cache.
+     *
+     * @return the hit count
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns the number of selections that required the delegate agent.
+     *
+     * @return the miss count
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Returns the fraction of selections answered from the cache.
+     *
+     * @return the hit ratio, between 0 and 1
+     */
+    public double getHitRatio() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    /**
+     * Estimates the latency saved by the cache, as the number of hits
+     * multiplied by the average latency of the delegate agent.
+     *
+     * @return the estimated saved latency, in milliseconds
+     */
+    public long getSavedLatencyMillis() {
+        long missCount = misses.sum();
+        if (missCount == 0) {
+            return 0;
+        }
+        return hits.sum() * (missNanos.sum() / missCount) / 1_000_000;
+    }
+
+    @Override
+    public String toString() {
+        return "CachingToolSelectorAgent{namespace=" + namespace
+                + ", hits=" + getHitCount()
+                + ", misses=" + getMissCount()
+                + ", hitRatio=" + String.format("%.2f", getHitRatio())
+                + ", savedLatencyMillis=" + getSavedLatencyMillis()
+                + "}";
+    }
+}
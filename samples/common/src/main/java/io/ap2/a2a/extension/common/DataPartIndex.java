@@ -0,0 +1,215 @@
+package io.ap2.a2a.extension.common;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import io.a2a.spec.DataPart;
+
+/**
+ * The data parts of a message, indexed by key.
+ * <p>
+ * The index is built in a single pass over the data parts, and maps each key
+ * to its values in the order of the data parts, so that looking up a key does
+ * not scan the data parts again. It is an immutable list of the data parts, so
+ * it is handed to code that expects a {@code List<DataPart>}, and
+ * {@link MessageUtils} uses it when it is given one.
+ * <p>
+ * Values that were received as JSON are read as objects by
+ * {@link RecordReaders} once per data part: the objects are memoized, so the
+ * tools handling a request share them.
+ * <p>
+ * The data maps must not be modified once indexed.
+ * <p>
+ * This class is thread-safe.
+ */
+public final class DataPartIndex extends AbstractList<DataPart> implements RandomAccess {
+
+    /**
+     * The index of no data parts.
+     */
+    public static final DataPartIndex EMPTY = new DataPartIndex(new DataPart[0]);
+
+    private final DataPart[] dataParts;
+    private final Map<String, List<Object>> valuesByKey;
+    private final Map<String, List<Map<String, Object>>> dataByKey;
+    private final ConcurrentMap<String, Object[]> readValuesByKey = new ConcurrentHashMap<>();
+
+    private DataPartIndex(DataPart[] dataParts) {
+        this.dataParts = dataParts;
+        Map<String, List<Object>> values = new HashMap<>();
+        Map<String, List<Map<String, Object>>> data = new HashMap<>();
+        for (DataPart dataPart : dataParts) {
+            Map<String, Object> dataMap = dataPart.getData();
+            if (dataMap == null) {
+                continue;
+            }
+            for (Map.Entry<String, Object> entry : dataMap.entrySet()) {
+                values.computeIfAbsent(entry.getKey(), key -> new ArrayList<>(1)).add(entry.getValue());
+                data.computeIfAbsent(entry.getKey(), key -> new ArrayList<>(1)).add(dataMap);
+            }
+        }
+        this.valuesByKey = values;
+        this.dataByKey = data;
+    }
+
+    /**
+     * Returns the index of data parts.
+     *
+     * @param dataParts the data parts, or {@code null}
+     * @return the given data parts if they are already indexed, or a new index of them
+     */
+    public static DataPartIndex of(List<DataPart> dataParts) {
+        if (dataParts instanceof DataPartIndex index) {
+            return index;
+        }
+        if (dataParts == null || dataParts.isEmpty()) {
+            return EMPTY;
+        }
+        return new DataPartIndex(dataParts.toArray(new DataPart[0]));
+    }
+
+    @Override
+    public DataPart get(int index) {
+        return dataParts[index];
+    }
+
+    @Override
+    public int size() {
+        return dataParts.length;
+    }
+
+    /**
+     * Returns the keys of all the data parts.
+     *
+     * @return the keys
+     */
+    public Set<String> keys() {
+        return Collections.unmodifiableSet(valuesByKey.keySet());
+    }
+
+    /**
+     * Returns whether a data part has a key.
+     *
+     * @param key the key
+     * @return whether a data part has the key
+     */
+    public boolean containsKey(String key) {
+        return valuesByKey.containsKey(key);
+    }
+
+    /**
+     * Returns the value of a key in the first data part that has it.
+     *
+     * @param key the key
+     * @return the value, or {@code null} if no data part has the key
+     */
+    public Object find(String key) {
+        List<Object> values = valuesByKey.get(key);
+        return values == null ? null : values.get(0);
+    }
+
+    /**
+     * Returns the values of a key, in the order of the data parts that have it.
+     *
+     * @param key the key
+     * @return the values, empty if no data part has the key
+     */
+    public List<Object> findAll(String key) {
+        List<Object> values = valuesByKey.get(key);
+        return values == null ? List.of() : Collections.unmodifiableList(values);
+    }
+
+    /**
+     * Returns the value of a key in the first data part that has it, as an
+     * object of a type. A value that was received as JSON is read as the type,
+     * once.
+     *
+     * @param key the key
+     * @param type the type of the value
+     * @param <T> the type of the value
+     * @return the value, or {@code null} if no data part has the key
+     * @throws IllegalArgumentException if the value cannot be converted to the type
+     */
+    public <T> T find(String key, Class<T> type) {
+        List<Object> values = valuesByKey.get(key);
+        return values == null ? null : read(key, values, 0, type);
+    }
+
+    /**
+     * Returns the values of a key as objects of a type, in the order of the
+     * data parts that have it. Values that were received as JSON are read as
+     * the type, once.
+     *
+     * @param key the key
+     * @param type the type of the values
+     * @param <T> the type of the values
+     * @return the non-null values, empty if no data part has the key
+     * @throws IllegalArgumentException if a value cannot be converted to the type
+     */
+    public <T> List<T> findAll(String key, Class<T> type) {
+        List<Object> values = valuesByKey.get(key);
+        if (values == null) {
+            return List.of();
+        }
+        List<T> read = new ArrayList<>(values.size());
+        for (int i = 0; i < values.size(); i++) {
+            if (values.get(i) != null) {
+                read.add(read(key, values, i, type));
+            }
+        }
+        return read;
+    }
+
+    /**
+     * Returns the data maps of the data parts that have a key.
+     *
+     * @param key the key
+     * @return the data maps, empty if no data part has the key
+     */
+    public List<Map<String, Object>> findDataMaps(String key) {
+        List<Map<String, Object>> data = dataByKey.get(key);
+        return data == null ? List.of() : Collections.unmodifiableList(data);
+    }
+
+    private <T> T read(String key, List<Object> values, int i, Class<T> type) {
+        Object value = values.get(i);
+        if (value == null || type.isInstance(value)) {
+            return type.cast(value);
+        }
+        // Racing threads may both read the value, which is harmless as the objects read are equal
+        Object[] readValues = readValuesByKey.computeIfAbsent(key, k -> new Object[values.size()]);
+        Object readValue = readValues[i];
+        if (type.isInstance(readValue)) {
+            return type.cast(readValue);
+        }
+        T converted = convert(key, value, type);
+        readValues[i] = converted;
+        return converted;
+    }
+
+    /**
+     * Converts a value to a type, if it is not already of the type.
+     *
+     * @param key the key of the value
+     * @param value the value, or {@code null}
+     * @param type the type
+     * @param <T> the type
+     * @return the value as an object of the type
+     * @throws IllegalArgumentException if the value cannot be converted to the type
+     */
+    static <T> T convert(String key, Object value, Class<T> type) {
+        try {
+            return RecordReaders.read(value, type);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid " + key + ": " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package io.ap2.a2a.extension.common;
+
+/**
+ * Generates unique identifiers, for carts, orders and messages.
+ */
+public interface IdGenerator {
+
+    /**
+     * Returns the default generator, which produces time-ordered UUIDs.
+     *
+     * @return the default generator
+     * @see TimeOrderedIdGenerator
+     */
+    static IdGenerator timeOrdered() {
+        return TimeOrderedIdGenerator.INSTANCE;
+    }
+
+    /**
+     * Generates a new identifier.
+     *
+     * @return the identifier, never null
+     */
+    String nextId();
+}
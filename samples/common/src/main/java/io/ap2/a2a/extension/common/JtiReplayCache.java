@@ -0,0 +1,103 @@
+package io.ap2.a2a.extension.common;
+
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.ap2.a2a.extension.spec.AP2Exception;
+
+import static io.ap2.a2a.extension.util.Assert.checkNotNullParam;
+
+/**
+ * The token IDs ({@code jti}) of the JSON Web Tokens accepted until they
+ * expire, to reject replayed tokens.
+ * <p>
+ * A token ID is recorded with a binding, such as the A2A context in which the
+ * token was presented. A token may be presented again with the same binding,
+ * as when a mandate is sent again to answer a challenge, but not with another
+ * one.
+ * <p>
+ * The cache is bounded: expired token IDs are swept periodically, and if the
+ * cache is still full of unexpired token IDs, new tokens are rejected rather
+ * than forgetting tokens that could then be replayed.
+ * <p>
+ * This class is thread-safe.
+ */
+public final class JtiReplayCache {
+
+    /**
+     * The default maximum number of unexpired token IDs.
+     */
+    public static final int DEFAULT_MAX_ENTRIES = 100_000;
+
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicInteger recordsSinceSweep = new AtomicInteger();
+    private final int maxEntries;
+    private final int sweepInterval;
+
+    /**
+     * Creates an empty cache of up to {@link #DEFAULT_MAX_ENTRIES} token IDs.
+     */
+    public JtiReplayCache() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * Creates an empty cache.
+     *
+     * @param maxEntries the maximum number of unexpired token IDs
+     */
+    public JtiReplayCache(int maxEntries) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("maxEntries must be positive");
+        }
+        this.maxEntries = maxEntries;
+        this.sweepInterval = Math.max(1, maxEntries / 4);
+    }
+
+    /**
+     * Records that a token was presented.
+     *
+     * @param jti the token ID
+     * @param binding what the token is bound to, or {@code null}
+     * @param expiresAtMillis when the token expires, in milliseconds since the epoch
+     * @param nowMillis the current time, in milliseconds since the epoch
+     * @return {@code true} if the token was not presented before, or was presented with the same binding
+     * @throws AP2Exception if the cache is full
+     */
+    public boolean record(String jti, String binding, long expiresAtMillis, long nowMillis) {
+        checkNotNullParam("jti", jti);
+        Entry existing = entries.get(jti);
+        if (existing != null && existing.expiresAtMillis > nowMillis) {
+            return Objects.equals(existing.binding, binding);
+        }
+        if (recordsSinceSweep.incrementAndGet() >= sweepInterval || entries.size() >= maxEntries) {
+            sweep(nowMillis);
+            if (entries.size() >= maxEntries) {
+                throw new AP2Exception("Too many unexpired tokens, try again later");
+            }
+        }
+        Entry entry = new Entry(binding, expiresAtMillis);
+        Entry current = entries.compute(jti,
+                (key, previous) -> previous == null || previous.expiresAtMillis <= nowMillis ? entry : previous);
+        return current == entry || Objects.equals(current.binding, binding);
+    }
+
+    /**
+     * Returns the number of token IDs recorded, including expired ones not swept yet.
+     *
+     * @return the number of token IDs
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    private void sweep(long nowMillis) {
+        recordsSinceSweep.set(0);
+        entries.values().removeIf(entry -> entry.expiresAtMillis <= nowMillis);
+    }
+
+    private record Entry(String binding, long expiresAtMillis) {
+    }
+}
@@ -0,0 +1,115 @@
+package io.ap2.a2a.extension.common;
+
+import java.security.GeneralSecurityException;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.Key;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.NoSuchAlgorithmException;
+import java.security.Signature;
+import java.security.spec.AlgorithmParameterSpec;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.NamedParameterSpec;
+
+import io.ap2.a2a.extension.spec.AP2Exception;
+
+/**
+ * The JSON Web Signature algorithms used to sign mandates, as implemented by
+ * the JDK.
+ * <p>
+ * Specification:
+ * https://www.rfc-editor.org/rfc/rfc7518#section-3.4
+ * https://www.rfc-editor.org/rfc/rfc8037#section-3.1
+ */
+public enum JwsAlgorithm {
+
+    /**
+     * ECDSA using P-256 and SHA-256, with the signature as R and S concatenated.
+     */
+    ES256("SHA256withECDSAinP1363Format", "EC", new ECGenParameterSpec("secp256r1")),
+
+    /**
+     * EdDSA using Ed25519.
+     */
+    EdDSA("Ed25519", "Ed25519", NamedParameterSpec.ED25519);
+
+    private final String signatureAlgorithm;
+    private final String keyAlgorithm;
+    private final AlgorithmParameterSpec keyParameters;
+
+    JwsAlgorithm(String signatureAlgorithm, String keyAlgorithm, AlgorithmParameterSpec keyParameters) {
+        this.signatureAlgorithm = signatureAlgorithm;
+        this.keyAlgorithm = keyAlgorithm;
+        this.keyParameters = keyParameters;
+    }
+
+    /**
+     * Returns the algorithm of a JWS header.
+     *
+     * @param name the value of the {@code alg} header parameter
+     * @return the algorithm
+     * @throws AP2Exception if the algorithm is not supported, including {@code none}
+     */
+    public static JwsAlgorithm fromName(String name) {
+        if ("ES256".equals(name)) {
+            return ES256;
+        }
+        if ("EdDSA".equals(name)) {
+            return EdDSA;
+        }
+        throw new AP2Exception("Unsupported JWS algorithm: " + name);
+    }
+
+    /**
+     * Returns the algorithm that signs with a key.
+     *
+     * @param key a public or private key
+     * @return the algorithm
+     * @throws AP2Exception if no algorithm uses the key
+     */
+    public static JwsAlgorithm forKey(Key key) {
+        return switch (key.getAlgorithm()) {
+            case "EC" -> ES256;
+            case "EdDSA", "Ed25519" -> EdDSA;
+            default -> throw new AP2Exception("Unsupported key algorithm: " + key.getAlgorithm());
+        };
+    }
+
+    /**
+     * Creates a new, uninitialized signature engine for the algorithm.
+     *
+     * @return the signature engine
+     */
+    Signature newSignature() {
+        try {
+            return Signature.getInstance(signatureAlgorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(signatureAlgorithm + " is not available", e);
+        }
+    }
+
+    /**
+     * Generates a key pair for the algorithm.
+     *
+     * @return the key pair
+     */
+    public KeyPair generateKeyPair() {
+        try {
+            KeyPairGenerator generator = KeyPairGenerator.getInstance(keyAlgorithm);
+            generator.initialize(keyParameters);
+            return generator.generateKeyPair();
+        } catch (NoSuchAlgorithmException | InvalidAlgorithmParameterException e) {
+            throw new IllegalStateException("Cannot generate " + name() + " keys", e);
+        }
+    }
+
+    /**
+     * Wraps a failure of the JDK signature engine.
+     *
+     * @param e the failure
+     * @return the exception to throw
+     */
+    static AP2Exception signatureFailure(GeneralSecurityException e) {
+        return new AP2Exception("Signature operation failed: " + e.getMessage(), e);
+    }
+}
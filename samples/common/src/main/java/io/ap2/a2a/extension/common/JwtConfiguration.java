@@ -0,0 +1,118 @@
+package io.ap2.a2a.extension.common;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+import io.quarkus.runtime.Startup;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+/**
+ * The keys of the JSON Web Tokens that authorize mandates, read from the
+ * configuration when the agent starts.
+ * <p>
+ * The public keys of the user's devices are read from the JSON Web Key Set
+ * file {@code ap2.jwt.trusted-user-keys}, and verify the user authorizations
+ * of payment mandates. The public keys of the merchants are read from the
+ * file {@code ap2.jwt.trusted-merchant-keys}, and verify the merchant
+ * authorizations of cart mandates. Both are checked by {@link Validation}, and
+ * a key trusted for one role is not trusted for the other. The public key embedded in a JWT is
+ * only trusted if {@code ap2.jwt.allow-embedded-keys} is set, which the
+ * samples only do in dev mode.
+ * <p>
+ * The agents that sign JWTs sign them with the private JWK of the file
+ * {@code ap2.jwt.signing-key}, whose public key is in the trusted keys of the
+ * agents that verify them. Without one, they sign with a key pair generated at
+ * startup and embed its public key, which is only accepted by agents that
+ * allow embedded keys.
+ */
+@Startup
+@ApplicationScoped
+public class JwtConfiguration {
+
+    private static final Logger logger = Logger.getLogger(JwtConfiguration.class.getName());
+
+    /**
+     * The JSON Web Key Set file of the trusted public keys of the user's devices.
+     */
+    @ConfigProperty(name = "ap2.jwt.trusted-user-keys")
+    Optional<Path> trustedUserKeysFile;
+
+    /**
+     * The JSON Web Key Set file of the trusted public keys of the merchants.
+     */
+    @ConfigProperty(name = "ap2.jwt.trusted-merchant-keys")
+    Optional<Path> trustedMerchantKeysFile;
+
+    /**
+     * Whether the public keys embedded in JWTs are trusted.
+     */
+    @ConfigProperty(name = "ap2.jwt.allow-embedded-keys", defaultValue = "false")
+    boolean allowEmbeddedKeys;
+
+    /**
+     * The private JSON Web Key file of the JWTs signed by this agent.
+     */
+    @ConfigProperty(name = "ap2.jwt.signing-key")
+    Optional<Path> signingKeyFile;
+
+    private final Map<JwsAlgorithm, JwtSigner> generatedSigners = new ConcurrentHashMap<>();
+    private JwtSigner signer;
+
+    /**
+     * Registers the trusted keys in {@link Validation}, and loads the signing key.
+     */
+    @PostConstruct
+    void configure() {
+        JwtKeys userKeys = loadKeys("ap2.jwt.trusted-user-keys", trustedUserKeysFile, "payment");
+        JwtKeys merchantKeys = loadKeys("ap2.jwt.trusted-merchant-keys", trustedMerchantKeysFile, "cart");
+        if (allowEmbeddedKeys) {
+            logger.warning("ap2.jwt.allow-embedded-keys is set, mandates signed by any key will be accepted");
+        }
+        Validation.configure(userKeys, merchantKeys, allowEmbeddedKeys);
+
+        if (signingKeyFile.isPresent()) {
+            try {
+                signer = JwtSigner.load(signingKeyFile.get());
+            } catch (IOException e) {
+                throw new IllegalStateException("Failed to load the signing key from " + signingKeyFile.get(), e);
+            }
+        }
+    }
+
+    private JwtKeys loadKeys(String property, Optional<Path> file, String mandates) {
+        JwtKeys keys = new JwtKeys();
+        if (file.isPresent()) {
+            try {
+                int count = keys.registerAll(file.get());
+                logger.info("Registered " + count + " trusted keys from " + file.get());
+            } catch (IOException e) {
+                throw new IllegalStateException("Failed to load the trusted keys from " + file.get(), e);
+            }
+        } else if (!allowEmbeddedKeys) {
+            logger.warning("No " + property + " is configured, all " + mandates + " mandates will be rejected");
+        }
+        return keys;
+    }
+
+    /**
+     * Returns the signer of the JWTs of this agent.
+     *
+     * @param algorithm the algorithm of the key pair generated if no signing key is configured
+     * @return the signer of the configured signing key, or else of a generated key pair
+     */
+    public JwtSigner signer(JwsAlgorithm algorithm) {
+        if (signer != null) {
+            return signer;
+        }
+        return generatedSigners.computeIfAbsent(algorithm, a -> {
+            logger.warning("No ap2.jwt.signing-key is configured, signing with a generated " + a + " key");
+            return JwtSigner.generate(a);
+        });
+    }
+}
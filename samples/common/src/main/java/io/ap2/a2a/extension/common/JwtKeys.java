@@ -0,0 +1,346 @@
+package io.ap2.a2a.extension.common;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.AlgorithmParameters;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.ECParameterSpec;
+import java.security.spec.ECPrivateKeySpec;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import io.a2a.util.Utils;
+import io.ap2.a2a.extension.spec.AP2Exception;
+import io.ap2.a2a.extension.util.CanonicalJson;
+
+import static io.ap2.a2a.extension.util.Assert.checkNotNullParam;
+
+/**
+ * The public keys that verify JSON Web Tokens, indexed by key ID.
+ * <p>
+ * Keys are registered by key ID, or learned from the JSON Web Key embedded in
+ * a token header when its key ID is the JWK thumbprint of the key. Learned
+ * keys are bounded: once {@link #DEFAULT_MAX_LEARNED_KEYS} keys have been
+ * learned, they are all forgotten and learned again as tokens are verified.
+ * Registered keys are kept until they are removed.
+ * <p>
+ * Public keys are converted from and to JWKs through their X.509
+ * SubjectPublicKeyInfo encoding, which for P-256 and Ed25519 keys is a fixed
+ * prefix followed by the raw key. Private keys are read from private JWKs,
+ * whose {@code d} member is the raw private key.
+ * <p>
+ * This class is thread-safe.
+ * <p>
+ * Specification:
+ * https://www.rfc-editor.org/rfc/rfc7517
+ * https://www.rfc-editor.org/rfc/rfc7638
+ * https://www.rfc-editor.org/rfc/rfc8037#section-2
+ */
+public final class JwtKeys {
+
+    /**
+     * The default maximum number of keys learned from token headers.
+     */
+    public static final int DEFAULT_MAX_LEARNED_KEYS = 10_000;
+
+    private static final byte[] P256_PREFIX =
+            HexFormat.of().parseHex("3059301306072a8648ce3d020106082a8648ce3d03010703420004");
+    private static final byte[] ED25519_PREFIX = HexFormat.of().parseHex("302a300506032b6570032100");
+    private static final byte[] ED25519_PRIVATE_PREFIX = HexFormat.of().parseHex("302e020100300506032b657004220420");
+    private static final int P256_COORDINATE_LENGTH = 32;
+    private static final int ED25519_KEY_LENGTH = 32;
+
+    private final ConcurrentMap<String, PublicKey> registeredKeys = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, PublicKey> learnedKeys = new ConcurrentHashMap<>();
+    private final int maxLearnedKeys;
+
+    /**
+     * Creates an empty key cache that learns up to {@link #DEFAULT_MAX_LEARNED_KEYS} keys.
+     */
+    public JwtKeys() {
+        this(DEFAULT_MAX_LEARNED_KEYS);
+    }
+
+    /**
+     * Creates an empty key cache.
+     *
+     * @param maxLearnedKeys the maximum number of keys learned from token headers
+     */
+    public JwtKeys(int maxLearnedKeys) {
+        if (maxLearnedKeys < 0) {
+            throw new IllegalArgumentException("maxLearnedKeys must not be negative");
+        }
+        this.maxLearnedKeys = maxLearnedKeys;
+    }
+
+    /**
+     * Registers the public key of a key ID, replacing any previous one.
+     *
+     * @param kid the key ID
+     * @param publicKey the public key
+     */
+    public void register(String kid, PublicKey publicKey) {
+        checkNotNullParam("kid", kid);
+        checkNotNullParam("publicKey", publicKey);
+        JwsAlgorithm.forKey(publicKey);
+        registeredKeys.put(kid, publicKey);
+        learnedKeys.remove(kid);
+    }
+
+    /**
+     * Registers the public keys of a JSON Web Key Set file, each under the key
+     * ID of its {@code kid} member, or under its thumbprint if it has none.
+     *
+     * @param file the file, a JSON object whose {@code keys} member is the array of JWKs
+     * @return the number of keys registered
+     * @throws IOException if the file cannot be read, or is not a JWK set
+     * @throws AP2Exception if a JWK is not a P-256 or Ed25519 public key
+     */
+    public int registerAll(Path file) throws IOException {
+        checkNotNullParam("file", file);
+        if (!(readJson(file).get("keys") instanceof List<?> jwks)) {
+            throw new IOException("Not a JSON Web Key Set: " + file);
+        }
+        for (Object jwk : jwks) {
+            if (!(jwk instanceof Map<?, ?> members)) {
+                throw new IOException("Invalid JSON Web Key in " + file);
+            }
+            PublicKey publicKey = fromJwk(members);
+            register(kid(members, publicKey), publicKey);
+        }
+        return jwks.size();
+    }
+
+    /**
+     * Removes the public key of a key ID.
+     *
+     * @param kid the key ID
+     */
+    public void remove(String kid) {
+        registeredKeys.remove(kid);
+        learnedKeys.remove(kid);
+    }
+
+    /**
+     * Returns the public key of a key ID.
+     *
+     * @param kid the key ID
+     * @return the public key, or {@code null} if the key ID is unknown
+     */
+    public PublicKey get(String kid) {
+        PublicKey publicKey = registeredKeys.get(kid);
+        return publicKey != null ? publicKey : learnedKeys.get(kid);
+    }
+
+    /**
+     * Learns the public key of a JWK whose thumbprint is the key ID, unless the
+     * key ID is registered.
+     *
+     * @param kid the key ID
+     * @param jwk the JSON Web Key
+     * @return the public key of the key ID
+     * @throws AP2Exception if the key ID is not the thumbprint of the JWK
+     */
+    PublicKey learn(String kid, Map<?, ?> jwk) {
+        PublicKey known = get(kid);
+        if (known != null) {
+            return known;
+        }
+        PublicKey publicKey = fromJwk(jwk);
+        if (!thumbprint(publicKey).equals(kid)) {
+            throw new AP2Exception("The key ID is not the thumbprint of the embedded key");
+        }
+        if (learnedKeys.size() >= maxLearnedKeys) {
+            learnedKeys.clear();
+        }
+        if (maxLearnedKeys > 0) {
+            learnedKeys.put(kid, publicKey);
+        }
+        return publicKey;
+    }
+
+    /**
+     * Returns the JSON Web Key of a public key, with only its required members.
+     *
+     * @param publicKey a P-256 or Ed25519 public key
+     * @return the JWK members
+     */
+    public static Map<String, Object> toJwk(PublicKey publicKey) {
+        checkNotNullParam("publicKey", publicKey);
+        byte[] encoded = publicKey.getEncoded();
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        Map<String, Object> jwk = new LinkedHashMap<>();
+        switch (JwsAlgorithm.forKey(publicKey)) {
+            case ES256 -> {
+                checkPrefix(encoded, P256_PREFIX, 2 * P256_COORDINATE_LENGTH);
+                int x = P256_PREFIX.length;
+                int y = x + P256_COORDINATE_LENGTH;
+                jwk.put("crv", "P-256");
+                jwk.put("kty", "EC");
+                jwk.put("x", encoder.encodeToString(Arrays.copyOfRange(encoded, x, y)));
+                jwk.put("y", encoder.encodeToString(Arrays.copyOfRange(encoded, y, encoded.length)));
+            }
+            case EdDSA -> {
+                checkPrefix(encoded, ED25519_PREFIX, ED25519_KEY_LENGTH);
+                jwk.put("crv", "Ed25519");
+                jwk.put("kty", "OKP");
+                jwk.put("x", encoder.encodeToString(
+                        Arrays.copyOfRange(encoded, ED25519_PREFIX.length, encoded.length)));
+            }
+        }
+        return jwk;
+    }
+
+    /**
+     * Returns the public key of a JSON Web Key.
+     *
+     * @param jwk the JWK members
+     * @return the public key
+     * @throws AP2Exception if the JWK is not a P-256 or Ed25519 public key
+     */
+    public static PublicKey fromJwk(Map<?, ?> jwk) {
+        checkNotNullParam("jwk", jwk);
+        Object kty = jwk.get("kty");
+        Object crv = jwk.get("crv");
+        try {
+            if ("EC".equals(kty) && "P-256".equals(crv)) {
+                byte[] x = decodeMember(jwk, "x", P256_COORDINATE_LENGTH);
+                byte[] y = decodeMember(jwk, "y", P256_COORDINATE_LENGTH);
+                return decode("EC", P256_PREFIX, x, y);
+            }
+            if ("OKP".equals(kty) && "Ed25519".equals(crv)) {
+                return decode("Ed25519", ED25519_PREFIX, decodeMember(jwk, "x", ED25519_KEY_LENGTH));
+            }
+        } catch (GeneralSecurityException e) {
+            throw new AP2Exception("Invalid JSON Web Key: " + e.getMessage(), e);
+        }
+        throw new AP2Exception("Unsupported JSON Web Key: kty " + kty + ", crv " + crv);
+    }
+
+    /**
+     * Returns the JWK thumbprint of a public key, which is the SHA-256 digest of
+     * the canonical JSON of its required JWK members, encoded in base64url.
+     *
+     * @param publicKey a P-256 or Ed25519 public key
+     * @return the thumbprint
+     */
+    public static String thumbprint(PublicKey publicKey) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString(digest.digest(CanonicalJson.toBytes(toJwk(publicKey))));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Returns the private key of a private JSON Web Key.
+     *
+     * @param jwk the JWK members, including the private key {@code d}
+     * @return the private key
+     * @throws AP2Exception if the JWK is not a P-256 or Ed25519 private key
+     */
+    static PrivateKey privateKeyFromJwk(Map<?, ?> jwk) {
+        Object kty = jwk.get("kty");
+        Object crv = jwk.get("crv");
+        try {
+            if ("EC".equals(kty) && "P-256".equals(crv)) {
+                AlgorithmParameters parameters = AlgorithmParameters.getInstance("EC");
+                parameters.init(new ECGenParameterSpec("secp256r1"));
+                BigInteger d = new BigInteger(1, decodeMember(jwk, "d", P256_COORDINATE_LENGTH));
+                return KeyFactory.getInstance("EC")
+                        .generatePrivate(new ECPrivateKeySpec(d, parameters.getParameterSpec(ECParameterSpec.class)));
+            }
+            if ("OKP".equals(kty) && "Ed25519".equals(crv)) {
+                byte[] d = decodeMember(jwk, "d", ED25519_KEY_LENGTH);
+                byte[] encoded = Arrays.copyOf(ED25519_PRIVATE_PREFIX, ED25519_PRIVATE_PREFIX.length + d.length);
+                System.arraycopy(d, 0, encoded, ED25519_PRIVATE_PREFIX.length, d.length);
+                return KeyFactory.getInstance("Ed25519").generatePrivate(new PKCS8EncodedKeySpec(encoded));
+            }
+        } catch (GeneralSecurityException e) {
+            throw new AP2Exception("Invalid JSON Web Key: " + e.getMessage(), e);
+        }
+        throw new AP2Exception("Unsupported JSON Web Key: kty " + kty + ", crv " + crv);
+    }
+
+    /**
+     * Returns the key ID of a JSON Web Key, its {@code kid} member or else its thumbprint.
+     *
+     * @param jwk the JWK members
+     * @param publicKey the public key of the JWK
+     * @return the key ID
+     */
+    static String kid(Map<?, ?> jwk, PublicKey publicKey) {
+        return jwk.get("kid") instanceof String kid ? kid : thumbprint(publicKey);
+    }
+
+    /**
+     * Reads a JSON object from a file.
+     *
+     * @param file the file
+     * @return the members of the object
+     * @throws IOException if the file cannot be read, or is not a JSON object
+     */
+    static Map<?, ?> readJson(Path file) throws IOException {
+        Map<?, ?> json = Utils.OBJECT_MAPPER.readValue(Files.readString(file), Map.class);
+        if (json == null) {
+            throw new IOException("Not a JSON object: " + file);
+        }
+        return json;
+    }
+
+    private static byte[] decodeMember(Map<?, ?> jwk, String name, int length) {
+        if (!(jwk.get(name) instanceof String value)) {
+            throw new AP2Exception("Missing JSON Web Key member: " + name);
+        }
+        byte[] decoded;
+        try {
+            decoded = Base64.getUrlDecoder().decode(value);
+        } catch (IllegalArgumentException e) {
+            throw new AP2Exception("Invalid JSON Web Key member: " + name, e);
+        }
+        if (decoded.length != length) {
+            throw new AP2Exception("Invalid length of JSON Web Key member: " + name);
+        }
+        return decoded;
+    }
+
+    private static PublicKey decode(String algorithm, byte[] prefix, byte[]... parts)
+            throws GeneralSecurityException {
+        int length = prefix.length;
+        for (byte[] part : parts) {
+            length += part.length;
+        }
+        byte[] encoded = Arrays.copyOf(prefix, length);
+        int offset = prefix.length;
+        for (byte[] part : parts) {
+            System.arraycopy(part, 0, encoded, offset, part.length);
+            offset += part.length;
+        }
+        return KeyFactory.getInstance(algorithm).generatePublic(new X509EncodedKeySpec(encoded));
+    }
+
+    private static void checkPrefix(byte[] encoded, byte[] prefix, int keyLength) {
+        if (encoded.length != prefix.length + keyLength
+                || !Arrays.equals(encoded, 0, prefix.length, prefix, 0, prefix.length)) {
+            throw new AP2Exception("Unsupported public key encoding");
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package io.ap2.a2a.extension.common;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import io.ap2.a2a.extension.util.CanonicalJson;
+
+import static io.ap2.a2a.extension.util.Assert.checkNotNullParam;
+
+/**
+ * Signs JSON Web Tokens with a private key, in the JWS compact serialization.
+ * <p>
+ * The header of the tokens is encoded once, and each thread reuses a
+ * signature engine initialized with the private key. Claims are serialized as
+ * {@link CanonicalJson canonical JSON}.
+ * <p>
+ * This class is thread-safe.
+ * <p>
+ * Specification:
+ * https://www.rfc-editor.org/rfc/rfc7519
+ */
+public final class JwtSigner {
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+
+    private final JwsAlgorithm algorithm;
+    private final String kid;
+    private final byte[] encodedHeader;
+    private final ThreadLocal<Signature> signatures;
+
+    /**
+     * Creates a signer whose tokens are verified by a registered key ID.
+     *
+     * @param kid the key ID of the public key
+     * @param privateKey the private key
+     */
+    public JwtSigner(String kid, PrivateKey privateKey) {
+        this(kid, privateKey, null);
+    }
+
+    private JwtSigner(String kid, PrivateKey privateKey, Map<String, Object> jwk) {
+        checkNotNullParam("kid", kid);
+        checkNotNullParam("privateKey", privateKey);
+        this.algorithm = JwsAlgorithm.forKey(privateKey);
+        this.kid = kid;
+        Map<String, Object> header = new LinkedHashMap<>();
+        header.put("alg", algorithm.name());
+        header.put("typ", "JWT");
+        header.put("kid", kid);
+        if (jwk != null) {
+            header.put("jwk", jwk);
+        }
+        this.encodedHeader = (ENCODER.encodeToString(CanonicalJson.toBytes(header)) + ".")
+                .getBytes(StandardCharsets.US_ASCII);
+        this.signatures = ThreadLocal.withInitial(() -> {
+            Signature signature = algorithm.newSignature();
+            try {
+                signature.initSign(privateKey);
+            } catch (GeneralSecurityException e) {
+                throw JwsAlgorithm.signatureFailure(e);
+            }
+            return signature;
+        });
+    }
+
+    /**
+     * Creates a signer whose tokens embed their public key as a JSON Web Key,
+     * with its thumbprint as the key ID.
+     *
+     * @param keyPair the key pair
+     * @return the signer
+     */
+    public static JwtSigner withEmbeddedKey(KeyPair keyPair) {
+        checkNotNullParam("keyPair", keyPair);
+        return new JwtSigner(JwtKeys.thumbprint(keyPair.getPublic()), keyPair.getPrivate(),
+                JwtKeys.toJwk(keyPair.getPublic()));
+    }
+
+    /**
+     * Creates a signer with the private JSON Web Key of a file, whose tokens are
+     * verified by the key ID of its {@code kid} member, or of its thumbprint if it
+     * has none. The public key is not embedded in the tokens: verifiers register
+     * it under the same key ID, as {@link JwtKeys#registerAll(Path)} does.
+     *
+     * @param file the file, a private P-256 or Ed25519 JWK
+     * @return the signer
+     * @throws IOException if the file cannot be read, or is not a JSON object
+     * @throws io.ap2.a2a.extension.spec.AP2Exception if the JWK is not a P-256 or Ed25519 private key
+     */
+    public static JwtSigner load(Path file) throws IOException {
+        checkNotNullParam("file", file);
+        Map<?, ?> jwk = JwtKeys.readJson(file);
+        PublicKey publicKey = JwtKeys.fromJwk(jwk);
+        return new JwtSigner(JwtKeys.kid(jwk, publicKey), JwtKeys.privateKeyFromJwk(jwk));
+    }
+
+    /**
+     * Creates a signer with a new key pair, whose tokens embed their public key.
+     *
+     * @param algorithm the algorithm of the key pair
+     * @return the signer
+     */
+    public static JwtSigner generate(JwsAlgorithm algorithm) {
+        checkNotNullParam("algorithm", algorithm);
+        return withEmbeddedKey(algorithm.generateKeyPair());
+    }
+
+    /**
+     * Returns the key ID of the tokens.
+     *
+     * @return the key ID
+     */
+    public String kid() {
+        return kid;
+    }
+
+    /**
+     * Returns the algorithm of the tokens.
+     *
+     * @return the algorithm
+     */
+    public JwsAlgorithm algorithm() {
+        return algorithm;
+    }
+
+    /**
+     * Signs claims.
+     *
+     * @param claims the claims, serializable as JSON
+     * @return the token
+     */
+    public String sign(Map<String, ?> claims) {
+        checkNotNullParam("claims", claims);
+        byte[] payload = ENCODER.encode(CanonicalJson.toBytes(claims));
+        byte[] signingInput = new byte[encodedHeader.length + payload.length];
+        System.arraycopy(encodedHeader, 0, signingInput, 0, encodedHeader.length);
+        System.arraycopy(payload, 0, signingInput, encodedHeader.length, payload.length);
+        byte[] signature;
+        try {
+            Signature engine = signatures.get();
+            engine.update(signingInput);
+            signature = engine.sign();
+        } catch (GeneralSecurityException e) {
+            signatures.remove();
+            throw JwsAlgorithm.signatureFailure(e);
+        }
+        return new String(signingInput, StandardCharsets.US_ASCII) + "." + ENCODER.encodeToString(signature);
+    }
+}
@@ -0,0 +1,377 @@
+package io.ap2.a2a.extension.common;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import io.a2a.util.Utils;
+import io.ap2.a2a.extension.spec.AP2Exception;
+
+import static io.ap2.a2a.extension.util.Assert.checkNotNullParam;
+
+/**
+ * Verifies JSON Web Tokens in the JWS compact serialization.
+ * <p>
+ * A token is verified with the public key of its key ID in a {@link JwtKeys}
+ * cache, or, if enabled, with the JSON Web Key embedded in its header when the
+ * key ID is its thumbprint. Its {@code exp} claim is required, and its
+ * {@code exp}, {@code nbf} and {@code iat} claims are checked against the
+ * clock, allowing for a clock skew. If a {@link JtiReplayCache} is configured,
+ * its {@code jti} claim is required and recorded once the signature is valid.
+ * <p>
+ * Verification runs on every request, so the work that does not depend on the
+ * token is done once: parsed headers are cached by their encoding, and each
+ * thread reuses a signature engine initialized per public key. If enabled,
+ * verified tokens are also cached until they expire, so that a token presented
+ * again is not verified again; the replay cache is still checked. A cached
+ * token remains valid if its key is removed from the {@link JwtKeys}.
+ * <p>
+ * This class is thread-safe.
+ * <p>
+ * Specification:
+ * https://www.rfc-editor.org/rfc/rfc7519#section-7.2
+ */
+public final class JwtVerifier {
+
+    /**
+     * The default allowed clock skew.
+     */
+    public static final Duration DEFAULT_CLOCK_SKEW = Duration.ofSeconds(60);
+
+    private static final int MAX_CACHED_HEADERS = 1024;
+    private static final int MAX_SIGNATURES_PER_THREAD = 64;
+
+    private final JwtKeys keys;
+    private final boolean allowEmbeddedKeys;
+    private final long clockSkewMillis;
+    private final String audience;
+    private final JtiReplayCache replayCache;
+    private final VerifiedTokenCache verifiedTokens;
+    private final Clock clock;
+    private final ConcurrentMap<String, Header> headers = new ConcurrentHashMap<>();
+    private final ThreadLocal<Map<PublicKey, Signature>> signatures = ThreadLocal.withInitial(IdentityHashMap::new);
+
+    private JwtVerifier(Builder builder) {
+        this.keys = builder.keys;
+        this.allowEmbeddedKeys = builder.allowEmbeddedKeys;
+        this.clockSkewMillis = builder.clockSkew.toMillis();
+        this.audience = builder.audience;
+        this.replayCache = builder.replayCache;
+        this.verifiedTokens = builder.maxVerifiedTokens > 0 ? new VerifiedTokenCache(builder.maxVerifiedTokens) : null;
+        this.clock = builder.clock;
+    }
+
+    /**
+     * Creates a new builder for a JwtVerifier.
+     *
+     * @return a new builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Verifies a token that is not bound to anything.
+     *
+     * @param token the token
+     * @return the verified token
+     * @throws AP2Exception if the token is not valid
+     */
+    public VerifiedJwt verify(String token) {
+        return verify(token, null);
+    }
+
+    /**
+     * Verifies a token.
+     *
+     * @param token the token
+     * @param binding what the token is bound to, such as an A2A context ID, or
+     *                {@code null}; a token ID is only accepted again with the same binding
+     * @return the verified token
+     * @throws AP2Exception if the token is not valid
+     */
+    public VerifiedJwt verify(String token, String binding) {
+        checkNotNullParam("token", token);
+        long now = clock.millis();
+        VerifiedJwt verified;
+        if (verifiedTokens == null) {
+            verified = verifyToken(token, now);
+        } else {
+            VerifiedTokenCache.Key key = VerifiedTokenCache.key(token);
+            verified = verifiedTokens.get(key, now - clockSkewMillis);
+            if (verified == null) {
+                verified = verifyToken(token, now);
+                verifiedTokens.put(key, verified, expiresAtMillis(verified.claims()), now - clockSkewMillis);
+            }
+        }
+        if (replayCache != null) {
+            if (!(verified.claims().get("jti") instanceof String jti)) {
+                throw new AP2Exception("JWT has no jti claim");
+            }
+            long expiresAtMillis = expiresAtMillis(verified.claims()) + clockSkewMillis;
+            if (!replayCache.record(jti, binding, expiresAtMillis, now)) {
+                throw new AP2Exception("JWT has already been used");
+            }
+        }
+        return verified;
+    }
+
+    private VerifiedJwt verifyToken(String token, long now) {
+        int headerEnd = token.indexOf('.');
+        int payloadEnd = headerEnd < 0 ? -1 : token.indexOf('.', headerEnd + 1);
+        if (payloadEnd < 0 || token.indexOf('.', payloadEnd + 1) >= 0) {
+            throw new AP2Exception("Malformed JWT: expected three segments");
+        }
+
+        Header header = header(token.substring(0, headerEnd));
+        PublicKey publicKey = publicKey(header);
+        byte[] signingInput = token.substring(0, payloadEnd).getBytes(StandardCharsets.US_ASCII);
+        byte[] signature = decode(token.substring(payloadEnd + 1), "signature");
+        if (!verifySignature(header.algorithm(), publicKey, signingInput, signature)) {
+            throw new AP2Exception("Invalid JWT signature");
+        }
+
+        Map<String, Object> claims = parseJson(decode(token.substring(headerEnd + 1, payloadEnd), "payload"));
+        checkTimes(claims, now);
+        checkAudience(claims);
+        return new VerifiedJwt(header.kid(), header.algorithm(), Collections.unmodifiableMap(claims));
+    }
+
+    private Header header(String encodedHeader) {
+        Header header = headers.get(encodedHeader);
+        if (header != null) {
+            return header;
+        }
+        Map<String, Object> members = parseJson(decode(encodedHeader, "header"));
+        if (members.containsKey("crit")) {
+            throw new AP2Exception("Unsupported critical JWT header parameters");
+        }
+        if (!(members.get("alg") instanceof String alg)) {
+            throw new AP2Exception("JWT header has no alg");
+        }
+        if (!(members.get("kid") instanceof String kid)) {
+            throw new AP2Exception("JWT header has no kid");
+        }
+        Object jwk = members.get("jwk");
+        if (jwk != null && !(jwk instanceof Map)) {
+            throw new AP2Exception("Invalid jwk in JWT header");
+        }
+        header = new Header(JwsAlgorithm.fromName(alg), kid, (Map<?, ?>) jwk);
+        if (headers.size() >= MAX_CACHED_HEADERS) {
+            headers.clear();
+        }
+        headers.put(encodedHeader, header);
+        return header;
+    }
+
+    private PublicKey publicKey(Header header) {
+        PublicKey publicKey = keys.get(header.kid());
+        if (publicKey == null) {
+            if (!allowEmbeddedKeys || header.jwk() == null) {
+                throw new AP2Exception("Unknown JWT key ID: " + header.kid());
+            }
+            publicKey = keys.learn(header.kid(), header.jwk());
+        }
+        if (JwsAlgorithm.forKey(publicKey) != header.algorithm()) {
+            throw new AP2Exception("JWT algorithm " + header.algorithm() + " does not match its key");
+        }
+        return publicKey;
+    }
+
+    private boolean verifySignature(JwsAlgorithm algorithm, PublicKey publicKey, byte[] signingInput,
+                                    byte[] signatureBytes) {
+        Map<PublicKey, Signature> engines = signatures.get();
+        Signature engine = engines.get(publicKey);
+        try {
+            if (engine == null) {
+                if (engines.size() >= MAX_SIGNATURES_PER_THREAD) {
+                    engines.clear();
+                }
+                engine = algorithm.newSignature();
+                engine.initVerify(publicKey);
+                engines.put(publicKey, engine);
+            }
+            engine.update(signingInput);
+            return engine.verify(signatureBytes);
+        } catch (GeneralSecurityException e) {
+            // The engine may be left mid-operation, so initialize a new one next time
+            engines.remove(publicKey);
+            return false;
+        }
+    }
+
+    private void checkTimes(Map<String, Object> claims, long now) {
+        long expiresAtMillis = expiresAtMillis(claims);
+        if (now - clockSkewMillis >= expiresAtMillis) {
+            throw new AP2Exception("JWT has expired");
+        }
+        if (claims.get("nbf") instanceof Number nbf && now + clockSkewMillis < nbf.longValue() * 1000) {
+            throw new AP2Exception("JWT is not valid yet");
+        }
+        if (claims.get("iat") instanceof Number iat && now + clockSkewMillis < iat.longValue() * 1000) {
+            throw new AP2Exception("JWT was issued in the future");
+        }
+    }
+
+    private static long expiresAtMillis(Map<String, Object> claims) {
+        if (!(claims.get("exp") instanceof Number exp)) {
+            throw new AP2Exception("JWT has no exp claim");
+        }
+        return exp.longValue() * 1000;
+    }
+
+    private void checkAudience(Map<String, Object> claims) {
+        if (audience == null) {
+            return;
+        }
+        Object aud = claims.get("aud");
+        boolean matches = aud instanceof List<?> audiences ? audiences.contains(audience) : audience.equals(aud);
+        if (!matches) {
+            throw new AP2Exception("JWT is not intended for " + audience);
+        }
+    }
+
+    private static byte[] decode(String segment, String name) {
+        try {
+            return Base64.getUrlDecoder().decode(segment);
+        } catch (IllegalArgumentException e) {
+            throw new AP2Exception("Malformed JWT " + name, e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> parseJson(byte[] json) {
+        try {
+            return Utils.OBJECT_MAPPER.readValue(json, Map.class);
+        } catch (IOException e) {
+            throw new AP2Exception("Malformed JWT JSON: " + e.getMessage(), e);
+        }
+    }
+
+    private record Header(JwsAlgorithm algorithm, String kid, Map<?, ?> jwk) {
+    }
+
+    /**
+     * Builder for {@link JwtVerifier}.
+     */
+    public static final class Builder {
+
+        private JwtKeys keys = new JwtKeys();
+        private boolean allowEmbeddedKeys;
+        private Duration clockSkew = DEFAULT_CLOCK_SKEW;
+        private String audience;
+        private JtiReplayCache replayCache;
+        private int maxVerifiedTokens;
+        private Clock clock = Clock.systemUTC();
+
+        private Builder() {
+        }
+
+        /**
+         * Sets the public keys of the known key IDs.
+         *
+         * @param keys the key cache
+         * @return this builder
+         */
+        public Builder keys(JwtKeys keys) {
+            this.keys = checkNotNullParam("keys", keys);
+            return this;
+        }
+
+        /**
+         * Sets whether tokens of unknown key IDs are verified with the key
+         * embedded in their header, when the key ID is its thumbprint. This only
+         * proves that the token was signed by the holder of that key.
+         *
+         * @param allowEmbeddedKeys whether embedded keys are allowed
+         * @return this builder
+         */
+        public Builder allowEmbeddedKeys(boolean allowEmbeddedKeys) {
+            this.allowEmbeddedKeys = allowEmbeddedKeys;
+            return this;
+        }
+
+        /**
+         * Sets the allowed clock skew.
+         *
+         * @param clockSkew the clock skew
+         * @return this builder
+         */
+        public Builder clockSkew(Duration clockSkew) {
+            checkNotNullParam("clockSkew", clockSkew);
+            if (clockSkew.isNegative()) {
+                throw new IllegalArgumentException("clockSkew must not be negative");
+            }
+            this.clockSkew = clockSkew;
+            return this;
+        }
+
+        /**
+         * Requires tokens to be intended for an audience.
+         *
+         * @param audience the audience
+         * @return this builder
+         */
+        public Builder audience(String audience) {
+            this.audience = audience;
+            return this;
+        }
+
+        /**
+         * Rejects tokens whose token ID was already presented with another binding.
+         *
+         * @param replayCache the token IDs presented
+         * @return this builder
+         */
+        public Builder replayCache(JtiReplayCache replayCache) {
+            this.replayCache = replayCache;
+            return this;
+        }
+
+        /**
+         * Caches verified tokens until they expire, so that tokens presented
+         * again are not verified again.
+         *
+         * @param maxVerifiedTokens the maximum number of cached tokens, or 0 to disable the cache
+         * @return this builder
+         */
+        public Builder cacheVerifiedTokens(int maxVerifiedTokens) {
+            if (maxVerifiedTokens < 0) {
+                throw new IllegalArgumentException("maxVerifiedTokens must not be negative");
+            }
+            this.maxVerifiedTokens = maxVerifiedTokens;
+            return this;
+        }
+
+        /**
+         * Sets the clock that token times are checked against.
+         *
+         * @param clock the clock
+         * @return this builder
+         */
+        public Builder clock(Clock clock) {
+            this.clock = checkNotNullParam("clock", clock);
+            return this;
+        }
+
+        /**
+         * Builds the JwtVerifier.
+         *
+         * @return the JwtVerifier
+         */
+        public JwtVerifier build() {
+            return new JwtVerifier(this);
+        }
+    }
+}
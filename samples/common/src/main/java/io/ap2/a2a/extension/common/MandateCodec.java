@@ -0,0 +1,724 @@
+package io.ap2.a2a.extension.common;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.ap2.a2a.extension.spec.AP2Exception;
+import io.ap2.a2a.extension.spec.CartContents;
+import io.ap2.a2a.extension.spec.CartMandate;
+import io.ap2.a2a.extension.spec.ContactAddress;
+import io.ap2.a2a.extension.spec.PaymentCurrencyAmount;
+import io.ap2.a2a.extension.spec.PaymentDetailsInit;
+import io.ap2.a2a.extension.spec.PaymentDetailsModifier;
+import io.ap2.a2a.extension.spec.PaymentItem;
+import io.ap2.a2a.extension.spec.PaymentMethodData;
+import io.ap2.a2a.extension.spec.PaymentOptions;
+import io.ap2.a2a.extension.spec.PaymentRequest;
+import io.ap2.a2a.extension.spec.PaymentShippingOption;
+import io.ap2.a2a.extension.util.Assert;
+
+/**
+ * A compact binary encoding of mandates, for storage.
+ * <p>
+ * The contact addresses and payment methods that mandates are made of can
+ * also be encoded on their own, for storing account details.
+ * <p>
+ * Fields are written in declaration order without any field names. Strings
+ * are written as a varint length followed by their UTF-8 bytes, and nullable
+ * values are preceded by a presence marker. The free-form {@code data} maps
+ * of payment methods and modifiers are written as tagged values, with a tag
+ * per numeric type, so that they decode to the same types they were encoded
+ * from and hash and canonicalize the same.
+ * <p>
+ * Null elements of the lists of payment methods, items, shipping options and
+ * modifiers, which deserialized JSON may have, are written as a null string
+ * in place of the first field of the element, which is never null otherwise.
+ * <p>
+ * Every encoded mandate starts with a format version byte, so that the
+ * encoding can evolve without breaking data written by older versions.
+ */
+public final class MandateCodec {
+
+    /**
+     * The current version of the encoding.
+     */
+    public static final byte FORMAT_VERSION = 1;
+
+    private static final byte TAG_NULL = 0;
+    private static final byte TAG_STRING = 1;
+    private static final byte TAG_TRUE = 2;
+    private static final byte TAG_FALSE = 3;
+    private static final byte TAG_INTEGER = 4;
+    private static final byte TAG_DOUBLE = 5;
+    private static final byte TAG_LIST = 6;
+    private static final byte TAG_MAP = 7;
+    private static final byte TAG_DECIMAL = 8;
+    private static final byte TAG_LONG = 9;
+    private static final byte TAG_SHORT = 10;
+    private static final byte TAG_BYTE = 11;
+    private static final byte TAG_FLOAT = 12;
+    private static final byte TAG_BIG_INTEGER = 13;
+
+    private MandateCodec() {
+    }
+
+    /**
+     * Encodes a cart mandate.
+     *
+     * @param cartMandate the cart mandate
+     * @return the encoded cart mandate
+     */
+    public static byte[] encodeCartMandate(CartMandate cartMandate) {
+        Assert.checkNotNullParam("cartMandate", cartMandate);
+        Writer writer = new Writer(512);
+        writer.writeByte(FORMAT_VERSION);
+        writeCartMandate(writer, cartMandate);
+        return writer.toByteArray();
+    }
+
+    /**
+     * Decodes a cart mandate.
+     *
+     * @param bytes the encoded cart mandate
+     * @return the cart mandate
+     * @throws AP2Exception if the bytes are not a valid encoded cart mandate
+     */
+    public static CartMandate decodeCartMandate(byte[] bytes) throws AP2Exception {
+        return decodeCartMandate(ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * Decodes a cart mandate from the remaining bytes of a buffer.
+     *
+     * @param buffer the buffer holding the encoded cart mandate
+     * @return the cart mandate
+     * @throws AP2Exception if the bytes are not a valid encoded cart mandate
+     */
+    public static CartMandate decodeCartMandate(ByteBuffer buffer) throws AP2Exception {
+        Reader reader = new Reader(buffer);
+        try {
+            reader.readVersion();
+            return readCartMandate(reader);
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new AP2Exception("Invalid encoded cart mandate: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Encodes a contact address.
+     *
+     * @param address the contact address, or {@code null}
+     * @return the encoded contact address
+     */
+    public static byte[] encodeContactAddress(ContactAddress address) {
+        Writer writer = new Writer(128);
+        writer.writeByte(FORMAT_VERSION);
+        writeContactAddress(writer, address);
+        return writer.toByteArray();
+    }
+
+    /**
+     * Decodes a contact address from a buffer, whose position is advanced
+     * past it.
+     *
+     * @param buffer the buffer holding the encoded contact address
+     * @return the contact address, or {@code null}
+     * @throws AP2Exception if the bytes are not a valid encoded contact address
+     */
+    public static ContactAddress decodeContactAddress(ByteBuffer buffer) throws AP2Exception {
+        Reader reader = new Reader(buffer);
+        try {
+            reader.readVersion();
+            return readContactAddress(reader);
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new AP2Exception("Invalid encoded contact address: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Encodes a list of payment methods.
+     *
+     * @param paymentMethods the payment methods, or {@code null}
+     * @return the encoded payment methods
+     */
+    public static byte[] encodePaymentMethods(List<PaymentMethodData> paymentMethods) {
+        Writer writer = new Writer(256);
+        writer.writeByte(FORMAT_VERSION);
+        writePaymentMethods(writer, paymentMethods);
+        return writer.toByteArray();
+    }
+
+    /**
+     * Decodes a list of payment methods from a buffer, whose position is
+     * advanced past it.
+     *
+     * @param buffer the buffer holding the encoded payment methods
+     * @return the payment methods, or {@code null}
+     * @throws AP2Exception if the bytes are not valid encoded payment methods
+     */
+    public static List<PaymentMethodData> decodePaymentMethods(ByteBuffer buffer) throws AP2Exception {
+        Reader reader = new Reader(buffer);
+        try {
+            reader.readVersion();
+            return readPaymentMethods(reader);
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new AP2Exception("Invalid encoded payment methods: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Writes a cart mandate without a format version, for embedding in other encodings.
+     *
+     * @param writer the writer
+     * @param cartMandate the cart mandate
+     */
+    static void writeCartMandate(Writer writer, CartMandate cartMandate) {
+        Assert.checkNotNullParam("cartMandate", cartMandate);
+        writeCartContents(writer, cartMandate.contents());
+        writer.writeString(cartMandate.merchantAuthorization());
+    }
+
+    /**
+     * Reads a cart mandate written by {@link #writeCartMandate(Writer, CartMandate)}.
+     *
+     * @param reader the reader
+     * @return the cart mandate
+     */
+    static CartMandate readCartMandate(Reader reader) {
+        return new CartMandate(readCartContents(reader), reader.readString());
+    }
+
+    private static void writeCartContents(Writer writer, CartContents contents) {
+        writer.writeString(contents.id());
+        writer.writeBoolean(contents.userCartConfirmationRequired());
+        writePaymentRequest(writer, contents.paymentRequest());
+        writer.writeString(contents.cartExpiry());
+        writer.writeString(contents.merchantName());
+    }
+
+    private static CartContents readCartContents(Reader reader) {
+        return new CartContents(
+                reader.readString(),
+                reader.readBoolean(),
+                readPaymentRequest(reader),
+                reader.readString(),
+                reader.readString());
+    }
+
+    private static void writePaymentRequest(Writer writer, PaymentRequest paymentRequest) {
+        writePaymentMethods(writer, paymentRequest.methodData());
+        writePaymentDetailsInit(writer, paymentRequest.details());
+        writePaymentOptions(writer, paymentRequest.options());
+        writeContactAddress(writer, paymentRequest.shippingAddress());
+    }
+
+    private static PaymentRequest readPaymentRequest(Reader reader) {
+        return new PaymentRequest(
+                readPaymentMethods(reader),
+                readPaymentDetailsInit(reader),
+                readPaymentOptions(reader),
+                readContactAddress(reader));
+    }
+
+    private static void writePaymentMethods(Writer writer, List<PaymentMethodData> methodData) {
+        writer.writeLength(methodData);
+        if (methodData != null) {
+            for (PaymentMethodData method : methodData) {
+                if (method == null) {
+                    writer.writeString(null);
+                    continue;
+                }
+                writer.writeString(method.supportedMethods());
+                writer.writeMap(method.data());
+            }
+        }
+    }
+
+    private static List<PaymentMethodData> readPaymentMethods(Reader reader) {
+        int methodCount = reader.readLength();
+        List<PaymentMethodData> methodData = null;
+        if (methodCount >= 0) {
+            methodData = new ArrayList<>(methodCount);
+            for (int i = 0; i < methodCount; i++) {
+                String supportedMethods = reader.readString();
+                methodData.add(supportedMethods == null ? null
+                        : new PaymentMethodData(supportedMethods, reader.readMap()));
+            }
+        }
+        return methodData;
+    }
+
+    private static void writePaymentDetailsInit(Writer writer, PaymentDetailsInit details) {
+        writer.writeString(details.id());
+        List<PaymentItem> displayItems = details.displayItems();
+        writer.writeLength(displayItems);
+        if (displayItems != null) {
+            for (PaymentItem item : displayItems) {
+                writePaymentItem(writer, item);
+            }
+        }
+        List<PaymentShippingOption> shippingOptions = details.shippingOptions();
+        writer.writeLength(shippingOptions);
+        if (shippingOptions != null) {
+            for (PaymentShippingOption option : shippingOptions) {
+                if (option == null) {
+                    writer.writeString(null);
+                    continue;
+                }
+                writer.writeString(option.id());
+                writer.writeString(option.label());
+                writePaymentCurrencyAmount(writer, option.amount());
+                writer.writeBoolean(option.selected());
+            }
+        }
+        List<PaymentDetailsModifier> modifiers = details.modifiers();
+        writer.writeLength(modifiers);
+        if (modifiers != null) {
+            for (PaymentDetailsModifier modifier : modifiers) {
+                if (modifier == null) {
+                    writer.writeString(null);
+                    continue;
+                }
+                writer.writeString(modifier.supportedMethods());
+                writeNullablePaymentItem(writer, modifier.total());
+                List<PaymentItem> additionalItems = modifier.additionalDisplayItems();
+                writer.writeLength(additionalItems);
+                if (additionalItems != null) {
+                    for (PaymentItem item : additionalItems) {
+                        writePaymentItem(writer, item);
+                    }
+                }
+                writer.writeMap(modifier.data());
+            }
+        }
+        writePaymentItem(writer, details.total());
+    }
+
+    private static PaymentDetailsInit readPaymentDetailsInit(Reader reader) {
+        String id = reader.readString();
+        int itemCount = reader.readLength();
+        List<PaymentItem> displayItems = null;
+        if (itemCount >= 0) {
+            displayItems = new ArrayList<>(itemCount);
+            for (int i = 0; i < itemCount; i++) {
+                displayItems.add(readPaymentItem(reader));
+            }
+        }
+        int optionCount = reader.readLength();
+        List<PaymentShippingOption> shippingOptions = null;
+        if (optionCount >= 0) {
+            shippingOptions = new ArrayList<>(optionCount);
+            for (int i = 0; i < optionCount; i++) {
+                String optionId = reader.readString();
+                shippingOptions.add(optionId == null ? null : new PaymentShippingOption(
+                        optionId,
+                        reader.readString(),
+                        readPaymentCurrencyAmount(reader),
+                        reader.readBoolean()));
+            }
+        }
+        int modifierCount = reader.readLength();
+        List<PaymentDetailsModifier> modifiers = null;
+        if (modifierCount >= 0) {
+            modifiers = new ArrayList<>(modifierCount);
+            for (int i = 0; i < modifierCount; i++) {
+                String supportedMethods = reader.readString();
+                if (supportedMethods == null) {
+                    modifiers.add(null);
+                    continue;
+                }
+                PaymentItem total = readNullablePaymentItem(reader);
+                int additionalCount = reader.readLength();
+                List<PaymentItem> additionalItems = null;
+                if (additionalCount >= 0) {
+                    additionalItems = new ArrayList<>(additionalCount);
+                    for (int j = 0; j < additionalCount; j++) {
+                        additionalItems.add(readPaymentItem(reader));
+                    }
+                }
+                modifiers.add(new PaymentDetailsModifier(supportedMethods, total, additionalItems, reader.readMap()));
+            }
+        }
+        return new PaymentDetailsInit(id, displayItems, shippingOptions, modifiers, readPaymentItem(reader));
+    }
+
+    private static void writeNullablePaymentItem(Writer writer, PaymentItem item) {
+        writer.writeByte(item == null ? (byte) 0 : (byte) 1);
+        if (item != null) {
+            writePaymentItem(writer, item);
+        }
+    }
+
+    private static PaymentItem readNullablePaymentItem(Reader reader) {
+        return reader.readByte() == 0 ? null : readPaymentItem(reader);
+    }
+
+    private static void writePaymentItem(Writer writer, PaymentItem item) {
+        if (item == null) {
+            writer.writeString(null);
+            return;
+        }
+        writer.writeString(item.label());
+        writePaymentCurrencyAmount(writer, item.amount());
+        writer.writeBoolean(item.pending());
+        writer.writeVarInt(item.refundPeriod() == null ? 0 : item.refundPeriod() + 1);
+    }
+
+    private static PaymentItem readPaymentItem(Reader reader) {
+        String label = reader.readString();
+        if (label == null) {
+            return null;
+        }
+        PaymentCurrencyAmount amount = readPaymentCurrencyAmount(reader);
+        Boolean pending = reader.readBoolean();
+        int refundPeriod = reader.readVarInt();
+        return new PaymentItem(label, amount, pending, refundPeriod == 0 ? null : refundPeriod - 1);
+    }
+
+    private static void writePaymentCurrencyAmount(Writer writer, PaymentCurrencyAmount amount) {
+        writer.writeString(amount.currency());
+        writer.writeDouble(amount.value());
+    }
+
+    private static PaymentCurrencyAmount readPaymentCurrencyAmount(Reader reader) {
+        return new PaymentCurrencyAmount(reader.readString(), reader.readDouble());
+    }
+
+    private static void writePaymentOptions(Writer writer, PaymentOptions options) {
+        writer.writeByte(options == null ? (byte) 0 : (byte) 1);
+        if (options != null) {
+            writer.writeBoolean(options.requestPayerName());
+            writer.writeBoolean(options.requestPayerEmail());
+            writer.writeBoolean(options.requestPayerPhone());
+            writer.writeBoolean(options.requestShipping());
+            writer.writeString(options.shippingType());
+        }
+    }
+
+    private static PaymentOptions readPaymentOptions(Reader reader) {
+        if (reader.readByte() == 0) {
+            return null;
+        }
+        return new PaymentOptions(
+                reader.readBoolean(),
+                reader.readBoolean(),
+                reader.readBoolean(),
+                reader.readBoolean(),
+                reader.readString());
+    }
+
+    private static void writeContactAddress(Writer writer, ContactAddress address) {
+        writer.writeByte(address == null ? (byte) 0 : (byte) 1);
+        if (address != null) {
+            writer.writeString(address.city());
+            writer.writeString(address.country());
+            writer.writeString(address.dependentLocality());
+            writer.writeString(address.organization());
+            writer.writeString(address.phoneNumber());
+            writer.writeString(address.postalCode());
+            writer.writeString(address.recipient());
+            writer.writeString(address.region());
+            writer.writeString(address.sortingCode());
+            List<String> addressLine = address.addressLine();
+            writer.writeLength(addressLine);
+            if (addressLine != null) {
+                for (String line : addressLine) {
+                    writer.writeString(line);
+                }
+            }
+        }
+    }
+
+    private static ContactAddress readContactAddress(Reader reader) {
+        if (reader.readByte() == 0) {
+            return null;
+        }
+        String city = reader.readString();
+        String country = reader.readString();
+        String dependentLocality = reader.readString();
+        String organization = reader.readString();
+        String phoneNumber = reader.readString();
+        String postalCode = reader.readString();
+        String recipient = reader.readString();
+        String region = reader.readString();
+        String sortingCode = reader.readString();
+        int lineCount = reader.readLength();
+        List<String> addressLine = null;
+        if (lineCount >= 0) {
+            addressLine = new ArrayList<>(lineCount);
+            for (int i = 0; i < lineCount; i++) {
+                addressLine.add(reader.readString());
+            }
+        }
+        return new ContactAddress(city, country, dependentLocality, organization, phoneNumber,
+                postalCode, recipient, region, sortingCode, addressLine);
+    }
+
+    /**
+     * Appends primitive values to a growable byte array.
+     */
+    static final class Writer {
+
+        private byte[] bytes;
+        private int size;
+
+        Writer(int initialCapacity) {
+            this.bytes = new byte[initialCapacity];
+        }
+
+        void writeByte(byte value) {
+            ensureCapacity(1);
+            bytes[size++] = value;
+        }
+
+        void writeVarInt(int value) {
+            ensureCapacity(5);
+            while ((value & ~0x7F) != 0) {
+                bytes[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[size++] = (byte) value;
+        }
+
+        void writeLong(long value) {
+            ensureCapacity(8);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                bytes[size++] = (byte) (value >>> shift);
+            }
+        }
+
+        void writeDouble(double value) {
+            writeLong(Double.doubleToLongBits(value));
+        }
+
+        void writeBoolean(Boolean value) {
+            writeByte(value == null ? (byte) 0 : value ? (byte) 2 : (byte) 1);
+        }
+
+        void writeString(String value) {
+            if (value == null) {
+                writeVarInt(0);
+                return;
+            }
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(utf8.length + 1);
+            ensureCapacity(utf8.length);
+            System.arraycopy(utf8, 0, bytes, size, utf8.length);
+            size += utf8.length;
+        }
+
+        void writeLength(List<?> list) {
+            writeVarInt(list == null ? 0 : list.size() + 1);
+        }
+
+        void writeMap(Map<String, Object> map) {
+            writeVarInt(map == null ? 0 : map.size() + 1);
+            if (map != null) {
+                for (Map.Entry<String, Object> entry : map.entrySet()) {
+                    writeString(entry.getKey());
+                    writeValue(entry.getValue());
+                }
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        void writeValue(Object value) {
+            if (value == null) {
+                writeByte(TAG_NULL);
+            } else if (value instanceof String string) {
+                writeByte(TAG_STRING);
+                writeString(string);
+            } else if (value instanceof Boolean bool) {
+                writeByte(bool ? TAG_TRUE : TAG_FALSE);
+            } else if (value instanceof Integer number) {
+                writeByte(TAG_INTEGER);
+                writeLong(number);
+            } else if (value instanceof Long number) {
+                writeByte(TAG_LONG);
+                writeLong(number);
+            } else if (value instanceof Short number) {
+                writeByte(TAG_SHORT);
+                writeLong(number);
+            } else if (value instanceof Byte number) {
+                writeByte(TAG_BYTE);
+                writeLong(number);
+            } else if (value instanceof Double number) {
+                writeByte(TAG_DOUBLE);
+                writeDouble(number);
+            } else if (value instanceof Float number) {
+                writeByte(TAG_FLOAT);
+                writeDouble(number);
+            } else if (value instanceof BigDecimal number) {
+                writeByte(TAG_DECIMAL);
+                writeString(number.toString());
+            } else if (value instanceof BigInteger number) {
+                writeByte(TAG_BIG_INTEGER);
+                writeString(number.toString());
+            } else if (value instanceof List<?> list) {
+                writeByte(TAG_LIST);
+                writeVarInt(list.size());
+                for (Object element : list) {
+                    writeValue(element);
+                }
+            } else if (value instanceof Map<?, ?> map) {
+                writeByte(TAG_MAP);
+                writeMap((Map<String, Object>) map);
+            } else {
+                throw new IllegalArgumentException("Unsupported value type: " + value.getClass().getName());
+            }
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(bytes, size);
+        }
+
+        int size() {
+            return size;
+        }
+
+        void truncate(int newSize) {
+            size = newSize;
+        }
+
+        void writeTo(ByteBuffer buffer) {
+            buffer.put(bytes, 0, size);
+        }
+
+        private void ensureCapacity(int additional) {
+            if (size + additional > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + additional));
+            }
+        }
+    }
+
+    /**
+     * Reads primitive values written by a {@link Writer}.
+     */
+    static final class Reader {
+
+        private final ByteBuffer buffer;
+
+        Reader(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        void readVersion() {
+            byte version = readByte();
+            if (version != FORMAT_VERSION) {
+                throw new IllegalArgumentException("unsupported format version " + version);
+            }
+        }
+
+        byte readByte() {
+            return buffer.get();
+        }
+
+        int readVarInt() {
+            int value = 0;
+            for (int shift = 0; shift < 32; shift += 7) {
+                byte b = buffer.get();
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("malformed varint");
+        }
+
+        long readLong() {
+            return buffer.getLong();
+        }
+
+        double readDouble() {
+            return buffer.getDouble();
+        }
+
+        Boolean readBoolean() {
+            byte value = readByte();
+            return value == 0 ? null : value == 2;
+        }
+
+        String readString() {
+            int length = readVarInt();
+            if (length == 0) {
+                return null;
+            }
+            if (length - 1 > buffer.remaining() || length < 0) {
+                throw new BufferUnderflowException();
+            }
+            byte[] utf8 = new byte[length - 1];
+            buffer.get(utf8);
+            return new String(utf8, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Reads a list length written by {@link Writer#writeLength(List)}.
+         *
+         * @return the length, or -1 for a null list
+         */
+        int readLength() {
+            return readVarInt() - 1;
+        }
+
+        Map<String, Object> readMap() {
+            int size = readVarInt() - 1;
+            if (size < 0) {
+                return null;
+            }
+            Map<String, Object> map = new LinkedHashMap<>();
+            for (int i = 0; i < size; i++) {
+                map.put(readString(), readValue());
+            }
+            return map;
+        }
+
+        Object readValue() {
+            byte tag = readByte();
+            switch (tag) {
+                case TAG_NULL:
+                    return null;
+                case TAG_STRING:
+                    return readString();
+                case TAG_TRUE:
+                    return Boolean.TRUE;
+                case TAG_FALSE:
+                    return Boolean.FALSE;
+                case TAG_INTEGER:
+                    return (int) readLong();
+                case TAG_LONG:
+                    return readLong();
+                case TAG_SHORT:
+                    return (short) readLong();
+                case TAG_BYTE:
+                    return (byte) readLong();
+                case TAG_DOUBLE:
+                    return readDouble();
+                case TAG_FLOAT:
+                    return (float) readDouble();
+                case TAG_DECIMAL:
+                    return new BigDecimal(readString());
+                case TAG_BIG_INTEGER:
+                    return new BigInteger(readString());
+                case TAG_LIST:
+                    int size = readVarInt();
+                    List<Object> list = new ArrayList<>(size);
+                    for (int i = 0; i < size; i++) {
+                        list.add(readValue());
+                    }
+                    return list;
+                case TAG_MAP:
+                    return readMap();
+                default:
+                    throw new IllegalArgumentException("unknown value tag " + tag);
+            }
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package io.ap2.a2a.extension.common;
+
+import static io.ap2.a2a.extension.spec.AP2Constants.CART_MANDATE_DATA_KEY;
+import static io.ap2.a2a.extension.spec.AP2Constants.PAYMENT_MANDATE_DATA_KEY;
+import static io.ap2.a2a.extension.util.Assert.checkNotNullParam;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import io.a2a.spec.DataPart;
+import io.ap2.a2a.extension.spec.CartMandate;
+import io.ap2.a2a.extension.spec.PaymentMandate;
+
+/**
+ * Verifies the signatures of all the mandates carried by a message.
+ * <p>
+ * Every CartMandate and PaymentMandate of the message is collected, and the
+ * mandates are grouped by the JWT of their authorization, so that a JWT
+ * carried by several mandates is verified once. The distinct JWTs are verified
+ * in parallel: the first one on the calling thread, and the others on a
+ * bounded pool. Each mandate is then checked against its verified JWT, and
+ * each PaymentMandate against the CartMandate of the message it pays, which
+ * its user authorization must authorize as well.
+ * <p>
+ * JWTs that the executor rejects are verified on the calling thread. The queue
+ * of a pool owned by the verifier is bounded, so once it is full, or once the
+ * pool is closed, the callers are slowed down instead of work being queued
+ * without limit under load.
+ * <p>
+ * The verifier of the agents is produced by {@link MandateVerifierProducer},
+ * which closes it when the application stops.
+ * <p>
+ * The JWTs are verified by {@link Validation}, which caches verified JWTs
+ * until they expire.
+ * <p>
+ * This class is thread-safe.
+ */
+public final class MandateVerifier implements AutoCloseable {
+
+    /**
+     * The number of threads of the default pool.
+     */
+    public static final int DEFAULT_PARALLELISM = Math.min(4, Runtime.getRuntime().availableProcessors());
+
+    /**
+     * The number of JWTs that may wait for a thread of the default pool.
+     */
+    public static final int DEFAULT_QUEUE_CAPACITY = 64;
+
+    private final Executor executor;
+    private final ExecutorService pool;
+
+    /**
+     * Creates a verifier that uses a pool of its own, shut down when the
+     * verifier is closed.
+     *
+     * @param parallelism the number of daemon threads of the pool
+     * @param queueCapacity the number of JWTs that may wait for a thread of the pool
+     */
+    public MandateVerifier(int parallelism, int queueCapacity) {
+        this.pool = newPool(parallelism, queueCapacity);
+        this.executor = pool;
+    }
+
+    /**
+     * Creates a verifier that uses an executor owned by the caller.
+     *
+     * @param executor the executor that verifies JWTs in parallel; JWTs it rejects
+     *                 are verified on the calling thread
+     */
+    public MandateVerifier(Executor executor) {
+        this.executor = checkNotNullParam("executor", executor);
+        this.pool = null;
+    }
+
+    /**
+     * Verifies the signatures of the mandates in the data parts of a message.
+     *
+     * @param dataParts the data parts of the message, indexed if not already
+     * @param contextId the ID of the context the message was received in
+     * @return the number of mandates verified
+     * @throws IllegalArgumentException if a mandate is invalid or its signature is not valid
+     */
+    public int verify(List<DataPart> dataParts, String contextId) {
+        DataPartIndex index = DataPartIndex.of(dataParts);
+        List<CartMandate> cartMandates = index.findAll(CART_MANDATE_DATA_KEY, CartMandate.class);
+        List<PaymentMandate> paymentMandates = index.findAll(PAYMENT_MANDATE_DATA_KEY, PaymentMandate.class);
+        if (cartMandates.isEmpty() && paymentMandates.isEmpty()) {
+            return 0;
+        }
+
+        // Group the mandates by JWT, so that each distinct JWT is verified once
+        Map<String, List<CartMandate>> cartMandatesByJwt = new LinkedHashMap<>();
+        for (CartMandate cartMandate : cartMandates) {
+            cartMandatesByJwt.computeIfAbsent(cartMandate.merchantAuthorization(), jwt -> new ArrayList<>())
+                    .add(cartMandate);
+        }
+        Map<String, List<PaymentMandate>> paymentMandatesByJwt = new LinkedHashMap<>();
+        for (PaymentMandate paymentMandate : paymentMandates) {
+            paymentMandatesByJwt.computeIfAbsent(paymentMandate.userAuthorization(), jwt -> new ArrayList<>())
+                    .add(paymentMandate);
+        }
+
+        Map<String, CartMandate> cartMandatesByPaymentDetailsId = new LinkedHashMap<>();
+        for (CartMandate cartMandate : cartMandates) {
+            cartMandatesByPaymentDetailsId.putIfAbsent(cartMandate.contents().paymentRequest().details().id(),
+                    cartMandate);
+        }
+
+        List<Verification> verifications = new ArrayList<>(cartMandatesByJwt.size() + paymentMandatesByJwt.size());
+        for (List<CartMandate> sameJwt : cartMandatesByJwt.values()) {
+            verifications.add(new Verification(
+                    () -> Validation.verifyMerchantAuthorization(sameJwt.get(0)),
+                    jwt -> sameJwt.forEach(cartMandate -> Validation.checkMerchantAuthorization(cartMandate, jwt))));
+        }
+        for (List<PaymentMandate> sameJwt : paymentMandatesByJwt.values()) {
+            verifications.add(new Verification(
+                    () -> Validation.verifyUserAuthorization(sameJwt.get(0), contextId),
+                    jwt -> sameJwt.forEach(paymentMandate -> Validation.checkUserAuthorization(paymentMandate,
+                            cartMandatesByPaymentDetailsId.get(
+                                    paymentMandate.paymentMandateContents().paymentDetailsId()),
+                            jwt))));
+        }
+        runAll(verifications);
+        return cartMandates.size() + paymentMandates.size();
+    }
+
+    private void runAll(List<Verification> verifications) {
+        List<CompletableFuture<Void>> futures = new ArrayList<>(verifications.size() - 1);
+        for (Verification verification : verifications.subList(1, verifications.size())) {
+            try {
+                futures.add(CompletableFuture.runAsync(verification::run, executor));
+            } catch (RejectedExecutionException e) {
+                // The queue is full or the pool is closed: run it on this thread, still failing through its future
+                futures.add(CompletableFuture.runAsync(verification::run, Runnable::run));
+            }
+        }
+
+        RuntimeException failure = null;
+        try {
+            verifications.get(0).run();
+        } catch (RuntimeException e) {
+            failure = e;
+        }
+        for (CompletableFuture<Void> future : futures) {
+            try {
+                future.join();
+            } catch (CompletionException e) {
+                if (failure == null) {
+                    failure = e.getCause() instanceof RuntimeException cause ? cause : e;
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private static ExecutorService newPool(int threads, int queueCapacity) {
+        AtomicInteger count = new AtomicInteger();
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "mandate-verifier-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Shuts down the pool of this verifier, if it owns one. JWTs are then
+     * verified on the calling thread.
+     */
+    @Override
+    public void close() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * The verification of a JWT, and of the mandates that carry it.
+     */
+    private record Verification(Supplier<VerifiedJwt> verifyJwt, Consumer<VerifiedJwt> checkMandates) {
+
+        void run() {
+            checkMandates.accept(verifyJwt.get());
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package io.ap2.a2a.extension.common;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.inject.Disposes;
+import jakarta.enterprise.inject.Produces;
+import jakarta.inject.Singleton;
+
+/**
+ * Producer for the {@link MandateVerifier} shared by the agent executors.
+ * <p>
+ * The verifier owns a pool of {@link MandateVerifier#DEFAULT_PARALLELISM}
+ * threads, which is shut down when the application stops.
+ */
+@ApplicationScoped
+public class MandateVerifierProducer {
+
+    /**
+     * Produces the mandate verifier.
+     *
+     * @return the mandate verifier
+     */
+    @Produces
+    @Singleton
+    public MandateVerifier mandateVerifier() {
+        return new MandateVerifier(MandateVerifier.DEFAULT_PARALLELISM, MandateVerifier.DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * Shuts down the pool of the mandate verifier.
+     *
+     * @param mandateVerifier the mandate verifier
+     */
+    void close(@Disposes MandateVerifier mandateVerifier) {
+        mandateVerifier.close();
+    }
+}
@@ -15,10 +15,13 @@ public class MessageUtils {
      * Finds a single data part by key.
      *
      * @param key The key to search for
-     * @param dataParts The list of data parts
+     * @param dataParts The list of data parts, looked up in constant time if it is a {@link DataPartIndex}
      * @return The value associated with the key, or null if not found
      */
     public static Object findDataPart(String key, List<DataPart> dataParts) {
+        if (dataParts instanceof DataPartIndex index) {
+            return index.find(key);
+        }
         for (DataPart dataPart : dataParts) {
             if (dataPart.getData().containsKey(key)) {
                 return dataPart.getData().get(key);
@@ -31,10 +34,13 @@ public class MessageUtils {
      * Finds all data parts matching a key.
      *
      * @param key The key to search for
-     * @param dataParts The list of data parts
+     * @param dataParts The list of data parts, looked up in constant time if it is a {@link DataPartIndex}
      * @return A list of values associated with the key
      */
     public static List<Map<String, Object>> findDataParts(String key, List<DataPart> dataParts) {
+        if (dataParts instanceof DataPartIndex index) {
+            return index.findDataMaps(key);
+        }
         return dataParts.stream()
                 .map(DataPart::getData)
                 .filter(dataMap -> dataMap.containsKey(key))
@@ -42,20 +48,20 @@ public class MessageUtils {
     }
 
     /**
-     * Parses a canonical object from data parts.
+     * Parses a canonical object from data parts. An object that was received
+     * as JSON is read by {@link RecordReaders}, once per {@link DataPartIndex}.
      *
      * @param key The key to search for
-     * @param dataParts The list of data parts
+     * @param dataParts The list of data parts, looked up in constant time if it is a {@link DataPartIndex}
      * @param clazz The class type to parse into
      * @param <T> The type parameter
      * @return The parsed object, or null if not found
+     * @throws IllegalArgumentException if the object cannot be converted to the class
      */
     public static <T> T parseCanonicalObject(String key, List<DataPart> dataParts, Class<T> clazz) {
-        for (DataPart part : dataParts) {
-            if (part.getData().containsKey(key)) {
-                return (T) part.getData().get(key);
-            }
+        if (dataParts instanceof DataPartIndex index) {
+            return index.find(key, clazz);
         }
-        return null;
+        return DataPartIndex.convert(key, findDataPart(key, dataParts), clazz);
     }
 }
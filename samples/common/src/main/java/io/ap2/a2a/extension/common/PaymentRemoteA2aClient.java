@@ -1,6 +1,5 @@
 package io.ap2.a2a.extension.common;
 
-import io.a2a.A2A;
 import io.a2a.client.Client;
 import io.a2a.client.ClientEvent;
 import io.a2a.client.config.ClientConfig;
@@ -19,26 +18,38 @@ import io.a2a.spec.AgentCard;
 import io.a2a.spec.Message;
 import org.jspecify.annotations.Nullable;
 
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiConsumer;
 
 /**
  * Wrapper for the A2A client.
  * <p>
  * Always assumes the AgentCard is at base_url + /.well-known/agent-card.json.
+ * The card is cached and revalidated by an {@link AgentCardCache}.
  * <p>
  * Provides convenience for establishing connection and for sending messages.
+ * Callers that pass their consumers on each {@code sendMessage} call can share
+ * one A2A client built without any consumers, see
+ * {@link PaymentRemoteA2aClientPool}: {@link #lease()} leases it for the
+ * duration of a call. It is replaced whenever the agent card of the remote
+ * agent changes, and the client it replaces is closed once its last lease is
+ * released, so that calls in flight are not cut off. {@link #close()} closes
+ * it the same way.
  */
-public class PaymentRemoteA2aClient {
+public class PaymentRemoteA2aClient implements AutoCloseable {
 
     private final A2AHttpClient httpClient;
     private final String name;
     private final String baseUrl;
     private final Set<String> requiredExtensions;
-    private AgentCard agentCard;
+    private final AgentCardCache agentCardCache;
+    private volatile SharedClient sharedClient;
 
     /**
      * Initializes the PaymentRemoteA2aClient.
@@ -48,11 +59,25 @@ public class PaymentRemoteA2aClient {
      * @param requiredExtensions a set of extension URIs that the client requires
      */
     public PaymentRemoteA2aClient(String name, String baseUrl, @Nullable Set<String> requiredExtensions) {
+        this(name, baseUrl, requiredExtensions, AgentCardCache.DEFAULT_TTL);
+    }
+
+    /**
+     * Initializes the PaymentRemoteA2aClient.
+     *
+     * @param name the name of the agent
+     * @param baseUrl the base URL where the remote agent is hosted
+     * @param requiredExtensions a set of extension URIs that the client requires
+     * @param agentCardTtl how long the fetched agent card is used before it is revalidated
+     */
+    public PaymentRemoteA2aClient(String name, String baseUrl, @Nullable Set<String> requiredExtensions,
+                                  Duration agentCardTtl) {
         this.httpClient = new JdkA2AHttpClient();
         this.name = name;
         this.baseUrl = baseUrl;
         this.requiredExtensions = requiredExtensions != null ? requiredExtensions : Set.of();
-        this.agentCard = null;
+        this.agentCardCache = new AgentCardCache(httpClient, baseUrl, agentCardTtl,
+                AgentCardCache.DEFAULT_STALE_WHILE_REVALIDATE);
     }
 
     /**
@@ -63,14 +88,11 @@ public class PaymentRemoteA2aClient {
      * @throws A2AClientJSONError if the response body cannot be decoded as JSON
      */
     public AgentCard getAgentCard() throws A2AClientError, A2AClientJSONError {
-        if (agentCard == null) {
-            agentCard = A2A.getAgentCard(httpClient, baseUrl);
-        }
-        return agentCard;
+        return agentCardCache.get();
     }
 
     /**
-     * Retrieves the A2A client.
+     * Builds a new A2A client, which the caller closes.
      *
      * @param consumers the event consumers for handling client events
      * @return the A2A client
@@ -80,8 +102,52 @@ public class PaymentRemoteA2aClient {
      */
     public Client getA2aClient(List<BiConsumer<ClientEvent, AgentCard>> consumers)
             throws A2AClientError, A2AClientJSONError, A2AClientException {
+        return buildA2aClient(getAgentCard(), consumers);
+    }
+
+    /**
+     * Leases the shared A2A client, built without any consumers. The lease
+     * must be closed once the calls made with the client are complete.
+     *
+     * @return the lease of the shared A2A client
+     * @throws A2AClientError if client creation fails
+     * @throws A2AClientJSONError if the agent card cannot be decoded
+     * @throws A2AClientException if the client cannot be built
+     */
+    public Lease lease() throws A2AClientError, A2AClientJSONError, A2AClientException {
+        while (true) {
+            SharedClient shared = sharedClient(getAgentCard());
+            if (shared.retain()) {
+                return new Lease(shared);
+            }
+            // Replaced and released concurrently: lease the current one
+        }
+    }
 
-        AgentCard card = getAgentCard();
+    private SharedClient sharedClient(AgentCard card) throws A2AClientException {
+        SharedClient shared = sharedClient;
+        if (shared != null && shared.card == card) {
+            return shared;
+        }
+        SharedClient replaced;
+        synchronized (this) {
+            shared = sharedClient;
+            if (shared != null && shared.card == card) {
+                return shared;
+            }
+            replaced = shared;
+            shared = new SharedClient(card, buildA2aClient(card, List.of()));
+            sharedClient = shared;
+        }
+        if (replaced != null) {
+            // Closed once the calls that leased it are complete
+            replaced.release();
+        }
+        return shared;
+    }
+
+    private Client buildA2aClient(AgentCard card, List<BiConsumer<ClientEvent, AgentCard>> consumers)
+            throws A2AClientException {
 
         // Create an interceptor to add the X-A2A-Extensions header
         ExtensionHeaderInterceptor extensionInterceptor = new ExtensionHeaderInterceptor(requiredExtensions);
@@ -115,6 +181,89 @@ public class PaymentRemoteA2aClient {
         return baseUrl;
     }
 
+    /**
+     * Closes the shared A2A client, if one was built, once its last lease is
+     * released. A later call to {@link #lease()} builds a new one.
+     */
+    @Override
+    public void close() {
+        SharedClient shared;
+        synchronized (this) {
+            shared = sharedClient;
+            sharedClient = null;
+        }
+        if (shared != null) {
+            shared.release();
+        }
+    }
+
+    /**
+     * A lease of the shared A2A client, which is not closed until the lease is.
+     */
+    public static final class Lease implements AutoCloseable {
+
+        private final SharedClient shared;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Lease(SharedClient shared) {
+            this.shared = shared;
+        }
+
+        /**
+         * Returns the leased A2A client.
+         *
+         * @return the A2A client, valid until this lease is closed
+         */
+        public Client client() {
+            return shared.client;
+        }
+
+        /**
+         * Releases the A2A client. Closing a lease again has no effect.
+         */
+        @Override
+        public void close() {
+            if (released.compareAndSet(false, true)) {
+                shared.release();
+            }
+        }
+    }
+
+    /**
+     * A shared A2A client, counting its leases. The reference of the
+     * PaymentRemoteA2aClient counts as one, so the client is closed once it
+     * was replaced or closed and all the leases are released.
+     */
+    private static final class SharedClient {
+
+        private final AgentCard card;
+        private final Client client;
+        private final AtomicInteger references = new AtomicInteger(1);
+
+        SharedClient(AgentCard card, Client client) {
+            this.card = card;
+            this.client = client;
+        }
+
+        boolean retain() {
+            while (true) {
+                int count = references.get();
+                if (count == 0) {
+                    return false;
+                }
+                if (references.compareAndSet(count, count + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        void release() {
+            if (references.decrementAndGet() == 0) {
+                client.close();
+            }
+        }
+    }
+
     /**
      * Interceptor that adds the X-A2A-Extensions header to requests.
      */
@@ -0,0 +1,173 @@
+package io.ap2.a2a.extension.common;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.logging.Logger;
+
+import io.ap2.a2a.extension.util.Assert;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * A registry of {@link PaymentRemoteA2aClient}s shared by all the callers in the process.
+ * <p>
+ * Clients are keyed by base URL and required extension set. Reusing a client
+ * reuses its HTTP client and connection pool, its cached agent card and its
+ * shared A2A client, so that only the first call to a remote agent pays for
+ * the agent card fetch and connection setup.
+ * <p>
+ * Clients that have not been used for longer than the idle timeout are
+ * evicted and closed. Eviction is checked when clients are requested, so no
+ * background thread is needed. A client is handed out and evicted under the
+ * lock of its entry, so a client just handed out is never evicted, and a call
+ * still in flight on an evicted client completes, since closing a
+ * {@link PaymentRemoteA2aClient} waits for the leases of its A2A client to be
+ * released.
+ */
+public class PaymentRemoteA2aClientPool {
+
+    private static final Logger logger = Logger.getLogger(PaymentRemoteA2aClientPool.class.getName());
+
+    /**
+     * The default idle timeout of the shared pool.
+     */
+    public static final Duration DEFAULT_IDLE_TIMEOUT = Duration.ofMinutes(10);
+
+    private static final PaymentRemoteA2aClientPool SHARED = new PaymentRemoteA2aClientPool(DEFAULT_IDLE_TIMEOUT);
+
+    private final ConcurrentMap<Key, PooledClient> clients = new ConcurrentHashMap<>();
+    private final ClientFactory clientFactory;
+    private final LongSupplier nanoTime;
+    private final long idleTimeoutNanos;
+    private final AtomicLong nextEvictionNanos;
+
+    /**
+     * Creates a new PaymentRemoteA2aClientPool.
+     *
+     * @param idleTimeout how long a client may stay unused before it is evicted
+     */
+    public PaymentRemoteA2aClientPool(Duration idleTimeout) {
+        this(idleTimeout, PaymentRemoteA2aClient::new, System::nanoTime);
+    }
+
+    PaymentRemoteA2aClientPool(Duration idleTimeout, ClientFactory clientFactory, LongSupplier nanoTime) {
+        Assert.checkNotNullParam("idleTimeout", idleTimeout);
+        if (idleTimeout.isNegative() || idleTimeout.isZero()) {
+            throw new IllegalArgumentException("idleTimeout must be positive");
+        }
+        this.clientFactory = clientFactory;
+        this.nanoTime = nanoTime;
+        this.idleTimeoutNanos = idleTimeout.toNanos();
+        this.nextEvictionNanos = new AtomicLong(nanoTime.getAsLong() + idleTimeoutNanos);
+    }
+
+    /**
+     * Returns the pool shared by the whole process.
+     *
+     * @return the shared pool
+     */
+    public static PaymentRemoteA2aClientPool shared() {
+        return SHARED;
+    }
+
+    /**
+     * Gets the client for a remote agent, creating it if needed.
+     *
+     * @param name the name of the agent, used if a new client is created
+     * @param baseUrl the base URL where the remote agent is hosted
+     * @param requiredExtensions a set of extension URIs that the client requires
+     * @return the client
+     */
+    public PaymentRemoteA2aClient getClient(String name, String baseUrl, @Nullable Set<String> requiredExtensions) {
+        Assert.checkNotNullParam("baseUrl", baseUrl);
+        long now = nanoTime.getAsLong();
+        evictIdleClients(now);
+
+        Key key = new Key(baseUrl, requiredExtensions != null ? Set.copyOf(requiredExtensions) : Set.of());
+        PooledClient pooledClient = clients.compute(key, (k, existing) -> {
+            if (existing == null) {
+                logger.info("Creating remote client for " + baseUrl);
+                return new PooledClient(clientFactory.create(name, k.baseUrl(), k.requiredExtensions()), now);
+            }
+            existing.lastUsedNanos = now;
+            return existing;
+        });
+        return pooledClient.client;
+    }
+
+    /**
+     * Removes every client from the pool, and closes them.
+     */
+    public void clear() {
+        clients.entrySet().removeIf(entry -> {
+            close(entry.getValue().client);
+            return true;
+        });
+    }
+
+    /**
+     * Returns the number of clients in the pool.
+     *
+     * @return the number of clients
+     */
+    public int size() {
+        return clients.size();
+    }
+
+    private void evictIdleClients(long now) {
+        long nextEviction = nextEvictionNanos.get();
+        if (now - nextEviction < 0 || !nextEvictionNanos.compareAndSet(nextEviction, now + idleTimeoutNanos / 2)) {
+            return;
+        }
+        for (Key key : clients.keySet()) {
+            // Checked under the lock of the entry, so that a client handed out meanwhile is kept
+            PooledClient[] evicted = new PooledClient[1];
+            clients.computeIfPresent(key, (k, pooledClient) -> {
+                if (now - pooledClient.lastUsedNanos <= idleTimeoutNanos) {
+                    return pooledClient;
+                }
+                evicted[0] = pooledClient;
+                return null;
+            });
+            if (evicted[0] != null) {
+                logger.info("Evicting idle remote client for " + key.baseUrl());
+                close(evicted[0].client);
+            }
+        }
+    }
+
+    private static void close(PaymentRemoteA2aClient client) {
+        try {
+            client.close();
+        } catch (RuntimeException e) {
+            logger.warning("Failed to close remote client for " + client.getBaseUrl() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Creates the clients of the pool.
+     */
+    @FunctionalInterface
+    interface ClientFactory {
+
+        PaymentRemoteA2aClient create(String name, String baseUrl, Set<String> requiredExtensions);
+    }
+
+    private record Key(String baseUrl, Set<String> requiredExtensions) {
+    }
+
+    private static final class PooledClient {
+
+        private final PaymentRemoteA2aClient client;
+        // Guarded by the lock of the entry of the client in the map
+        private long lastUsedNanos;
+
+        PooledClient(PaymentRemoteA2aClient client, long lastUsedNanos) {
+            this.client = client;
+            this.lastUsedNanos = lastUsedNanos;
+        }
+    }
+}
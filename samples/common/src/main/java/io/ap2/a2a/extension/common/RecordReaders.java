@@ -0,0 +1,308 @@
+package io.ap2.a2a.extension.common;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import io.a2a.util.Utils;
+import io.ap2.a2a.extension.spec.CartContents;
+import io.ap2.a2a.extension.spec.CartMandate;
+import io.ap2.a2a.extension.spec.ContactAddress;
+import io.ap2.a2a.extension.spec.IntentMandate;
+import io.ap2.a2a.extension.spec.PaymentCurrencyAmount;
+import io.ap2.a2a.extension.spec.PaymentDetailsInit;
+import io.ap2.a2a.extension.spec.PaymentDetailsModifier;
+import io.ap2.a2a.extension.spec.PaymentItem;
+import io.ap2.a2a.extension.spec.PaymentMandate;
+import io.ap2.a2a.extension.spec.PaymentMandateContents;
+import io.ap2.a2a.extension.spec.PaymentMethodData;
+import io.ap2.a2a.extension.spec.PaymentOptions;
+import io.ap2.a2a.extension.spec.PaymentRequest;
+import io.ap2.a2a.extension.spec.PaymentResponse;
+import io.ap2.a2a.extension.spec.PaymentShippingOption;
+
+/**
+ * Reads the records of the spec from the JSON maps of data parts.
+ * <p>
+ * A data part received over the wire holds its objects as JSON maps, while a
+ * data part built in the same process holds the records themselves. Each
+ * record of the spec has a reader that builds it from its JSON members
+ * directly, without reflection, and nested records are read by their own
+ * readers. Members that are already records are used as they are. Unknown
+ * members are ignored, and the constructors of the records apply their
+ * defaults. Types without a reader are converted with Jackson. Either way, a
+ * value that cannot be read fails with an {@link IllegalArgumentException}.
+ * <p>
+ * {@link DataPartIndex} memoizes the records read from each data part.
+ */
+public final class RecordReaders {
+
+    private static final Map<Class<?>, Function<Map<?, ?>, ?>> READERS = Map.ofEntries(
+            Map.entry(CartContents.class, RecordReaders::readCartContents),
+            Map.entry(CartMandate.class, RecordReaders::readCartMandate),
+            Map.entry(ContactAddress.class, RecordReaders::readContactAddress),
+            Map.entry(IntentMandate.class, RecordReaders::readIntentMandate),
+            Map.entry(PaymentCurrencyAmount.class, RecordReaders::readPaymentCurrencyAmount),
+            Map.entry(PaymentDetailsInit.class, RecordReaders::readPaymentDetailsInit),
+            Map.entry(PaymentDetailsModifier.class, RecordReaders::readPaymentDetailsModifier),
+            Map.entry(PaymentItem.class, RecordReaders::readPaymentItem),
+            Map.entry(PaymentMandate.class, RecordReaders::readPaymentMandate),
+            Map.entry(PaymentMandateContents.class, RecordReaders::readPaymentMandateContents),
+            Map.entry(PaymentMethodData.class, RecordReaders::readPaymentMethodData),
+            Map.entry(PaymentOptions.class, RecordReaders::readPaymentOptions),
+            Map.entry(PaymentRequest.class, RecordReaders::readPaymentRequest),
+            Map.entry(PaymentResponse.class, RecordReaders::readPaymentResponse),
+            Map.entry(PaymentShippingOption.class, RecordReaders::readPaymentShippingOption)
+    );
+
+    private RecordReaders() {
+    }
+
+    /**
+     * Reads a value as an object of a type.
+     *
+     * @param value the value, either an object of the type or its JSON map
+     * @param type the type
+     * @param <T> the type
+     * @return the object, or {@code null} if the value is {@code null}
+     * @throws IllegalArgumentException if the value cannot be read as the type
+     */
+    public static <T> T read(Object value, Class<T> type) {
+        if (value == null || type.isInstance(value)) {
+            return type.cast(value);
+        }
+        Function<Map<?, ?>, ?> reader = READERS.get(type);
+        if (reader == null) {
+            return Utils.OBJECT_MAPPER.convertValue(value, type);
+        }
+        if (!(value instanceof Map<?, ?> map)) {
+            throw new IllegalArgumentException("Expected a JSON object for " + type.getSimpleName()
+                    + " but got " + value.getClass().getSimpleName());
+        }
+        try {
+            return type.cast(reader.apply(map));
+        } catch (ArithmeticException e) {
+            // The constructors of records check amounts with exact arithmetic
+            throw new IllegalArgumentException("Invalid " + type.getSimpleName() + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Returns whether a type has a reflection-free reader.
+     *
+     * @param type the type
+     * @return whether the type has a reader
+     */
+    public static boolean hasReader(Class<?> type) {
+        return READERS.containsKey(type);
+    }
+
+    private static CartMandate readCartMandate(Map<?, ?> map) {
+        return new CartMandate(
+                read(map, "contents", CartContents.class),
+                string(map, "merchant_authorization"));
+    }
+
+    private static CartContents readCartContents(Map<?, ?> map) {
+        return new CartContents(
+                string(map, "id"),
+                bool(map, "user_cart_confirmation_required"),
+                read(map, "payment_request", PaymentRequest.class),
+                string(map, "cart_expiry"),
+                string(map, "merchant_name"));
+    }
+
+    private static PaymentRequest readPaymentRequest(Map<?, ?> map) {
+        return new PaymentRequest(
+                list(map, "method_data", PaymentMethodData.class),
+                read(map, "details", PaymentDetailsInit.class),
+                read(map, "options", PaymentOptions.class),
+                read(map, "shipping_address", ContactAddress.class));
+    }
+
+    private static PaymentMethodData readPaymentMethodData(Map<?, ?> map) {
+        return new PaymentMethodData(
+                string(map, "supported_methods"),
+                object(map, "data"));
+    }
+
+    private static PaymentDetailsInit readPaymentDetailsInit(Map<?, ?> map) {
+        return new PaymentDetailsInit(
+                string(map, "id"),
+                list(map, "display_items", PaymentItem.class),
+                list(map, "shipping_options", PaymentShippingOption.class),
+                list(map, "modifiers", PaymentDetailsModifier.class),
+                read(map, "total", PaymentItem.class));
+    }
+
+    private static PaymentDetailsModifier readPaymentDetailsModifier(Map<?, ?> map) {
+        return new PaymentDetailsModifier(
+                string(map, "supported_methods"),
+                read(map, "total", PaymentItem.class),
+                list(map, "additional_display_items", PaymentItem.class),
+                object(map, "data"));
+    }
+
+    private static PaymentItem readPaymentItem(Map<?, ?> map) {
+        return new PaymentItem(
+                string(map, "label"),
+                read(map, "amount", PaymentCurrencyAmount.class),
+                bool(map, "pending"),
+                integer(map, "refund_period"));
+    }
+
+    private static PaymentCurrencyAmount readPaymentCurrencyAmount(Map<?, ?> map) {
+        return new PaymentCurrencyAmount(
+                string(map, "currency"),
+                decimal(map, "value"));
+    }
+
+    private static PaymentShippingOption readPaymentShippingOption(Map<?, ?> map) {
+        return new PaymentShippingOption(
+                string(map, "id"),
+                string(map, "label"),
+                read(map, "amount", PaymentCurrencyAmount.class),
+                bool(map, "selected"));
+    }
+
+    private static PaymentOptions readPaymentOptions(Map<?, ?> map) {
+        return new PaymentOptions(
+                bool(map, "request_payer_name"),
+                bool(map, "request_payer_email"),
+                bool(map, "request_payer_phone"),
+                bool(map, "request_shipping"),
+                string(map, "shipping_type"));
+    }
+
+    private static ContactAddress readContactAddress(Map<?, ?> map) {
+        return new ContactAddress(
+                string(map, "city"),
+                string(map, "country"),
+                string(map, "dependent_locality"),
+                string(map, "organization"),
+                string(map, "phone_number"),
+                string(map, "postal_code"),
+                string(map, "recipient"),
+                string(map, "region"),
+                string(map, "sorting_code"),
+                list(map, "address_line", String.class));
+    }
+
+    private static IntentMandate readIntentMandate(Map<?, ?> map) {
+        return new IntentMandate(
+                bool(map, "user_cart_confirmation_required"),
+                string(map, "natural_language_description"),
+                list(map, "merchants", String.class),
+                list(map, "skus", String.class),
+                bool(map, "requires_refundability"),
+                string(map, "intent_expiry"));
+    }
+
+    private static PaymentMandate readPaymentMandate(Map<?, ?> map) {
+        return new PaymentMandate(
+                read(map, "payment_mandate_contents", PaymentMandateContents.class),
+                string(map, "user_authorization"));
+    }
+
+    private static PaymentMandateContents readPaymentMandateContents(Map<?, ?> map) {
+        return new PaymentMandateContents(
+                string(map, "payment_mandate_id"),
+                string(map, "payment_details_id"),
+                read(map, "payment_details_total", PaymentItem.class),
+                read(map, "payment_response", PaymentResponse.class),
+                string(map, "merchant_agent"),
+                string(map, "timestamp"));
+    }
+
+    private static PaymentResponse readPaymentResponse(Map<?, ?> map) {
+        return new PaymentResponse(
+                string(map, "request_id"),
+                string(map, "method_name"),
+                object(map, "details"),
+                read(map, "shipping_address", ContactAddress.class),
+                read(map, "shipping_option", PaymentShippingOption.class),
+                string(map, "payer_name"),
+                string(map, "payer_email"),
+                string(map, "payer_phone"));
+    }
+
+    private static <T> T read(Map<?, ?> map, String name, Class<T> type) {
+        try {
+            return read(map.get(name), type);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid " + name + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static <T> List<T> list(Map<?, ?> map, String name, Class<T> elementType) {
+        Object value = map.get(name);
+        if (value == null) {
+            return null;
+        }
+        if (!(value instanceof List<?> values)) {
+            throw invalid(name, "an array", value);
+        }
+        List<T> list = new ArrayList<>(values.size());
+        for (Object element : values) {
+            try {
+                list.add(read(element, elementType));
+            } catch (IllegalArgumentException | ClassCastException e) {
+                throw new IllegalArgumentException("Invalid element of " + name + ": " + e.getMessage(), e);
+            }
+        }
+        return list;
+    }
+
+    private static String string(Map<?, ?> map, String name) {
+        Object value = map.get(name);
+        if (value == null || value instanceof String) {
+            return (String) value;
+        }
+        throw invalid(name, "a string", value);
+    }
+
+    private static Boolean bool(Map<?, ?> map, String name) {
+        Object value = map.get(name);
+        if (value == null || value instanceof Boolean) {
+            return (Boolean) value;
+        }
+        throw invalid(name, "a boolean", value);
+    }
+
+    private static Integer integer(Map<?, ?> map, String name) {
+        Object value = map.get(name);
+        if (value == null) {
+            return null;
+        }
+        if (value instanceof Number number && number.doubleValue() == number.intValue()) {
+            return number.intValue();
+        }
+        throw invalid(name, "an integer", value);
+    }
+
+    private static Double decimal(Map<?, ?> map, String name) {
+        Object value = map.get(name);
+        if (value == null) {
+            return null;
+        }
+        if (value instanceof Number number) {
+            return number.doubleValue();
+        }
+        throw invalid(name, "a number", value);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> object(Map<?, ?> map, String name) {
+        Object value = map.get(name);
+        if (value == null || value instanceof Map) {
+            return (Map<String, Object>) value;
+        }
+        throw invalid(name, "an object", value);
+    }
+
+    private static IllegalArgumentException invalid(String name, String expected, Object value) {
+        return new IllegalArgumentException("Invalid " + name + ": expected " + expected
+                + " but got " + value.getClass().getSimpleName());
+    }
+}
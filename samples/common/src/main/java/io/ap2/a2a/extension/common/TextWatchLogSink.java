@@ -0,0 +1,137 @@
+package io.ap2.a2a.extension.common;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.logging.Logger;
+
+import static io.ap2.a2a.extension.util.Assert.checkNotNullParam;
+
+/**
+ * A {@link WatchLogSink} that appends entries to a text file, each as a
+ * {@code [title: subject]} line followed by the value. The elements of a
+ * collection value are written one per line.
+ * <p>
+ * Entries are formatted into a batch, which is written to the file when it is
+ * flushed or grows large. The file is opened on the first write, and if it
+ * cannot be opened, entries are discarded.
+ */
+final class TextWatchLogSink implements WatchLogSink {
+
+    private static final Logger logger = Logger.getLogger(TextWatchLogSink.class.getName());
+
+    private static final int MAX_BATCH_CHARS = 64 * 1024;
+
+    private final Path file;
+    private final StringBuilder batch = new StringBuilder(1024);
+    private FileChannel channel;
+    private boolean failed;
+
+    TextWatchLogSink(Path file) {
+        this.file = checkNotNullParam("file", file);
+    }
+
+    @Override
+    public void append(long timestampMillis, WatchLogEvent event, String contextId, String taskId, String subject,
+                       Object value) throws IOException {
+        format(batch, timestampMillis, event, contextId, taskId, subject, value);
+        if (batch.length() >= MAX_BATCH_CHARS) {
+            flush();
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (batch.length() == 0) {
+            return;
+        }
+        FileChannel out = channel();
+        try {
+            if (out != null) {
+                ByteBuffer bytes = StandardCharsets.UTF_8.encode(CharBuffer.wrap(batch));
+                while (bytes.hasRemaining()) {
+                    out.write(bytes);
+                }
+            }
+        } finally {
+            batch.setLength(0);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            if (channel != null) {
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * Formats an entry as text.
+     *
+     * @param out where to append the entry
+     * @param timestampMillis when the entry was logged, in milliseconds since the epoch
+     * @param event the type of the entry
+     * @param contextId the context ID of the request, or {@code null}
+     * @param taskId the task ID of the request, or {@code null}
+     * @param subject what the entry is about, or {@code null}
+     * @param value the value, or {@code null}
+     */
+    static void format(StringBuilder out, long timestampMillis, WatchLogEvent event, String contextId,
+                       String taskId, String subject, Object value) {
+        out.append('\n').append(Instant.ofEpochMilli(timestampMillis)).append(" [").append(event.title());
+        if (event == WatchLogEvent.ENTRIES_DROPPED) {
+            out.append(": ").append(value).append(" entries dropped]\n");
+            return;
+        }
+        if (subject != null) {
+            out.append(": ").append(subject);
+        }
+        out.append(']');
+        if (contextId != null) {
+            out.append(" context_id=").append(contextId);
+        }
+        if (taskId != null) {
+            out.append(" task_id=").append(taskId);
+        }
+        out.append('\n');
+        try {
+            if (value instanceof Collection<?> collection) {
+                for (Object element : collection) {
+                    out.append(element).append('\n');
+                }
+            } else {
+                out.append(value).append('\n');
+            }
+        } catch (RuntimeException e) {
+            out.append("<unprintable: ").append(e).append(">\n");
+        }
+    }
+
+    private FileChannel channel() {
+        if (channel == null && !failed) {
+            try {
+                Path parent = file.toAbsolutePath().getParent();
+                if (parent != null) {
+                    Files.createDirectories(parent);
+                }
+                channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.APPEND);
+            } catch (IOException e) {
+                failed = true;
+                logger.warning("Failed to open watch log file " + file + ": " + e.getMessage());
+            }
+        }
+        return channel;
+    }
+}
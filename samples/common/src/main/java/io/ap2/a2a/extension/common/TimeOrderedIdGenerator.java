@@ -0,0 +1,74 @@
+package io.ap2.a2a.extension.common;
+
+import java.security.SecureRandom;
+
+/**
+ * Generates version 7 UUIDs, as defined by RFC 9562.
+ * <p>
+ * A version 7 UUID starts with the Unix time in milliseconds, so identifiers
+ * sort in creation order, which keeps the index of a persistent store
+ * append-mostly. The 12 bits that follow hold a counter, so that the
+ * identifiers generated by a thread are strictly increasing even within the
+ * same millisecond or if the clock goes backwards. The remaining 62 bits come
+ * from a {@link SecureRandom}, which makes identifiers generated concurrently
+ * by other threads or nodes distinct, and identifiers handed out to clients,
+ * such as cart and order IDs, impossible to guess from the previous ones.
+ * <p>
+ * Every thread has its own state and random generator, so generating an
+ * identifier never contends with other threads.
+ */
+public final class TimeOrderedIdGenerator implements IdGenerator {
+
+    static final TimeOrderedIdGenerator INSTANCE = new TimeOrderedIdGenerator();
+
+    private static final int MAX_SEQUENCE = 0xFFF;
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private final ThreadLocal<State> state = ThreadLocal.withInitial(State::new);
+
+    @Override
+    public String nextId() {
+        return state.get().next();
+    }
+
+    private static final class State {
+
+        private final char[] chars = new char[36];
+        private final SecureRandom random = new SecureRandom();
+        private long lastMillis = Long.MIN_VALUE;
+        private int sequence;
+
+        String next() {
+            long now = System.currentTimeMillis();
+            if (now > lastMillis) {
+                lastMillis = now;
+                sequence = 0;
+            } else if (++sequence > MAX_SEQUENCE) {
+                // The counter is exhausted, so borrow the next millisecond
+                lastMillis++;
+                sequence = 0;
+            }
+
+            long mostSigBits = (lastMillis << 16) | 0x7000L | sequence;
+            long leastSigBits = (random.nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+
+            writeHex(mostSigBits >>> 32, 8, 0);
+            chars[8] = '-';
+            writeHex(mostSigBits >>> 16, 4, 9);
+            chars[13] = '-';
+            writeHex(mostSigBits, 4, 14);
+            chars[18] = '-';
+            writeHex(leastSigBits >>> 48, 4, 19);
+            chars[23] = '-';
+            writeHex(leastSigBits, 12, 24);
+            return new String(chars);
+        }
+
+        private void writeHex(long value, int digits, int offset) {
+            for (int i = offset + digits - 1; i >= offset; i--) {
+                chars[i] = HEX_DIGITS[(int) (value & 0xF)];
+                value >>>= 4;
+            }
+        }
+    }
+}
@@ -0,0 +1,291 @@
+package io.ap2.a2a.extension.common;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+import io.a2a.spec.DataPart;
+import io.ap2.a2a.extension.util.Assert;
+
+/**
+ * A deterministic, rule-based tool router.
+ * <p>
+ * Agent-to-agent requests are built from a small set of fixed prompts and
+ * well-known DataPart keys, so most of them can be mapped to a tool without
+ * consulting the LLM. The router is compiled once per executor and is
+ * consulted by {@link BaseAgentExecutor} before falling back to the
+ * {@link ToolSelectorAgent}.
+ * <p>
+ * Rules are evaluated in the following order:
+ * <ol>
+ * <li>Exact prompt matches, compared after {@link #normalize(String) normalization}.</li>
+ * <li>Keyword and DataPart key rules, in the order they were added. A rule matches
+ *   when the normalized prompt contains all of its keywords and the request
+ *   contains all of its DataPart keys.</li>
+ * </ol>
+ * More specific rules should therefore be added before more general ones.
+ * <p>
+ * Instances are thread-safe. Their rules are fixed once built; the only mutable
+ * state is the pair of hit and miss counters, which are updated on every call
+ * to {@code route} and are reported by {@link #getHitCount()} and
+ * {@link #getMissCount()}.
+ */
+public final class ToolRouter {
+
+    private final Map<String, String> exactMatches;
+    private final Rule[] rules;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    private ToolRouter(Builder builder) {
+        this.exactMatches = Map.copyOf(builder.exactMatches);
+        this.rules = builder.rules.toArray(new Rule[0]);
+    }
+
+    /**
+     * Creates a new builder for a ToolRouter.
+     *
+     * @return a new builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Resolves the tool for a request.
+     *
+     * @param prompt the prompt of the request
+     * @param dataParts the data parts of the request
+     * @return the name of the tool, or null if no rule matches
+     */
+    public String route(String prompt, List<DataPart> dataParts) {
+        return route(prompt, dataKeys(dataParts));
+    }
+
+    /**
+     * Resolves the tool for a request.
+     *
+     * @param prompt the prompt of the request
+     * @param dataKeys the keys of all the data parts of the request
+     * @return the name of the tool, or null if no rule matches
+     */
+    public String route(String prompt, Set<String> dataKeys) {
+        String normalizedPrompt = normalize(prompt);
+
+        String toolName = exactMatches.get(normalizedPrompt);
+        if (toolName == null) {
+            for (Rule rule : rules) {
+                if (rule.matches(normalizedPrompt, dataKeys)) {
+                    toolName = rule.toolName;
+                    break;
+                }
+            }
+        }
+
+        if (toolName == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return toolName;
+    }
+
+    /**
+     * Returns the number of requests that were resolved by this router.
+     *
+     * @return the hit count
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns the number of requests that could not be resolved by this router.
+     *
+     * @return the miss count
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Normalizes a prompt for matching: lower case, with every run of
+     * whitespace and punctuation collapsed to a single space and no leading or
+     * trailing spaces. Underscores are treated as separators too, so
+     * "initiate_payment" and "Initiate payment." normalize to the same string.
+     *
+     * @param prompt the prompt to normalize
+     * @return the normalized prompt, or the empty string if the prompt is null
+     */
+    public static String normalize(String prompt) {
+        if (prompt == null || prompt.isEmpty()) {
+            return "";
+        }
+
+        StringBuilder normalized = new StringBuilder(prompt.length());
+        boolean pendingSeparator = false;
+        for (int i = 0; i < prompt.length(); i++) {
+            char c = prompt.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                if (pendingSeparator && normalized.length() > 0) {
+                    normalized.append(' ');
+                }
+                pendingSeparator = false;
+                normalized.append(Character.toLowerCase(c));
+            } else if (c != '\'') {
+                // Apostrophes are dropped so that "user's" and "users" match
+                pendingSeparator = true;
+            }
+        }
+        return normalized.toString();
+    }
+
+    /**
+     * Collects the keys of all the given data parts.
+     *
+     * @param dataParts the data parts
+     * @return the set of keys
+     */
+    static Set<String> dataKeys(List<DataPart> dataParts) {
+        if (dataParts == null || dataParts.isEmpty()) {
+            return Set.of();
+        }
+        if (dataParts instanceof DataPartIndex index) {
+            return index.keys();
+        }
+        Set<String> keys = new HashSet<>();
+        for (DataPart dataPart : dataParts) {
+            keys.addAll(dataPart.getData().keySet());
+        }
+        return keys;
+    }
+
+    /**
+     * A compiled keyword and DataPart key rule.
+     */
+    private static final class Rule {
+
+        private final String toolName;
+        private final String[] keywords;
+        private final String[] dataKeys;
+
+        Rule(String toolName, String[] keywords, String[] dataKeys) {
+            this.toolName = toolName;
+            this.keywords = keywords;
+            this.dataKeys = dataKeys;
+        }
+
+        boolean matches(String normalizedPrompt, Set<String> requestDataKeys) {
+            for (String dataKey : dataKeys) {
+                if (!requestDataKeys.contains(dataKey)) {
+                    return false;
+                }
+            }
+            for (String keyword : keywords) {
+                if (!containsWord(normalizedPrompt, keyword)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static boolean containsWord(String normalizedPrompt, String keyword) {
+            int index = normalizedPrompt.indexOf(keyword);
+            while (index >= 0) {
+                int end = index + keyword.length();
+                boolean startsWord = index == 0 || normalizedPrompt.charAt(index - 1) == ' ';
+                boolean endsWord = end == normalizedPrompt.length() || normalizedPrompt.charAt(end) == ' ';
+                if (startsWord && endsWord) {
+                    return true;
+                }
+                index = normalizedPrompt.indexOf(keyword, index + 1);
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Builder for {@link ToolRouter}.
+     */
+    public static final class Builder {
+
+        private final Map<String, String> exactMatches = new HashMap<>();
+        private final List<Rule> rules = new ArrayList<>();
+
+        private Builder() {
+        }
+
+        /**
+         * Routes a prompt to a tool.
+         *
+         * @param prompt the prompt, which is compared after normalization
+         * @param toolName the name of the tool
+         * @return this builder
+         */
+        public Builder exactMatch(String prompt, String toolName) {
+            Assert.checkNotNullParam("prompt", prompt);
+            Assert.checkNotNullParam("toolName", toolName);
+            exactMatches.put(normalize(prompt), toolName);
+            return this;
+        }
+
+        /**
+         * Routes any prompt containing all the given keywords to a tool.
+         *
+         * @param toolName the name of the tool
+         * @param keywords the keywords, which are compared after normalization
+         * @return this builder
+         */
+        public Builder keywordMatch(String toolName, String... keywords) {
+            return rule(toolName, List.of(keywords), List.of());
+        }
+
+        /**
+         * Routes any request containing all the given DataPart keys to a tool.
+         *
+         * @param toolName the name of the tool
+         * @param dataKeys the DataPart keys
+         * @return this builder
+         */
+        public Builder dataKeyMatch(String toolName, String... dataKeys) {
+            return rule(toolName, List.of(), List.of(dataKeys));
+        }
+
+        /**
+         * Routes any request whose prompt contains all the given keywords and
+         * which contains all the given DataPart keys to a tool.
+         *
+         * @param toolName the name of the tool
+         * @param keywords the keywords, which are compared after normalization
+         * @param dataKeys the DataPart keys
+         * @return this builder
+         */
+        public Builder rule(String toolName, Collection<String> keywords, Collection<String> dataKeys) {
+            Assert.checkNotNullParam("toolName", toolName);
+            String[] normalizedKeywords = keywords.stream()
+                    .map(ToolRouter::normalize)
+                    .filter(keyword -> !keyword.isEmpty())
+                    .toArray(String[]::new);
+            String[] requiredDataKeys = dataKeys.toArray(new String[0]);
+            if (normalizedKeywords.length == 0 && requiredDataKeys.length == 0) {
+                throw new IllegalArgumentException("A rule requires at least one keyword or data key");
+            }
+            rules.add(new Rule(toolName, normalizedKeywords, requiredDataKeys));
+            return this;
+        }
+
+        /**
+         * Builds the ToolRouter.
+         *
+         * @return the ToolRouter
+         */
+        public ToolRouter build() {
+            return new ToolRouter(this);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package io.ap2.a2a.extension.common;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import io.ap2.a2a.extension.util.Assert;
+
+/**
+ * A bounded LRU cache of tool selections with a time-to-live.
+ * <p>
+ * Entries are keyed by a namespace (typically one per agent executor), the
+ * {@link ToolRouter#normalize(String) normalized} prompt and the sorted set of
+ * DataPart keys of the request. A single cache may be shared by several
+ * {@link CachingToolSelectorAgent}s as long as they use distinct namespaces.
+ * <p>
+ * This class is thread-safe.
+ */
+public class ToolSelectionCache {
+
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final Map<String, Entry> entries;
+
+    /**
+     * Creates a new ToolSelectionCache.
+     *
+     * @param maxEntries the maximum number of cached selections
+     * @param ttl how long a selection stays cached
+     */
+    public ToolSelectionCache(int maxEntries, Duration ttl) {
+        Assert.checkNotNullParam("ttl", ttl);
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("maxEntries must be positive");
+        }
+        if (ttl.isNegative() || ttl.isZero()) {
+            throw new IllegalArgumentException("ttl must be positive");
+        }
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttl.toNanos();
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > ToolSelectionCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Builds the cache key for a request.
+     *
+     * @param namespace the namespace of the caller
+     * @param prompt the prompt of the request
+     * @param dataKeys the DataPart keys of the request
+     * @return the cache key
+     */
+    static String key(String namespace, String prompt, Collection<String> dataKeys) {
+        StringBuilder key = new StringBuilder(namespace)
+                .append('\u0000')
+                .append(ToolRouter.normalize(prompt))
+                .append('\u0000');
+        if (dataKeys != null && !dataKeys.isEmpty()) {
+            String[] sortedKeys = dataKeys.toArray(new String[0]);
+            Arrays.sort(sortedKeys);
+            for (String dataKey : sortedKeys) {
+                key.append(dataKey).append(',');
+            }
+        }
+        return key.toString();
+    }
+
+    /**
+     * Gets a cached tool selection.
+     *
+     * @param key the cache key
+     * @return the cached tool name, or null if absent or expired
+     */
+    String get(String key) {
+        long now = System.nanoTime();
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (now - entry.expiresAtNanos >= 0) {
+                entries.remove(key);
+                return null;
+            }
+            return entry.toolName;
+        }
+    }
+
+    /**
+     * Caches a tool selection.
+     *
+     * @param key the cache key
+     * @param toolName the selected tool name
+     */
+    void put(String key, String toolName) {
+        Entry entry = new Entry(toolName, System.nanoTime() + ttlNanos);
+        synchronized (entries) {
+            entries.put(key, entry);
+        }
+    }
+
+    /**
+     * Removes all cached selections.
+     */
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    /**
+     * Returns the number of cached selections, including any that have expired
+     * but have not been evicted yet.
+     *
+     * @return the number of cached selections
+     */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private record Entry(String toolName, long expiresAtNanos) {
+    }
+}
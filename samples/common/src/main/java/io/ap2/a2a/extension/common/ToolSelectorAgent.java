@@ -1,5 +1,7 @@
 package io.ap2.a2a.extension.common;
 
+import java.util.Set;
+
 import dev.langchain4j.service.UserMessage;
 
 /**
@@ -19,4 +21,17 @@ public interface ToolSelectorAgent {
      * @return the name of the selected tool
      */
     String selectTool(@UserMessage String userPrompt);
+
+    /**
+     * Selects the appropriate tool based on the user's request and the
+     * DataPart keys sent with it. The keys do not reach the LLM; they let a
+     * {@link CachingToolSelectorAgent} tell apart requests with the same prompt.
+     *
+     * @param userPrompt the user's request
+     * @param dataKeys the DataPart keys of the request
+     * @return the name of the selected tool
+     */
+    default String selectTool(String userPrompt, Set<String> dataKeys) {
+        return selectTool(userPrompt);
+    }
 }
@@ -1,33 +1,206 @@
 package io.ap2.a2a.extension.common;
 
+import java.util.List;
 import java.util.logging.Logger;
 
+import io.ap2.a2a.extension.spec.AP2Exception;
+import io.ap2.a2a.extension.spec.CartMandate;
 import io.ap2.a2a.extension.spec.PaymentMandate;
+import io.ap2.a2a.extension.util.MandateHashes;
+
+import static io.ap2.a2a.extension.util.Assert.checkNotNullParam;
 
 /**
- * Validation logic for PaymentMandate.
+ * Validation logic for the signatures of mandates.
+ * <p>
+ * The user authorization of a PaymentMandate is a JWT signed on the user's
+ * device, whose {@code aud} claim is the merchant and whose
+ * {@code transaction_data} claim holds the hashes of the cart and payment
+ * mandates it authorizes, so a PaymentMandate is validated together with the
+ * CartMandate it pays. The merchant authorization of a CartMandate is a JWT
+ * signed by the merchant, whose {@code cart_hash} claim is the hash of the
+ * cart contents.
+ * <p>
+ * User authorizations are verified with the public keys of the user's
+ * devices, and merchant authorizations with the public keys of the merchants,
+ * given to {@link #configure(JwtKeys, JwtKeys, boolean)}, which
+ * {@link JwtConfiguration} reads from the configuration when the agent starts.
+ * A merchant key therefore cannot sign a user authorization, nor the other way
+ * around. Until then, no key is known and every mandate is rejected. The
+ * public key embedded in a JWT only proves that the mandate was not altered
+ * since it was signed, not who signed it, so embedded keys are only trusted
+ * when explicitly allowed.
+ * <p>
+ * Verified JWTs are cached until they expire, so that mandates sent again
+ * are not verified again. {@link MandateVerifier} verifies all the mandates
+ * of a message at once.
  */
 public class Validation {
 
     private static final Logger logger = Logger.getLogger(Validation.class.getName());
 
     /**
-     * Validates the PaymentMandate signature.
+     * The token IDs of the user authorizations, kept when the verifiers are configured again.
+     */
+    private static final JtiReplayCache USER_AUTHORIZATION_REPLAY_CACHE = new JtiReplayCache();
+
+    private static volatile Verifiers verifiers = new Verifiers(new JwtKeys(), new JwtKeys(), false);
+
+    /**
+     * Sets the public keys that verify the user and merchant authorizations,
+     * replacing the previous ones.
+     *
+     * @param userKeys the public keys of the user's devices, which verify the user authorizations
+     * @param merchantKeys the public keys of the merchants, which verify the merchant authorizations
+     * @param allowEmbeddedKeys whether the public keys embedded in the JWTs are trusted
+     */
+    public static void configure(JwtKeys userKeys, JwtKeys merchantKeys, boolean allowEmbeddedKeys) {
+        verifiers = new Verifiers(checkNotNullParam("userKeys", userKeys),
+                checkNotNullParam("merchantKeys", merchantKeys), allowEmbeddedKeys);
+    }
+
+    /**
+     * Validates the PaymentMandate signature, outside of any context.
      *
      * @param paymentMandate The PaymentMandate to be validated
+     * @param cartMandate The CartMandate it pays
      * @throws IllegalArgumentException if the PaymentMandate signature is not valid
      */
-    public static void validatePaymentMandateSignature(PaymentMandate paymentMandate) {
-        // In a real implementation, full validation logic would reside here. For
-        // demonstration purposes, we simply log that the authorization field is
-        // populated.
+    public static void validatePaymentMandateSignature(PaymentMandate paymentMandate, CartMandate cartMandate) {
+        validatePaymentMandateSignature(paymentMandate, cartMandate, null);
+    }
+
+    /**
+     * Validates the PaymentMandate signature. The user authorization may be
+     * presented again in the same context, as when the mandate is sent again to
+     * answer a challenge, but is rejected in any other context.
+     *
+     * @param paymentMandate The PaymentMandate to be validated
+     * @param cartMandate The CartMandate it pays
+     * @param contextId The ID of the context the PaymentMandate was received in
+     * @throws IllegalArgumentException if the PaymentMandate signature is not valid
+     */
+    public static void validatePaymentMandateSignature(PaymentMandate paymentMandate, CartMandate cartMandate,
+                                                       String contextId) {
+        checkUserAuthorization(paymentMandate, cartMandate, verifyUserAuthorization(paymentMandate, contextId));
+    }
+
+    /**
+     * Validates the CartMandate signature.
+     *
+     * @param cartMandate The CartMandate to be validated
+     * @throws IllegalArgumentException if the CartMandate signature is not valid
+     */
+    public static void validateCartMandateSignature(CartMandate cartMandate) {
+        checkMerchantAuthorization(cartMandate, verifyMerchantAuthorization(cartMandate));
+    }
+
+    /**
+     * Verifies the JWT of the user authorization of a PaymentMandate.
+     *
+     * @param paymentMandate The PaymentMandate
+     * @param contextId The ID of the context the PaymentMandate was received in
+     * @return The verified JWT
+     * @throws IllegalArgumentException if the JWT is missing or not valid
+     */
+    static VerifiedJwt verifyUserAuthorization(PaymentMandate paymentMandate, String contextId) {
         if (paymentMandate.userAuthorization() == null) {
             throw new IllegalArgumentException("User authorization not found in PaymentMandate.");
         }
+        try {
+            return verifiers.user().verify(paymentMandate.userAuthorization(), contextId);
+        } catch (AP2Exception e) {
+            throw new IllegalArgumentException("Invalid user authorization: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Checks that the verified user authorization of a PaymentMandate
+     * authorizes its contents, and the CartMandate it pays, for its merchant.
+     *
+     * @param paymentMandate The PaymentMandate
+     * @param cartMandate The CartMandate it pays, or {@code null} if none was found
+     * @param userAuthorization The verified JWT of its user authorization
+     * @throws IllegalArgumentException if the JWT does not authorize the contents
+     */
+    static void checkUserAuthorization(PaymentMandate paymentMandate, CartMandate cartMandate,
+                                       VerifiedJwt userAuthorization) {
+        if (cartMandate == null) {
+            throw new IllegalArgumentException("CartMandate of the PaymentMandate not found.");
+        }
+        if (!paymentMandate.paymentMandateContents().paymentDetailsId()
+                .equals(cartMandate.contents().paymentRequest().details().id())) {
+            throw new IllegalArgumentException("PaymentMandate does not pay this CartMandate.");
+        }
+        if (!paymentMandate.paymentMandateContents().merchantAgent().equals(userAuthorization.stringClaim("aud"))) {
+            throw new IllegalArgumentException("User authorization is not intended for this merchant.");
+        }
+        List<String> transactionData = userAuthorization.stringListClaim("transaction_data");
+        String paymentMandateHash = MandateHashes.paymentMandateHash(paymentMandate.paymentMandateContents());
+        if (!transactionData.contains(paymentMandateHash)) {
+            throw new IllegalArgumentException("User authorization does not authorize this PaymentMandate.");
+        }
+        if (!transactionData.contains(MandateHashes.cartMandateHash(cartMandate))) {
+            throw new IllegalArgumentException("User authorization does not authorize this CartMandate.");
+        }
 
         logger.info("Valid PaymentMandate found.");
     }
 
+    /**
+     * Verifies the JWT of the merchant authorization of a CartMandate.
+     *
+     * @param cartMandate The CartMandate
+     * @return The verified JWT
+     * @throws IllegalArgumentException if the JWT is missing or not valid
+     */
+    static VerifiedJwt verifyMerchantAuthorization(CartMandate cartMandate) {
+        if (cartMandate.merchantAuthorization() == null) {
+            throw new IllegalArgumentException("Merchant authorization not found in CartMandate.");
+        }
+        try {
+            return verifiers.merchant().verify(cartMandate.merchantAuthorization());
+        } catch (AP2Exception e) {
+            throw new IllegalArgumentException("Invalid merchant authorization: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Checks that the verified merchant authorization of a CartMandate matches its contents.
+     *
+     * @param cartMandate The CartMandate
+     * @param merchantAuthorization The verified JWT of its merchant authorization
+     * @throws IllegalArgumentException if the JWT does not match the contents
+     */
+    static void checkMerchantAuthorization(CartMandate cartMandate, VerifiedJwt merchantAuthorization) {
+        String cartHash = MandateHashes.cartHash(cartMandate.contents());
+        if (!cartHash.equals(merchantAuthorization.stringClaim("cart_hash"))) {
+            throw new IllegalArgumentException("Merchant authorization does not match the CartMandate contents.");
+        }
+
+        logger.info("Valid CartMandate found.");
+    }
+
+    /**
+     * The verifiers of the user and merchant authorizations, replaced together.
+     */
+    private record Verifiers(JwtVerifier user, JwtVerifier merchant) {
+
+        Verifiers(JwtKeys userKeys, JwtKeys merchantKeys, boolean allowEmbeddedKeys) {
+            this(JwtVerifier.builder()
+                            .keys(userKeys)
+                            .allowEmbeddedKeys(allowEmbeddedKeys)
+                            .replayCache(USER_AUTHORIZATION_REPLAY_CACHE)
+                            .cacheVerifiedTokens(VerifiedTokenCache.DEFAULT_MAX_ENTRIES)
+                            .build(),
+                    JwtVerifier.builder()
+                            .keys(merchantKeys)
+                            .allowEmbeddedKeys(allowEmbeddedKeys)
+                            .cacheVerifiedTokens(VerifiedTokenCache.DEFAULT_MAX_ENTRIES)
+                            .build());
+        }
+    }
+
     private Validation() {
         // Utility class should not be instantiated
     }
@@ -0,0 +1,40 @@
+package io.ap2.a2a.extension.common;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A JSON Web Token whose signature and claims were verified by a {@link JwtVerifier}.
+ *
+ * @param kid the key ID of the key that signed the token
+ * @param algorithm the algorithm of the signature
+ * @param claims the claims of the token
+ */
+public record VerifiedJwt(String kid, JwsAlgorithm algorithm, Map<String, Object> claims) {
+
+    /**
+     * Returns a string claim.
+     *
+     * @param name the name of the claim
+     * @return the value of the claim, or {@code null} if it is not a string
+     */
+    public String stringClaim(String name) {
+        return claims.get(name) instanceof String value ? value : null;
+    }
+
+    /**
+     * Returns the strings of an array claim.
+     *
+     * @param name the name of the claim
+     * @return the strings of the claim, empty if it is not an array
+     */
+    public List<String> stringListClaim(String name) {
+        if (!(claims.get(name) instanceof List<?> values)) {
+            return List.of();
+        }
+        return values.stream()
+                .filter(String.class::isInstance)
+                .map(String.class::cast)
+                .toList();
+    }
+}
@@ -0,0 +1,104 @@
+package io.ap2.a2a.extension.common;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The JSON Web Tokens verified by a {@link JwtVerifier}, keyed by the SHA-256
+ * digest of the token, until they expire.
+ * <p>
+ * A token whose digest is cached was already verified, so verifying it again
+ * only costs a digest and a lookup instead of the signature verification.
+ * Keying by digest rather than by token keeps the keys small.
+ * <p>
+ * The cache is bounded: once full, expired tokens are removed, and if it is
+ * still full, it is cleared.
+ * <p>
+ * This class is thread-safe.
+ */
+final class VerifiedTokenCache {
+
+    /**
+     * The default maximum number of tokens.
+     */
+    static final int DEFAULT_MAX_ENTRIES = 10_000;
+
+    private static final ThreadLocal<MessageDigest> DIGESTS = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    });
+
+    private final ConcurrentMap<Key, Entry> entries = new ConcurrentHashMap<>();
+    private final int maxEntries;
+
+    VerifiedTokenCache(int maxEntries) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("maxEntries must be positive");
+        }
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Returns the key of a token.
+     *
+     * @param token the token
+     * @return the key
+     */
+    static Key key(String token) {
+        ByteBuffer digest = ByteBuffer.wrap(DIGESTS.get().digest(token.getBytes(StandardCharsets.US_ASCII)));
+        return new Key(digest.getLong(), digest.getLong(), digest.getLong(), digest.getLong());
+    }
+
+    /**
+     * Returns a verified token, unless it has expired.
+     *
+     * @param key the key of the token
+     * @param validAfterMillis the time the token must expire after, in milliseconds since the epoch
+     * @return the verified token, or {@code null} if it is not cached or has expired
+     */
+    VerifiedJwt get(Key key, long validAfterMillis) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiresAtMillis <= validAfterMillis) {
+            entries.remove(key, entry);
+            return null;
+        }
+        return entry.jwt;
+    }
+
+    /**
+     * Caches a verified token.
+     *
+     * @param key the key of the token
+     * @param jwt the verified token
+     * @param expiresAtMillis when the token expires, in milliseconds since the epoch
+     * @param validAfterMillis the time tokens must expire after to be kept, in milliseconds since the epoch
+     */
+    void put(Key key, VerifiedJwt jwt, long expiresAtMillis, long validAfterMillis) {
+        if (entries.size() >= maxEntries) {
+            entries.values().removeIf(entry -> entry.expiresAtMillis <= validAfterMillis);
+            if (entries.size() >= maxEntries) {
+                entries.clear();
+            }
+        }
+        entries.put(key, new Entry(jwt, expiresAtMillis));
+    }
+
+    /**
+     * The SHA-256 digest of a token.
+     */
+    record Key(long h0, long h1, long h2, long h3) {
+    }
+
+    private record Entry(VerifiedJwt jwt, long expiresAtMillis) {
+    }
+}
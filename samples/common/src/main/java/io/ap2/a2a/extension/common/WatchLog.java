@@ -1,15 +1,16 @@
 package io.ap2.a2a.extension.common;
 
-import java.io.File;
-import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.logging.FileHandler;
-import java.util.logging.Logger;
-import java.util.logging.SimpleFormatter;
 
 import io.a2a.spec.DataPart;
+import io.ap2.a2a.extension.spec.AP2Constants;
+
+import static io.ap2.a2a.extension.util.Assert.checkNotNullParam;
 
 /**
  * Utility methods related to creating the watch.log file.
@@ -18,33 +19,103 @@ import io.a2a.spec.DataPart;
  * scenario. It will contain all the requests and responses to/from the agent
  * that are sent to/from the client, so engineers can see what is happening
  * between the servers in real time.
+ *
+ * Entries are written by an {@link AsyncWatchLog}, so logging a request only
+ * publishes its parts to a ring buffer, and they are formatted and written to
+ * the file by a background thread.
+ *
+ * Which data of a request is logged, and which of its fields are redacted, is
+ * decided by a {@link WatchLogPolicy}.
+ *
+ * The watch log can instead be written as compact binary records to segment
+ * files in .logs/watch, which {@link WatchLogDecoder} renders as text or JSON.
+ *
+ * The writer, format and policy of the watch log are configured from the
+ * {@code ap2.watch-log} properties by {@link WatchLogConfiguration}.
  */
 public class WatchLog {
 
-    private static final Logger logger = Logger.getLogger(WatchLog.class.getName());
     private static final String LOG_FILE_PATH = ".logs/watch.log";
+    private static final String SEGMENT_DIRECTORY_PATH = ".logs/watch";
+
+    /**
+     * The format the watch log is written in.
+     */
+    public enum Format {
+
+        /**
+         * Human-readable text, appended to the watch.log file.
+         */
+        TEXT,
+
+        /**
+         * Binary records, written to segment files with
+         * {@link BinaryWatchLogSink#DEFAULT_SEGMENT_SIZE the default size},
+         * of which {@link BinaryWatchLogSink#DEFAULT_MAX_SEGMENTS the default
+         * number} are kept.
+         */
+        BINARY
+    }
 
     // Mandate data keys
-    private static final String CART_MANDATE_DATA_KEY = "cart_mandate";
-    private static final String INTENT_MANDATE_DATA_KEY = "intent_mandate";
-    private static final String PAYMENT_MANDATE_DATA_KEY = "payment_mandate";
+    static final String CART_MANDATE_DATA_KEY = "cart_mandate";
+    static final String INTENT_MANDATE_DATA_KEY = "intent_mandate";
+    static final String PAYMENT_MANDATE_DATA_KEY = "payment_mandate";
+
+    private static final Map<String, WatchLogEvent> MANDATE_EVENTS = mandateEvents();
+
+    private static volatile AsyncWatchLog watchLog;
+    private static volatile WatchLogPolicy policy = WatchLogPolicy.DEFAULT;
 
     /**
-     * Creates a file handler to the logger for watch.log.
+     * Configures the writer of the watch.log file, replacing the default one,
+     * which holds {@link AsyncWatchLog#DEFAULT_CAPACITY} entries and drops
+     * entries when full.
      *
-     * @return A FileHandler instance configured for 'watch.log'
-     * @throws IOException if unable to create the log file
+     * @param capacity The number of entries the ring buffer holds
+     * @param overflowPolicy What to do with an entry when the ring buffer is full
      */
-    public static FileHandler createFileHandler() throws IOException {
-        // Create directory if it doesn't exist
-        File logDir = new File(".logs");
-        if (!logDir.exists()) {
-            logDir.mkdirs();
+    public static void configure(int capacity, AsyncWatchLog.OverflowPolicy overflowPolicy) {
+        configure(capacity, overflowPolicy, Format.TEXT);
+    }
+
+    /**
+     * Configures the writer of the watch log, replacing the default one,
+     * which writes text, holds {@link AsyncWatchLog#DEFAULT_CAPACITY} entries
+     * and drops entries when full.
+     * <p>
+     * The replaced writer is closed once it wrote the entries logged to it.
+     * Requests being logged meanwhile log their remaining entries to the new
+     * writer instead.
+     *
+     * @param capacity The number of entries the ring buffer holds
+     * @param overflowPolicy What to do with an entry when the ring buffer is full
+     * @param format The format to write the watch log in
+     */
+    public static synchronized void configure(int capacity, AsyncWatchLog.OverflowPolicy overflowPolicy,
+                                              Format format) {
+        checkNotNullParam("format", format);
+        WatchLogSink sink = format == Format.BINARY
+                ? new BinaryWatchLogSink(Path.of(SEGMENT_DIRECTORY_PATH), BinaryWatchLogSink.DEFAULT_SEGMENT_SIZE,
+                        BinaryWatchLogSink.DEFAULT_MAX_SEGMENTS)
+                : new TextWatchLogSink(Path.of(LOG_FILE_PATH));
+        AsyncWatchLog previous = watchLog;
+        watchLog = new AsyncWatchLog(sink, capacity, overflowPolicy);
+        if (previous != null) {
+            previous.close();
+        } else {
+            registerShutdownHook();
         }
+    }
 
-        FileHandler fileHandler = new FileHandler(LOG_FILE_PATH, true);
-        fileHandler.setFormatter(new SimpleFormatter());
-        return fileHandler;
+    /**
+     * Sets the policy that decides which data of a request is logged, and how
+     * it is redacted, replacing the {@link WatchLogPolicy#DEFAULT default} one.
+     *
+     * @param watchLogPolicy The policy
+     */
+    public static void setPolicy(WatchLogPolicy watchLogPolicy) {
+        policy = checkNotNullParam("watchLogPolicy", watchLogPolicy);
     }
 
     /**
@@ -54,10 +125,39 @@ public class WatchLog {
      * @param dataParts A list of data parts from the request
      */
     public static void logA2aMessageParts(List<String> textParts, List<DataPart> dataParts) {
-        loadLogger();
-        logRequestInstructions(textParts);
-        logMandates(dataParts);
-        logExtraData(dataParts);
+        logA2aMessageParts(textParts, dataParts, null, null);
+    }
+
+    /**
+     * Logs the A2A message parts of a request to the watch log.
+     *
+     * @param textParts A list of text parts from the request
+     * @param dataParts A list of data parts from the request
+     * @param contextId The context ID of the request, or null
+     * @param taskId The task ID of the request, or null
+     */
+    public static void logA2aMessageParts(List<String> textParts, List<DataPart> dataParts, String contextId,
+                                          String taskId) {
+        log(WatchLogEvent.REQUEST_INSTRUCTIONS, contextId, taskId, null, null, null, textParts);
+        logData(DataPartIndex.of(dataParts), contextId, taskId, false);
+    }
+
+    /**
+     * Logs that a request failed to the watch log, along with the data parts
+     * of the request that were not sampled when it was logged, if the
+     * {@link WatchLogPolicy#isAlwaysLogFailures() policy} says so.
+     *
+     * @param dataParts A list of data parts from the request
+     * @param contextId The context ID of the request, or null
+     * @param taskId The task ID of the request, or null
+     * @param reason Why the request failed
+     */
+    public static void logA2aRequestFailure(List<DataPart> dataParts, String contextId, String taskId,
+                                            String reason) {
+        log(WatchLogEvent.REQUEST_FAILED, contextId, taskId, null, null, null, reason);
+        if (policy.isAlwaysLogFailures()) {
+            logData(DataPartIndex.of(dataParts), contextId, taskId, true);
+        }
     }
 
     /**
@@ -66,72 +166,102 @@ public class WatchLog {
      * @param requestedExtensions The set of requested extensions
      */
     public static void logA2aRequestExtensions(Set<String> requestedExtensions) {
+        logA2aRequestExtensions(requestedExtensions, null, null);
+    }
+
+    /**
+     * Logs the A2A extensions activated in a request to the watch log.
+     *
+     * @param requestedExtensions The set of requested extensions
+     * @param contextId The context ID of the request, or null
+     * @param taskId The task ID of the request, or null
+     */
+    public static void logA2aRequestExtensions(Set<String> requestedExtensions, String contextId, String taskId) {
         if (requestedExtensions == null || requestedExtensions.isEmpty()) {
             return;
         }
 
-        logger.info("\n");
-        logger.info("[A2A Extensions Activated in the Request]");
+        log(WatchLogEvent.REQUEST_EXTENSIONS, contextId, taskId, null, null, null, List.copyOf(requestedExtensions));
+    }
 
-        for (String extension : requestedExtensions) {
-            logger.info(extension);
+    /**
+     * Logs an entry, whose value is redacted by a policy unless it is
+     * {@code null}. An entry logged to a writer that {@link #configure}
+     * replaced and closed meanwhile is logged again to the new one.
+     */
+    private static void log(WatchLogEvent event, String contextId, String taskId, String subject,
+                            WatchLogPolicy logPolicy, String key, Object value) {
+        AsyncWatchLog log = watchLog();
+        while (true) {
+            boolean logged = logPolicy == null
+                    ? log.log(event, contextId, taskId, subject, value)
+                    : log.log(event, contextId, taskId, subject, logPolicy, key, value);
+            AsyncWatchLog current = watchLog;
+            if (logged || !log.isClosed() || current == log) {
+                return;
+            }
+            log = current;
         }
     }
 
-    private static void loadLogger() {
-        if (logger.getHandlers().length == 0) {
-            try {
-                logger.addHandler(createFileHandler());
-            } catch (IOException e) {
-                System.err.println("Failed to create watch log file handler: " + e.getMessage());
+    private static AsyncWatchLog watchLog() {
+        AsyncWatchLog log = watchLog;
+        if (log == null) {
+            synchronized (WatchLog.class) {
+                log = watchLog;
+                if (log == null) {
+                    log = new AsyncWatchLog(Path.of(LOG_FILE_PATH), AsyncWatchLog.DEFAULT_CAPACITY,
+                            AsyncWatchLog.OverflowPolicy.DROP);
+                    watchLog = log;
+                    registerShutdownHook();
+                }
             }
         }
+        return log;
     }
 
-    private static void logRequestInstructions(List<String> textParts) {
-        logger.info("\n");
-        logger.info("[Request Instructions]");
-        logger.info(textParts.toString());
+    private static void registerShutdownHook() {
+        // Write the entries still in the ring buffer on exit
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> watchLog.close(), "watch-log-shutdown"));
     }
 
-    private static void logMandates(List<DataPart> dataParts) {
-        for (DataPart dataPart : dataParts) {
-            for (Map.Entry<String, Object> entry : dataPart.getData().entrySet()) {
-                String key = entry.getKey();
-                Object value = entry.getValue();
-
-                if (CART_MANDATE_DATA_KEY.equals(key)) {
-                    logger.info("\n");
-                    logger.info("[A Cart Mandate was in the request Data]");
-                    logger.info(value.toString());
-                } else if (INTENT_MANDATE_DATA_KEY.equals(key)) {
-                    logger.info("\n");
-                    logger.info("[An Intent Mandate was in the request Data]");
-                    logger.info(value.toString());
-                } else if (PAYMENT_MANDATE_DATA_KEY.equals(key)) {
-                    logger.info("\n");
-                    logger.info("[A Payment Mandate was in the request Data]");
-                    logger.info(value.toString());
-                }
+    private static Map<String, WatchLogEvent> mandateEvents() {
+        Map<String, WatchLogEvent> events = new LinkedHashMap<>();
+        events.put(CART_MANDATE_DATA_KEY, WatchLogEvent.CART_MANDATE);
+        events.put(AP2Constants.CART_MANDATE_DATA_KEY, WatchLogEvent.CART_MANDATE);
+        events.put(INTENT_MANDATE_DATA_KEY, WatchLogEvent.INTENT_MANDATE);
+        events.put(AP2Constants.INTENT_MANDATE_DATA_KEY, WatchLogEvent.INTENT_MANDATE);
+        events.put(PAYMENT_MANDATE_DATA_KEY, WatchLogEvent.PAYMENT_MANDATE);
+        events.put(AP2Constants.PAYMENT_MANDATE_DATA_KEY, WatchLogEvent.PAYMENT_MANDATE);
+        return Collections.unmodifiableMap(events);
+    }
+
+    /**
+     * Logs the mandates and then the other data of a request, as the policy
+     * redacts them on the writer thread: the keys the policy sampled, or, once
+     * the request failed, those it did not.
+     */
+    private static void logData(DataPartIndex dataParts, String contextId, String taskId, boolean unsampled) {
+        WatchLogPolicy logPolicy = policy;
+        for (Map.Entry<String, WatchLogEvent> mandate : MANDATE_EVENTS.entrySet()) {
+            String key = mandate.getKey();
+            if (!dataParts.containsKey(key) || logPolicy.isSampled(key, contextId, taskId) == unsampled) {
+                continue;
+            }
+            for (Object value : dataParts.findAll(key)) {
+                log(mandate.getValue(), contextId, taskId, null, logPolicy, key, value);
             }
         }
-    }
 
-    private static void logExtraData(List<DataPart> dataParts) {
         for (DataPart dataPart : dataParts) {
             for (Map.Entry<String, Object> entry : dataPart.getData().entrySet()) {
                 String key = entry.getKey();
-                Object value = entry.getValue();
 
-                if (CART_MANDATE_DATA_KEY.equals(key) ||
-                    INTENT_MANDATE_DATA_KEY.equals(key) ||
-                    PAYMENT_MANDATE_DATA_KEY.equals(key)) {
+                if (MANDATE_EVENTS.containsKey(key) || logPolicy.isSampled(key, contextId, taskId) == unsampled) {
                     continue;
                 }
 
-                logger.info("\n");
-                logger.info(String.format("[Data Part: %s]", key));
-                logger.info(value.toString());
+                log(WatchLogEvent.DATA_PART, contextId, taskId, key, logPolicy, key, entry.getValue());
             }
         }
     }
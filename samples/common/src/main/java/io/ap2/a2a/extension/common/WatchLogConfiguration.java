@@ -0,0 +1,105 @@
+package io.ap2.a2a.extension.common;
+
+import java.util.List;
+import java.util.Optional;
+
+import io.quarkus.runtime.Startup;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+/**
+ * The configuration of the {@link WatchLog}, applied when the agent starts.
+ * <p>
+ * The {@link WatchLogPolicy} extends the {@link WatchLogPolicy#DEFAULT default}
+ * one: sampling rates are given as {@code key:rate} entries, and redactions as
+ * {@code key:path} entries, or as a key alone to redact its whole value.
+ */
+@Startup
+@ApplicationScoped
+public class WatchLogConfiguration {
+
+    /**
+     * The number of entries the ring buffer of the watch log holds, rounded up to a power of two.
+     */
+    @ConfigProperty(name = "ap2.watch-log.capacity", defaultValue = "8192")
+    int capacity;
+
+    /**
+     * What to do with an entry when the ring buffer is full.
+     */
+    @ConfigProperty(name = "ap2.watch-log.overflow-policy", defaultValue = "DROP")
+    AsyncWatchLog.OverflowPolicy overflowPolicy;
+
+    /**
+     * The format the watch log is written in.
+     */
+    @ConfigProperty(name = "ap2.watch-log.format", defaultValue = "TEXT")
+    WatchLog.Format format;
+
+    /**
+     * The fraction of requests for which the keys without their own sampling rate are logged.
+     */
+    @ConfigProperty(name = "ap2.watch-log.sample-rate", defaultValue = "1.0")
+    double sampleRate;
+
+    /**
+     * The sampling rates of data keys, as {@code key:rate} entries.
+     */
+    @ConfigProperty(name = "ap2.watch-log.sample-rates")
+    Optional<List<String>> sampleRates;
+
+    /**
+     * Whether the keys that were not sampled are logged when a request fails.
+     */
+    @ConfigProperty(name = "ap2.watch-log.always-log-failures", defaultValue = "true")
+    boolean alwaysLogFailures;
+
+    /**
+     * The fields redacted in addition to the default ones, as {@code key:path} entries, or keys alone.
+     */
+    @ConfigProperty(name = "ap2.watch-log.redactions")
+    Optional<List<String>> redactions;
+
+    /**
+     * The number of characters of a string that are logged, or 0 for no limit.
+     */
+    @ConfigProperty(name = "ap2.watch-log.max-string-length", defaultValue = "0")
+    int maxStringLength;
+
+    /**
+     * The number of elements of a list that are logged, or 0 for no limit.
+     */
+    @ConfigProperty(name = "ap2.watch-log.max-list-size", defaultValue = "0")
+    int maxListSize;
+
+    /**
+     * Configures the writer and the policy of the watch log.
+     */
+    @PostConstruct
+    void configure() {
+        WatchLog.configure(capacity, overflowPolicy, format);
+
+        WatchLogPolicy.Builder policy = WatchLogPolicy.defaults()
+                .defaultSampleRate(sampleRate)
+                .alwaysLogFailures(alwaysLogFailures)
+                .maxStringLength(maxStringLength)
+                .maxListSize(maxListSize);
+        for (String entry : sampleRates.orElse(List.of())) {
+            int separator = entry.lastIndexOf(':');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Invalid ap2.watch-log.sample-rates entry: " + entry);
+            }
+            policy.sample(entry.substring(0, separator), Double.parseDouble(entry.substring(separator + 1)));
+        }
+        for (String entry : redactions.orElse(List.of())) {
+            int separator = entry.indexOf(':');
+            if (separator < 0) {
+                policy.redactValue(entry);
+            } else {
+                policy.redact(entry.substring(0, separator), entry.substring(separator + 1));
+            }
+        }
+        WatchLog.setPolicy(policy.build());
+    }
+}
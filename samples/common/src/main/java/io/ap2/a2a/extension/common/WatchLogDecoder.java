@@ -0,0 +1,240 @@
+package io.ap2.a2a.extension.common;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static io.a2a.util.Utils.OBJECT_MAPPER;
+import static io.ap2.a2a.extension.util.Assert.checkNotNullParam;
+
+/**
+ * Decodes the binary watch log segments written by {@link BinaryWatchLogSink}.
+ * <p>
+ * It can be run from the command line to render segments as text, in the
+ * format of the watch.log file, or as JSON, one entry per line:
+ * <pre>
+ * java io.ap2.a2a.extension.common.WatchLogDecoder [--json] [segment file or directory...]
+ * </pre>
+ * Directories are decoded segment by segment, oldest first, and the default
+ * is the .logs/watch directory. Entries can also be decoded programmatically,
+ * for example to replay the requests of a context.
+ */
+public final class WatchLogDecoder {
+
+    private static final String DEFAULT_SEGMENT_DIRECTORY = ".logs/watch";
+
+    /**
+     * A decoded watch log entry.
+     *
+     * @param timestampMillis when the entry was logged, in milliseconds since the epoch
+     * @param event the type of the entry
+     * @param contextId the context ID of the request, or {@code null}
+     * @param taskId the task ID of the request, or {@code null}
+     * @param subject what the entry is about, or {@code null}
+     * @param value the value: a {@link io.ap2.a2a.extension.spec.CartMandate}, a JSON value
+     *              of maps, lists, strings, numbers and booleans, or {@code null}
+     */
+    public record Entry(long timestampMillis, WatchLogEvent event, String contextId, String taskId, String subject,
+                        Object value) {
+    }
+
+    /**
+     * Decodes the entries of a segment file, in the order they were logged.
+     * <p>
+     * A last record that is cut off or cannot be decoded, as a crash may leave
+     * the record that was being written, ends the segment like its unused end.
+     * An invalid record followed by other records is an error.
+     *
+     * @param segment the segment file
+     * @param consumer the consumer of the entries
+     * @throws IOException if the segment file cannot be read
+     * @throws IllegalArgumentException if the segment file is malformed
+     */
+    public static void decode(Path segment, Consumer<Entry> consumer) throws IOException {
+        checkNotNullParam("segment", segment);
+        checkNotNullParam("consumer", consumer);
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        try {
+            if (buffer.remaining() < BinaryWatchLogSink.HEADER_SIZE
+                    || buffer.getInt() != BinaryWatchLogSink.MAGIC) {
+                throw new IllegalArgumentException("not a watch log segment");
+            }
+            byte version = buffer.get();
+            if (version != BinaryWatchLogSink.FORMAT_VERSION) {
+                throw new IllegalArgumentException("unsupported format version " + version);
+            }
+            buffer.position(BinaryWatchLogSink.HEADER_SIZE);
+            while (buffer.remaining() >= Integer.BYTES) {
+                int length = buffer.getInt();
+                if (length == 0) {
+                    // The unused end of the segment
+                    break;
+                }
+                int offset = buffer.position() - Integer.BYTES;
+                if (length < 0) {
+                    throw new IllegalArgumentException("invalid record length " + length + " at offset " + offset);
+                }
+                if (length > buffer.remaining()) {
+                    // A torn last record
+                    break;
+                }
+                ByteBuffer record = buffer.slice(buffer.position(), length);
+                buffer.position(buffer.position() + length);
+                Entry entry;
+                try {
+                    entry = readEntry(new MandateCodec.Reader(record));
+                    if (record.hasRemaining()) {
+                        throw new IllegalArgumentException(record.remaining() + " bytes left in the record");
+                    }
+                } catch (BufferUnderflowException | IllegalArgumentException e) {
+                    if (isEnd(buffer)) {
+                        // A torn last record, whose length reached the file before its body
+                        break;
+                    }
+                    throw new IllegalArgumentException("invalid record at offset " + offset + ": "
+                            + (e.getMessage() != null ? e.getMessage() : "truncated record"), e);
+                }
+                consumer.accept(entry);
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Malformed watch log segment " + segment + ": truncated record", e);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Malformed watch log segment " + segment + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Decodes the entries of the segment files in a directory, oldest first.
+     *
+     * @param directory the directory of the segment files
+     * @param consumer the consumer of the entries
+     * @throws IOException if a segment file cannot be read
+     * @throws IllegalArgumentException if a segment file is malformed
+     */
+    public static void decodeDirectory(Path directory, Consumer<Entry> consumer) throws IOException {
+        checkNotNullParam("directory", directory);
+        for (Path segment : BinaryWatchLogSink.listSegments(directory)) {
+            decode(segment, consumer);
+        }
+    }
+
+    /**
+     * Renders watch log segments on the standard output.
+     *
+     * @param args {@code --json} to render JSON instead of text, followed by
+     *             the segment files and directories to decode
+     */
+    public static void main(String[] args) {
+        boolean json = false;
+        List<Path> paths = new ArrayList<>();
+        for (String arg : args) {
+            if ("--json".equals(arg)) {
+                json = true;
+            } else if ("--help".equals(arg) || "-h".equals(arg)) {
+                System.out.println("Usage: WatchLogDecoder [--json] [segment file or directory...]");
+                return;
+            } else {
+                paths.add(Path.of(arg));
+            }
+        }
+        if (paths.isEmpty()) {
+            paths.add(Path.of(DEFAULT_SEGMENT_DIRECTORY));
+        }
+
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+        Consumer<Entry> renderer = json ? entry -> write(out, toJson(entry)) : entry -> write(out, toText(entry));
+        int status = 0;
+        for (Path path : paths) {
+            try {
+                if (Files.isDirectory(path)) {
+                    decodeDirectory(path, renderer);
+                } else {
+                    decode(path, renderer);
+                }
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Failed to decode " + path + ": " + e.getMessage());
+                status = 1;
+            }
+        }
+        try {
+            out.flush();
+        } catch (IOException e) {
+            System.err.println("Failed to write the decoded entries: " + e.getMessage());
+            status = 1;
+        }
+        if (status != 0) {
+            System.exit(status);
+        }
+    }
+
+    private static boolean isEnd(ByteBuffer buffer) {
+        return buffer.remaining() < Integer.BYTES || buffer.getInt(buffer.position()) == 0;
+    }
+
+    private static Entry readEntry(MandateCodec.Reader reader) {
+        long timestampMillis = reader.readLong();
+        WatchLogEvent event = WatchLogEvent.fromCode(reader.readByte());
+        String contextId = reader.readString();
+        String taskId = reader.readString();
+        String subject = reader.readString();
+        byte valueKind = reader.readByte();
+        Object value = switch (valueKind) {
+            case BinaryWatchLogSink.VALUE_NULL -> null;
+            case BinaryWatchLogSink.VALUE_CART_MANDATE -> MandateCodec.readCartMandate(reader);
+            case BinaryWatchLogSink.VALUE_TAGGED -> reader.readValue();
+            default -> throw new IllegalArgumentException("unknown value kind " + valueKind);
+        };
+        return new Entry(timestampMillis, event, contextId, taskId, subject, value);
+    }
+
+    private static String toText(Entry entry) {
+        StringBuilder text = new StringBuilder();
+        TextWatchLogSink.format(text, entry.timestampMillis(), entry.event(), entry.contextId(), entry.taskId(),
+                entry.subject(), entry.value());
+        return text.toString();
+    }
+
+    private static String toJson(Entry entry) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("timestamp", Instant.ofEpochMilli(entry.timestampMillis()).toString());
+        json.put("event", entry.event().name());
+        json.put("context_id", entry.contextId());
+        json.put("task_id", entry.taskId());
+        json.put("subject", entry.subject());
+        json.put("value", entry.value());
+        try {
+            return OBJECT_MAPPER.writeValueAsString(json) + "\n";
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Cannot render entry as JSON: " + e.getMessage(), e);
+        }
+    }
+
+    private static void write(Writer out, String text) {
+        try {
+            out.write(text);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to write the decoded entries: " + e.getMessage(), e);
+        }
+    }
+
+    private WatchLogDecoder() {
+        // Utility class should not be instantiated
+    }
+}
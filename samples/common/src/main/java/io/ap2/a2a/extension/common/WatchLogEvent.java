@@ -0,0 +1,81 @@
+package io.ap2.a2a.extension.common;
+
+/**
+ * The type of a watch log entry.
+ * <p>
+ * The ordinal of an event type is its code in binary watch log segments, so
+ * new event types must be added at the end.
+ */
+public enum WatchLogEvent {
+
+    /**
+     * The A2A extensions activated in a request.
+     */
+    REQUEST_EXTENSIONS("A2A Extensions Activated in the Request"),
+
+    /**
+     * The text parts of a request.
+     */
+    REQUEST_INSTRUCTIONS("Request Instructions"),
+
+    /**
+     * A cart mandate in the data of a request.
+     */
+    CART_MANDATE("A Cart Mandate was in the request Data"),
+
+    /**
+     * An intent mandate in the data of a request.
+     */
+    INTENT_MANDATE("An Intent Mandate was in the request Data"),
+
+    /**
+     * A payment mandate in the data of a request.
+     */
+    PAYMENT_MANDATE("A Payment Mandate was in the request Data"),
+
+    /**
+     * Any other data of a request, with its key as the subject.
+     */
+    DATA_PART("Data Part"),
+
+    /**
+     * The number of entries dropped because the watch log was full.
+     */
+    ENTRIES_DROPPED("Watch log full"),
+
+    /**
+     * The failure of a request, with the reason as the value.
+     */
+    REQUEST_FAILED("Request Failed");
+
+    private static final WatchLogEvent[] VALUES = values();
+
+    private final String title;
+
+    WatchLogEvent(String title) {
+        this.title = title;
+    }
+
+    /**
+     * Returns the title of entries of this type in the text watch log.
+     *
+     * @return the title
+     */
+    public String title() {
+        return title;
+    }
+
+    /**
+     * Returns the event type with a code.
+     *
+     * @param code the code
+     * @return the event type
+     * @throws IllegalArgumentException if no event type has the code
+     */
+    static WatchLogEvent fromCode(int code) {
+        if (code < 0 || code >= VALUES.length) {
+            throw new IllegalArgumentException("Unknown watch log event: " + code);
+        }
+        return VALUES[code];
+    }
+}
@@ -0,0 +1,453 @@
+package io.ap2.a2a.extension.common;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import io.ap2.a2a.extension.spec.AP2Constants;
+import io.ap2.a2a.extension.util.Assert;
+
+import static io.a2a.util.Utils.OBJECT_MAPPER;
+
+/**
+ * What the {@link WatchLog} keeps of the data of a request.
+ * <p>
+ * The data parts of a request are logged per key, and a policy decides:
+ * <ul>
+ * <li>Whether a key is logged for a request, by its sampling rate. The decision
+ *   is derived from the context ID of the request alone, which places the
+ *   context at the same point of the sampling range for every key, so all the
+ *   requests of a context are either logged or not, and a context logged for a
+ *   key is also logged for every key with a higher sampling rate. A request
+ *   without a context ID is placed by its task ID instead, and one with
+ *   neither is logged, so that the decision is the same on every call for the
+ *   same request.</li>
+ * <li>Whether the keys that were not sampled are logged when a request fails.</li>
+ * <li>Which fields of a value are redacted. Fields are selected by paths of
+ *   JSON field names separated by dots, starting at the value of the key, such
+ *   as {@code payment_mandate_contents.payment_response.payer_email}. A
+ *   {@code *} matches any field name, and lists are traversed transparently,
+ *   so a path applies to each of their elements.</li>
+ * <li>How long logged strings and lists may be.</li>
+ * </ul>
+ * The redaction paths of each key are compiled into a trie, and a value is
+ * only traversed along the paths of its key, unless strings or lists are
+ * capped. Values are never modified: the maps and lists on a redacted path
+ * are copied. Values that are not JSON maps and lists, such as records, are
+ * converted to JSON before being redacted, which the {@link WatchLog} leaves
+ * to the writer thread of its {@link AsyncWatchLog}, off the request thread.
+ * <p>
+ * Instances are immutable and thread-safe.
+ */
+public final class WatchLogPolicy {
+
+    /**
+     * The value logged in place of a redacted field.
+     */
+    public static final String REDACTED = "[REDACTED]";
+
+    /**
+     * A policy that logs everything, in full.
+     */
+    public static final WatchLogPolicy LOG_ALL = builder().build();
+
+    /**
+     * A policy that logs every request, and redacts payment credentials and
+     * the contact details of the payer, in full otherwise.
+     */
+    public static final WatchLogPolicy DEFAULT = defaults().build();
+
+    private static final double SAMPLE_SCALE = 1L << 24;
+
+    private final Map<String, Long> sampleThresholds;
+    private final long defaultSampleThreshold;
+    private final boolean alwaysLogFailures;
+    private final Map<String, PathNode> redactions;
+    private final int maxStringLength;
+    private final int maxListSize;
+
+    private WatchLogPolicy(Builder builder) {
+        Map<String, Long> thresholds = new HashMap<>();
+        builder.sampleRates.forEach((key, rate) -> thresholds.put(key, threshold(rate)));
+        this.sampleThresholds = Map.copyOf(thresholds);
+        this.defaultSampleThreshold = threshold(builder.defaultSampleRate);
+        this.alwaysLogFailures = builder.alwaysLogFailures;
+        Map<String, PathNode> compiled = new HashMap<>();
+        builder.redactions.forEach((key, paths) -> compiled.put(key, PathNode.compile(paths)));
+        this.redactions = Map.copyOf(compiled);
+        this.maxStringLength = builder.maxStringLength;
+        this.maxListSize = builder.maxListSize;
+    }
+
+    /**
+     * Creates a new builder for a WatchLogPolicy, which logs everything, in
+     * full, until configured otherwise.
+     *
+     * @return a new builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Creates a new builder for a WatchLogPolicy, configured as the
+     * {@link #DEFAULT} policy.
+     *
+     * @return a new builder
+     */
+    public static Builder defaults() {
+        String[] paymentMandatePaths = {
+            "payment_mandate_contents.payment_response.details.token",
+            "payment_mandate_contents.payment_response.payer_email",
+            "payment_mandate_contents.payment_response.payer_phone",
+            "payment_mandate_contents.payment_response.shipping_address.address_line",
+            "payment_mandate_contents.payment_response.shipping_address.phone_number"
+        };
+        String[] cartMandatePaths = {
+            "contents.payment_request.shipping_address.address_line",
+            "contents.payment_request.shipping_address.phone_number"
+        };
+        return builder()
+                .redact(AP2Constants.PAYMENT_MANDATE_DATA_KEY, paymentMandatePaths)
+                .redact(WatchLog.PAYMENT_MANDATE_DATA_KEY, paymentMandatePaths)
+                .redact(AP2Constants.CART_MANDATE_DATA_KEY, cartMandatePaths)
+                .redact(WatchLog.CART_MANDATE_DATA_KEY, cartMandatePaths)
+                .redact(AP2Constants.CONTACT_ADDRESS_DATA_KEY, "address_line", "phone_number")
+                .redact("shipping_address", "address_line", "phone_number")
+                .redactValue("user_email");
+    }
+
+    /**
+     * Returns whether a key is logged for a request.
+     *
+     * @param key the data key
+     * @param contextId the context ID of the request, or {@code null}
+     * @param taskId the task ID of the request, which decides if it has no context ID, or {@code null}
+     * @return whether the key is logged
+     */
+    public boolean isSampled(String key, String contextId, String taskId) {
+        long threshold = sampleThresholds.getOrDefault(key, defaultSampleThreshold);
+        if (threshold >= (long) SAMPLE_SCALE) {
+            return true;
+        }
+        if (threshold <= 0) {
+            return false;
+        }
+        String requestId = contextId != null ? contextId : taskId;
+        if (requestId == null) {
+            return true;
+        }
+        return (mix(requestId.hashCode()) >>> 40) < threshold;
+    }
+
+    /**
+     * Returns whether the keys that were not sampled are logged when a
+     * request fails.
+     *
+     * @return whether failed requests are logged in full
+     */
+    public boolean isAlwaysLogFailures() {
+        return alwaysLogFailures;
+    }
+
+    /**
+     * Returns the value of a key as it is logged, with its redacted fields
+     * replaced by {@link #REDACTED} and its strings and lists capped.
+     *
+     * @param key the data key
+     * @param value the value, which is not modified
+     * @return the value to log, which is the value itself if nothing was redacted or capped
+     */
+    public Object apply(String key, Object value) {
+        PathNode paths = redactions.get(key);
+        boolean capped = maxStringLength > 0 || maxListSize > 0;
+        if (value == null || (paths == null && !capped)) {
+            return value;
+        }
+        if (paths != null && paths.redact) {
+            return REDACTED;
+        }
+        Object json = value;
+        if (!isJson(value)) {
+            try {
+                json = OBJECT_MAPPER.convertValue(value, Object.class);
+            } catch (IllegalArgumentException e) {
+                // Do not risk logging the fields that should be redacted
+                return paths == null ? value : "<unloggable " + value.getClass().getSimpleName() + ">";
+            }
+        }
+        return apply(json, paths, capped);
+    }
+
+    private Object apply(Object value, PathNode node, boolean capped) {
+        if (node != null && node.redact) {
+            return REDACTED;
+        }
+        if (node == null && !capped) {
+            return value;
+        }
+        if (value instanceof Map<?, ?> map) {
+            Map<Object, Object> copy = null;
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                PathNode child = node == null ? null : node.child(String.valueOf(entry.getKey()));
+                Object logged = apply(entry.getValue(), child, capped);
+                if (logged != entry.getValue()) {
+                    if (copy == null) {
+                        copy = new LinkedHashMap<>(map);
+                    }
+                    copy.put(entry.getKey(), logged);
+                }
+            }
+            return copy == null ? value : copy;
+        }
+        if (value instanceof List<?> list) {
+            int size = maxListSize > 0 ? Math.min(list.size(), maxListSize) : list.size();
+            List<Object> copy = null;
+            for (int i = 0; i < size; i++) {
+                Object element = list.get(i);
+                Object logged = apply(element, node, capped);
+                if (logged != element && copy == null) {
+                    copy = new ArrayList<>(list.subList(0, i));
+                }
+                if (copy != null) {
+                    copy.add(logged);
+                }
+            }
+            if (size < list.size()) {
+                if (copy == null) {
+                    copy = new ArrayList<>(list.subList(0, size));
+                }
+                copy.add("... " + (list.size() - size) + " more");
+            }
+            return copy == null ? value : copy;
+        }
+        if (value instanceof String string && maxStringLength > 0 && string.length() > maxStringLength) {
+            return string.substring(0, maxStringLength) + "... (" + string.length() + " chars)";
+        }
+        return value;
+    }
+
+    private static boolean isJson(Object value) {
+        return value instanceof Map<?, ?> || value instanceof List<?> || value instanceof String
+                || value instanceof Number || value instanceof Boolean;
+    }
+
+    private static long threshold(double rate) {
+        return (long) (rate * SAMPLE_SCALE);
+    }
+
+    private static long mix(long hash) {
+        // The finalizer of MurmurHash3, so that similar context IDs are sampled independently
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    /**
+     * A node of the trie of redaction paths of a key.
+     */
+    private static final class PathNode {
+
+        private final Map<String, PathNode> children = new HashMap<>();
+        private PathNode wildcard;
+        private boolean redact;
+
+        static PathNode compile(Set<String> paths) {
+            PathNode root = new PathNode();
+            for (String path : paths) {
+                PathNode node = root;
+                if (!path.isEmpty()) {
+                    for (String name : path.split("\\.", -1)) {
+                        node = node.add(name);
+                    }
+                }
+                node.redact = true;
+            }
+            root.mergeWildcards();
+            return root;
+        }
+
+        PathNode child(String name) {
+            PathNode child = children.get(name);
+            return child != null ? child : wildcard;
+        }
+
+        private PathNode add(String name) {
+            if ("*".equals(name)) {
+                if (wildcard == null) {
+                    wildcard = new PathNode();
+                }
+                return wildcard;
+            }
+            return children.computeIfAbsent(name, n -> new PathNode());
+        }
+
+        /**
+         * Merges the paths under the wildcard into the named children, so
+         * that looking up a field name only follows a single node.
+         */
+        private void mergeWildcards() {
+            if (wildcard != null) {
+                for (PathNode child : children.values()) {
+                    child.merge(wildcard);
+                }
+                wildcard.mergeWildcards();
+            }
+            for (PathNode child : children.values()) {
+                child.mergeWildcards();
+            }
+        }
+
+        private void merge(PathNode other) {
+            redact |= other.redact;
+            for (Map.Entry<String, PathNode> entry : other.children.entrySet()) {
+                children.computeIfAbsent(entry.getKey(), n -> new PathNode()).merge(entry.getValue());
+            }
+            if (other.wildcard != null) {
+                if (wildcard == null) {
+                    wildcard = new PathNode();
+                }
+                wildcard.merge(other.wildcard);
+            }
+        }
+    }
+
+    /**
+     * Builder for a WatchLogPolicy.
+     */
+    public static final class Builder {
+
+        private final Map<String, Double> sampleRates = new HashMap<>();
+        private final Map<String, Set<String>> redactions = new HashMap<>();
+        private double defaultSampleRate = 1.0;
+        private boolean alwaysLogFailures = true;
+        private int maxStringLength;
+        private int maxListSize;
+
+        private Builder() {
+        }
+
+        /**
+         * Sets the fraction of requests for which a key is logged.
+         *
+         * @param key the data key
+         * @param rate the fraction of requests, between 0 and 1
+         * @return this builder
+         */
+        public Builder sample(String key, double rate) {
+            Assert.checkNotNullParam("key", key);
+            sampleRates.put(key, checkRate(rate));
+            return this;
+        }
+
+        /**
+         * Sets the fraction of requests for which the keys without their own
+         * sampling rate are logged. The default is 1.
+         *
+         * @param rate the fraction of requests, between 0 and 1
+         * @return this builder
+         */
+        public Builder defaultSampleRate(double rate) {
+            defaultSampleRate = checkRate(rate);
+            return this;
+        }
+
+        /**
+         * Sets whether the keys that were not sampled are logged when a
+         * request fails. The default is {@code true}.
+         *
+         * @param alwaysLogFailures whether failed requests are logged in full
+         * @return this builder
+         */
+        public Builder alwaysLogFailures(boolean alwaysLogFailures) {
+            this.alwaysLogFailures = alwaysLogFailures;
+            return this;
+        }
+
+        /**
+         * Redacts fields of the value of a key.
+         *
+         * @param key the data key
+         * @param paths the paths of the fields, as field names separated by dots
+         * @return this builder
+         */
+        public Builder redact(String key, String... paths) {
+            Assert.checkNotNullParam("key", key);
+            Assert.checkNotNullParam("paths", paths);
+            Set<String> keyPaths = redactions.computeIfAbsent(key, k -> new HashSet<>());
+            for (String path : paths) {
+                Assert.checkNotNullParam("path", path);
+                if (path.isEmpty()) {
+                    throw new IllegalArgumentException("Redaction path must not be empty");
+                }
+                keyPaths.add(path);
+            }
+            return this;
+        }
+
+        /**
+         * Redacts the whole value of a key.
+         *
+         * @param key the data key
+         * @return this builder
+         */
+        public Builder redactValue(String key) {
+            Assert.checkNotNullParam("key", key);
+            redactions.computeIfAbsent(key, k -> new HashSet<>()).add("");
+            return this;
+        }
+
+        /**
+         * Sets the number of characters of a string that are logged. The
+         * default is 0, for no limit.
+         *
+         * @param maxStringLength the number of characters, or 0 for no limit
+         * @return this builder
+         */
+        public Builder maxStringLength(int maxStringLength) {
+            if (maxStringLength < 0) {
+                throw new IllegalArgumentException("maxStringLength must not be negative");
+            }
+            this.maxStringLength = maxStringLength;
+            return this;
+        }
+
+        /**
+         * Sets the number of elements of a list that are logged. The default
+         * is 0, for no limit.
+         *
+         * @param maxListSize the number of elements, or 0 for no limit
+         * @return this builder
+         */
+        public Builder maxListSize(int maxListSize) {
+            if (maxListSize < 0) {
+                throw new IllegalArgumentException("maxListSize must not be negative");
+            }
+            this.maxListSize = maxListSize;
+            return this;
+        }
+
+        /**
+         * Builds the policy.
+         *
+         * @return a new WatchLogPolicy
+         */
+        public WatchLogPolicy build() {
+            return new WatchLogPolicy(this);
+        }
+
+        private static double checkRate(double rate) {
+            if (!(rate >= 0 && rate <= 1)) {
+                throw new IllegalArgumentException("Sampling rate must be between 0 and 1: " + rate);
+            }
+            return rate;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package io.ap2.a2a.extension.common;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Where an {@link AsyncWatchLog} writes its entries.
+ * <p>
+ * A sink is only used by the writer thread of its watch log, so it need not
+ * be thread-safe.
+ */
+public interface WatchLogSink extends Closeable {
+
+    /**
+     * Appends an entry.
+     *
+     * @param timestampMillis when the entry was logged, in milliseconds since the epoch
+     * @param event the type of the entry
+     * @param contextId the context ID of the request, or {@code null}
+     * @param taskId the task ID of the request, or {@code null}
+     * @param subject what the entry is about, or {@code null}
+     * @param value the value, or {@code null}
+     * @throws IOException if the entry cannot be written
+     */
+    void append(long timestampMillis, WatchLogEvent event, String contextId, String taskId, String subject,
+                Object value) throws IOException;
+
+    /**
+     * Writes the entries appended so far. It is called after each batch of
+     * entries.
+     *
+     * @throws IOException if the entries cannot be written
+     */
+    void flush() throws IOException;
+}
@@ -0,0 +1,215 @@
+package io.ap2.a2a.extension.common;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.a2a.spec.A2AClientError;
+import io.a2a.spec.AgentCapabilities;
+import io.a2a.spec.AgentCard;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Serves a fetched agent card until it expires, then while it is fetched again
+ * in the background, and fetches it on the request path once it is too stale
+ * or invalidated.
+ */
+class AgentCardCacheTest {
+
+    private static final Duration TTL = Duration.ofMinutes(5);
+    private static final Duration STALE = Duration.ofMinutes(30);
+
+    private final AtomicLong nanoTime = new AtomicLong(1_000_000_000L);
+    private final LinkedBlockingQueue<Object> responses = new LinkedBlockingQueue<>();
+    private final AtomicInteger fetches = new AtomicInteger();
+    private final AgentCardCache cache = new AgentCardCache("http://localhost:8001", this::fetch, TTL, STALE,
+            nanoTime::get);
+
+    @Test
+    void servesAFreshCardWithoutFetchingIt() throws Exception {
+        AgentCard card = card("v1");
+        responses.add(card);
+
+        assertSame(card, cache.get());
+        advance(TTL.minusNanos(1));
+        assertSame(card, cache.get());
+        assertEquals(1, fetches.get());
+    }
+
+    @Test
+    void servesAStaleCardWhileItIsFetchedInTheBackground() throws Exception {
+        AgentCard first = card("v1");
+        AgentCard second = card("v2");
+        responses.add(first);
+        cache.get();
+
+        advance(TTL);
+        responses.add(second);
+        assertSame(first, cache.get());
+        awaitFetches(2);
+        assertSame(second, awaitCard(second));
+    }
+
+    @Test
+    void keepsTheCachedInstanceOfAnUnchangedCard() throws Exception {
+        AgentCard card = card("v1");
+        responses.add(card);
+        cache.get();
+
+        advance(TTL.plus(STALE));
+        responses.add(card("v1"));
+        assertSame(card, cache.get());
+        assertEquals(2, fetches.get());
+        // Fresh again
+        assertSame(card, cache.get());
+        assertEquals(2, fetches.get());
+    }
+
+    @Test
+    void fetchesATooStaleCardOnTheRequestPath() throws Exception {
+        responses.add(card("v1"));
+        cache.get();
+
+        advance(TTL.plus(STALE));
+        AgentCard second = card("v2");
+        responses.add(second);
+        assertSame(second, cache.get());
+        assertEquals(2, fetches.get());
+    }
+
+    @Test
+    void fetchesAnInvalidatedCardAgain() throws Exception {
+        responses.add(card("v1"));
+        cache.get();
+
+        cache.invalidate();
+        AgentCard second = card("v2");
+        responses.add(second);
+        assertSame(second, cache.get());
+        assertEquals(2, fetches.get());
+    }
+
+    @Test
+    void backsOffAfterAFailedRevalidation() throws Exception {
+        AgentCard card = card("v1");
+        responses.add(card);
+        cache.get();
+
+        advance(TTL);
+        responses.add(new A2AClientError("Unavailable"));
+        assertSame(card, cache.get());
+        awaitFetches(2);
+        // Keeps serving the stale card without fetching it until the backoff ends
+        for (int i = 0; i < 10 && fetches.get() == 2; i++) {
+            Thread.sleep(10);
+        }
+        assertSame(card, cache.get());
+        assertEquals(2, fetches.get());
+
+        advance(TTL);
+        AgentCard second = card("v2");
+        responses.add(second);
+        assertSame(card, cache.get());
+        assertSame(second, awaitCard(second));
+        assertEquals(3, fetches.get());
+    }
+
+    @Test
+    void throwsTheErrorOfAFailedFetch() {
+        responses.add(new A2AClientError("Unavailable"));
+
+        A2AClientError e = assertThrows(A2AClientError.class, cache::get);
+        assertEquals("Unavailable", e.getMessage());
+    }
+
+    @Test
+    void sharesOneFetchBetweenConcurrentCallers() throws Exception {
+        int callers = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+        try {
+            CountDownLatch started = new CountDownLatch(callers);
+            List<Future<AgentCard>> futures = new ArrayList<>();
+            for (int i = 0; i < callers; i++) {
+                futures.add(executor.submit(() -> {
+                    started.countDown();
+                    return cache.get();
+                }));
+            }
+            started.await();
+            // Lets the callers pile up behind the first fetch
+            Thread.sleep(50);
+            AgentCard card = card("v1");
+            responses.add(card);
+
+            for (Future<AgentCard> future : futures) {
+                assertSame(card, future.get(5, TimeUnit.SECONDS));
+            }
+            assertEquals(1, fetches.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Fetches the next response, waiting for the test to provide it.
+     */
+    private AgentCard fetch() throws A2AClientError {
+        fetches.incrementAndGet();
+        Object response;
+        try {
+            response = responses.poll(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new A2AClientError("Interrupted", e);
+        }
+        if (response instanceof A2AClientError error) {
+            throw error;
+        }
+        return (AgentCard) response;
+    }
+
+    private void advance(Duration duration) {
+        nanoTime.addAndGet(duration.toNanos());
+    }
+
+    private void awaitFetches(int count) throws InterruptedException {
+        for (int i = 0; i < 500 && fetches.get() < count; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(count, fetches.get());
+    }
+
+    private AgentCard awaitCard(AgentCard expected) throws Exception {
+        AgentCard card = cache.get();
+        for (int i = 0; i < 500 && card != expected; i++) {
+            Thread.sleep(10);
+            card = cache.get();
+        }
+        return card;
+    }
+
+    private static AgentCard card(String version) {
+        return new AgentCard.Builder()
+                .name("merchant_agent")
+                .description("A merchant agent.")
+                .url("http://localhost:8001/a2a/merchant_agent/" + version)
+                .version(version)
+                .capabilities(new AgentCapabilities.Builder().extensions(List.of()).build())
+                .defaultInputModes(List.of("text/plain"))
+                .defaultOutputModes(List.of("application/json"))
+                .skills(List.of())
+                .build();
+    }
+}
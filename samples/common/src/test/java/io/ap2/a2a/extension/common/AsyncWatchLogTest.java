@@ -0,0 +1,213 @@
+package io.ap2.a2a.extension.common;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Writes the entries logged by concurrent producers to the sink in the order
+ * each producer logged them, dropping or waiting when the ring buffer is full.
+ */
+class AsyncWatchLogTest {
+
+    private static final int PRODUCERS = 4;
+    private static final int ENTRIES_PER_PRODUCER = 2000;
+
+    @Test
+    void writesTheEntriesOfEachProducerInOrderAndCountsTheDroppedOnes() throws Exception {
+        RecordingSink sink = new RecordingSink(0);
+        AsyncWatchLog log = new AsyncWatchLog(sink, 16, AsyncWatchLog.OverflowPolicy.DROP);
+        int logged = produce(log);
+        log.close();
+
+        List<List<Integer>> values = valuesByProducer(sink);
+        for (List<Integer> producerValues : values) {
+            for (int i = 1; i < producerValues.size(); i++) {
+                assertTrue(producerValues.get(i - 1) < producerValues.get(i), producerValues.toString());
+            }
+        }
+        assertEquals(logged, values.stream().mapToInt(List::size).sum());
+        assertEquals(PRODUCERS * ENTRIES_PER_PRODUCER - logged, log.getDroppedCount());
+        assertEquals(log.getDroppedCount(), sink.droppedCount());
+        assertTrue(sink.closed);
+    }
+
+    @Test
+    void countsTheEntriesDroppedWhileTheWriterIsBusy() {
+        CountDownLatch appending = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingSink sink = new RecordingSink(0) {
+            @Override
+            public void append(long timestampMillis, WatchLogEvent event, String contextId, String taskId,
+                               String subject, Object value) {
+                appending.countDown();
+                await(release);
+                super.append(timestampMillis, event, contextId, taskId, subject, value);
+            }
+        };
+        AsyncWatchLog log = new AsyncWatchLog(sink, 4, AsyncWatchLog.OverflowPolicy.DROP);
+
+        assertTrue(log.log(WatchLogEvent.DATA_PART, null, null, "0", 0));
+        await(appending);
+        // The writer holds the first slot until it appended its entry
+        for (int i = 1; i < 4; i++) {
+            assertTrue(log.log(WatchLogEvent.DATA_PART, null, null, "0", i));
+        }
+        for (int i = 4; i < 9; i++) {
+            assertFalse(log.log(WatchLogEvent.DATA_PART, null, null, "0", i));
+        }
+        assertEquals(5, log.getDroppedCount());
+
+        release.countDown();
+        log.close();
+        assertEquals(List.of(List.of(0, 1, 2, 3)), valuesByProducer(sink, 1));
+        assertEquals(5, sink.droppedCount());
+    }
+
+    @Test
+    void blocksTheProducersUntilASlowWriterFreesASlot() throws Exception {
+        RecordingSink sink = new RecordingSink(TimeUnit.MICROSECONDS.toNanos(20));
+        AsyncWatchLog log = new AsyncWatchLog(sink, 8, AsyncWatchLog.OverflowPolicy.BLOCK);
+        assertEquals(PRODUCERS * ENTRIES_PER_PRODUCER, produce(log));
+        log.close();
+
+        for (List<Integer> producerValues : valuesByProducer(sink)) {
+            assertEquals(ENTRIES_PER_PRODUCER, producerValues.size());
+            for (int i = 0; i < producerValues.size(); i++) {
+                assertEquals(i, producerValues.get(i));
+            }
+        }
+        assertEquals(0, log.getDroppedCount());
+        assertEquals(0, sink.droppedCount());
+    }
+
+    @Test
+    void writesTheLoggedEntriesWhenClosed() {
+        RecordingSink sink = new RecordingSink(0);
+        AsyncWatchLog log = new AsyncWatchLog(sink, 1024, AsyncWatchLog.OverflowPolicy.DROP);
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(log.log(WatchLogEvent.DATA_PART, null, null, "0", i));
+        }
+        log.close();
+
+        assertEquals(1000, valuesByProducer(sink, 1).get(0).size());
+        assertTrue(sink.closed);
+        assertTrue(log.isClosed());
+        assertFalse(log.log(WatchLogEvent.DATA_PART, null, null, "0", 1000));
+        assertEquals(1000, sink.entries.size());
+    }
+
+    /**
+     * Logs {@link #ENTRIES_PER_PRODUCER} entries from each of {@link #PRODUCERS}
+     * threads, with the producer as subject and a sequence number as value, and
+     * returns how many of them were logged.
+     */
+    private static int produce(AsyncWatchLog log) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(PRODUCERS);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Integer>> futures = new ArrayList<>();
+            for (int p = 0; p < PRODUCERS; p++) {
+                String producer = String.valueOf(p);
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    int logged = 0;
+                    for (int i = 0; i < ENTRIES_PER_PRODUCER; i++) {
+                        if (log.log(WatchLogEvent.DATA_PART, null, null, producer, i)) {
+                            logged++;
+                        }
+                    }
+                    return logged;
+                }));
+            }
+            start.countDown();
+            int logged = 0;
+            for (Future<Integer> future : futures) {
+                logged += future.get();
+            }
+            return logged;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static List<List<Integer>> valuesByProducer(RecordingSink sink) {
+        return valuesByProducer(sink, PRODUCERS);
+    }
+
+    private static List<List<Integer>> valuesByProducer(RecordingSink sink, int producers) {
+        List<List<Integer>> values = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            values.add(new ArrayList<>());
+        }
+        for (Entry entry : sink.entries) {
+            if (entry.event() == WatchLogEvent.DATA_PART) {
+                values.get(Integer.parseInt(entry.subject())).add((Integer) entry.value());
+            }
+        }
+        return values;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private record Entry(WatchLogEvent event, String subject, Object value) {
+    }
+
+    /**
+     * Records the appended entries in memory, taking a while to append each if asked to.
+     */
+    private static class RecordingSink implements WatchLogSink {
+
+        private final long appendNanos;
+        // Only appended to by the writer thread, and read once it stopped
+        private final List<Entry> entries = new ArrayList<>();
+        private volatile boolean closed;
+
+        private RecordingSink(long appendNanos) {
+            this.appendNanos = appendNanos;
+        }
+
+        @Override
+        public void append(long timestampMillis, WatchLogEvent event, String contextId, String taskId,
+                           String subject, Object value) {
+            if (appendNanos > 0) {
+                LockSupport.parkNanos(appendNanos);
+            }
+            entries.add(new Entry(event, subject, value));
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+
+        private long droppedCount() {
+            return entries.stream()
+                    .filter(entry -> entry.event() == WatchLogEvent.ENTRIES_DROPPED)
+                    .mapToLong(entry -> (Long) entry.value())
+                    .sum();
+        }
+    }
+}
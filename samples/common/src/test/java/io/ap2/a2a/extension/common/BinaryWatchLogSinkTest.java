@@ -0,0 +1,140 @@
+package io.ap2.a2a.extension.common;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import io.ap2.a2a.extension.spec.CartContents;
+import io.ap2.a2a.extension.spec.CartMandate;
+import io.ap2.a2a.extension.spec.PaymentCurrencyAmount;
+import io.ap2.a2a.extension.spec.PaymentDetailsInit;
+import io.ap2.a2a.extension.spec.PaymentDetailsModifier;
+import io.ap2.a2a.extension.spec.PaymentItem;
+import io.ap2.a2a.extension.spec.PaymentMethodData;
+import io.ap2.a2a.extension.spec.PaymentRequest;
+import io.ap2.a2a.extension.spec.PaymentShippingOption;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Writes watch log entries to binary segments, and decodes them back.
+ */
+class BinaryWatchLogSinkTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void decodesTheEntriesThatWereWritten() throws IOException {
+        writeEntries(3);
+
+        List<WatchLogDecoder.Entry> entries = decode();
+
+        assertEquals(3, entries.size());
+        WatchLogDecoder.Entry entry = entries.get(2);
+        assertEquals(2000L, entry.timestampMillis());
+        assertEquals(WatchLogEvent.DATA_PART, entry.event());
+        assertEquals("context_2", entry.contextId());
+        assertEquals("task_2", entry.taskId());
+        assertEquals("subject_2", entry.subject());
+        assertEquals(Map.of("index", 2), entry.value());
+    }
+
+    @Test
+    void decodesACartMandateWithNullElements() throws IOException {
+        PaymentItem total = new PaymentItem("Total", new PaymentCurrencyAmount("USD", 12.5), null, null);
+        PaymentDetailsInit details = new PaymentDetailsInit("order_1", Arrays.asList(total, null),
+                Arrays.asList(null, new PaymentShippingOption("standard", "Standard",
+                        new PaymentCurrencyAmount("USD", 0.0), true)),
+                Arrays.asList((PaymentDetailsModifier) null), total);
+        CartMandate cartMandate = new CartMandate(new CartContents("cart_1", false,
+                new PaymentRequest(Arrays.asList(null, new PaymentMethodData("CARD", null)), details, null, null),
+                "2026-01-01T00:00:00Z", "Merchant"), null);
+
+        try (BinaryWatchLogSink sink = new BinaryWatchLogSink(directory, BinaryWatchLogSink.DEFAULT_SEGMENT_SIZE,
+                BinaryWatchLogSink.DEFAULT_MAX_SEGMENTS)) {
+            sink.append(0L, WatchLogEvent.CART_MANDATE, "context_0", "task_0", "subject_0", cartMandate);
+        }
+
+        assertEquals(cartMandate, decode().get(0).value());
+    }
+
+    @Test
+    void endsTheSegmentAtALastRecordThatIsCutOff() throws IOException {
+        List<Integer> records = writeEntries(3);
+
+        // A length written, and persisted, before the body of the record
+        try (FileChannel channel = segmentChannel()) {
+            int last = records.get(2);
+            channel.write(ByteBuffer.allocate(bodyLength(channel, last)), last + Integer.BYTES);
+        }
+        assertEquals(2, decode().size());
+
+        // A length larger than the rest of the segment
+        try (FileChannel channel = segmentChannel()) {
+            channel.write(ByteBuffer.allocate(Integer.BYTES).putInt(0, Integer.MAX_VALUE), records.get(2));
+        }
+        assertEquals(2, decode().size());
+    }
+
+    @Test
+    void rejectsAnInvalidRecordBeforeOtherRecords() throws IOException {
+        List<Integer> records = writeEntries(3);
+
+        try (FileChannel channel = segmentChannel()) {
+            int middle = records.get(1);
+            channel.write(ByteBuffer.allocate(bodyLength(channel, middle)), middle + Integer.BYTES);
+        }
+
+        assertThrows(IllegalArgumentException.class, this::decode);
+    }
+
+    /**
+     * Writes entries to a single segment, and returns the offsets of their records.
+     */
+    private List<Integer> writeEntries(int count) throws IOException {
+        List<Integer> records = new ArrayList<>();
+        int offset = BinaryWatchLogSink.HEADER_SIZE;
+        try (BinaryWatchLogSink sink = new BinaryWatchLogSink(directory, BinaryWatchLogSink.DEFAULT_SEGMENT_SIZE,
+                BinaryWatchLogSink.DEFAULT_MAX_SEGMENTS)) {
+            for (int i = 0; i < count; i++) {
+                sink.append(i * 1000L, WatchLogEvent.DATA_PART, "context_" + i, "task_" + i, "subject_" + i,
+                        Map.of("index", i));
+            }
+        }
+        try (FileChannel channel = segmentChannel()) {
+            for (int i = 0; i < count; i++) {
+                records.add(offset);
+                offset += Integer.BYTES + bodyLength(channel, offset);
+            }
+        }
+        return records;
+    }
+
+    private List<WatchLogDecoder.Entry> decode() throws IOException {
+        List<WatchLogDecoder.Entry> entries = new ArrayList<>();
+        WatchLogDecoder.decodeDirectory(directory, entries::add);
+        return entries;
+    }
+
+    private FileChannel segmentChannel() throws IOException {
+        List<Path> segments = BinaryWatchLogSink.listSegments(directory);
+        assertEquals(1, segments.size());
+        return FileChannel.open(segments.get(0), StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    private static int bodyLength(FileChannel channel, int record) throws IOException {
+        ByteBuffer length = ByteBuffer.allocate(Integer.BYTES);
+        channel.read(length, record);
+        return length.getInt(0);
+    }
+}
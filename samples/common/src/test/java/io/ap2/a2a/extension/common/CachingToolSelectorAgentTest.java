@@ -0,0 +1,113 @@
+package io.ap2.a2a.extension.common;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Answers repeated tool selections from the cache, and invalidates them.
+ */
+class CachingToolSelectorAgentTest {
+
+    private static final Set<String> TOOL_NAMES = Set.of("findItems", "updateCart");
+
+    private final List<String> prompts = new ArrayList<>();
+
+    private final ToolSelectorAgent agent = prompt -> {
+        prompts.add(prompt);
+        return prompt.contains("cart") ? "updateCart" : "findItems";
+    };
+
+    @Test
+    void answersTheSamePromptAndDataKeysFromTheCache() {
+        CachingToolSelectorAgent cachingAgent = new CachingToolSelectorAgent("merchant", agent,
+                new ToolSelectionCache(10, Duration.ofMinutes(1)), TOOL_NAMES);
+
+        assertEquals("findItems", cachingAgent.selectTool("Find red shoes", Set.of("intent", "risk")));
+        // The prompt is normalized, and the data keys are a set
+        assertEquals("findItems", cachingAgent.selectTool("  find RED shoes!", Set.of("risk", "intent")));
+        assertEquals("updateCart", cachingAgent.selectTool("Update the cart", Set.of("cart_id")));
+
+        assertEquals(List.of("Find red shoes", "Update the cart"), prompts);
+        assertEquals(1, cachingAgent.getHitCount());
+        assertEquals(2, cachingAgent.getMissCount());
+    }
+
+    @Test
+    void keysSelectionsByDataKeysAndNamespace() {
+        ToolSelectionCache cache = new ToolSelectionCache(10, Duration.ofMinutes(1));
+        CachingToolSelectorAgent merchant = new CachingToolSelectorAgent("merchant", agent, cache, TOOL_NAMES);
+        CachingToolSelectorAgent processor = new CachingToolSelectorAgent("processor", agent, cache, TOOL_NAMES);
+
+        merchant.selectTool("Find red shoes", Set.of("intent"));
+        merchant.selectTool("Find red shoes", Set.of("intent", "cart_id"));
+        merchant.selectTool("Find red shoes", Set.of());
+        processor.selectTool("Find red shoes", Set.of("intent"));
+
+        assertEquals(4, prompts.size());
+        assertEquals(4, cache.size());
+        // Without data keys, as a plain ToolSelectorAgent is asked
+        merchant.selectTool("Find red shoes");
+        assertEquals(1, merchant.getHitCount());
+    }
+
+    @Test
+    void doesNotCacheUnknownTools() {
+        List<String> answers = new ArrayList<>(List.of("Tool: findItems", " findItems\n", "findItems"));
+        CachingToolSelectorAgent cachingAgent = new CachingToolSelectorAgent("merchant", prompt -> answers.remove(0),
+                new ToolSelectionCache(10, Duration.ofMinutes(1)), TOOL_NAMES);
+
+        assertEquals("Tool: findItems", cachingAgent.selectTool("Find red shoes", Set.of()));
+        // A valid answer is cached stripped
+        assertEquals(" findItems\n", cachingAgent.selectTool("Find red shoes", Set.of()));
+        assertEquals("findItems", cachingAgent.selectTool("Find red shoes", Set.of()));
+
+        assertEquals(2, cachingAgent.getMissCount());
+        assertEquals(1, cachingAgent.getHitCount());
+    }
+
+    @Test
+    void selectsAgainOnceInvalidated() throws InterruptedException {
+        ToolSelectionCache cache = new ToolSelectionCache(10, Duration.ofMinutes(1));
+        CachingToolSelectorAgent cachingAgent = new CachingToolSelectorAgent("merchant", agent, cache, TOOL_NAMES);
+
+        cachingAgent.selectTool("Find red shoes", Set.of());
+        cache.clear();
+        cachingAgent.selectTool("Find red shoes", Set.of());
+        assertEquals(2, prompts.size());
+
+        ToolSelectionCache shortLived = new ToolSelectionCache(10, Duration.ofMillis(1));
+        CachingToolSelectorAgent expiring = new CachingToolSelectorAgent("merchant", agent, shortLived, TOOL_NAMES);
+        expiring.selectTool("Find red shoes", Set.of());
+        Thread.sleep(5);
+        expiring.selectTool("Find red shoes", Set.of());
+        assertEquals(4, prompts.size());
+        assertEquals(0, expiring.getHitCount());
+    }
+
+    @Test
+    void evictsTheLeastRecentlyUsedSelection() {
+        ToolSelectionCache cache = new ToolSelectionCache(2, Duration.ofMinutes(1));
+        CachingToolSelectorAgent cachingAgent = new CachingToolSelectorAgent("merchant", agent, cache, TOOL_NAMES);
+
+        cachingAgent.selectTool("Find red shoes", Set.of());
+        cachingAgent.selectTool("Update the cart", Set.of());
+        cachingAgent.selectTool("Find red shoes", Set.of());
+        cachingAgent.selectTool("Find a hat", Set.of());
+        cachingAgent.selectTool("Update the cart", Set.of());
+
+        assertEquals(List.of("Find red shoes", "Update the cart", "Find a hat", "Update the cart"), prompts);
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    void ignoresTheDataKeysOfAPlainAgent() {
+        assertEquals("updateCart", agent.selectTool("Update the cart", Set.of("cart_id")));
+        assertEquals(List.of("Update the cart"), prompts);
+    }
+}
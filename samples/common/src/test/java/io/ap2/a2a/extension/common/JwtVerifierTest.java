@@ -0,0 +1,173 @@
+package io.ap2.a2a.extension.common;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.security.KeyPair;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Map;
+
+import io.ap2.a2a.extension.spec.AP2Exception;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Verifies the signatures, times and token IDs of JSON Web Tokens.
+ */
+class JwtVerifierTest {
+
+    private static final Instant NOW = Instant.parse("2026-01-01T00:00:00Z");
+
+    private final MutableClock clock = new MutableClock(NOW);
+
+    @Test
+    void verifiesAnEs256TokenOfARegisteredKey() {
+        verifiesATokenOfARegisteredKey(JwsAlgorithm.ES256);
+    }
+
+    @Test
+    void verifiesAnEdDsaTokenOfARegisteredKey() {
+        verifiesATokenOfARegisteredKey(JwsAlgorithm.EdDSA);
+    }
+
+    private void verifiesATokenOfARegisteredKey(JwsAlgorithm algorithm) {
+        KeyPair keyPair = algorithm.generateKeyPair();
+        JwtSigner signer = new JwtSigner("device", keyPair.getPrivate());
+        JwtKeys keys = new JwtKeys();
+        keys.register("device", keyPair.getPublic());
+        JwtVerifier verifier = JwtVerifier.builder().keys(keys).clock(clock).build();
+
+        VerifiedJwt verified = verifier.verify(signer.sign(claims("jti_1", NOW.plusSeconds(300))));
+
+        assertEquals("device", verified.kid());
+        assertEquals(algorithm, verified.algorithm());
+        assertEquals("jti_1", verified.stringClaim("jti"));
+
+        // A token signed by another key of the same key ID is rejected
+        JwtSigner forger = new JwtSigner("device", algorithm.generateKeyPair().getPrivate());
+        assertThrows(AP2Exception.class, () -> verifier.verify(forger.sign(claims("jti_2", NOW.plusSeconds(300)))));
+    }
+
+    @Test
+    void rejectsATamperedPayload() {
+        JwtSigner signer = JwtSigner.generate(JwsAlgorithm.ES256);
+        JwtVerifier verifier = JwtVerifier.builder().allowEmbeddedKeys(true).clock(clock).build();
+        String token = signer.sign(claims("jti_1", NOW.plusSeconds(300)));
+        String otherToken = signer.sign(claims("jti_2", NOW.plusSeconds(300)));
+
+        String[] segments = token.split("\\.");
+        String tampered = segments[0] + "." + otherToken.split("\\.")[1] + "." + segments[2];
+
+        assertThrows(AP2Exception.class, () -> verifier.verify(tampered));
+    }
+
+    @Test
+    void rejectsAnEmbeddedKeyUnlessAllowed() {
+        JwtSigner signer = JwtSigner.generate(JwsAlgorithm.EdDSA);
+        String token = signer.sign(claims("jti_1", NOW.plusSeconds(300)));
+
+        JwtVerifier verifier = JwtVerifier.builder().clock(clock).build();
+        assertThrows(AP2Exception.class, () -> verifier.verify(token));
+
+        JwtVerifier embeddedKeyVerifier = JwtVerifier.builder().allowEmbeddedKeys(true).clock(clock).build();
+        assertEquals(signer.kid(), embeddedKeyVerifier.verify(token).kid());
+    }
+
+    @Test
+    void rejectsAnExpiredToken() {
+        KeyPair keyPair = JwsAlgorithm.ES256.generateKeyPair();
+        JwtSigner signer = new JwtSigner("device", keyPair.getPrivate());
+        JwtKeys keys = new JwtKeys();
+        keys.register("device", keyPair.getPublic());
+        JwtVerifier verifier = JwtVerifier.builder()
+                .keys(keys)
+                .clockSkew(Duration.ofSeconds(30))
+                .clock(clock)
+                .build();
+
+        // Expired, but within the clock skew
+        verifier.verify(signer.sign(claims("jti_1", NOW.minusSeconds(10))));
+        assertThrows(AP2Exception.class, () -> verifier.verify(signer.sign(claims("jti_2", NOW.minusSeconds(30)))));
+        assertThrows(AP2Exception.class, () -> verifier.verify(signer.sign(Map.of("jti", "jti_3"))));
+    }
+
+    @Test
+    void rejectsACachedTokenOnceItExpires() {
+        JwtSigner signer = JwtSigner.generate(JwsAlgorithm.ES256);
+        JwtVerifier verifier = JwtVerifier.builder()
+                .allowEmbeddedKeys(true)
+                .cacheVerifiedTokens(VerifiedTokenCache.DEFAULT_MAX_ENTRIES)
+                .clockSkew(Duration.ZERO)
+                .clock(clock)
+                .build();
+        String token = signer.sign(claims("jti_1", NOW.plusSeconds(60)));
+
+        verifier.verify(token);
+        verifier.verify(token);
+
+        clock.instant = NOW.plusSeconds(60);
+        assertThrows(AP2Exception.class, () -> verifier.verify(token));
+    }
+
+    @Test
+    void rejectsATokenReplayedInAnotherContext() {
+        rejectsATokenReplayedInAnotherContext(0);
+    }
+
+    @Test
+    void rejectsACachedTokenReplayedInAnotherContext() {
+        rejectsATokenReplayedInAnotherContext(VerifiedTokenCache.DEFAULT_MAX_ENTRIES);
+    }
+
+    private void rejectsATokenReplayedInAnotherContext(int maxVerifiedTokens) {
+        JwtSigner signer = JwtSigner.generate(JwsAlgorithm.EdDSA);
+        JwtVerifier verifier = JwtVerifier.builder()
+                .allowEmbeddedKeys(true)
+                .replayCache(new JtiReplayCache())
+                .cacheVerifiedTokens(maxVerifiedTokens)
+                .clock(clock)
+                .build();
+        String token = signer.sign(claims("jti_1", NOW.plusSeconds(300)));
+
+        // Presented again in the same context, the token is served by the cache if enabled
+        verifier.verify(token, "context_1");
+        verifier.verify(token, "context_1");
+        assertThrows(AP2Exception.class, () -> verifier.verify(token, "context_2"));
+        assertThrows(AP2Exception.class, () -> verifier.verify(token));
+
+        // A token without a token ID cannot be checked for replays
+        String tokenWithoutJti = signer.sign(Map.of("exp", NOW.plusSeconds(300).getEpochSecond()));
+        assertThrows(AP2Exception.class, () -> verifier.verify(tokenWithoutJti, "context_1"));
+    }
+
+    private static Map<String, Object> claims(String jti, Instant expiresAt) {
+        return Map.of("jti", jti, "iat", NOW.getEpochSecond(), "exp", expiresAt.getEpochSecond());
+    }
+
+    private static final class MutableClock extends Clock {
+
+        private volatile Instant instant;
+
+        private MutableClock(Instant instant) {
+            this.instant = instant;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package io.ap2.a2a.extension.common;
+
+import static io.ap2.a2a.extension.spec.AP2Constants.CART_MANDATE_DATA_KEY;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.security.KeyPair;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.a2a.spec.DataPart;
+import io.ap2.a2a.extension.spec.CartContents;
+import io.ap2.a2a.extension.spec.CartMandate;
+import io.ap2.a2a.extension.spec.PaymentCurrencyAmount;
+import io.ap2.a2a.extension.spec.PaymentDetailsInit;
+import io.ap2.a2a.extension.spec.PaymentItem;
+import io.ap2.a2a.extension.spec.PaymentRequest;
+import io.ap2.a2a.extension.util.MandateHashes;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Verifies each distinct JWT of a message once, in parallel, and fails with
+ * the first failure in the order of the mandates.
+ */
+class MandateVerifierTest {
+
+    private static final KeyPair MERCHANT_KEY_PAIR = JwsAlgorithm.ES256.generateKeyPair();
+    private static final JwtSigner MERCHANT_SIGNER = new JwtSigner("merchant", MERCHANT_KEY_PAIR.getPrivate());
+
+    @BeforeAll
+    static void registerTheMerchantKey() {
+        JwtKeys keys = new JwtKeys();
+        keys.register("merchant", MERCHANT_KEY_PAIR.getPublic());
+        Validation.configure(new JwtKeys(), keys, false);
+    }
+
+    @Test
+    void verifiesEachDistinctJwtInParallel() {
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+        AtomicInteger submitted = new AtomicInteger();
+        Executor executor = task -> {
+            submitted.incrementAndGet();
+            new Thread(() -> {
+                threads.add(Thread.currentThread().getName());
+                task.run();
+            }).start();
+        };
+        List<CartMandate> cartMandates = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            cartMandates.add(cartMandate("cart_" + i));
+        }
+        // Carries the JWT of the first mandate, which is verified once
+        cartMandates.add(cartMandates.get(0));
+
+        assertEquals(6, new MandateVerifier(executor).verify(dataParts(cartMandates), "context_1"));
+        // The first JWT is verified on the calling thread
+        assertEquals(4, submitted.get());
+        assertEquals(4, threads.size());
+        assertFalse(threads.contains(Thread.currentThread().getName()));
+    }
+
+    @Test
+    void verifiesNothingWithoutMandates() {
+        Executor executor = task -> {
+            throw new AssertionError("No JWT to verify");
+        };
+
+        assertEquals(0, new MandateVerifier(executor).verify(List.of(new DataPart(Map.of("risk_data", "data"))),
+                "context_1"));
+    }
+
+    @Test
+    void failsWithTheFirstFailureInTheOrderOfTheMandates() {
+        // Runs later JWTs sooner, so the failures complete in the reverse order of the mandates
+        AtomicInteger submitted = new AtomicInteger();
+        Executor executor = task -> {
+            long delayMillis = 200 - 50L * submitted.getAndIncrement();
+            new Thread(() -> {
+                sleep(delayMillis);
+                task.run();
+            }).start();
+        };
+        CartMandate valid = cartMandate("cart_1");
+        CartMandate tampered = new CartMandate(cartMandate("cart_2").contents(), valid.merchantAuthorization() + "x");
+        CartMandate unsigned = new CartMandate(cartMandate("cart_3").contents(), null);
+        CartMandate mismatched = new CartMandate(cartMandate("cart_4").contents(),
+                cartMandate("cart_5").merchantAuthorization());
+        MandateVerifier verifier = new MandateVerifier(executor);
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> verifier.verify(dataParts(List.of(valid, tampered, unsigned, mismatched)), "context_1"));
+        assertTrue(e.getMessage().startsWith("Invalid merchant authorization"), e.getMessage());
+
+        // A failure on the calling thread comes first
+        e = assertThrows(IllegalArgumentException.class,
+                () -> verifier.verify(dataParts(List.of(mismatched, valid, unsigned)), "context_1"));
+        assertEquals("Merchant authorization does not match the CartMandate contents.", e.getMessage());
+    }
+
+    @Test
+    void verifiesTheJwtsThatTheExecutorRejectsOnTheCallingThread() {
+        Executor executor = task -> {
+            throw new RejectedExecutionException();
+        };
+        MandateVerifier verifier = new MandateVerifier(executor);
+
+        assertEquals(3, verifier.verify(dataParts(List.of(cartMandate("cart_1"), cartMandate("cart_2"),
+                cartMandate("cart_3"))), "context_1"));
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> verifier.verify(dataParts(List.of(cartMandate("cart_1"),
+                        new CartMandate(cartMandate("cart_2").contents(), null))), "context_1"));
+        assertEquals("Merchant authorization not found in CartMandate.", e.getMessage());
+    }
+
+    @Test
+    void keepsVerifyingOnceItsPoolIsClosed() {
+        MandateVerifier verifier = new MandateVerifier(2, 1);
+        List<CartMandate> cartMandates = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            cartMandates.add(cartMandate("cart_" + i));
+        }
+
+        // More JWTs than the pool and its queue hold
+        assertEquals(10, verifier.verify(dataParts(cartMandates), "context_1"));
+        verifier.close();
+        assertEquals(10, verifier.verify(dataParts(cartMandates), "context_1"));
+    }
+
+    private static List<DataPart> dataParts(List<CartMandate> cartMandates) {
+        List<DataPart> dataParts = new ArrayList<>();
+        for (CartMandate cartMandate : cartMandates) {
+            dataParts.add(new DataPart(Map.of(CART_MANDATE_DATA_KEY, cartMandate)));
+        }
+        return dataParts;
+    }
+
+    private static CartMandate cartMandate(String id) {
+        PaymentItem total = new PaymentItem("Total", new PaymentCurrencyAmount("USD", 120.0), false, 30);
+        PaymentDetailsInit details = new PaymentDetailsInit("order_" + id, List.of(total), null, null, total);
+        CartContents contents = new CartContents(id, false, new PaymentRequest(List.of(), details, null, null),
+                "2099-01-01T00:00:00Z", "Merchant");
+        Instant now = Instant.now();
+        String jwt = MERCHANT_SIGNER.sign(Map.of(
+                "iss", "Merchant",
+                "iat", now.getEpochSecond(),
+                "exp", now.plusSeconds(300).getEpochSecond(),
+                "jti", id,
+                "cart_hash", MandateHashes.cartHash(contents)));
+        return new CartMandate(contents, jwt);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(Math.max(0, millis));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
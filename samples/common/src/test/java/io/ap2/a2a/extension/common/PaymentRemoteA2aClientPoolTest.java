@@ -0,0 +1,118 @@
+package io.ap2.a2a.extension.common;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Shares one client per remote agent, and closes the clients it evicts but
+ * never one it hands out.
+ */
+class PaymentRemoteA2aClientPoolTest {
+
+    private static final Duration IDLE_TIMEOUT = Duration.ofMinutes(10);
+    private static final Set<String> EXTENSIONS = Set.of("https://github.com/google-agentic-commerce/ap2/v1");
+
+    private final AtomicLong nanoTime = new AtomicLong(1_000_000_000L);
+    private final PaymentRemoteA2aClientPool pool = new PaymentRemoteA2aClientPool(IDLE_TIMEOUT,
+            ClosableClient::new, nanoTime::get);
+
+    @Test
+    void sharesOneClientPerBaseUrlAndExtensions() {
+        PaymentRemoteA2aClient client = pool.getClient("merchant", "http://localhost:8001", EXTENSIONS);
+
+        assertSame(client, pool.getClient("other", "http://localhost:8001", Set.copyOf(EXTENSIONS)));
+        assertNotSame(client, pool.getClient("merchant", "http://localhost:8001", null));
+        assertNotSame(client, pool.getClient("merchant", "http://localhost:8002", EXTENSIONS));
+        assertEquals(3, pool.size());
+    }
+
+    @Test
+    void closesTheClientsItEvicts() {
+        ClosableClient idle = (ClosableClient) pool.getClient("merchant", "http://localhost:8001", EXTENSIONS);
+        advance(IDLE_TIMEOUT.dividedBy(2));
+        ClosableClient used = (ClosableClient) pool.getClient("processor", "http://localhost:8003", EXTENSIONS);
+
+        advance(IDLE_TIMEOUT.dividedBy(2).plusNanos(1));
+        pool.getClient("processor", "http://localhost:8003", EXTENSIONS);
+        assertTrue(idle.closed);
+        assertFalse(used.closed);
+        assertEquals(1, pool.size());
+
+        // Replaced by a new client
+        ClosableClient replacement = (ClosableClient) pool.getClient("merchant", "http://localhost:8001",
+                EXTENSIONS);
+        assertNotSame(idle, replacement);
+        assertFalse(replacement.closed);
+    }
+
+    @Test
+    void neverHandsOutAClientItEvicts() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            for (int i = 0; i < 100; i++) {
+                pool.getClient("merchant", "http://localhost:8001", EXTENSIONS);
+                advance(IDLE_TIMEOUT.plusNanos(1));
+
+                // Races a request for the idle client with an eviction run by a request for another one
+                CountDownLatch start = new CountDownLatch(1);
+                Future<PaymentRemoteA2aClient> idle = executor.submit(() -> {
+                    start.await();
+                    return pool.getClient("merchant", "http://localhost:8001", EXTENSIONS);
+                });
+                Future<PaymentRemoteA2aClient> other = executor.submit(() -> {
+                    start.await();
+                    return pool.getClient("processor", "http://localhost:8003", EXTENSIONS);
+                });
+                start.countDown();
+
+                assertFalse(((ClosableClient) idle.get()).closed);
+                assertFalse(((ClosableClient) other.get()).closed);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void closesEveryClientItClears() {
+        ClosableClient first = (ClosableClient) pool.getClient("merchant", "http://localhost:8001", EXTENSIONS);
+        ClosableClient second = (ClosableClient) pool.getClient("processor", "http://localhost:8003", EXTENSIONS);
+
+        pool.clear();
+        assertTrue(first.closed);
+        assertTrue(second.closed);
+        assertEquals(0, pool.size());
+    }
+
+    private void advance(Duration duration) {
+        nanoTime.addAndGet(duration.toNanos());
+    }
+
+    private static final class ClosableClient extends PaymentRemoteA2aClient {
+
+        private volatile boolean closed;
+
+        ClosableClient(String name, String baseUrl, Set<String> requiredExtensions) {
+            super(name, baseUrl, requiredExtensions);
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+            super.close();
+        }
+    }
+}
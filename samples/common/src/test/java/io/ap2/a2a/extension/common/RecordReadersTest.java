@@ -0,0 +1,232 @@
+package io.ap2.a2a.extension.common;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import io.a2a.util.Utils;
+import io.ap2.a2a.extension.spec.CartContents;
+import io.ap2.a2a.extension.spec.CartMandate;
+import io.ap2.a2a.extension.spec.ContactAddress;
+import io.ap2.a2a.extension.spec.IntentMandate;
+import io.ap2.a2a.extension.spec.PaymentCurrencyAmount;
+import io.ap2.a2a.extension.spec.PaymentDetailsInit;
+import io.ap2.a2a.extension.spec.PaymentDetailsModifier;
+import io.ap2.a2a.extension.spec.PaymentItem;
+import io.ap2.a2a.extension.spec.PaymentMandate;
+import io.ap2.a2a.extension.spec.PaymentMandateContents;
+import io.ap2.a2a.extension.spec.PaymentMethodData;
+import io.ap2.a2a.extension.spec.PaymentOptions;
+import io.ap2.a2a.extension.spec.PaymentRequest;
+import io.ap2.a2a.extension.spec.PaymentResponse;
+import io.ap2.a2a.extension.spec.PaymentShippingOption;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Reads the records of the spec from their JSON maps as Jackson does.
+ */
+class RecordReadersTest {
+
+    private static final ContactAddress ADDRESS = new ContactAddress("Mountain View", "US", "Downtown", "Google",
+            "+1 650-253-0000", "94043", "Bugs Bunny", "CA", "X1", List.of("1600 Amphitheatre Pkwy", "Unit 2"));
+
+    private static final PaymentShippingOption SHIPPING_OPTION = new PaymentShippingOption("express", "Express",
+            new PaymentCurrencyAmount("USD", 9.5), true);
+
+    private static final PaymentItem TOTAL = new PaymentItem("Total", new PaymentCurrencyAmount("USD", 129.99),
+            true, 14);
+
+    @Test
+    void readsEveryRecordAsJackson() throws JsonProcessingException {
+        for (Object record : records()) {
+            Map<String, Object> json = json(record);
+
+            assertRead(record.getClass(), json);
+            assertEquals(record, RecordReaders.read(json, record.getClass()));
+        }
+    }
+
+    @Test
+    void ignoresUnknownMembers() throws JsonProcessingException {
+        for (Object record : records()) {
+            Map<String, Object> json = json(record);
+            addUnknownMembers(json);
+
+            assertRead(record.getClass(), json);
+        }
+    }
+
+    @Test
+    void readsNullMembersAsAbsentOnes() throws JsonProcessingException {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("natural_language_description", "Red shoes");
+        json.put("user_cart_confirmation_required", null);
+        json.put("merchants", null);
+        json.put("skus", Arrays.asList("SKU-1", null));
+        json.put("requires_refundability", null);
+        json.put("intent_expiry", null);
+        assertRead(IntentMandate.class, json);
+
+        Map<String, Object> item = new LinkedHashMap<>();
+        item.put("label", "Shoes");
+        item.put("amount", Map.of("currency", "USD", "value", 12));
+        item.put("pending", null);
+        item.put("refund_period", null);
+        assertRead(PaymentItem.class, item);
+        assertEquals(30, RecordReaders.read(item, PaymentItem.class).refundPeriod());
+        assertEquals(12.0, RecordReaders.read(item, PaymentItem.class).amount().value());
+
+        Map<String, Object> options = new LinkedHashMap<>();
+        options.put("request_shipping", null);
+        assertRead(PaymentOptions.class, options);
+    }
+
+    @Test
+    void readsRecordsAlreadyRead() {
+        CartMandate cartMandate = cartMandate();
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("contents", cartMandate.contents());
+        json.put("merchant_authorization", "jwt");
+
+        assertSame(cartMandate, RecordReaders.read(cartMandate, CartMandate.class));
+        assertEquals(new CartMandate(cartMandate.contents(), "jwt"), RecordReaders.read(json, CartMandate.class));
+        assertNull(RecordReaders.read(null, CartMandate.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void rejectsInvalidMembers() throws JsonProcessingException {
+        List<Map<String, Object>> invalid = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            invalid.add(json(paymentItem(i)));
+        }
+        // Missing, mistyped and out of range members
+        invalid.get(0).remove("label");
+        invalid.get(1).put("amount", "12.5 USD");
+        ((Map<String, Object>) invalid.get(2).get("amount")).put("value", "12.5");
+        ((Map<String, Object>) invalid.get(3).get("amount")).put("value", 1e300);
+        ((Map<String, Object>) invalid.get(4).get("amount")).remove("currency");
+        invalid.get(5).put("refund_period", 1.5);
+
+        for (Map<String, Object> json : invalid) {
+            assertThrows(IllegalArgumentException.class,
+                    () -> RecordReaders.read(json, PaymentItem.class), json.toString());
+        }
+        assertThrows(IllegalArgumentException.class, () -> RecordReaders.read(List.of(), PaymentItem.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void namesTheKeyOfAValueThatCannotBeConverted() throws JsonProcessingException {
+        Map<String, Object> json = json(cartMandate());
+        Map<String, Object> contents = (Map<String, Object>) json.get("contents");
+        Map<String, Object> request = (Map<String, Object>) contents.get("payment_request");
+        Map<String, Object> details = (Map<String, Object>) request.get("details");
+        Map<String, Object> total = (Map<String, Object>) details.get("total");
+        total.put("amount", Map.of("currency", "USD", "value", Double.MAX_VALUE));
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> DataPartIndex.convert("ap2.mandates.CartMandate", json, CartMandate.class));
+        assertTrue(e.getMessage().startsWith("Invalid ap2.mandates.CartMandate: Invalid contents: "),
+                e.getMessage());
+        assertTrue(e.getMessage().contains("Invalid total: Invalid amount: Monetary value is too large"),
+                e.getMessage());
+    }
+
+    private static void assertRead(Class<?> type, Map<?, ?> json) {
+        assertTrue(RecordReaders.hasReader(type), type.getSimpleName());
+        assertEquals(Utils.OBJECT_MAPPER.convertValue(json, type), RecordReaders.read(json, type),
+                type.getSimpleName());
+    }
+
+    /**
+     * Returns every record that has a reader, with every member set, and
+     * with only the members that are required.
+     */
+    private static List<Object> records() {
+        PaymentMethodData methodData = new PaymentMethodData("CARD",
+                Map.of("network", List.of("amex", "visa"), "nested", Map.of("deep", List.of(1, 2.5, true))));
+        PaymentDetailsModifier modifier = new PaymentDetailsModifier("CARD", TOTAL, List.of(paymentItem(1)),
+                Map.of("surcharge", 1));
+        PaymentDetailsInit details = new PaymentDetailsInit("order_1", Arrays.asList(paymentItem(0), null),
+                List.of(SHIPPING_OPTION), List.of(modifier), TOTAL);
+        PaymentOptions options = new PaymentOptions(true, true, false, false, "delivery");
+        PaymentRequest request = new PaymentRequest(List.of(methodData), details, options, ADDRESS);
+        CartContents contents = new CartContents("cart_1", false, request, "2026-01-01T00:30:00Z", "Merchant");
+        PaymentResponse response = new PaymentResponse("order_1", "CARD", Map.of("token", "tok_1"), ADDRESS,
+                SHIPPING_OPTION, "Bugs Bunny", "bugsbunny@gmail.com", "+1 650-253-0000");
+        PaymentMandateContents mandateContents = new PaymentMandateContents("mandate_1", "order_1", TOTAL, response,
+                "merchant_agent", "2026-01-01T00:00:00Z");
+
+        PaymentItem minimalItem = new PaymentItem("Item", new PaymentCurrencyAmount("JPY", 500.0), null, null);
+        PaymentDetailsInit minimalDetails = new PaymentDetailsInit("order_2", List.of(), null, null, minimalItem);
+        PaymentRequest minimalRequest = new PaymentRequest(List.of(), minimalDetails, null, null);
+        CartContents minimalContents = new CartContents("cart_2", true, minimalRequest, "2026-01-01T00:30:00Z",
+                "Merchant");
+        PaymentResponse minimalResponse = new PaymentResponse("order_2", "CARD", null, null, null, null, null, null);
+        PaymentMandateContents minimalMandateContents = new PaymentMandateContents("mandate_2", "order_2",
+                minimalItem, minimalResponse, "merchant_agent", "2026-01-01T00:00:00Z");
+
+        return List.of(
+                new CartMandate(contents, "header.payload.signature"),
+                new CartMandate(minimalContents, null),
+                contents,
+                request,
+                details,
+                modifier,
+                new PaymentDetailsModifier("CARD", null, null, null),
+                TOTAL,
+                minimalItem,
+                TOTAL.amount(),
+                SHIPPING_OPTION,
+                options,
+                new PaymentOptions(null, null, null, null, null),
+                methodData,
+                new PaymentMethodData("CARD", null),
+                ADDRESS,
+                new ContactAddress(null, null, null, null, null, null, null, null, null, null),
+                new IntentMandate(false, "Red running shoes", List.of("Merchant"), List.of("SKU-1"), true,
+                        "2026-01-02T00:00:00Z"),
+                new IntentMandate(null, "Red running shoes", null, null, null, null),
+                new PaymentMandate(mandateContents, "user.jwt"),
+                new PaymentMandate(minimalMandateContents, null),
+                mandateContents,
+                response,
+                minimalResponse);
+    }
+
+    private static CartMandate cartMandate() {
+        return (CartMandate) records().get(0);
+    }
+
+    private static PaymentItem paymentItem(int i) {
+        return new PaymentItem("Item " + i, new PaymentCurrencyAmount("USD", 10.0 + i), false, 30 + i);
+    }
+
+    /**
+     * Returns the JSON map of a record as it is received over the wire.
+     */
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> json(Object record) throws JsonProcessingException {
+        return Utils.OBJECT_MAPPER.readValue(Utils.OBJECT_MAPPER.writeValueAsString(record), Map.class);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void addUnknownMembers(Object json) {
+        if (json instanceof Map<?, ?> map) {
+            map.values().forEach(RecordReadersTest::addUnknownMembers);
+            ((Map<String, Object>) map).put("unknown_member", Map.of("value", List.of(1, "two")));
+        } else if (json instanceof List<?> list) {
+            list.forEach(RecordReadersTest::addUnknownMembers);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package io.ap2.a2a.extension.common;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Generates version 7 UUIDs that are unique across threads, and that sort in
+ * the order a thread generated them.
+ */
+class TimeOrderedIdGeneratorTest {
+
+    private final IdGenerator generator = IdGenerator.timeOrdered();
+
+    @Test
+    void generatesVersion7Uuids() {
+        long before = System.currentTimeMillis();
+        // A generator of its own, whose counter has not borrowed any millisecond yet
+        UUID uuid = UUID.fromString(new TimeOrderedIdGenerator().nextId());
+        long after = System.currentTimeMillis();
+
+        assertEquals(7, uuid.version());
+        assertEquals(2, uuid.variant());
+        long millis = uuid.getMostSignificantBits() >>> 16;
+        assertTrue(millis >= before && millis <= after + 1, "timestamp " + millis);
+    }
+
+    @Test
+    void sortsInTheOrderOfGeneration() {
+        // More identifiers than the counter holds in a millisecond
+        String previous = generator.nextId();
+        for (int i = 0; i < 100_000; i++) {
+            String id = generator.nextId();
+            assertTrue(id.compareTo(previous) > 0, previous + " then " + id);
+            assertEquals(36, id.length());
+            previous = id;
+        }
+    }
+
+    @Test
+    void generatesUniqueIdsAcrossThreads() throws Exception {
+        int threads = 8;
+        int idsPerThread = 50_000;
+        Set<String> ids = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < idsPerThread; i++) {
+                        ids.add(generator.nextId());
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(threads * idsPerThread, ids.size());
+    }
+}
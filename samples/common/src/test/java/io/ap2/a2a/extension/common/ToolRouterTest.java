@@ -0,0 +1,87 @@
+package io.ap2.a2a.extension.common;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import io.a2a.spec.DataPart;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Routes prompts and DataPart keys to tools by exact match first, then by the
+ * first matching rule, and counts the requests it resolves.
+ */
+class ToolRouterTest {
+
+    private final ToolRouter router = ToolRouter.builder()
+            .exactMatch("Update the cart", "update_cart")
+            .rule("initiate_payment", List.of("initiate", "payment"), List.of("ap2.mandates.PaymentMandate"))
+            .keywordMatch("find_products", "find", "products")
+            .dataKeyMatch("update_cart", "shipping_address")
+            .dataKeyMatch("find_products", "ap2.mandates.IntentMandate")
+            .build();
+
+    @Test
+    void routesAnExactPromptAfterNormalization() {
+        assertEquals("update_cart", router.route("  update THE cart!", Set.of()));
+        assertEquals("update_cart", router.route("update_the_cart", Set.of()));
+    }
+
+    @Test
+    void routesToTheFirstMatchingRule() {
+        Set<String> keys = Set.of("ap2.mandates.PaymentMandate", "ap2.mandates.IntentMandate");
+
+        assertEquals("initiate_payment", router.route("Initiate the payment, please", keys));
+        // The payment rule requires its data key, so the next matching rule applies
+        assertEquals("find_products", router.route("Initiate the payment",
+                Set.of("ap2.mandates.IntentMandate")));
+        assertEquals("find_products", router.route("Find me some products", Set.of()));
+        assertEquals("update_cart", router.route("Here is my address", Set.of("shipping_address")));
+    }
+
+    @Test
+    void matchesKeywordsAsWholeWords() {
+        assertNull(router.route("Finding products", Set.of()));
+        assertNull(router.route("find productsearch", Set.of()));
+        assertEquals("find_products", router.route("products to find", Set.of()));
+    }
+
+    @Test
+    void routesByTheKeysOfTheDataParts() {
+        List<DataPart> dataParts = List.of(
+                new DataPart(Map.of("risk_data", "data")),
+                new DataPart(Map.of("ap2.mandates.IntentMandate", Map.of())));
+
+        assertEquals("find_products", router.route("Hello", dataParts));
+        assertNull(router.route("Hello", List.of()));
+        assertNull(router.route(null, (List<DataPart>) null));
+    }
+
+    @Test
+    void countsHitsAndMisses() {
+        router.route("Update the cart", Set.of());
+        router.route("Find products", Set.of());
+        router.route("Something else", Set.of());
+
+        assertEquals(2, router.getHitCount());
+        assertEquals(1, router.getMissCount());
+    }
+
+    @Test
+    void normalizesPrompts() {
+        assertEquals("initiate payment", ToolRouter.normalize("  Initiate_payment. "));
+        assertEquals("the users cart", ToolRouter.normalize("The user's cart"));
+        assertEquals("", ToolRouter.normalize("?!"));
+        assertEquals("", ToolRouter.normalize(null));
+    }
+
+    @Test
+    void rejectsARuleWithoutKeywordsOrDataKeys() {
+        assertThrows(IllegalArgumentException.class,
+                () -> ToolRouter.builder().keywordMatch("tool", "", "?"));
+    }
+}
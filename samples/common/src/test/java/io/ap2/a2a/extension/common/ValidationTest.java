@@ -0,0 +1,136 @@
+package io.ap2.a2a.extension.common;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.security.KeyPair;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import io.ap2.a2a.extension.spec.CartContents;
+import io.ap2.a2a.extension.spec.CartMandate;
+import io.ap2.a2a.extension.spec.PaymentCurrencyAmount;
+import io.ap2.a2a.extension.spec.PaymentDetailsInit;
+import io.ap2.a2a.extension.spec.PaymentItem;
+import io.ap2.a2a.extension.spec.PaymentMandate;
+import io.ap2.a2a.extension.spec.PaymentMandateContents;
+import io.ap2.a2a.extension.spec.PaymentRequest;
+import io.ap2.a2a.extension.spec.PaymentResponse;
+import io.ap2.a2a.extension.util.MandateHashes;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Validates user authorizations with the keys of the user's devices, bound to
+ * the merchant and to the cart and payment mandates they authorize.
+ */
+class ValidationTest {
+
+    private static final KeyPair DEVICE_KEY_PAIR = JwsAlgorithm.EdDSA.generateKeyPair();
+    private static final KeyPair MERCHANT_KEY_PAIR = JwsAlgorithm.ES256.generateKeyPair();
+    private static final JwtSigner DEVICE_SIGNER = new JwtSigner("device", DEVICE_KEY_PAIR.getPrivate());
+    private static final JwtSigner MERCHANT_SIGNER = new JwtSigner("merchant", MERCHANT_KEY_PAIR.getPrivate());
+
+    @BeforeAll
+    static void registerTheKeys() {
+        JwtKeys userKeys = new JwtKeys();
+        userKeys.register("device", DEVICE_KEY_PAIR.getPublic());
+        JwtKeys merchantKeys = new JwtKeys();
+        merchantKeys.register("merchant", MERCHANT_KEY_PAIR.getPublic());
+        Validation.configure(userKeys, merchantKeys, false);
+    }
+
+    @Test
+    void validatesAPaymentMandateAuthorizingItsCart() {
+        CartMandate cartMandate = cartMandate("cart_1");
+        PaymentMandate paymentMandate = paymentMandate(cartMandate, DEVICE_SIGNER, "Merchant",
+                MandateHashes.cartMandateHash(cartMandate));
+
+        Validation.validateCartMandateSignature(cartMandate);
+        Validation.validatePaymentMandateSignature(paymentMandate, cartMandate);
+    }
+
+    @Test
+    void rejectsAPaymentMandateThatDoesNotAuthorizeItsCart() {
+        CartMandate cartMandate = cartMandate("cart_2");
+        CartMandate otherCartMandate = cartMandate("cart_2");
+        PaymentMandate paymentMandate = paymentMandate(cartMandate, DEVICE_SIGNER, "Merchant",
+                MandateHashes.cartMandateHash(otherCartMandate));
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> Validation.validatePaymentMandateSignature(paymentMandate, cartMandate));
+        assertEquals("User authorization does not authorize this CartMandate.", e.getMessage());
+
+        PaymentMandate withoutCart = paymentMandate(cartMandate("cart_5"), DEVICE_SIGNER, "Merchant",
+                MandateHashes.cartMandateHash(cartMandate));
+        e = assertThrows(IllegalArgumentException.class,
+                () -> Validation.validatePaymentMandateSignature(withoutCart, null));
+        assertEquals("CartMandate of the PaymentMandate not found.", e.getMessage());
+    }
+
+    @Test
+    void rejectsAPaymentMandateForAnotherMerchant() {
+        CartMandate cartMandate = cartMandate("cart_3");
+        PaymentMandate paymentMandate = paymentMandate(cartMandate, DEVICE_SIGNER, "Other Merchant",
+                MandateHashes.cartMandateHash(cartMandate));
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> Validation.validatePaymentMandateSignature(paymentMandate, cartMandate));
+        assertEquals("User authorization is not intended for this merchant.", e.getMessage());
+    }
+
+    @Test
+    void rejectsAUserAuthorizationSignedByAMerchantKey() {
+        CartMandate cartMandate = cartMandate("cart_4");
+        PaymentMandate paymentMandate = paymentMandate(cartMandate, MERCHANT_SIGNER, "Merchant",
+                MandateHashes.cartMandateHash(cartMandate));
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> Validation.validatePaymentMandateSignature(paymentMandate, cartMandate));
+        assertTrue(e.getMessage().startsWith("Invalid user authorization"), e.getMessage());
+
+        // Nor is a merchant authorization signed by a device key
+        CartMandate signedByDevice = new CartMandate(cartMandate.contents(),
+                DEVICE_SIGNER.sign(merchantClaims(cartMandate.contents())));
+        e = assertThrows(IllegalArgumentException.class,
+                () -> Validation.validateCartMandateSignature(signedByDevice));
+        assertTrue(e.getMessage().startsWith("Invalid merchant authorization"), e.getMessage());
+    }
+
+    private static CartMandate cartMandate(String id) {
+        PaymentItem total = new PaymentItem("Total", new PaymentCurrencyAmount("USD", 120.0), false, 30);
+        PaymentDetailsInit details = new PaymentDetailsInit("order_" + id, List.of(total), null, null, total);
+        CartContents contents = new CartContents(id, false, new PaymentRequest(List.of(), details, null, null),
+                "2099-01-01T00:00:00Z", "Merchant");
+        return new CartMandate(contents, MERCHANT_SIGNER.sign(merchantClaims(contents)));
+    }
+
+    private static Map<String, Object> merchantClaims(CartContents contents) {
+        Instant now = Instant.now();
+        return Map.of(
+                "iss", "Merchant",
+                "iat", now.getEpochSecond(),
+                "exp", now.plusSeconds(300).getEpochSecond(),
+                "jti", "merchant_" + contents.id() + "_" + System.nanoTime(),
+                "cart_hash", MandateHashes.cartHash(contents));
+    }
+
+    private static PaymentMandate paymentMandate(CartMandate cartMandate, JwtSigner signer, String audience,
+                                                 String cartMandateHash) {
+        PaymentDetailsInit details = cartMandate.contents().paymentRequest().details();
+        PaymentResponse paymentResponse = new PaymentResponse(details.id(), "CARD", Map.of(), null, null, null,
+                null, null);
+        PaymentMandateContents contents = new PaymentMandateContents("payment_" + cartMandate.contents().id(),
+                details.id(), details.total(), paymentResponse, "Merchant", "2026-01-01T00:00:00Z");
+        Instant now = Instant.now();
+        String jwt = signer.sign(Map.of(
+                "aud", audience,
+                "iat", now.getEpochSecond(),
+                "exp", now.plusSeconds(300).getEpochSecond(),
+                "jti", "user_" + contents.paymentMandateId(),
+                "transaction_data", List.of(cartMandateHash, MandateHashes.paymentMandateHash(contents))));
+        return new PaymentMandate(contents, jwt);
+    }
+}
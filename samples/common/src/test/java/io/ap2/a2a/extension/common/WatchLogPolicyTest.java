@@ -0,0 +1,85 @@
+package io.ap2.a2a.extension.common;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Samples the keys of a request by a stable ID of the request, at the rate of
+ * each key.
+ */
+class WatchLogPolicyTest {
+
+    private final WatchLogPolicy policy = WatchLogPolicy.builder()
+            .defaultSampleRate(0.5)
+            .sample("rare", 0.1)
+            .sample("never", 0.0)
+            .sample("always", 1.0)
+            .build();
+
+    @Test
+    void decidesTheSameOnEveryCallForARequest() {
+        for (int i = 0; i < 1000; i++) {
+            String contextId = "context-" + i;
+            boolean sampled = policy.isSampled("data", contextId, null);
+            for (int call = 0; call < 5; call++) {
+                assertEquals(sampled, policy.isSampled("data", contextId, "task-" + call), contextId);
+            }
+        }
+    }
+
+    @Test
+    void decidesByTheTaskIdWithoutAContextId() {
+        int sampled = 0;
+        for (int i = 0; i < 1000; i++) {
+            String taskId = "task-" + i;
+            boolean decision = policy.isSampled("data", null, taskId);
+            assertEquals(decision, policy.isSampled("data", null, taskId), taskId);
+            // The same as for a context of the same ID
+            assertEquals(policy.isSampled("data", taskId, null), decision, taskId);
+            if (decision) {
+                sampled++;
+            }
+        }
+        assertTrue(sampled > 400 && sampled < 600, "sampled " + sampled);
+    }
+
+    @Test
+    void logsARequestWithoutAnyId() {
+        for (int i = 0; i < 100; i++) {
+            assertTrue(policy.isSampled("rare", null, null));
+        }
+        assertFalse(policy.isSampled("never", null, null));
+    }
+
+    @Test
+    void samplesAtTheRateOfEachKey() {
+        int rare = 0;
+        int data = 0;
+        for (int i = 0; i < 10_000; i++) {
+            String contextId = "context-" + i;
+            boolean rareSampled = policy.isSampled("rare", contextId, null);
+            boolean dataSampled = policy.isSampled("data", contextId, null);
+            // A context logged for a key is logged for every key with a higher rate
+            if (rareSampled) {
+                assertTrue(dataSampled, contextId);
+                rare++;
+            }
+            if (dataSampled) {
+                data++;
+            }
+            assertTrue(policy.isSampled("always", contextId, null));
+            assertFalse(policy.isSampled("never", contextId, null));
+        }
+        assertTrue(rare > 800 && rare < 1200, "rare " + rare);
+        assertTrue(data > 4700 && data < 5300, "data " + data);
+    }
+
+    @Test
+    void logsEverythingByDefault() {
+        assertTrue(WatchLogPolicy.LOG_ALL.isSampled("data", "context-1", "task-1"));
+        assertTrue(WatchLogPolicy.DEFAULT.isSampled("data", null, null));
+    }
+}
@@ -0,0 +1,135 @@
+package io.ap2.a2a.extension.roles.credentials.provider;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.ap2.a2a.extension.spec.AP2Exception;
+import io.ap2.a2a.extension.spec.ContactAddress;
+import io.ap2.a2a.extension.spec.PaymentMethodData;
+
+/**
+ * A manager of a user's 'account details', whatever holds the accounts.
+ *
+ * Accounts are looked up as {@link IndexedAccount}s, which subclasses find by
+ * their email address.
+ *
+ * Tokens are held in a {@link TokenStore}, and expire once unused for the
+ * unused token TTL, or once bound to a payment mandate for the used token TTL.
+ */
+abstract class AbstractAccountManager implements AccountManager {
+
+    /**
+     * How long a token is kept before it is bound to a payment mandate.
+     */
+    @ConfigProperty(name = "ap2.tokens.unused-ttl", defaultValue = "PT15M")
+    Duration unusedTokenTtl;
+
+    /**
+     * How long a token is kept once it is bound to a payment mandate.
+     */
+    @ConfigProperty(name = "ap2.tokens.used-ttl", defaultValue = "PT1H")
+    Duration usedTokenTtl;
+
+    private final TokenStore tokens = new TokenStore();
+    private final TokenMinter tokenMinter = new TokenMinter();
+
+    @Override
+    public String createToken(String emailAddress, String paymentMethodAlias) {
+        long expiresAtMillis = System.currentTimeMillis() + unusedTokenTtl.toMillis();
+        TokenInfo tokenInfo = new TokenInfo(emailAddress, paymentMethodAlias, null, expiresAtMillis);
+        String token = tokenMinter.mint();
+        while (!tokens.add(token, tokenInfo)) {
+            // Truncated HMACs may collide, however unlikely, so never replace a stored token
+            token = tokenMinter.mint();
+        }
+        return token;
+    }
+
+    @Override
+    public void updateToken(String token, String paymentMandateId) throws AP2Exception {
+        long expiresAtMillis = System.currentTimeMillis() + usedTokenTtl.toMillis();
+        if (tokens.bind(token, paymentMandateId, expiresAtMillis) == null) {
+            throw new AP2Exception("Token " + token + " not found");
+        }
+    }
+
+    @Override
+    public PaymentMethodData verifyToken(String token, String paymentMandateId) throws AP2Exception {
+        TokenInfo tokenInfo = tokens.get(token);
+
+        if (tokenInfo == null) {
+            throw new AP2Exception("Invalid token");
+        }
+
+        if (tokenInfo.getPaymentMandateId() == null || !tokenInfo.getPaymentMandateId().equals(paymentMandateId)) {
+            throw new AP2Exception("Invalid token");
+        }
+
+        String emailAddress = tokenInfo.getEmailAddress();
+        String alias = tokenInfo.getPaymentMethodAlias();
+        return getPaymentMethodByAlias(emailAddress, alias);
+    }
+
+    @Override
+    public List<PaymentMethodData> getAccountPaymentMethods(String emailAddress) {
+        IndexedAccount account = findAccount(emailAddress);
+        if (account == null || account.account().paymentMethods() == null) {
+            return null;
+        }
+        return account.account().paymentMethods();
+    }
+
+    @Override
+    public ContactAddress getAccountShippingAddress(String emailAddress) {
+        IndexedAccount account = findAccount(emailAddress);
+        if (account == null || account.account().shippingAddress() == null) {
+            return null;
+        }
+        return account.account().shippingAddress();
+    }
+
+    @Override
+    public List<PaymentMethodData> getEligiblePaymentMethods(String emailAddress,
+            List<PaymentMethodData> merchantAcceptedPaymentMethods) {
+        IndexedAccount account = findAccount(emailAddress);
+        if (account == null) {
+            return List.of();
+        }
+        return account.wallet().eligible(NetworkEligibility.compileCriteria(merchantAcceptedPaymentMethods));
+    }
+
+    @Override
+    public PaymentMethodData getPaymentMethodByAlias(String emailAddress, String alias) {
+        IndexedAccount account = findAccount(emailAddress);
+        return account == null ? null : account.getPaymentMethodByAlias(alias);
+    }
+
+    @Override
+    public Map<String, PaymentMethodData> getPaymentMethodsByAlias(String emailAddress, Collection<String> aliases) {
+        IndexedAccount account = findAccount(emailAddress);
+        if (account == null) {
+            return Map.of();
+        }
+        Map<String, PaymentMethodData> paymentMethods = new LinkedHashMap<>();
+        for (String alias : aliases) {
+            PaymentMethodData paymentMethod = account.getPaymentMethodByAlias(alias);
+            if (paymentMethod != null) {
+                paymentMethods.put(alias, paymentMethod);
+            }
+        }
+        return paymentMethods;
+    }
+
+    /**
+     * Finds an account.
+     *
+     * @param emailAddress The account's email address
+     * @return The account, or {@code null} if the account doesn't exist
+     */
+    abstract IndexedAccount findAccount(String emailAddress);
+}
@@ -2,8 +2,21 @@ package io.ap2.a2a.extension.roles.credentials.provider;
 
 import static io.ap2.a2a.extension.util.Assert.checkNotNullParam;
 
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
 
+import io.a2a.util.Utils;
+import io.ap2.a2a.extension.common.RecordReaders;
 import io.ap2.a2a.extension.spec.ContactAddress;
 import io.ap2.a2a.extension.spec.PaymentMethodData;
 
@@ -12,4 +25,111 @@ record Account(String emailAddress, ContactAddress shippingAddress, List<Payment
     public Account {
         checkNotNullParam("emailAddress", emailAddress);
     }
+
+    /**
+     * Opens a file of accounts, which are read one at a time as they are
+     * iterated, so that the file need not fit in memory.
+     * <p>
+     * Each non-blank line of the file is a JSON account, with an
+     * {@code email_address}, a {@code shipping_address} and a list of
+     * {@code payment_methods}.
+     *
+     * @param file the file
+     * @return the reader of the accounts, in the order of the file, which must be closed
+     * @throws IOException if the file cannot be opened
+     */
+    static Reader read(Path file) throws IOException {
+        checkNotNullParam("file", file);
+        return new Reader(file, Files.newBufferedReader(file, StandardCharsets.UTF_8));
+    }
+
+    private static Account fromJson(Map<?, ?> json) {
+        if (!(json.get("email_address") instanceof String emailAddress)) {
+            throw new IllegalArgumentException("Missing email_address");
+        }
+        List<PaymentMethodData> paymentMethods = null;
+        if (json.get("payment_methods") instanceof List<?> list) {
+            paymentMethods = new ArrayList<>(list.size());
+            for (Object paymentMethod : list) {
+                paymentMethods.add(RecordReaders.read(paymentMethod, PaymentMethodData.class));
+            }
+        } else if (json.get("payment_methods") != null) {
+            throw new IllegalArgumentException("payment_methods must be a list");
+        }
+        return new Account(emailAddress, RecordReaders.read(json.get("shipping_address"), ContactAddress.class),
+                paymentMethods);
+    }
+
+    /**
+     * The accounts of a file, read a line at a time. It can be iterated once.
+     * An account that cannot be read is thrown as an {@link UncheckedIOException}
+     * by the iterator.
+     */
+    static final class Reader implements Iterable<Account>, Closeable {
+
+        private final Path file;
+        private final BufferedReader reader;
+        private boolean iterated;
+
+        private Reader(Path file, BufferedReader reader) {
+            this.file = file;
+            this.reader = reader;
+        }
+
+        @Override
+        public Iterator<Account> iterator() {
+            if (iterated) {
+                throw new IllegalStateException("The accounts of " + file + " have already been read");
+            }
+            iterated = true;
+            return new Iterator<>() {
+
+                private int lineNumber;
+                private Account next;
+
+                @Override
+                public boolean hasNext() {
+                    if (next == null) {
+                        next = readNext();
+                    }
+                    return next != null;
+                }
+
+                @Override
+                public Account next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    Account account = next;
+                    next = null;
+                    return account;
+                }
+
+                private Account readNext() {
+                    try {
+                        String line;
+                        while ((line = reader.readLine()) != null) {
+                            lineNumber++;
+                            if (line.isBlank()) {
+                                continue;
+                            }
+                            try {
+                                return fromJson(Utils.OBJECT_MAPPER.readValue(line, Map.class));
+                            } catch (IOException | IllegalArgumentException e) {
+                                throw new IOException("Invalid account on line " + lineNumber + " of " + file, e);
+                            }
+                        }
+                        return null;
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e.getMessage(), e);
+                    }
+                }
+            };
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
 }
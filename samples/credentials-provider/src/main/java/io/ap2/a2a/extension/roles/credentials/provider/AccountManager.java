@@ -1,6 +1,9 @@
 package io.ap2.a2a.extension.roles.credentials.provider;
 
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
@@ -69,4 +72,37 @@ public interface AccountManager {
      */
     public PaymentMethodData getPaymentMethodByAlias(String emailAddress, String alias);
 
+    /**
+     * Returns the payment methods for a given account and several aliases.
+     *
+     * @param emailAddress The account's email address
+     * @param aliases The aliases of the payment methods to retrieve
+     * @return The payment methods found, keyed by the given alias, in the order of the aliases
+     */
+    public default Map<String, PaymentMethodData> getPaymentMethodsByAlias(String emailAddress,
+            Collection<String> aliases) {
+        Map<String, PaymentMethodData> paymentMethods = new LinkedHashMap<>();
+        for (String alias : aliases) {
+            PaymentMethodData paymentMethod = getPaymentMethodByAlias(emailAddress, alias);
+            if (paymentMethod != null) {
+                paymentMethods.put(alias, paymentMethod);
+            }
+        }
+        return paymentMethods;
+    }
+
+    /**
+     * Returns the payment methods of the given account that match the payment methods a merchant accepts.
+     *
+     * @param emailAddress The account's email address
+     * @param merchantAcceptedPaymentMethods The payment methods the merchant accepts
+     * @return The eligible payment methods, in the order of the account's payment methods, empty if the account
+     * doesn't exist
+     */
+    public default List<PaymentMethodData> getEligiblePaymentMethods(String emailAddress,
+            List<PaymentMethodData> merchantAcceptedPaymentMethods) {
+        NetworkEligibility.Wallet wallet = NetworkEligibility.compileWallet(getAccountPaymentMethods(emailAddress));
+        return wallet.eligible(NetworkEligibility.compileCriteria(merchantAcceptedPaymentMethods));
+    }
+
 }
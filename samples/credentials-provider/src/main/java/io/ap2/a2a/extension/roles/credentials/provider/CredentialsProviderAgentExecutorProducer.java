@@ -9,13 +9,22 @@ import io.a2a.spec.DataPart;
 import io.a2a.spec.Task;
 import io.a2a.spec.TextPart;
 import io.ap2.a2a.extension.common.BaseAgentExecutor;
+import io.ap2.a2a.extension.common.CachingToolSelectorAgent;
+import io.ap2.a2a.extension.common.MandateVerifier;
+import io.ap2.a2a.extension.common.ToolRouter;
+import io.ap2.a2a.extension.common.ToolSelectionCache;
 import io.ap2.a2a.extension.spec.AP2Exception;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.enterprise.inject.Produces;
 import jakarta.inject.Inject;
+import java.time.Duration;
 import java.util.List;
 import java.util.Set;
 import java.util.logging.Logger;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import static io.ap2.a2a.extension.spec.AP2Constants.PAYMENT_MANDATE_DATA_KEY;
+import static io.ap2.a2a.extension.spec.AP2Constants.PAYMENT_METHOD_DATA_DATA_KEY;
 
 /**
  * Producer for credentials provider agent executor.
@@ -46,6 +55,24 @@ public final class CredentialsProviderAgentExecutorProducer {
     @PublicAgentCard
     AgentCard agentCard;
 
+    /**
+     * The verifier of the signatures of the mandates in a message.
+     */
+    @Inject
+    MandateVerifier mandateVerifier;
+
+    /**
+     * The maximum number of tool selections cached for the LangChain4j agent.
+     */
+    @ConfigProperty(name = "ap2.tool-selection-cache.max-entries", defaultValue = "1024")
+    int toolSelectionCacheMaxEntries;
+
+    /**
+     * How long a tool selection made by the LangChain4j agent stays cached.
+     */
+    @ConfigProperty(name = "ap2.tool-selection-cache.ttl", defaultValue = "PT10M")
+    Duration toolSelectionCacheTtl;
+
     /**
      * Produces the agent executor for the credentials provider agent.
      *
@@ -56,7 +83,9 @@ public final class CredentialsProviderAgentExecutorProducer {
         return new CredentialsProviderAgentExecutor(
             accountManager,
             agent,
-            agentCard.capabilities().extensions()
+            new ToolSelectionCache(toolSelectionCacheMaxEntries, toolSelectionCacheTtl),
+            agentCard.capabilities().extensions(),
+            mandateVerifier
         );
     }
 
@@ -74,6 +103,35 @@ public final class CredentialsProviderAgentExecutorProducer {
      */
     private static class CredentialsProviderAgentExecutor extends BaseAgentExecutor {
 
+        /**
+         * Routes the requests sent by the shopping agent and the merchant payment
+         * processor without consulting the LLM.
+         */
+        private static final ToolRouter TOOL_ROUTER = ToolRouter.builder()
+            .exactMatch("Get the user's shipping address.", "handleGetShippingAddress")
+            .exactMatch("Get a filtered list of the user's payment methods.", "handleSearchPaymentMethods")
+            .exactMatch("Get a payment credential token for the user's payment method.",
+                "handleCreatePaymentCredentialToken")
+            .exactMatch("Give me the payment method credentials for the given token.",
+                "handleGetPaymentMethodRawCredentials")
+            .exactMatch("This is the signed payment mandate", "handleSignedPaymentMandate")
+            .rule("handleGetPaymentMethodRawCredentials", List.of("credentials"), List.of(PAYMENT_MANDATE_DATA_KEY))
+            .rule("handleSignedPaymentMandate", List.of("signed"), List.of(PAYMENT_MANDATE_DATA_KEY))
+            .dataKeyMatch("handleCreatePaymentCredentialToken", "user_email", "payment_method_alias")
+            .dataKeyMatch("handleSearchPaymentMethods", "user_email", PAYMENT_METHOD_DATA_DATA_KEY)
+            .rule("handleGetShippingAddress", List.of("shipping address"), List.of("user_email"))
+            .build();
+
+        /**
+         * The names of the tools that may be selected.
+         */
+        private static final Set<String> TOOL_NAMES = Set.of(
+            "handleGetShippingAddress",
+            "handleSearchPaymentMethods",
+            "handleCreatePaymentCredentialToken",
+            "handleGetPaymentMethodRawCredentials",
+            "handleSignedPaymentMandate");
+
         private final Tools tools;
 
         /**
@@ -81,12 +139,18 @@ public final class CredentialsProviderAgentExecutorProducer {
          *
          * @param accountManager the account manager instance
          * @param agent the LangChain4j agent for tool selection
+         * @param toolSelectionCache the cache of tool selections made by the agent
          * @param supportedExtensions the list of extensions from the agent card
+         * @param mandateVerifier the verifier of the signatures of the mandates in a message
          */
         CredentialsProviderAgentExecutor(final AccountManager accountManager,
                                          final CredentialsProviderAgent agent,
-                                         final List<AgentExtension> supportedExtensions) {
-            super(supportedExtensions, agent);
+                                         final ToolSelectionCache toolSelectionCache,
+                                         final List<AgentExtension> supportedExtensions,
+                                         final MandateVerifier mandateVerifier) {
+            super(supportedExtensions,
+                new CachingToolSelectorAgent("credentials_provider", agent, toolSelectionCache, TOOL_NAMES),
+                TOOL_ROUTER, mandateVerifier);
             this.tools = new Tools(accountManager);
         }
 
@@ -99,9 +163,9 @@ public final class CredentialsProviderAgentExecutorProducer {
 
             logger.info("Processing request: " + prompt);
 
-            // Use the agent to determine which tool to use
+            // Use the router, or failing that the agent, to determine which tool to use
             // This mirrors the Python FunctionCallResolver.determine_tool_to_use()
-            String toolName = selectTool(prompt);
+            String toolName = selectTool(prompt, dataParts);
 
             // Invoke the selected tool
             // This mirrors the Python implementation's tool dispatch logic
@@ -1,101 +1,93 @@
 package io.ap2.a2a.extension.roles.credentials.provider;
 
+import io.quarkus.arc.DefaultBean;
+import jakarta.annotation.PostConstruct;
 import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
 import java.util.List;
+import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Logger;
 
-import io.ap2.a2a.extension.spec.AP2Exception;
-import io.ap2.a2a.extension.spec.ContactAddress;
 import io.ap2.a2a.extension.spec.PaymentMethodData;
 
 /**
  * An in-memory manager of a user's 'account details'.
  *
  * Each 'account' contains a user's payment methods and shipping address.
+ * The accounts are loaded when the manager starts from the file
+ * {@code ap2.accounts.import-file}, with one JSON account per line, as read
+ * by {@link Account#read(Path)}. Without one, there are no accounts.
+ *
+ * This manager is used unless another manager, such as
+ * {@link MappedAccountManager}, is enabled when the credentials provider is
+ * built.
  */
 @ApplicationScoped
-public class InMemoryAccountManager implements AccountManager{
-
-    private final ConcurrentMap<String, Account> accounts = new ConcurrentHashMap<>();
-    private final ConcurrentMap<String, TokenInfo> tokens = new ConcurrentHashMap<>();
-
-    @Override
-    public String createToken(String emailAddress, String paymentMethodAlias) {
-        String token = "fake_payment_credential_token_" + tokens.size();
-        TokenInfo tokenInfo = new TokenInfo(emailAddress, paymentMethodAlias, null);
-        tokens.put(token, tokenInfo);
-        return token;
-    }
-
-    @Override
-    public void updateToken(String token, String paymentMandateId) throws AP2Exception {
-        if (!tokens.containsKey(token)) {
-            throw new AP2Exception("Token " + token + " not found");
-        }
-
-        TokenInfo tokenInfo = tokens.get(token);
-        if (tokenInfo.getPaymentMandateId() != null) {
-            // Do not overwrite the payment mandate id if it is already set
+@DefaultBean
+public class InMemoryAccountManager extends AbstractAccountManager {
+
+    private static final Logger logger = Logger.getLogger(InMemoryAccountManager.class.getName());
+
+    /**
+     * The file of the accounts loaded at startup, with one JSON account per line.
+     */
+    @ConfigProperty(name = "ap2.accounts.import-file")
+    Optional<Path> importFile = Optional.empty();
+
+    private final ConcurrentMap<String, IndexedAccount> accounts = new ConcurrentHashMap<>();
+
+    /**
+     * Loads the accounts of the import file, if one is configured.
+     */
+    @PostConstruct
+    void load() {
+        if (importFile.isEmpty()) {
+            logger.warning("No ap2.accounts.import-file is configured, there are no accounts");
             return;
         }
-
-        tokenInfo.setPaymentMandateId(paymentMandateId);
-        tokens.put(token, tokenInfo);
-    }
-
-    @Override
-    public PaymentMethodData verifyToken(String token, String paymentMandateId) throws AP2Exception {
-        TokenInfo tokenInfo = tokens.get(token);
-
-        if (tokenInfo == null) {
-            throw new AP2Exception("Invalid token");
-        }
-
-        if (!tokenInfo.getPaymentMandateId().equals(paymentMandateId)) {
-            throw new AP2Exception("Invalid token");
+        long accountCount = 0;
+        try (Account.Reader imported = Account.read(importFile.get())) {
+            for (Account account : imported) {
+                addAccount(account);
+                accountCount++;
+            }
+        } catch (IOException | UncheckedIOException e) {
+            throw new IllegalStateException("Failed to load the accounts from " + importFile.get(), e);
         }
-
-        String emailAddress = tokenInfo.getEmailAddress();
-        String alias = tokenInfo.getPaymentMethodAlias();
-        return getPaymentMethodByAlias(emailAddress, alias);
+        logger.info("Loaded " + accountCount + " accounts from " + importFile.get());
     }
 
-    @Override
-    public List<PaymentMethodData> getAccountPaymentMethods(String emailAddress) {
-        Account account = accounts.get(emailAddress);
-        if (account == null || account.paymentMethods() == null) {
-            return null;
-        }
-        return account.paymentMethods();
+    /**
+     * Adds an account, replacing any account with the same email address.
+     *
+     * @param account The account
+     */
+    void addAccount(Account account) {
+        IndexedAccount indexedAccount = new IndexedAccount(account);
+        accounts.put(account.emailAddress(), indexedAccount);
     }
 
-    @Override
-    public ContactAddress getAccountShippingAddress(String emailAddress) {
-        Account account = accounts.get(emailAddress);
-        if (account == null || account.shippingAddress() == null) {
-            return null;
-        }
-        return account.shippingAddress();
+    /**
+     * Replaces the payment methods of an account.
+     *
+     * @param emailAddress The account's email address
+     * @param paymentMethods The new payment methods
+     * @return {@code true} if the account exists, {@code false} otherwise
+     */
+    boolean updatePaymentMethods(String emailAddress, List<PaymentMethodData> paymentMethods) {
+        // The indexes of the account are rebuilt and replaced with the payment methods in one step
+        return accounts.computeIfPresent(emailAddress, (email, account) -> new IndexedAccount(
+                new Account(email, account.account().shippingAddress(), paymentMethods))) != null;
     }
 
     @Override
-    public PaymentMethodData getPaymentMethodByAlias(String emailAddress, String alias) {
-        List<PaymentMethodData> paymentMethods = getAccountPaymentMethods(emailAddress);
-
-        List<PaymentMethodData> matchingPaymentMethods = paymentMethods.stream()
-                .filter(paymentMethod -> {
-                    String paymentMethodAlias = (String) paymentMethod.data().get("alias");
-                    return paymentMethodAlias != null && paymentMethodAlias.equalsIgnoreCase(alias);
-                })
-                .toList();
-
-        if (matchingPaymentMethods.isEmpty()) {
-            return null;
-        }
-
-        return matchingPaymentMethods.get(0);
+    IndexedAccount findAccount(String emailAddress) {
+        return accounts.get(emailAddress);
     }
-
 }
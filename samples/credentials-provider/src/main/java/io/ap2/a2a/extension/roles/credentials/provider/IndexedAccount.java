@@ -0,0 +1,88 @@
+package io.ap2.a2a.extension.roles.credentials.provider;
+
+import static io.ap2.a2a.extension.util.Assert.checkNotNullParam;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.ap2.a2a.extension.spec.PaymentMethodData;
+
+/**
+ * An account, with the lookups of its payment methods compiled when it is
+ * added to an {@link AccountManager}.
+ *
+ * Instances are immutable, so changing the payment methods of an account
+ * replaces its indexed account, and the lookups always agree with each other.
+ */
+final class IndexedAccount {
+
+    private final Account account;
+    private final NetworkEligibility.Wallet wallet;
+    private final Map<String, PaymentMethodData> paymentMethodsByAlias;
+
+    IndexedAccount(Account account) {
+        this.account = checkNotNullParam("account", account);
+        this.wallet = NetworkEligibility.compileWallet(account.paymentMethods());
+        this.paymentMethodsByAlias = indexByAlias(account.paymentMethods());
+    }
+
+    Account account() {
+        return account;
+    }
+
+    /**
+     * Returns the payment methods of the account, compiled for matching
+     * against the payment methods a merchant accepts.
+     *
+     * @return the wallet of the account
+     */
+    NetworkEligibility.Wallet wallet() {
+        return wallet;
+    }
+
+    /**
+     * Returns the payment method of the account with an alias, compared
+     * case-insensitively.
+     *
+     * @param alias the alias
+     * @return the first payment method with the alias, or {@code null} if there is none
+     */
+    PaymentMethodData getPaymentMethodByAlias(String alias) {
+        return alias == null ? null : paymentMethodsByAlias.get(foldCase(alias));
+    }
+
+    private static Map<String, PaymentMethodData> indexByAlias(List<PaymentMethodData> paymentMethods) {
+        if (paymentMethods == null) {
+            return Map.of();
+        }
+        Map<String, PaymentMethodData> index = new HashMap<>();
+        for (PaymentMethodData paymentMethod : paymentMethods) {
+            if (paymentMethod.data() != null && paymentMethod.data().get("alias") instanceof String alias) {
+                // The first payment method with an alias wins, as in a search of the list
+                index.putIfAbsent(foldCase(alias), paymentMethod);
+            }
+        }
+        return Map.copyOf(index);
+    }
+
+    /**
+     * Folds the case of an alias, so that aliases that are equal ignoring case,
+     * as by {@link String#equalsIgnoreCase(String)}, fold to the same string.
+     */
+    private static String foldCase(String alias) {
+        StringBuilder folded = null;
+        for (int i = 0; i < alias.length(); ) {
+            int codePoint = alias.codePointAt(i);
+            int foldedCodePoint = Character.toLowerCase(Character.toUpperCase(codePoint));
+            if (foldedCodePoint != codePoint && folded == null) {
+                folded = new StringBuilder(alias.length()).append(alias, 0, i);
+            }
+            if (folded != null) {
+                folded.appendCodePoint(foldedCodePoint);
+            }
+            i += Character.charCount(codePoint);
+        }
+        return folded == null ? alias : folded.toString();
+    }
+}
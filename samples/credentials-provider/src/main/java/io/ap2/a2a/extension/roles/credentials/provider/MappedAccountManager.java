@@ -0,0 +1,577 @@
+package io.ap2.a2a.extension.roles.credentials.provider;
+
+import io.ap2.a2a.extension.common.MandateCodec;
+import io.ap2.a2a.extension.spec.AP2Exception;
+import io.ap2.a2a.extension.spec.ContactAddress;
+import io.ap2.a2a.extension.spec.PaymentMethodData;
+import io.quarkus.arc.properties.IfBuildProperty;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.logging.Logger;
+
+/**
+ * A manager of a user's 'account details' backed by a memory-mapped account
+ * file, for more accounts than fit on the heap.
+ * <p>
+ * The account file holds a record per account, with the
+ * {@link MandateCodec binary encoding} of its shipping address and payment
+ * methods, followed by an open-addressing hash table from the hash of each
+ * email address to the offset of its record. Opening the file only maps it
+ * and checks its header, so startup takes the same time whatever the number
+ * of accounts, and the operating system pages in the parts of the file that
+ * are used.
+ * <p>
+ * Looking up an account probes the hash table, compares the email address of
+ * the record, and decodes the record into an {@link IndexedAccount}. Decoded
+ * accounts are kept in a bounded LRU cache, split into stripes by email
+ * address so that lookups of different accounts rarely contend.
+ * <p>
+ * The file is mapped in chunks of 1 GiB, so it may be larger than 2 GiB, and
+ * records never straddle chunks. The account file is written by
+ * {@link #writeAccountFile(Path, Iterable)}, and is read-only once written.
+ * It is written from a file with one JSON account per line, streamed by
+ * {@link Account#read(Path)}, either by {@link #main(String[])}, or when
+ * the manager starts if {@code ap2.accounts.import-file} is configured and
+ * the account file is missing or older than it.
+ * <p>
+ * This manager is enabled with {@code ap2.accounts.type=mapped}, which is a
+ * build-time property: it selects the manager when the credentials provider
+ * is built, for instance with {@code -Dap2.accounts.type=mapped} or in
+ * application.properties, and setting it when the credentials provider starts
+ * has no effect.
+ */
+@ApplicationScoped
+@IfBuildProperty(name = "ap2.accounts.type", stringValue = "mapped")
+public class MappedAccountManager extends AbstractAccountManager {
+
+    private static final Logger logger = Logger.getLogger(MappedAccountManager.class.getName());
+
+    private static final int MAGIC = 0x41503241; // "AP2A"
+    private static final int VERSION = 1;
+    private static final int FILE_HEADER_SIZE = 32;
+    private static final int RECORD_PREFIX_SIZE = 8;
+    private static final int SLOT_SIZE = 16;
+    private static final int CHUNK_SHIFT = 30;
+    private static final long CHUNK_SIZE = 1L << CHUNK_SHIFT;
+    private static final long CHUNK_MASK = CHUNK_SIZE - 1;
+    private static final int WRITE_BUFFER_SIZE = 1 << 20;
+    private static final int MAX_CACHE_STRIPES = 16;
+
+    /**
+     * The account file.
+     */
+    @ConfigProperty(name = "ap2.accounts.file", defaultValue = "accounts.bin")
+    Path file;
+
+    /**
+     * The number of decoded accounts kept in memory.
+     */
+    @ConfigProperty(name = "ap2.accounts.cache-size", defaultValue = "10000")
+    int cacheSize;
+
+    /**
+     * The file of the accounts written to the account file at startup, with one JSON account per line.
+     */
+    @ConfigProperty(name = "ap2.accounts.import-file")
+    Optional<Path> importFile = Optional.empty();
+
+    private DecodedCache cache;
+    private volatile AccountFile accountFile;
+
+    /**
+     * Creates a new MappedAccountManager, configured by injection.
+     */
+    public MappedAccountManager() {
+    }
+
+    /**
+     * Creates and opens a new MappedAccountManager.
+     *
+     * @param file the account file
+     * @param cacheSize the number of decoded accounts kept in memory, or 0 to decode every lookup
+     */
+    public MappedAccountManager(Path file, int cacheSize) {
+        this.file = file;
+        this.cacheSize = cacheSize;
+        open();
+    }
+
+    /**
+     * Writes the account file from the import file if it is out of date, then
+     * maps the account file and checks its header.
+     */
+    @PostConstruct
+    void open() {
+        if (cacheSize < 0) {
+            throw new IllegalArgumentException("ap2.accounts.cache-size must not be negative");
+        }
+        if (importFile.isPresent()) {
+            importAccounts(importFile.get());
+        }
+        // The mapping stays valid once the channel is closed
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if (fileSize < FILE_HEADER_SIZE) {
+                throw new AP2Exception("Not an account file: " + file);
+            }
+            MappedByteBuffer[] chunks = map(channel, FileChannel.MapMode.READ_ONLY, fileSize);
+            ByteBuffer header = chunks[0];
+            long accountCount = header.getLong(8);
+            long indexOffset = header.getLong(16);
+            long indexSlots = header.getLong(24);
+            if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+                throw new AP2Exception("Not an account file: " + file);
+            }
+            if (indexOffset < FILE_HEADER_SIZE || indexOffset % SLOT_SIZE != 0 || Long.bitCount(indexSlots) != 1
+                    || indexSlots > (fileSize - indexOffset) / SLOT_SIZE || accountCount >= indexSlots) {
+                throw new AP2Exception("Corrupt account file: " + file);
+            }
+            cache = new DecodedCache(cacheSize);
+            accountFile = new AccountFile(chunks, indexOffset, indexSlots);
+            logger.info("Opened account file " + file + " with " + accountCount + " accounts");
+        } catch (IOException e) {
+            throw new AP2Exception("Failed to open account file " + file + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Releases the account file and the decoded accounts.
+     */
+    @PreDestroy
+    public void close() {
+        accountFile = null;
+        if (cache != null) {
+            cache.clear();
+        }
+    }
+
+    @Override
+    IndexedAccount findAccount(String emailAddress) {
+        AccountFile current = accountFile;
+        if (current == null) {
+            throw new AP2Exception("Account file " + file + " is not open");
+        }
+        if (emailAddress == null) {
+            return null;
+        }
+        IndexedAccount account = cache.get(emailAddress);
+        if (account == null) {
+            account = current.read(emailAddress);
+            if (account != null) {
+                // Accounts are immutable, so a lookup that raced to decode the same account does no harm
+                cache.put(emailAddress, account);
+            }
+        }
+        return account;
+    }
+
+    /**
+     * Writes an account file from a file of JSON accounts.
+     * <p>
+     * Usage: {@code MappedAccountManager <accounts.ndjson> [accounts.bin]}
+     *
+     * @param args the file of JSON accounts, and the account file, {@code accounts.bin} by default
+     */
+    public static void main(String[] args) {
+        if (args.length < 1 || args.length > 2 || "--help".equals(args[0]) || "-h".equals(args[0])) {
+            System.out.println("Usage: MappedAccountManager <accounts.ndjson> [accounts.bin]");
+            return;
+        }
+        Path source = Path.of(args[0]);
+        Path target = Path.of(args.length > 1 ? args[1] : "accounts.bin");
+        try (Account.Reader accounts = Account.read(source)) {
+            long accountCount = writeAccountFile(target, accounts);
+            System.out.println("Wrote " + accountCount + " accounts to " + target);
+        } catch (IOException | AP2Exception e) {
+            System.err.println("Failed to write " + target + " from " + source + ": " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    private void importAccounts(Path source) {
+        try {
+            if (Files.exists(file)
+                    && Files.getLastModifiedTime(file).compareTo(Files.getLastModifiedTime(source)) >= 0) {
+                return;
+            }
+            long accountCount;
+            try (Account.Reader accounts = Account.read(source)) {
+                accountCount = writeAccountFile(file, accounts);
+            }
+            logger.info("Wrote " + accountCount + " accounts from " + source + " to account file " + file);
+        } catch (IOException e) {
+            throw new AP2Exception("Failed to import accounts from " + source + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Writes an account file, replacing any file at the path once it is
+     * complete.
+     * <p>
+     * Accounts are streamed to the file and then indexed from it, so the
+     * accounts do not need to fit in memory. An account replaces any earlier
+     * account with the same email address.
+     *
+     * @param file the account file
+     * @param accounts the accounts
+     * @return the number of accounts written
+     * @throws AP2Exception if the file cannot be written
+     */
+    static long writeAccountFile(Path file, Iterable<Account> accounts) throws AP2Exception {
+        Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            long accountCount;
+            try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                RecordWriter writer = new RecordWriter(channel);
+                long recordCount = 0;
+                for (Account account : accounts) {
+                    writer.write(account);
+                    recordCount++;
+                }
+                long recordsEnd = writer.position();
+                long indexOffset = (recordsEnd + SLOT_SIZE - 1) & -SLOT_SIZE;
+                writer.pad(indexOffset - recordsEnd);
+                writer.flush();
+
+                long indexSlots = indexSlots(recordCount);
+                MappedByteBuffer[] chunks = map(channel, FileChannel.MapMode.READ_WRITE,
+                        indexOffset + indexSlots * SLOT_SIZE);
+                AccountFile accountFile = new AccountFile(chunks, indexOffset, indexSlots);
+                accountCount = accountFile.index(recordsEnd);
+                chunks[0].putInt(0, MAGIC)
+                        .putInt(4, VERSION)
+                        .putLong(8, accountCount)
+                        .putLong(16, indexOffset)
+                        .putLong(24, indexSlots);
+                for (MappedByteBuffer chunk : chunks) {
+                    chunk.force();
+                }
+            }
+            Files.move(tempFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            return accountCount;
+        } catch (IOException | RuntimeException e) {
+            try {
+                Files.deleteIfExists(tempFile);
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            if (e instanceof AP2Exception ap2Exception) {
+                throw ap2Exception;
+            }
+            throw new AP2Exception("Failed to write account file " + file + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Returns the number of slots of the hash table for a number of accounts,
+     * a power of two that keeps the table at most three-quarters full.
+     */
+    private static long indexSlots(long accountCount) {
+        long minSlots = Math.max(16, accountCount + accountCount / 3 + 1);
+        return Long.highestOneBit(minSlots - 1) << 1;
+    }
+
+    private static MappedByteBuffer[] map(FileChannel channel, FileChannel.MapMode mode, long size)
+            throws IOException {
+        MappedByteBuffer[] chunks = new MappedByteBuffer[(int) ((size + CHUNK_MASK) >>> CHUNK_SHIFT)];
+        for (int i = 0; i < chunks.length; i++) {
+            long position = (long) i << CHUNK_SHIFT;
+            chunks[i] = channel.map(mode, position, Math.min(CHUNK_SIZE, size - position));
+        }
+        return chunks;
+    }
+
+    /**
+     * Hashes an email address: FNV-1a over its UTF-8 bytes, with the finalizer
+     * of MurmurHash3 so that the low bits of similar addresses differ. Zero
+     * marks an empty slot, so it is never returned.
+     */
+    private static long hash(byte[] emailAddress) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : emailAddress) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash == 0 ? 1 : hash;
+    }
+
+    /**
+     * The records and the hash table of a mapped account file.
+     * <p>
+     * A record is its length and the length of its email address, as ints,
+     * followed by the UTF-8 email address, the encoded shipping address and
+     * the encoded payment methods. The end of a chunk that cannot hold the
+     * next record is zero.
+     * <p>
+     * A slot of the hash table is the hash of an email address and the offset
+     * of its record, as longs, or zero if empty. Collisions are resolved by
+     * linear probing.
+     */
+    private static final class AccountFile {
+
+        private final MappedByteBuffer[] chunks;
+        private final long indexOffset;
+        private final long slotMask;
+
+        AccountFile(MappedByteBuffer[] chunks, long indexOffset, long indexSlots) {
+            this.chunks = chunks;
+            this.indexOffset = indexOffset;
+            this.slotMask = indexSlots - 1;
+        }
+
+        /**
+         * Reads and decodes the account with an email address.
+         *
+         * @return the account, or {@code null} if there is none
+         */
+        IndexedAccount read(String emailAddress) {
+            byte[] emailBytes = emailAddress.getBytes(StandardCharsets.UTF_8);
+            long slotOffset = find(hash(emailBytes), emailBytes);
+            if (getLong(slotOffset) == 0) {
+                return null;
+            }
+            ByteBuffer record = record(getLong(slotOffset + Long.BYTES));
+            record.position(RECORD_PREFIX_SIZE + emailBytes.length);
+            ContactAddress shippingAddress = MandateCodec.decodeContactAddress(record);
+            List<PaymentMethodData> paymentMethods = MandateCodec.decodePaymentMethods(record);
+            return new IndexedAccount(new Account(emailAddress, shippingAddress, paymentMethods));
+        }
+
+        /**
+         * Adds the records up to an offset to the hash table, which must be empty.
+         *
+         * @return the number of distinct email addresses
+         */
+        long index(long recordsEnd) {
+            long accountCount = 0;
+            long offset = FILE_HEADER_SIZE;
+            while (offset < recordsEnd) {
+                long chunkRemaining = CHUNK_SIZE - (offset & CHUNK_MASK);
+                if (chunkRemaining < RECORD_PREFIX_SIZE || getInt(offset) == 0) {
+                    // Padding up to the next chunk
+                    offset += chunkRemaining;
+                    continue;
+                }
+                ByteBuffer record = record(offset);
+                byte[] emailBytes = new byte[record.getInt(4)];
+                record.get(RECORD_PREFIX_SIZE, emailBytes);
+                long hash = hash(emailBytes);
+                long slotOffset = find(hash, emailBytes);
+                if (getLong(slotOffset) == 0) {
+                    accountCount++;
+                }
+                // A later record of an email address replaces the earlier one
+                putLong(slotOffset, hash);
+                putLong(slotOffset + Long.BYTES, offset);
+                offset += record.limit();
+            }
+            return accountCount;
+        }
+
+        /**
+         * Finds the slot of an email address.
+         *
+         * @return the offset of the slot of the email address, or of the empty slot where it would be added
+         */
+        private long find(long hash, byte[] emailBytes) {
+            for (long probes = 0; probes <= slotMask; probes++) {
+                long slotOffset = indexOffset + ((hash + probes) & slotMask) * SLOT_SIZE;
+                long slotHash = getLong(slotOffset);
+                if (slotHash == 0
+                        || (slotHash == hash && hasEmailAddress(getLong(slotOffset + Long.BYTES), emailBytes))) {
+                    return slotOffset;
+                }
+            }
+            throw new AP2Exception("Corrupt account file: the hash table is full");
+        }
+
+        private boolean hasEmailAddress(long recordOffset, byte[] emailBytes) {
+            ByteBuffer record = record(recordOffset);
+            return record.getInt(4) == emailBytes.length
+                    && record.slice(RECORD_PREFIX_SIZE, emailBytes.length).equals(ByteBuffer.wrap(emailBytes));
+        }
+
+        /**
+         * Returns a buffer of its own over a record, so that concurrent reads
+         * do not share a position.
+         */
+        private ByteBuffer record(long offset) {
+            MappedByteBuffer chunk = chunks[(int) (offset >>> CHUNK_SHIFT)];
+            int position = (int) (offset & CHUNK_MASK);
+            int length = chunk.getInt(position);
+            if (length < RECORD_PREFIX_SIZE || length > chunk.limit() - position
+                    || chunk.getInt(position + 4) > length - RECORD_PREFIX_SIZE) {
+                throw new AP2Exception("Corrupt account file: invalid record at offset " + offset);
+            }
+            return chunk.slice(position, length);
+        }
+
+        private int getInt(long offset) {
+            return chunks[(int) (offset >>> CHUNK_SHIFT)].getInt((int) (offset & CHUNK_MASK));
+        }
+
+        private long getLong(long offset) {
+            // Slots are aligned, so they never straddle chunks
+            return chunks[(int) (offset >>> CHUNK_SHIFT)].getLong((int) (offset & CHUNK_MASK));
+        }
+
+        private void putLong(long offset, long value) {
+            chunks[(int) (offset >>> CHUNK_SHIFT)].putLong((int) (offset & CHUNK_MASK), value);
+        }
+    }
+
+    /**
+     * Streams records to an account file, after room for its header.
+     */
+    private static final class RecordWriter {
+
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+        private long position = FILE_HEADER_SIZE;
+
+        RecordWriter(FileChannel channel) {
+            this.channel = channel;
+            buffer.position(FILE_HEADER_SIZE);
+        }
+
+        long position() {
+            return position;
+        }
+
+        void write(Account account) throws IOException {
+            byte[] emailBytes = account.emailAddress().getBytes(StandardCharsets.UTF_8);
+            byte[] shippingAddress = MandateCodec.encodeContactAddress(account.shippingAddress());
+            byte[] paymentMethods = MandateCodec.encodePaymentMethods(account.paymentMethods());
+            long length = (long) RECORD_PREFIX_SIZE + emailBytes.length + shippingAddress.length
+                    + paymentMethods.length;
+            if (length > CHUNK_SIZE) {
+                throw new AP2Exception("Account " + account.emailAddress() + " is too large");
+            }
+            long chunkRemaining = CHUNK_SIZE - (position & CHUNK_MASK);
+            if (length > chunkRemaining) {
+                pad(chunkRemaining);
+            }
+            ensureRoom(RECORD_PREFIX_SIZE);
+            buffer.putInt((int) length).putInt(emailBytes.length);
+            position += RECORD_PREFIX_SIZE;
+            put(emailBytes);
+            put(shippingAddress);
+            put(paymentMethods);
+        }
+
+        void pad(long length) throws IOException {
+            for (long remaining = length; remaining > 0; ) {
+                ensureRoom(1);
+                int count = (int) Math.min(remaining, buffer.remaining());
+                buffer.put(new byte[count]);
+                remaining -= count;
+            }
+            position += length;
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        private void put(byte[] bytes) throws IOException {
+            for (int offset = 0; offset < bytes.length; ) {
+                ensureRoom(1);
+                int count = Math.min(bytes.length - offset, buffer.remaining());
+                buffer.put(bytes, offset, count);
+                offset += count;
+            }
+            position += bytes.length;
+        }
+
+        private void ensureRoom(int length) throws IOException {
+            if (buffer.remaining() < length) {
+                flush();
+            }
+        }
+    }
+
+    /**
+     * A bounded LRU cache of decoded accounts, split into stripes that are
+     * each locked on their own.
+     */
+    private static final class DecodedCache {
+
+        private final Map<String, IndexedAccount>[] stripes;
+        private final int stripeMask;
+
+        @SuppressWarnings("unchecked")
+        DecodedCache(int maxEntries) {
+            int stripeCount = maxEntries == 0 ? 0 : Math.min(MAX_CACHE_STRIPES, Integer.highestOneBit(maxEntries));
+            int maxStripeEntries = stripeCount == 0 ? 0 : maxEntries / stripeCount;
+            stripes = new Map[stripeCount];
+            for (int i = 0; i < stripeCount; i++) {
+                stripes[i] = new LinkedHashMap<>(16, 0.75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<String, IndexedAccount> eldest) {
+                        return size() > maxStripeEntries;
+                    }
+                };
+            }
+            stripeMask = stripeCount - 1;
+        }
+
+        IndexedAccount get(String emailAddress) {
+            if (stripes.length == 0) {
+                return null;
+            }
+            Map<String, IndexedAccount> stripe = stripe(emailAddress);
+            synchronized (stripe) {
+                return stripe.get(emailAddress);
+            }
+        }
+
+        void put(String emailAddress, IndexedAccount account) {
+            if (stripes.length == 0) {
+                return;
+            }
+            Map<String, IndexedAccount> stripe = stripe(emailAddress);
+            synchronized (stripe) {
+                stripe.put(emailAddress, account);
+            }
+        }
+
+        void clear() {
+            for (Map<String, IndexedAccount> stripe : stripes) {
+                synchronized (stripe) {
+                    stripe.clear();
+                }
+            }
+        }
+
+        private Map<String, IndexedAccount> stripe(String emailAddress) {
+            int hash = emailAddress.hashCode();
+            return stripes[(hash ^ (hash >>> 16)) & stripeMask];
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package io.ap2.a2a.extension.roles.credentials.provider;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.ap2.a2a.extension.spec.PaymentMethodData;
+import io.ap2.a2a.extension.util.Assert;
+
+/**
+ * Matches the payment methods of a user against the payment methods a
+ * merchant accepts.
+ *
+ * A payment method is eligible if a merchant criterion has the same supported
+ * method, and accepts one of its card networks, compared case-insensitively.
+ * A criterion without a supported method accepts the networks for any method.
+ *
+ * Supported methods and card network names are interned into small integer
+ * ids. The payment methods of a user are compiled once into a {@link Wallet},
+ * with the networks of each payment method as a bitset, and the merchant
+ * criteria of a request are compiled into {@link Criteria}, with the networks
+ * accepted for each supported method as a bitset. Checking a payment method
+ * is then a lookup by its method id, and a few AND operations.
+ *
+ * Only the networks of wallets are interned: the networks of merchant criteria
+ * that no wallet has are ignored, as they cannot match, so merchant requests
+ * do not grow the interned names.
+ *
+ * This class is thread-safe.
+ */
+final class NetworkEligibility {
+
+    private static final Interner METHODS = new Interner();
+    private static final Interner NETWORKS = new Interner();
+    private static final long[] NO_NETWORKS = new long[0];
+    private static final int ANY_METHOD = 0;
+
+    static {
+        // Reserve id 0 for criteria without a supported method
+        METHODS.intern("");
+    }
+
+    /**
+     * Compiles the payment methods of a user.
+     *
+     * @param paymentMethods the payment methods, or {@code null}
+     * @return the wallet of the payment methods
+     */
+    static Wallet compileWallet(List<PaymentMethodData> paymentMethods) {
+        if (paymentMethods == null || paymentMethods.isEmpty()) {
+            return Wallet.EMPTY;
+        }
+        PaymentMethodData[] methods = paymentMethods.toArray(new PaymentMethodData[0]);
+        int[] methodIds = new int[methods.length];
+        long[][] networks = new long[methods.length][];
+        for (int i = 0; i < methods.length; i++) {
+            String supportedMethods = methods[i].supportedMethods();
+            methodIds[i] = supportedMethods == null ? -1 : METHODS.intern(supportedMethods);
+            networks[i] = walletNetworks(methods[i].data());
+        }
+        return new Wallet(methods, methodIds, networks);
+    }
+
+    /**
+     * Compiles the payment methods a merchant accepts.
+     *
+     * @param merchantAcceptedPaymentMethods the accepted payment methods
+     * @return the criteria of the accepted payment methods
+     */
+    static Criteria compileCriteria(List<PaymentMethodData> merchantAcceptedPaymentMethods) {
+        Assert.checkNotNullParam("merchantAcceptedPaymentMethods", merchantAcceptedPaymentMethods);
+        long[][] networksByMethod = new long[0][];
+        for (PaymentMethodData criteria : merchantAcceptedPaymentMethods) {
+            String supportedMethods = criteria.supportedMethods();
+            int methodId = supportedMethods == null || supportedMethods.isEmpty()
+                    ? ANY_METHOD
+                    : METHODS.find(supportedMethods);
+            long[] networks = criteriaNetworks(criteria.data());
+            if (methodId < 0 || networks.length == 0) {
+                // No wallet has the method or the networks
+                continue;
+            }
+            if (methodId >= networksByMethod.length) {
+                networksByMethod = Arrays.copyOf(networksByMethod, methodId + 1);
+            }
+            networksByMethod[methodId] = or(networksByMethod[methodId], networks);
+        }
+        return new Criteria(networksByMethod);
+    }
+
+    private static long[] walletNetworks(Map<String, Object> data) {
+        if (data == null || !(data.get("network") instanceof List<?> networkInfos)) {
+            return NO_NETWORKS;
+        }
+        long[] networks = NO_NETWORKS;
+        for (Object networkInfo : networkInfos) {
+            if (networkInfo instanceof Map<?, ?> info && info.get("name") instanceof String name) {
+                networks = set(networks, NETWORKS.intern(name.toLowerCase(Locale.ROOT)));
+            }
+        }
+        return networks;
+    }
+
+    private static long[] criteriaNetworks(Map<String, Object> data) {
+        if (data == null || !(data.get("network") instanceof List<?> names)) {
+            return NO_NETWORKS;
+        }
+        long[] networks = NO_NETWORKS;
+        for (Object name : names) {
+            if (name != null) {
+                int id = NETWORKS.find(name.toString().toLowerCase(Locale.ROOT));
+                if (id >= 0) {
+                    networks = set(networks, id);
+                }
+            }
+        }
+        return networks;
+    }
+
+    private static long[] set(long[] bits, int id) {
+        int word = id >>> 6;
+        long[] result = word < bits.length ? bits : Arrays.copyOf(bits, word + 1);
+        result[word] |= 1L << id;
+        return result;
+    }
+
+    private static long[] or(long[] bits, long[] other) {
+        if (bits == null) {
+            return other.clone();
+        }
+        long[] result = bits.length >= other.length ? bits : Arrays.copyOf(bits, other.length);
+        for (int i = 0; i < other.length; i++) {
+            result[i] |= other[i];
+        }
+        return result;
+    }
+
+    private static boolean intersects(long[] bits, long[] other) {
+        if (other == null) {
+            return false;
+        }
+        int words = Math.min(bits.length, other.length);
+        for (int i = 0; i < words; i++) {
+            if ((bits[i] & other[i]) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The compiled payment methods of a user.
+     */
+    static final class Wallet {
+
+        static final Wallet EMPTY = new Wallet(new PaymentMethodData[0], new int[0], new long[0][]);
+
+        private final PaymentMethodData[] paymentMethods;
+        private final int[] methodIds;
+        private final long[][] networks;
+
+        private Wallet(PaymentMethodData[] paymentMethods, int[] methodIds, long[][] networks) {
+            this.paymentMethods = paymentMethods;
+            this.methodIds = methodIds;
+            this.networks = networks;
+        }
+
+        /**
+         * Returns whether a payment method of the wallet is eligible.
+         *
+         * @param index the index of the payment method
+         * @param criteria the criteria
+         * @return whether the payment method is eligible
+         */
+        boolean isEligible(int index, Criteria criteria) {
+            long[][] networksByMethod = criteria.networksByMethod;
+            int methodId = methodIds[index];
+            if (methodId >= 0 && methodId < networksByMethod.length
+                    && intersects(networks[index], networksByMethod[methodId])) {
+                return true;
+            }
+            return networksByMethod.length > ANY_METHOD
+                    && intersects(networks[index], networksByMethod[ANY_METHOD]);
+        }
+
+        /**
+         * Returns the eligible payment methods of the wallet.
+         *
+         * @param criteria the criteria
+         * @return the eligible payment methods, in the order of the wallet
+         */
+        List<PaymentMethodData> eligible(Criteria criteria) {
+            List<PaymentMethodData> eligible = new ArrayList<>();
+            for (int i = 0; i < paymentMethods.length; i++) {
+                if (isEligible(i, criteria)) {
+                    eligible.add(paymentMethods[i]);
+                }
+            }
+            return eligible;
+        }
+    }
+
+    /**
+     * The compiled payment methods a merchant accepts.
+     */
+    static final class Criteria {
+
+        private final long[][] networksByMethod;
+
+        private Criteria(long[][] networksByMethod) {
+            this.networksByMethod = networksByMethod;
+        }
+    }
+
+    /**
+     * Assigns consecutive ids to names.
+     */
+    private static final class Interner {
+
+        private final ConcurrentMap<String, Integer> ids = new ConcurrentHashMap<>();
+        private final AtomicInteger nextId = new AtomicInteger();
+
+        int intern(String name) {
+            Integer id = ids.get(name);
+            return id != null ? id : ids.computeIfAbsent(name, n -> nextId.getAndIncrement());
+        }
+
+        int find(String name) {
+            Integer id = ids.get(name);
+            return id != null ? id : -1;
+        }
+    }
+
+    private NetworkEligibility() {
+    }
+}
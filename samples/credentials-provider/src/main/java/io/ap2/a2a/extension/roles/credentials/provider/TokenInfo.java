@@ -7,33 +7,39 @@ import io.ap2.a2a.extension.util.Assert;
 
 /**
  * Represents token information for payment credentials.
+ *
+ * Instances are immutable: binding a payment mandate to a token creates new
+ * token information, which replaces the previous one in the {@link TokenStore}.
  */
-class TokenInfo {
+final class TokenInfo {
 
     private final String emailAddress;
     private final String paymentMethodAlias;
-    private String paymentMandateId;
+    private final String paymentMandateId;
+    private final long expiresAtMillis;
 
     public TokenInfo(String emailAddress, String paymentMethodAlias) {
         this(emailAddress, paymentMethodAlias, null);
     }
 
     public TokenInfo(String emailAddress, String paymentMethodAlias, String paymentMandateId) {
+        this(emailAddress, paymentMethodAlias, paymentMandateId, Long.MAX_VALUE);
+    }
+
+    public TokenInfo(String emailAddress, String paymentMethodAlias, String paymentMandateId,
+                     long expiresAtMillis) {
         Assert.checkNotNullParam("emailAddress", emailAddress);
         Assert.checkNotNullParam("paymentMethodAlias", paymentMethodAlias);
         this.emailAddress = emailAddress;
         this.paymentMethodAlias = paymentMethodAlias;
         this.paymentMandateId = paymentMandateId;
+        this.expiresAtMillis = expiresAtMillis;
     }
 
     public String getPaymentMandateId() {
         return paymentMandateId;
     }
 
-    public void setPaymentMandateId(String paymentMandateId) {
-        this.paymentMandateId = paymentMandateId;
-    }
-
     public String getEmailAddress() {
         return emailAddress;
     }
@@ -41,4 +47,35 @@ class TokenInfo {
     public String getPaymentMethodAlias() {
         return paymentMethodAlias;
     }
+
+    /**
+     * Returns when the token expires.
+     *
+     * @return the expiry time, in milliseconds since the epoch
+     */
+    public long getExpiresAtMillis() {
+        return expiresAtMillis;
+    }
+
+    /**
+     * Returns whether the token has expired.
+     *
+     * @param nowMillis the current time, in milliseconds since the epoch
+     * @return whether the token has expired
+     */
+    public boolean isExpired(long nowMillis) {
+        return expiresAtMillis <= nowMillis;
+    }
+
+    /**
+     * Returns this token information bound to a payment mandate.
+     *
+     * @param paymentMandateId the payment mandate id
+     * @param expiresAtMillis when the bound token expires, in milliseconds since the epoch
+     * @return new token information
+     */
+    public TokenInfo withPaymentMandateId(String paymentMandateId, long expiresAtMillis) {
+        Assert.checkNotNullParam("paymentMandateId", paymentMandateId);
+        return new TokenInfo(emailAddress, paymentMethodAlias, paymentMandateId, expiresAtMillis);
+    }
 }
@@ -0,0 +1,127 @@
+package io.ap2.a2a.extension.roles.credentials.provider;
+
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import io.ap2.a2a.extension.util.Assert;
+
+/**
+ * Mints unguessable payment credential tokens.
+ *
+ * Each thread that mints tokens is given a slot once, and then numbers its
+ * tokens with its own counter, so minting a token does not touch any state
+ * shared between threads. The slot and counter of a token are unique to it,
+ * and the token is their HMAC-SHA256 under a secret key, truncated to 128
+ * bits, so it reveals neither and cannot be predicted from other tokens.
+ *
+ * Truncating the HMAC makes tokens unique with overwhelming probability
+ * only: two inputs may still share a token. Callers store tokens with
+ * {@link TokenStore#add}, which rejects a token already stored, and mint
+ * another one when it does.
+ *
+ * This class is thread-safe.
+ */
+final class TokenMinter {
+
+    /**
+     * The prefix of the tokens.
+     */
+    static final String TOKEN_PREFIX = "fake_payment_credential_token_";
+
+    private static final String MAC_ALGORITHM = "HmacSHA256";
+    private static final int KEY_SIZE = 32;
+    private static final int TOKEN_SIZE = 16;
+
+    private final SecretKeySpec key;
+    private final AtomicLong slots = new AtomicLong();
+    private final ThreadLocal<Minter> minters = ThreadLocal.withInitial(this::newMinter);
+
+    /**
+     * Creates a token minter with a random key.
+     */
+    TokenMinter() {
+        this(randomKey());
+    }
+
+    /**
+     * Creates a token minter with a key.
+     *
+     * @param key the key, of at least 32 bytes
+     */
+    TokenMinter(byte[] key) {
+        Assert.checkNotNullParam("key", key);
+        if (key.length < KEY_SIZE) {
+            throw new IllegalArgumentException("key must be at least " + KEY_SIZE + " bytes");
+        }
+        this.key = new SecretKeySpec(key, MAC_ALGORITHM);
+    }
+
+    /**
+     * Mints a new token.
+     *
+     * @return the token
+     */
+    String mint() {
+        return minters.get().mint();
+    }
+
+    private Minter newMinter() {
+        try {
+            Mac mac = Mac.getInstance(MAC_ALGORITHM);
+            mac.init(key);
+            return new Minter(mac, slots.getAndIncrement());
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Cannot mint tokens with " + MAC_ALGORITHM, e);
+        }
+    }
+
+    private static byte[] randomKey() {
+        byte[] key = new byte[KEY_SIZE];
+        new SecureRandom().nextBytes(key);
+        return key;
+    }
+
+    /**
+     * The state of the minting of tokens by a thread.
+     */
+    private static final class Minter {
+
+        private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+
+        private final Mac mac;
+        private final byte[] input = new byte[2 * Long.BYTES];
+        private final byte[] output;
+        private long counter;
+
+        Minter(Mac mac, long slot) {
+            this.mac = mac;
+            this.output = new byte[mac.getMacLength()];
+            writeLong(input, 0, slot);
+        }
+
+        String mint() {
+            writeLong(input, Long.BYTES, counter++);
+            mac.update(input);
+            try {
+                mac.doFinal(output, 0);
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("Cannot mint a token", e);
+            }
+            byte[] token = new byte[TOKEN_SIZE];
+            System.arraycopy(output, 0, token, 0, TOKEN_SIZE);
+            return TOKEN_PREFIX + ENCODER.encodeToString(token);
+        }
+
+        private static void writeLong(byte[] bytes, int offset, long value) {
+            for (int i = Long.BYTES - 1; i >= 0; i--) {
+                bytes[offset + i] = (byte) value;
+                value >>>= 8;
+            }
+        }
+    }
+}
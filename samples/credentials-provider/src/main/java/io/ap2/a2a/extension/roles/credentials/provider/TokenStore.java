@@ -0,0 +1,183 @@
+package io.ap2.a2a.extension.roles.credentials.provider;
+
+import java.time.Clock;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import io.ap2.a2a.extension.util.Assert;
+
+/**
+ * A store of payment credential tokens, which expire.
+ *
+ * Looking up a token is a single read of a concurrent hash map. Token
+ * information is immutable, and binding a payment mandate to a token replaces
+ * it with a compare-and-set, so a token is bound exactly once even when
+ * requests race.
+ *
+ * Each token is scheduled on a hashed timer wheel at its expiry, with one
+ * bucket per second of expiry. Expired tokens are no longer returned, and are
+ * evicted on each write, by the writer that wins a try-lock, from the buckets
+ * whose second has passed since the last sweep. Tokens that expire more than
+ * a turn of the wheel ahead stay in their bucket until their turn comes.
+ *
+ * This class is thread-safe.
+ */
+final class TokenStore {
+
+    static final long TICK_MILLIS = 1000;
+    static final int WHEEL_SIZE = 4096;
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+
+    private final ConcurrentMap<String, TokenInfo> tokens = new ConcurrentHashMap<>();
+    private final Queue<Deadline>[] wheel;
+    private final ReentrantLock sweepLock = new ReentrantLock();
+    private final Clock clock;
+    private long sweptTick;
+
+    TokenStore() {
+        this(Clock.systemUTC());
+    }
+
+    /**
+     * Creates a new TokenStore.
+     *
+     * @param clock the clock that tokens expire by
+     */
+    @SuppressWarnings("unchecked")
+    TokenStore(Clock clock) {
+        Assert.checkNotNullParam("clock", clock);
+        this.clock = clock;
+        sweptTick = clock.millis() / TICK_MILLIS;
+        wheel = new Queue[WHEEL_SIZE];
+        for (int i = 0; i < WHEEL_SIZE; i++) {
+            wheel[i] = new ConcurrentLinkedQueue<>();
+        }
+    }
+
+    /**
+     * Adds a token.
+     *
+     * @param token the token
+     * @param tokenInfo the token information
+     * @return {@code true} if the token was added, or {@code false} if the token already exists
+     */
+    boolean add(String token, TokenInfo tokenInfo) {
+        Assert.checkNotNullParam("token", token);
+        Assert.checkNotNullParam("tokenInfo", tokenInfo);
+        long now = clock.millis();
+        TokenInfo existing = tokens.putIfAbsent(token, tokenInfo);
+        if (existing != null && !existing.isExpired(now)) {
+            return false;
+        }
+        if (existing != null && !tokens.replace(token, existing, tokenInfo)) {
+            return false;
+        }
+        schedule(token, tokenInfo.getExpiresAtMillis());
+        sweep(now);
+        return true;
+    }
+
+    /**
+     * Returns the information of a token.
+     *
+     * @param token the token
+     * @return the token information, or {@code null} if the token does not exist or has expired
+     */
+    TokenInfo get(String token) {
+        TokenInfo tokenInfo = tokens.get(token);
+        return tokenInfo == null || tokenInfo.isExpired(clock.millis()) ? null : tokenInfo;
+    }
+
+    /**
+     * Binds a payment mandate to a token, unless one is already bound.
+     *
+     * @param token the token
+     * @param paymentMandateId the payment mandate id
+     * @param expiresAtMillis when the bound token expires, in milliseconds since the epoch
+     * @return the token information after the call, bound to the given or a previously bound payment mandate,
+     *         or {@code null} if the token does not exist or has expired
+     */
+    TokenInfo bind(String token, String paymentMandateId, long expiresAtMillis) {
+        Assert.checkNotNullParam("paymentMandateId", paymentMandateId);
+        while (true) {
+            long now = clock.millis();
+            TokenInfo current = tokens.get(token);
+            if (current == null || current.isExpired(now)) {
+                return null;
+            }
+            if (current.getPaymentMandateId() != null) {
+                // Do not overwrite the payment mandate id if it is already set
+                return current;
+            }
+            TokenInfo bound = current.withPaymentMandateId(paymentMandateId, expiresAtMillis);
+            // Token information compares by identity, so this only succeeds if no other binding won
+            if (tokens.replace(token, current, bound)) {
+                if (bound.getExpiresAtMillis() != current.getExpiresAtMillis()) {
+                    schedule(token, bound.getExpiresAtMillis());
+                }
+                sweep(now);
+                return bound;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of tokens held, including expired tokens not yet evicted.
+     *
+     * @return the number of tokens
+     */
+    int size() {
+        return tokens.size();
+    }
+
+    private void schedule(String token, long expiresAtMillis) {
+        if (expiresAtMillis == Long.MAX_VALUE) {
+            return;
+        }
+        // Round up, so that the token has expired when its bucket is swept
+        long tick = (expiresAtMillis + TICK_MILLIS - 1) / TICK_MILLIS;
+        wheel[(int) (tick & WHEEL_MASK)].add(new Deadline(token, expiresAtMillis, tick));
+    }
+
+    private void sweep(long now) {
+        if (!sweepLock.tryLock()) {
+            // Another writer is sweeping
+            return;
+        }
+        try {
+            long nowTick = now / TICK_MILLIS;
+            // After a long pause, every bucket is swept once
+            long fromTick = Math.max(sweptTick + 1, nowTick - WHEEL_MASK);
+            for (long tick = fromTick; tick <= nowTick; tick++) {
+                sweep(wheel[(int) (tick & WHEEL_MASK)], nowTick, now);
+            }
+            sweptTick = Math.max(sweptTick, nowTick);
+        } finally {
+            sweepLock.unlock();
+        }
+    }
+
+    private void sweep(Queue<Deadline> bucket, long nowTick, long now) {
+        for (Iterator<Deadline> deadlines = bucket.iterator(); deadlines.hasNext(); ) {
+            Deadline deadline = deadlines.next();
+            if (deadline.tick() > nowTick) {
+                // Due on a later turn of the wheel
+                continue;
+            }
+            deadlines.remove();
+            TokenInfo tokenInfo = tokens.get(deadline.token());
+            // Only evict the token if it was not rebound with a new expiry since
+            if (tokenInfo != null && tokenInfo.getExpiresAtMillis() == deadline.expiresAtMillis()
+                    && tokenInfo.isExpired(now)) {
+                tokens.remove(deadline.token(), tokenInfo);
+            }
+        }
+    }
+
+    private record Deadline(String token, long expiresAtMillis, long tick) {
+    }
+}
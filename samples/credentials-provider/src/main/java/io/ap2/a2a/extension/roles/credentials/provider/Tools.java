@@ -13,6 +13,7 @@ import io.a2a.server.tasks.TaskUpdater;
 import io.a2a.spec.DataPart;
 import io.a2a.spec.Task;
 import io.ap2.a2a.extension.common.MessageUtils;
+import io.ap2.a2a.extension.common.RecordReaders;
 import io.ap2.a2a.extension.spec.AP2Exception;
 import io.ap2.a2a.extension.spec.ContactAddress;
 import io.ap2.a2a.extension.spec.PaymentMandate;
@@ -23,6 +24,12 @@ import io.ap2.a2a.extension.spec.PaymentMethodData;
  */
 public class Tools {
 
+    /**
+     * The supported method of the merchant's payment method data sent without
+     * one, whose criteria then accept their networks for any supported method.
+     */
+    private static final String SUPPORTED_METHODS_PLACEHOLDER = "";
+
     private final AccountManager accountManager;
 
     public Tools(AccountManager accountManager) {
@@ -83,10 +90,11 @@ public class Tools {
             throw new AP2Exception("method_data is required for search_payment_methods");
         }
 
-        // TODO determine how to populated supportedMethods
-        String SUPPORTED_METHODS_PLACEHOLDER = "";
+        // The shopping agent sends the data of each PaymentMethodData, without its supported methods
         List<PaymentMethodData> merchantMethodDataList = methodData.stream()
-                .map(data -> new PaymentMethodData(SUPPORTED_METHODS_PLACEHOLDER, Map.of(PAYMENT_METHOD_DATA_DATA_KEY, data)))
+                .map(data -> data.containsKey("supported_methods")
+                        ? RecordReaders.read(data, PaymentMethodData.class)
+                        : new PaymentMethodData(SUPPORTED_METHODS_PLACEHOLDER, data))
                 .collect(Collectors.toList());
 
         Map<String, Object> eligibleAliases = getEligiblePaymentMethodAliases(userEmail, merchantMethodDataList);
@@ -100,7 +108,8 @@ public class Tools {
      * <p>
      * Updates a task with the payment credentials.
      *
-     * @param dataParts DataPart contents. Should contain a single PaymentMandate.
+     * @param dataParts DataPart contents. Should contain a single PaymentMandate and the
+     *                  CartMandate it pays.
      * @param updater The TaskUpdater instance for updating the task state.
      * @param currentTask The current task if there is one.
      * @throws AP2Exception if payment method is not found
@@ -163,7 +172,8 @@ public class Tools {
      * <p>
      * Adds the payment mandate id to the token in storage and then completes the task.
      *
-     * @param dataParts DataPart contents. Should contain a single PaymentMandate.
+     * @param dataParts DataPart contents. Should contain a single PaymentMandate and the
+     *                  CartMandate it pays.
      * @param updater The TaskUpdater instance for updating the task state.
      * @param currentTask The current task if there is one.
      * @throws AP2Exception if there's an error processing the mandate
@@ -207,56 +217,10 @@ public class Tools {
     private Map<String, Object> getEligiblePaymentMethodAliases(
             String userEmail, List<PaymentMethodData> merchantAcceptedPaymentMethods) {
 
-        List<PaymentMethodData> paymentMethods = accountManager.getAccountPaymentMethods(userEmail);
-        List<PaymentMethodData> eligiblePaymentMethods = paymentMethods.stream()
-                .filter(paymentMethod -> merchantAcceptedPaymentMethods.stream()
-                        .anyMatch(criteria -> isPaymentMethodEligible(paymentMethod, criteria)))
-                .collect(Collectors.toList());
+        List<PaymentMethodData> eligiblePaymentMethods =
+                accountManager.getEligiblePaymentMethods(userEmail, merchantAcceptedPaymentMethods);
 
         return Map.of("payment_method_aliases", getPaymentMethodAliases(eligiblePaymentMethods));
     }
 
-    /**
-     * Checks if a payment method is eligible based on a PaymentMethodData.
-     *
-     * @param paymentMethod A payment method to check
-     * @param merchantCriteria A PaymentMethodData object containing the eligibility criteria
-     * @return {@code true} if the payment method is eligible according to the criteria,
-     *         {@code false} otherwise
-     */
-    private boolean isPaymentMethodEligible(PaymentMethodData paymentMethod, PaymentMethodData merchantCriteria) {
-        if (!paymentMethod.supportedMethods().equals(merchantCriteria.supportedMethods())) {
-            return false;
-        }
-
-        List<Object> merchantNetworks = (List<Object>) merchantCriteria.data().get("network");
-        if (merchantNetworks == null || merchantNetworks.isEmpty()) {
-            return false;
-        }
-
-        List<String> merchantSupportedNetworks = merchantNetworks.stream()
-                .map(network -> network.toString().toLowerCase())
-                .collect(Collectors.toList());
-
-        List<Map<String, Object>> paymentCardNetworks =
-                (List<Map<String, Object>>) paymentMethod.data().get("network");
-
-        if (paymentCardNetworks == null) {
-            return false;
-        }
-
-        for (Map<String, Object> networkInfo : paymentCardNetworks) {
-            String networkName = (String) networkInfo.get("name");
-            if (networkName != null) {
-                for (String supportedNetwork : merchantSupportedNetworks) {
-                    if (networkName.toLowerCase().equals(supportedNetwork)) {
-                        return true;
-                    }
-                }
-            }
-        }
-
-        return false;
-    }
-
 }
@@ -0,0 +1,103 @@
+package io.ap2.a2a.extension.roles.credentials.provider;
+
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import io.ap2.a2a.extension.spec.PaymentMethodData;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Looks up payment methods by alias as a case-insensitive search of the
+ * payment methods of the account does.
+ */
+class IndexedAccountTest {
+
+    @Test
+    void comparesAliasesIgnoringCase() {
+        List<PaymentMethodData> paymentMethods = List.of(
+                card("American Express ending in 4444"),
+                card("Carte Bleue"),
+                card("\u039a\u0391\u03a1\u03a4\u0391 \u03c2"),
+                card("\u212aelvin card"));
+        IndexedAccount account = account(paymentMethods);
+
+        assertSame(paymentMethods.get(0), account.getPaymentMethodByAlias("american express ENDING in 4444"));
+        assertSame(paymentMethods.get(1), account.getPaymentMethodByAlias("CARTE BLEUE"));
+        // Final and medial sigma are equal ignoring case, as are the Kelvin sign and K
+        assertSame(paymentMethods.get(2), account.getPaymentMethodByAlias("\u03ba\u03b1\u03c1\u03c4\u03b1 \u03a3"));
+        assertSame(paymentMethods.get(2), account.getPaymentMethodByAlias("\u039a\u03b1\u03c1\u03c4\u03b1 \u03c3"));
+        assertSame(paymentMethods.get(3), account.getPaymentMethodByAlias("kelvin CARD"));
+        assertNull(account.getPaymentMethodByAlias("Carte Bleu"));
+        assertNull(account.getPaymentMethodByAlias(null));
+    }
+
+    @Test
+    void resolvesCollidingAliasesToTheFirstPaymentMethod() {
+        List<PaymentMethodData> paymentMethods = List.of(
+                card("Visa"),
+                card("VISA"),
+                card("visa"));
+        IndexedAccount account = account(paymentMethods);
+
+        assertSame(paymentMethods.get(0), account.getPaymentMethodByAlias("visa"));
+        assertSame(paymentMethods.get(0), account.getPaymentMethodByAlias("VISA"));
+    }
+
+    @Test
+    void ignoresPaymentMethodsWithoutAnAlias() {
+        Map<String, Object> numericAlias = new HashMap<>();
+        numericAlias.put("alias", 4444);
+        List<PaymentMethodData> paymentMethods = List.of(
+                new PaymentMethodData("CARD", null),
+                new PaymentMethodData("CARD", numericAlias),
+                card("4444"));
+        IndexedAccount account = account(paymentMethods);
+
+        assertSame(paymentMethods.get(2), account.getPaymentMethodByAlias("4444"));
+        assertNull(account(null).getPaymentMethodByAlias("4444"));
+    }
+
+    @Test
+    void looksUpAsACaseInsensitiveSearch() {
+        Random random = new Random(11);
+        String letters = "aAbBsS\u03c3\u03a3\u03c2kK\u212ai\u0130\u0131";
+        for (int round = 0; round < 200; round++) {
+            List<PaymentMethodData> paymentMethods = new ArrayList<>();
+            for (int i = random.nextInt(8); i > 0; i--) {
+                paymentMethods.add(card(randomAlias(random, letters)));
+            }
+            IndexedAccount account = account(paymentMethods);
+
+            for (int i = 0; i < 20; i++) {
+                String alias = randomAlias(random, letters);
+                PaymentMethodData expected = paymentMethods.stream()
+                        .filter(paymentMethod -> alias.equalsIgnoreCase((String) paymentMethod.data().get("alias")))
+                        .findFirst()
+                        .orElse(null);
+                assertSame(expected, account.getPaymentMethodByAlias(alias), alias + " in " + paymentMethods);
+            }
+        }
+    }
+
+    private static String randomAlias(Random random, String letters) {
+        StringBuilder alias = new StringBuilder();
+        for (int i = 1 + random.nextInt(2); i > 0; i--) {
+            alias.append(letters.charAt(random.nextInt(letters.length())));
+        }
+        return alias.toString();
+    }
+
+    private static IndexedAccount account(List<PaymentMethodData> paymentMethods) {
+        return new IndexedAccount(new Account("bugsbunny@gmail.com", null, paymentMethods));
+    }
+
+    private static PaymentMethodData card(String alias) {
+        return new PaymentMethodData("CARD", Map.of("alias", alias));
+    }
+}
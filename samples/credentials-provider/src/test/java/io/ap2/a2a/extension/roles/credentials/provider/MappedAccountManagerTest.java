@@ -0,0 +1,191 @@
+package io.ap2.a2a.extension.roles.credentials.provider;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import io.ap2.a2a.extension.spec.AP2Exception;
+import io.ap2.a2a.extension.spec.ContactAddress;
+import io.ap2.a2a.extension.spec.PaymentMethodData;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Writes account files and looks up their accounts.
+ */
+class MappedAccountManagerTest {
+
+    private static final int ACCOUNT_COUNT = 10_000;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void looksUpEveryWrittenAccount() {
+        List<Account> accounts = accounts(ACCOUNT_COUNT);
+        Path file = directory.resolve("accounts.bin");
+        assertEquals(ACCOUNT_COUNT, MappedAccountManager.writeAccountFile(file, accounts));
+
+        for (int cacheSize : new int[] {0, 100}) {
+            MappedAccountManager manager = new MappedAccountManager(file, cacheSize);
+            for (Account account : accounts) {
+                assertAccount(account, manager);
+            }
+            // Looked up again, from the cache if there is one
+            assertAccount(accounts.get(0), manager);
+            assertNull(manager.getAccountShippingAddress("nobody@example.com"));
+            assertEquals(List.of(), manager.getEligiblePaymentMethods("nobody@example.com", List.of()));
+            manager.close();
+        }
+    }
+
+    @Test
+    void keepsTheLastAccountOfAnEmailAddress() {
+        Account first = account(1);
+        Account replacement = new Account(first.emailAddress(), address(2), List.of(card(2)));
+        Path file = directory.resolve("accounts.bin");
+        assertEquals(1, MappedAccountManager.writeAccountFile(file, List.of(first, replacement)));
+
+        assertAccount(replacement, new MappedAccountManager(file, 0));
+    }
+
+    @Test
+    void importsAccountsAtStartup() throws IOException {
+        Path importFile = directory.resolve("accounts.ndjson");
+        Files.writeString(importFile, """
+                {"email_address":"bugsbunny@gmail.com","shipping_address":{"recipient":"Bugs Bunny",\
+                "city":"Mountain View","address_line":["1600 Amphitheatre Pkwy"]},\
+                "payment_methods":[{"supported_methods":"CARD","data":{"alias":"American Express ending in 4444",\
+                "network":[{"name":"amex"}]}}]}
+
+                {"email_address":"daffyduck@gmail.com"}
+                """);
+        Path file = directory.resolve("accounts.bin");
+
+        MappedAccountManager manager = new MappedAccountManager();
+        manager.file = file;
+        manager.importFile = Optional.of(importFile);
+        manager.open();
+
+        assertTrue(Files.exists(file));
+        assertEquals("Mountain View", manager.getAccountShippingAddress("bugsbunny@gmail.com").city());
+        PaymentMethodData card = manager.getPaymentMethodByAlias("bugsbunny@gmail.com",
+                "american express ending in 4444");
+        assertEquals("CARD", card.supportedMethods());
+        assertNull(manager.getAccountPaymentMethods("daffyduck@gmail.com"));
+    }
+
+    @Test
+    void skipsTheImportWhenTheAccountFileIsUpToDate() throws IOException {
+        Path importFile = directory.resolve("accounts.ndjson");
+        Files.writeString(importFile, "{\"email_address\":\"bugsbunny@gmail.com\"}\n");
+        Path file = directory.resolve("accounts.bin");
+        MappedAccountManager.writeAccountFile(file, List.of(account(1)));
+        Files.setLastModifiedTime(importFile, FileTime.fromMillis(Files.getLastModifiedTime(file).toMillis() - 1000));
+
+        MappedAccountManager manager = new MappedAccountManager();
+        manager.file = file;
+        manager.importFile = Optional.of(importFile);
+        manager.open();
+
+        assertAccount(account(1), manager);
+        assertNull(manager.getAccountShippingAddress("bugsbunny@gmail.com"));
+    }
+
+    @Test
+    void rejectsAnInvalidAccountOfTheImportFile() throws IOException {
+        Path importFile = directory.resolve("accounts.ndjson");
+        Files.writeString(importFile, "{\"email_address\":\"bugsbunny@gmail.com\"}\n{\"shipping_address\":{}}\n");
+        Path file = directory.resolve("accounts.bin");
+
+        MappedAccountManager manager = new MappedAccountManager();
+        manager.file = file;
+        manager.importFile = Optional.of(importFile);
+
+        AP2Exception e = assertThrows(AP2Exception.class, manager::open);
+        assertTrue(e.getMessage().contains("line 2"));
+        assertFalse(Files.exists(file));
+    }
+
+    @Test
+    void writesTheAccountFileOfTheCommandLine() throws IOException {
+        Path importFile = directory.resolve("accounts.ndjson");
+        Files.writeString(importFile, "{\"email_address\":\"bugsbunny@gmail.com\"}\n");
+        Path file = directory.resolve("accounts.bin");
+
+        MappedAccountManager.main(new String[] {importFile.toString(), file.toString()});
+
+        MappedAccountManager manager = new MappedAccountManager(file, 0);
+        assertNull(manager.getAccountShippingAddress("bugsbunny@gmail.com"));
+        assertEquals(List.of(), manager.getEligiblePaymentMethods("bugsbunny@gmail.com", List.of()));
+    }
+
+    @Test
+    void looksUpSeveralAliasesOfAnAccount() {
+        PaymentMethodData first = card(1);
+        PaymentMethodData second = card(2);
+        Account account = new Account("bugsbunny@gmail.com", address(1), List.of(first, second, card(3)));
+        Path file = directory.resolve("accounts.bin");
+        MappedAccountManager.writeAccountFile(file, List.of(account));
+        MappedAccountManager manager = new MappedAccountManager(file, 0);
+
+        Map<String, PaymentMethodData> paymentMethods = manager.getPaymentMethodsByAlias("bugsbunny@gmail.com",
+                List.of("card ending in 2", "Card ending in 9", "Card ending in 1"));
+
+        // Keyed by the given aliases, in their order, without the unknown ones
+        assertEquals(List.of("card ending in 2", "Card ending in 1"), List.copyOf(paymentMethods.keySet()));
+        assertEquals(second, paymentMethods.get("card ending in 2"));
+        assertEquals(first, paymentMethods.get("Card ending in 1"));
+        assertEquals(Map.of(), manager.getPaymentMethodsByAlias("nobody@example.com",
+                List.of("Card ending in 1")));
+    }
+
+    private static void assertAccount(Account expected, MappedAccountManager manager) {
+        String emailAddress = expected.emailAddress();
+        assertEquals(expected.shippingAddress(), manager.getAccountShippingAddress(emailAddress));
+        assertEquals(expected.paymentMethods(), manager.getAccountPaymentMethods(emailAddress));
+        for (PaymentMethodData paymentMethod : expected.paymentMethods()) {
+            String alias = (String) paymentMethod.data().get("alias");
+            assertEquals(paymentMethod, manager.getPaymentMethodByAlias(emailAddress, alias));
+        }
+    }
+
+    private static List<Account> accounts(int count) {
+        List<Account> accounts = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            accounts.add(account(i));
+        }
+        return accounts;
+    }
+
+    private static Account account(int i) {
+        List<PaymentMethodData> paymentMethods = new ArrayList<>();
+        for (int j = 0; j <= i % 3; j++) {
+            paymentMethods.add(card(i * 3 + j));
+        }
+        return new Account("user" + i + "@example.com", address(i), paymentMethods);
+    }
+
+    private static ContactAddress address(int i) {
+        return new ContactAddress("City " + i, "US", null, null, "555-" + i, String.valueOf(10000 + i),
+                "User " + i, "CA", null, List.of(i + " Main St", "Apt " + i));
+    }
+
+    private static PaymentMethodData card(int i) {
+        return new PaymentMethodData("CARD", Map.of(
+                "alias", "Card ending in " + i,
+                "network", List.of(Map.of("name", i % 2 == 0 ? "mastercard" : "amex")),
+                "account_identifier", "account_" + i));
+    }
+}
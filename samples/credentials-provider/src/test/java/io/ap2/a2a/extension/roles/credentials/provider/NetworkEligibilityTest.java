@@ -0,0 +1,144 @@
+package io.ap2.a2a.extension.roles.credentials.provider;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+import io.ap2.a2a.extension.spec.PaymentMethodData;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Matches payment methods against merchant criteria as a direct comparison of
+ * their supported methods and card networks does.
+ */
+class NetworkEligibilityTest {
+
+    private static final String[] METHODS = {"CARD", "BANK_ACCOUNT", "card", "WALLET"};
+
+    private final Random random = new Random(7);
+
+    @Test
+    void matchesTheSupportedMethodAndAnyNetwork() {
+        List<PaymentMethodData> wallet = List.of(
+                card("CARD", "amex"),
+                card("CARD", "visa", "mastercard"),
+                card("BANK_ACCOUNT", "visa"),
+                card("CARD"));
+
+        assertEquals(List.of(wallet.get(1)), eligible(wallet, criteria("CARD", "discover", "visa")));
+        assertEquals(List.of(wallet.get(0), wallet.get(1)), eligible(wallet, criteria("CARD", "amex"),
+                criteria("CARD", "mastercard")));
+        assertEquals(List.of(), eligible(wallet, criteria("CARD")));
+        assertEquals(List.of(), eligible(wallet, criteria("CARD", "unknown-network")));
+        assertEquals(List.of(), eligible(wallet));
+    }
+
+    @Test
+    void comparesNetworksButNotMethodsCaseInsensitively() {
+        List<PaymentMethodData> wallet = List.of(card("CARD", "AmEx"), card("card", "visa"));
+
+        assertEquals(List.of(wallet.get(0)), eligible(wallet, criteria("CARD", "AMEX", "VISA")));
+        assertEquals(List.of(wallet.get(1)), eligible(wallet, criteria("card", "Visa")));
+    }
+
+    @Test
+    void acceptsTheNetworksForAnyMethodWithoutASupportedMethod() {
+        List<PaymentMethodData> wallet = List.of(card("CARD", "amex"), card("BANK_ACCOUNT", "amex"),
+                card("WALLET", "visa"));
+
+        assertEquals(List.of(wallet.get(0), wallet.get(1)), eligible(wallet, criteria("", "amex")));
+    }
+
+    @Test
+    void ignoresPaymentMethodsWithoutNetworks() {
+        List<PaymentMethodData> wallet = List.of(
+                new PaymentMethodData("CARD", null),
+                new PaymentMethodData("CARD", Map.of("network", "amex")),
+                new PaymentMethodData("CARD", Map.of("network", List.of("amex", Map.of("id", "amex")))),
+                card("CARD", "amex"));
+
+        assertEquals(List.of(wallet.get(3)), eligible(wallet, criteria("CARD", "amex")));
+        assertEquals(List.of(), NetworkEligibility.compileWallet(null)
+                .eligible(NetworkEligibility.compileCriteria(List.of(criteria("CARD", "amex")))));
+    }
+
+    @Test
+    void matchesAsADirectComparison() {
+        // More networks than fit in a word of the bitsets
+        String[] networks = new String[150];
+        for (int i = 0; i < networks.length; i++) {
+            networks[i] = "network-" + i;
+        }
+
+        for (int round = 0; round < 500; round++) {
+            List<PaymentMethodData> wallet = new ArrayList<>();
+            for (int i = random.nextInt(6); i > 0; i--) {
+                wallet.add(card(METHODS[random.nextInt(METHODS.length)], pick(networks, 4)));
+            }
+            List<PaymentMethodData> criteria = new ArrayList<>();
+            for (int i = random.nextInt(4); i > 0; i--) {
+                String method = random.nextInt(5) == 0 ? "" : METHODS[random.nextInt(METHODS.length)];
+                criteria.add(criteria(method, pick(networks, 20)));
+            }
+
+            List<PaymentMethodData> expected = wallet.stream()
+                    .filter(paymentMethod -> criteria.stream().anyMatch(c -> isEligible(paymentMethod, c)))
+                    .toList();
+            assertEquals(expected, eligible(wallet, criteria.toArray(new PaymentMethodData[0])),
+                    "wallet " + wallet + ", criteria " + criteria);
+        }
+    }
+
+    /**
+     * Checks a payment method as a direct comparison of its supported method
+     * and card networks.
+     */
+    private static boolean isEligible(PaymentMethodData paymentMethod, PaymentMethodData criteria) {
+        if (!criteria.supportedMethods().isEmpty()
+                && !criteria.supportedMethods().equals(paymentMethod.supportedMethods())) {
+            return false;
+        }
+        if (!(criteria.data().get("network") instanceof List<?> accepted)
+                || !(paymentMethod.data().get("network") instanceof List<?> networkInfos)) {
+            return false;
+        }
+        for (Object networkInfo : networkInfos) {
+            String name = (String) ((Map<?, ?>) networkInfo).get("name");
+            for (Object network : accepted) {
+                if (name.toLowerCase(Locale.ROOT).equals(network.toString().toLowerCase(Locale.ROOT))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static List<PaymentMethodData> eligible(List<PaymentMethodData> wallet, PaymentMethodData... criteria) {
+        return NetworkEligibility.compileWallet(wallet).eligible(NetworkEligibility.compileCriteria(List.of(criteria)));
+    }
+
+    private String[] pick(String[] names, int max) {
+        String[] picked = new String[random.nextInt(max + 1)];
+        for (int i = 0; i < picked.length; i++) {
+            String name = names[random.nextInt(names.length)];
+            picked[i] = random.nextBoolean() ? name.toUpperCase(Locale.ROOT) : name;
+        }
+        return picked;
+    }
+
+    private static PaymentMethodData card(String supportedMethods, String... networks) {
+        List<Map<String, Object>> networkInfos = new ArrayList<>();
+        for (String network : networks) {
+            networkInfos.add(Map.of("name", network));
+        }
+        return new PaymentMethodData(supportedMethods, Map.of("network", networkInfos));
+    }
+
+    private static PaymentMethodData criteria(String supportedMethods, String... networks) {
+        return new PaymentMethodData(supportedMethods, Map.of("network", List.of(networks)));
+    }
+}
@@ -0,0 +1,97 @@
+package io.ap2.a2a.extension.roles.credentials.provider;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Mints unique tokens across threads, each the truncated HMAC of the slot of
+ * its thread and of its counter.
+ */
+class TokenMinterTest {
+
+    private static final byte[] KEY = new byte[32];
+
+    static {
+        Arrays.fill(KEY, (byte) 7);
+    }
+
+    @Test
+    void mintsTheHmacOfTheSlotAndCounter() throws Exception {
+        TokenMinter minter = new TokenMinter(KEY);
+
+        assertEquals(expectedToken(0, 0), minter.mint());
+        assertEquals(expectedToken(0, 1), minter.mint());
+        assertTrue(minter.mint().startsWith(TokenMinter.TOKEN_PREFIX));
+    }
+
+    @Test
+    void mintsUniqueValidTokensAcrossThreads() throws Exception {
+        int threads = 8;
+        int tokensPerThread = 20_000;
+        TokenMinter minter = new TokenMinter(KEY);
+        Set<String> tokens = ConcurrentHashMap.newKeySet();
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < tokensPerThread; i++) {
+                        tokens.add(minter.mint());
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // Every thread was given its own slot, and numbered its tokens from zero
+        Set<String> expected = new HashSet<>();
+        for (int slot = 0; slot < threads; slot++) {
+            for (int counter = 0; counter < tokensPerThread; counter++) {
+                expected.add(expectedToken(slot, counter));
+            }
+        }
+        assertEquals(threads * tokensPerThread, tokens.size());
+        assertEquals(expected, tokens);
+    }
+
+    @Test
+    void rejectsAShortKey() {
+        assertThrows(IllegalArgumentException.class, () -> new TokenMinter(new byte[16]));
+    }
+
+    private static String expectedToken(long slot, long counter) throws Exception {
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(KEY, "HmacSHA256"));
+        byte[] hmac = mac.doFinal(ByteBuffer.allocate(2 * Long.BYTES).putLong(slot).putLong(counter).array());
+        return TokenMinter.TOKEN_PREFIX + Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(Arrays.copyOf(hmac, 16));
+    }
+}
@@ -0,0 +1,233 @@
+package io.ap2.a2a.extension.roles.credentials.provider;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Expires and evicts tokens on the timer wheel, across rebinding and
+ * concurrent writers.
+ */
+class TokenStoreTest {
+
+    private static final long NOW = 1_700_000_000_000L;
+    private static final long TURN_MILLIS = TokenStore.WHEEL_SIZE * TokenStore.TICK_MILLIS;
+
+    private final MutableClock clock = new MutableClock(NOW);
+    private final TokenStore store = new TokenStore(clock);
+
+    @Test
+    void expiresATokenAtItsExpiry() {
+        store.add("token", tokenInfo(NOW + 1500));
+
+        clock.set(NOW + 1499);
+        assertNotNull(store.get("token"));
+        clock.set(NOW + 1500);
+        assertNull(store.get("token"));
+        assertNull(store.bind("token", "mandate", NOW + 10_000));
+    }
+
+    @Test
+    void evictsATokenOnTheFirstWriteAfterItsSecond() {
+        // Expires on the boundary of a tick, and in the middle of the next one
+        store.add("boundary", tokenInfo(NOW + 2000));
+        store.add("middle", tokenInfo(NOW + 2500));
+
+        clock.set(NOW + 1999);
+        write();
+        assertEquals(3, store.size());
+        clock.set(NOW + 2000);
+        write();
+        assertEquals(3, store.size());
+        assertNull(store.get("boundary"));
+        // Still present, as its bucket is the next one
+        assertNotNull(store.get("middle"));
+        clock.set(NOW + 2999);
+        write();
+        // Expired, but not evicted yet
+        assertNull(store.get("middle"));
+        assertEquals(4, store.size());
+        clock.set(NOW + 3000);
+        // Adds a token and evicts the expired one
+        write();
+        assertEquals(4, store.size());
+    }
+
+    @Test
+    void keepsTokensDueOnALaterTurnOfTheWheel() {
+        store.add("next-turn", tokenInfo(NOW + TURN_MILLIS + 3000));
+        store.add("this-turn", tokenInfo(NOW + 3000));
+
+        // Sweeps the bucket of both tokens
+        clock.set(NOW + 3000);
+        write();
+        assertNull(store.get("this-turn"));
+        assertNotNull(store.get("next-turn"));
+        assertEquals(2, store.size());
+
+        clock.set(NOW + TURN_MILLIS + 3000);
+        write();
+        assertNull(store.get("next-turn"));
+        assertEquals(2, store.size());
+    }
+
+    @Test
+    void evictsEveryExpiredTokenAfterALongPause() {
+        for (int i = 0; i < 100; i++) {
+            store.add("token-" + i, tokenInfo(NOW + (i + 1) * 997L));
+        }
+
+        clock.set(NOW + 3 * TURN_MILLIS);
+        write();
+        assertEquals(1, store.size());
+    }
+
+    @Test
+    void reschedulesABoundToken() {
+        store.add("token", tokenInfo(NOW + 10_000));
+        TokenInfo bound = store.bind("token", "mandate", NOW + 100_000);
+        assertEquals("mandate", bound.getPaymentMandateId());
+
+        // The unused expiry no longer applies
+        clock.set(NOW + 20_000);
+        write();
+        assertSame(bound, store.get("token"));
+        // Binding again keeps the first payment mandate and expiry
+        assertSame(bound, store.bind("token", "other", NOW + 200_000));
+
+        clock.set(NOW + 100_000);
+        write();
+        assertNull(store.get("token"));
+        assertEquals(2, store.size());
+    }
+
+    @Test
+    void replacesAnExpiredTokenWithoutEvictingItsReplacement() {
+        store.add("token", tokenInfo(NOW + 1000));
+        assertFalse(store.add("token", tokenInfo(NOW + 5000)));
+
+        clock.set(NOW + 1000);
+        TokenInfo replacement = tokenInfo(NOW + 10_000);
+        assertTrue(store.add("token", replacement));
+        clock.set(NOW + 5000);
+        write();
+        assertSame(replacement, store.get("token"));
+    }
+
+    @Test
+    void addsAndBindsEachTokenOnceAcrossThreads() throws Exception {
+        int threads = 8;
+        int tokensPerThread = 2000;
+        // Expired tokens that the writers evict as they race
+        for (int i = 0; i < 1000; i++) {
+            store.add("expired-" + i, tokenInfo(NOW + 1000 + i));
+        }
+        clock.set(NOW + 5000);
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            AtomicInteger added = new AtomicInteger();
+            AtomicInteger conflicts = new AtomicInteger();
+            ConcurrentMap<String, String> boundMandates = new ConcurrentHashMap<>();
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                String paymentMandateId = "mandate-" + t;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < tokensPerThread; i++) {
+                        // Every thread adds and binds the same tokens
+                        String token = "token-" + i;
+                        if (store.add(token, tokenInfo(NOW + 1_000_000))) {
+                            added.incrementAndGet();
+                        }
+                        TokenInfo bound = store.bind(token, paymentMandateId, NOW + 2_000_000);
+                        String winner = boundMandates.putIfAbsent(token, bound.getPaymentMandateId());
+                        if (winner != null && !winner.equals(bound.getPaymentMandateId())) {
+                            conflicts.incrementAndGet();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+
+            assertEquals(tokensPerThread, added.get());
+            assertEquals(0, conflicts.get());
+            assertEquals(tokensPerThread, store.size());
+            for (int i = 0; i < tokensPerThread; i++) {
+                assertEquals(boundMandates.get("token-" + i), store.get("token-" + i).getPaymentMandateId());
+            }
+
+            clock.set(NOW + 2_000_000);
+            write();
+            assertEquals(1, store.size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void write() {
+        // A token that never expires, added to sweep the wheel
+        store.add("write-" + clock.millis(), tokenInfo(Long.MAX_VALUE));
+    }
+
+    private static TokenInfo tokenInfo(long expiresAtMillis) {
+        return new TokenInfo("bugsbunny@gmail.com", "American Express ending in 4444", null, expiresAtMillis);
+    }
+
+    private static final class MutableClock extends Clock {
+
+        private volatile long millis;
+
+        private MutableClock(long millis) {
+            this.millis = millis;
+        }
+
+        private void set(long millis) {
+            this.millis = millis;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public long millis() {
+            return millis;
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(millis);
+        }
+    }
+}
@@ -10,12 +10,21 @@ import io.a2a.spec.DataPart;
 import io.a2a.spec.Task;
 import io.a2a.spec.TextPart;
 import io.ap2.a2a.extension.common.BaseAgentExecutor;
+import io.ap2.a2a.extension.common.CachingToolSelectorAgent;
+import io.ap2.a2a.extension.common.MandateVerifier;
+import io.ap2.a2a.extension.common.ToolRouter;
+import io.ap2.a2a.extension.common.ToolSelectionCache;
 import io.ap2.a2a.extension.spec.AP2Exception;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.enterprise.inject.Produces;
 import jakarta.inject.Inject;
+import java.time.Duration;
 import java.util.List;
+import java.util.Set;
 import java.util.logging.Logger;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import static io.ap2.a2a.extension.spec.AP2Constants.PAYMENT_MANDATE_DATA_KEY;
 
 /**
  * Producer for merchant payment processor agent executor.
@@ -39,6 +48,24 @@ public final class MerchantPaymentProcessorAgentExecutorProducer {
     @PublicAgentCard
     AgentCard agentCard;
 
+    /**
+     * The verifier of the signatures of the mandates in a message.
+     */
+    @Inject
+    MandateVerifier mandateVerifier;
+
+    /**
+     * The maximum number of tool selections cached for the LangChain4j agent.
+     */
+    @ConfigProperty(name = "ap2.tool-selection-cache.max-entries", defaultValue = "1024")
+    int toolSelectionCacheMaxEntries;
+
+    /**
+     * How long a tool selection made by the LangChain4j agent stays cached.
+     */
+    @ConfigProperty(name = "ap2.tool-selection-cache.ttl", defaultValue = "PT10M")
+    Duration toolSelectionCacheTtl;
+
     /**
      * Produces the agent executor for the merchant payment processor agent.
      *
@@ -51,7 +78,9 @@ public final class MerchantPaymentProcessorAgentExecutorProducer {
 
         return new MerchantPaymentProcessorAgentExecutor(
             agent,
+            new ToolSelectionCache(toolSelectionCacheMaxEntries, toolSelectionCacheTtl),
             agentCard.capabilities().extensions(),
+            mandateVerifier,
             debugMode
         );
     }
@@ -72,6 +101,19 @@ public final class MerchantPaymentProcessorAgentExecutorProducer {
      */
     private static class MerchantPaymentProcessorAgentExecutor extends BaseAgentExecutor {
 
+        /**
+         * Routes the requests sent by the merchant without consulting the LLM.
+         */
+        private static final ToolRouter TOOL_ROUTER = ToolRouter.builder()
+            .exactMatch("initiate_payment", "initiatePayment")
+            .dataKeyMatch("initiatePayment", PAYMENT_MANDATE_DATA_KEY)
+            .build();
+
+        /**
+         * The names of the tools that may be selected.
+         */
+        private static final Set<String> TOOL_NAMES = Set.of("initiatePayment");
+
         private final Tools tools;
         private final boolean debugMode;
 
@@ -79,14 +121,20 @@ public final class MerchantPaymentProcessorAgentExecutorProducer {
          * Constructor for MerchantPaymentProcessorAgentExecutor.
          *
          * @param agent the LangChain4j agent for tool selection
+         * @param toolSelectionCache the cache of tool selections made by the agent
          * @param supportedExtensions the list of extensions from the agent card
+         * @param mandateVerifier the verifier of the signatures of the mandates in a message
          * @param debugMode whether debug mode is enabled (defaults to false)
          */
         MerchantPaymentProcessorAgentExecutor(
                 final MerchantPaymentProcessorAgent agent,
+                final ToolSelectionCache toolSelectionCache,
                 final List<AgentExtension> supportedExtensions,
+                final MandateVerifier mandateVerifier,
                 final boolean debugMode) {
-            super(supportedExtensions, agent);
+            super(supportedExtensions,
+                new CachingToolSelectorAgent("merchant_payment_processor", agent, toolSelectionCache, TOOL_NAMES),
+                TOOL_ROUTER, mandateVerifier);
             this.tools = new Tools();
             this.debugMode = debugMode;
         }
@@ -100,9 +148,9 @@ public final class MerchantPaymentProcessorAgentExecutorProducer {
 
             logger.info("Processing request: " + prompt);
 
-            // Use the agent to determine which tool to use
+            // Use the router, or failing that the agent, to determine which tool to use
             // This mirrors the Python FunctionCallResolver.determine_tool_to_use()
-            String toolName = selectTool(prompt);
+            String toolName = selectTool(prompt, dataParts);
 
             // Invoke the selected tool
             // This mirrors the Python implementation's tool dispatch logic
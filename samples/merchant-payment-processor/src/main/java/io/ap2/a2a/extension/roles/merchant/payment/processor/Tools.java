@@ -1,5 +1,6 @@
 package io.ap2.a2a.extension.roles.merchant.payment.processor;
 
+import static io.ap2.a2a.extension.spec.AP2Constants.CART_MANDATE_DATA_KEY;
 import static io.ap2.a2a.extension.spec.AP2Constants.EXTENSION_URI;
 import static io.ap2.a2a.extension.spec.AP2Constants.PAYMENT_MANDATE_DATA_KEY;
 
@@ -26,7 +27,9 @@ import io.a2a.spec.TextPart;
 import io.ap2.a2a.extension.common.A2aMessageBuilder;
 import io.ap2.a2a.extension.common.MessageUtils;
 import io.ap2.a2a.extension.common.PaymentRemoteA2aClient;
+import io.ap2.a2a.extension.common.PaymentRemoteA2aClientPool;
 import io.ap2.a2a.extension.spec.AP2Exception;
+import io.ap2.a2a.extension.spec.CartMandate;
 import io.ap2.a2a.extension.spec.PaymentMandate;
 
 /**
@@ -42,7 +45,8 @@ public class Tools {
     /**
      * Handles the initiation of a payment.
      *
-     * @param dataParts The data parts from the request, expected to contain a PaymentMandate.
+     * @param dataParts The data parts from the request, expected to contain a PaymentMandate
+     *                  and the CartMandate it pays.
      * @param updater The TaskUpdater instance for updating the task state.
      * @param currentTask The current task, or null if this is a new payment.
      * @param debugMode Whether the agent is in debug mode.
@@ -63,12 +67,21 @@ public class Tools {
             throw new AP2Exception("Missing payment_mandate.");
         }
 
+        CartMandate cartMandate = MessageUtils.parseCanonicalObject(
+                CART_MANDATE_DATA_KEY, dataParts, CartMandate.class);
+        if (cartMandate == null) {
+            Message errorMessage = updater.newAgentMessage(
+                    createTextParts("Missing cart_mandate."), null);
+            updater.fail(errorMessage);
+            throw new AP2Exception("Missing cart_mandate.");
+        }
+
         String challengeResponse = (String) MessageUtils.findDataPart("challenge_response", dataParts);
         if (challengeResponse == null) {
             challengeResponse = "";
         }
 
-        handlePaymentMandate(paymentMandate, challengeResponse, updater, currentTask, debugMode);
+        handlePaymentMandate(paymentMandate, cartMandate, challengeResponse, updater, currentTask, debugMode);
     }
 
     /**
@@ -78,6 +91,7 @@ public class Tools {
      * requires input, it verifies the challenge response and completes the payment.
      *
      * @param paymentMandate The payment mandate containing payment details.
+     * @param cartMandate The cart mandate it pays.
      * @param challengeResponse The response to a transaction challenge, if any.
      * @param updater The task updater for managing task state.
      * @param currentTask The current task, or null if it's a new payment.
@@ -86,6 +100,7 @@ public class Tools {
      */
     private void handlePaymentMandate(
             PaymentMandate paymentMandate,
+            CartMandate cartMandate,
             String challengeResponse,
             TaskUpdater updater,
             Task currentTask,
@@ -98,7 +113,7 @@ public class Tools {
 
         if (currentTask.getStatus().state() == TaskState.INPUT_REQUIRED) {
             checkChallengeResponseAndCompletePayment(
-                    paymentMandate, challengeResponse, updater, debugMode);
+                    paymentMandate, cartMandate, challengeResponse, updater, debugMode);
         }
     }
 
@@ -137,6 +152,7 @@ public class Tools {
      * have an issuer in the demo, so we do it here.
      *
      * @param paymentMandate The payment mandate.
+     * @param cartMandate The cart mandate it pays.
      * @param challengeResponse The challenge response.
      * @param updater The task updater.
      * @param debugMode Whether the agent is in debug mode.
@@ -144,12 +160,13 @@ public class Tools {
      */
     private void checkChallengeResponseAndCompletePayment(
             PaymentMandate paymentMandate,
+            CartMandate cartMandate,
             String challengeResponse,
             TaskUpdater updater,
             boolean debugMode) throws AP2Exception {
 
         if (challengeResponseIsValid(challengeResponse)) {
-            completePayment(paymentMandate, updater, debugMode);
+            completePayment(paymentMandate, cartMandate, updater, debugMode);
             return;
         }
 
@@ -162,17 +179,19 @@ public class Tools {
      * Completes the payment process.
      *
      * @param paymentMandate The payment mandate.
+     * @param cartMandate The cart mandate it pays.
      * @param updater The task updater.
      * @param debugMode Whether the agent is in debug mode.
      * @throws AP2Exception if there's an error completing the payment
      */
     private void completePayment(
             PaymentMandate paymentMandate,
+            CartMandate cartMandate,
             TaskUpdater updater,
             boolean debugMode) throws AP2Exception {
 
         String paymentMandateId = paymentMandate.paymentMandateContents().paymentMandateId();
-        String paymentCredential = requestPaymentCredential(paymentMandate, updater, debugMode);
+        String paymentCredential = requestPaymentCredential(paymentMandate, cartMandate, updater, debugMode);
 
         logger.info("Calling issuer to complete payment for " + paymentMandateId +
                 " with payment credential " + paymentCredential + "...");
@@ -197,6 +216,7 @@ public class Tools {
      * Sends a request to the Credentials Provider for payment credentials.
      *
      * @param paymentMandate The PaymentMandate containing payment details.
+     * @param cartMandate The CartMandate it pays.
      * @param updater The task updater.
      * @param debugMode Whether the agent is in debug mode.
      * @return The payment credential details.
@@ -204,6 +224,7 @@ public class Tools {
      */
     private String requestPaymentCredential(
             PaymentMandate paymentMandate,
+            CartMandate cartMandate,
             TaskUpdater updater,
             boolean debugMode) throws AP2Exception {
 
@@ -221,24 +242,18 @@ public class Tools {
             throw new AP2Exception("Credentials provider URL not found in token");
         }
 
-        // Create a PaymentRemoteA2aClient for the credentials provider
-        PaymentRemoteA2aClient remoteClient = new PaymentRemoteA2aClient(
+        // Get the shared PaymentRemoteA2aClient for the credentials provider from the pool
+        PaymentRemoteA2aClient remoteClient = PaymentRemoteA2aClientPool.shared().getClient(
                 "credentials_provider",
                 credentialsProviderUrl,
                 Set.of(EXTENSION_URI)
         );
 
-        Client credentialsProvider;
-        try {
-            credentialsProvider = remoteClient.getA2aClient(List.of());
-        } catch (Exception e) {
-            throw new AP2Exception("Failed to create credentials provider client: " + e.getMessage(), e);
-        }
-
         A2aMessageBuilder messageBuilder = new A2aMessageBuilder()
                 .setContextId(updater.getContextId())
                 .addText("Give me the payment method credentials for the given token.")
                 .addData(PAYMENT_MANDATE_DATA_KEY, paymentMandate)
+                .addData(CART_MANDATE_DATA_KEY, cartMandate)
                 .addData("debug_mode", debugMode);
 
         // Container to hold the payment credential result
@@ -266,8 +281,15 @@ public class Tools {
             logger.severe("Error requesting payment credential: " + throwable.getMessage());
         };
 
+        PaymentRemoteA2aClient.Lease credentialsProvider;
         try {
-            credentialsProvider.sendMessage(messageBuilder.build(), consumers, errorHandler, null);
+            credentialsProvider = remoteClient.lease();
+        } catch (Exception e) {
+            throw new AP2Exception("Failed to create credentials provider client: " + e.getMessage(), e);
+        }
+
+        try (credentialsProvider) {
+            credentialsProvider.client().sendMessage(messageBuilder.build(), consumers, errorHandler, null);
         } catch (Exception e) {
             throw new AP2Exception("Failed to request payment credential: " + e.getMessage(), e);
         }
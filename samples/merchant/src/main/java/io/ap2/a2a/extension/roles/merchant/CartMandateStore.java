@@ -3,6 +3,7 @@ package io.ap2.a2a.extension.roles.merchant;
 import io.ap2.a2a.extension.spec.CartMandate;
 
 import java.util.Optional;
+import java.util.function.UnaryOperator;
 
 /**
  * Storage for CartMandates.
@@ -10,6 +11,11 @@ import java.util.Optional;
  * A CartMandate may be updated multiple times during the course of a shopping
  * journey. This storage system is used to persist CartMandates between
  * interactions between the shopper and merchant agents.
+ *
+ * Every write to a cart mandate gives it a new version. Concurrent updates to
+ * the same cart should use {@link #updateCartMandate(String, UnaryOperator)},
+ * or {@link #compareAndSetCartMandate(String, long, CartMandate)}, so that no
+ * update is lost.
  */
 public interface CartMandateStore {
 
@@ -29,6 +35,51 @@ public interface CartMandateStore {
      */
     void setCartMandate(String cartId, CartMandate cartMandate);
 
+    /**
+     * Get a cart mandate by cart ID, with its current version.
+     *
+     * @param cartId the cart ID
+     * @return the versioned cart mandate, or null if not found
+     */
+    VersionedCartMandate getVersionedCartMandate(String cartId);
+
+    /**
+     * Set a cart mandate by cart ID, only if it is still at the expected version.
+     *
+     * @param cartId the cart ID
+     * @param expectedVersion the version the cart mandate was read at
+     * @param cartMandate the cart mandate to store
+     * @return true if the cart mandate was stored, or false if it was updated
+     *         or removed since it was read
+     */
+    boolean compareAndSetCartMandate(String cartId, long expectedVersion, CartMandate cartMandate);
+
+    /**
+     * Atomically update a cart mandate by cart ID.
+     * <p>
+     * The update function is applied to the current cart mandate, and the
+     * result is stored only if the cart mandate has not been updated in the
+     * meantime. Otherwise the function is applied again to the newer cart
+     * mandate, so it may be called more than once and must not have side
+     * effects.
+     *
+     * @param cartId the cart ID
+     * @param updateFunction the function computing the updated cart mandate
+     * @return the updated cart mandate, or null if not found
+     */
+    default CartMandate updateCartMandate(String cartId, UnaryOperator<CartMandate> updateFunction) {
+        while (true) {
+            VersionedCartMandate current = getVersionedCartMandate(cartId);
+            if (current == null) {
+                return null;
+            }
+            CartMandate updated = updateFunction.apply(current.cartMandate());
+            if (compareAndSetCartMandate(cartId, current.version(), updated)) {
+                return updated;
+            }
+        }
+    }
+
     /**
      * Set risk data by context ID.
      *
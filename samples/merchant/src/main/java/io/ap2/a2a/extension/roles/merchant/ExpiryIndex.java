@@ -0,0 +1,110 @@
+package io.ap2.a2a.extension.roles.merchant;
+
+import io.ap2.a2a.extension.spec.CartMandate;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.logging.Logger;
+
+/**
+ * An index of the expiry times of the entries of a {@link CartMandateStore}.
+ * <p>
+ * Deadlines are kept in a priority queue ordered by expiry time, so that the
+ * expired entries can be found without scanning the store. Stores evict a
+ * bounded batch of expired entries on each write, rather than sweeping the
+ * whole store at once.
+ * <p>
+ * Deadlines are never removed when an entry is updated. A store must therefore
+ * check, when it evicts an entry, that the expiry time of the deadline is still
+ * the expiry time of the entry, and should only schedule a new deadline when
+ * the expiry time of an entry changes.
+ * <p>
+ * This class is thread-safe.
+ */
+final class ExpiryIndex {
+
+    private static final Logger logger = Logger.getLogger(ExpiryIndex.class.getName());
+
+    /**
+     * The maximum number of entries evicted by a single write.
+     */
+    static final int MAX_EVICTIONS_PER_WRITE = 32;
+
+    private final PriorityQueue<Deadline> deadlines =
+            new PriorityQueue<>(Comparator.comparingLong(Deadline::expiresAtMillis));
+
+    /**
+     * Schedules the expiry of an entry.
+     *
+     * @param key the key of the entry
+     * @param expiresAtMillis when the entry expires, in milliseconds since the epoch
+     */
+    synchronized void schedule(String key, long expiresAtMillis) {
+        deadlines.add(new Deadline(key, expiresAtMillis));
+    }
+
+    /**
+     * Removes and returns the deadlines that have passed, oldest first.
+     *
+     * @param nowMillis the current time, in milliseconds since the epoch
+     * @param max the maximum number of deadlines to return
+     * @return the passed deadlines, possibly empty
+     */
+    synchronized List<Deadline> pollExpired(long nowMillis, int max) {
+        Deadline next = deadlines.peek();
+        if (next == null || next.expiresAtMillis() > nowMillis) {
+            return List.of();
+        }
+        List<Deadline> expired = new ArrayList<>();
+        while (next != null && next.expiresAtMillis() <= nowMillis && expired.size() < max) {
+            expired.add(deadlines.poll());
+            next = deadlines.peek();
+        }
+        return expired;
+    }
+
+    /**
+     * Returns the number of scheduled deadlines, including superseded ones.
+     *
+     * @return the number of deadlines
+     */
+    synchronized int size() {
+        return deadlines.size();
+    }
+
+    /**
+     * Returns when a cart mandate expires, from the ISO 8601 cart expiry of its contents.
+     *
+     * @param cartMandate the cart mandate
+     * @param defaultExpiresAtMillis the expiry time to use if the cart expiry cannot be parsed
+     * @return when the cart mandate expires, in milliseconds since the epoch
+     */
+    static long cartExpiresAtMillis(CartMandate cartMandate, long defaultExpiresAtMillis) {
+        String cartExpiry = cartMandate.contents().cartExpiry();
+        try {
+            return Instant.parse(cartExpiry).toEpochMilli();
+        } catch (DateTimeParseException e) {
+            try {
+                return OffsetDateTime.parse(cartExpiry).toInstant().toEpochMilli();
+            } catch (DateTimeParseException ignored) {
+                logger.warning("Invalid cart_expiry '" + cartExpiry + "' for cart "
+                        + cartMandate.contents().id() + ", using the default expiry");
+                return defaultExpiresAtMillis;
+            }
+        }
+    }
+
+    /**
+     * The expiry time of an entry.
+     *
+     * @param key the key of the entry
+     * @param expiresAtMillis when the entry expires, in milliseconds since the epoch
+     */
+    record Deadline(String key, long expiresAtMillis) {
+    }
+}
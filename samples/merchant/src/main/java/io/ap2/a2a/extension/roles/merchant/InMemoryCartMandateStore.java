@@ -1,41 +1,167 @@
 package io.ap2.a2a.extension.roles.merchant;
 
 import io.ap2.a2a.extension.spec.CartMandate;
+import io.quarkus.arc.DefaultBean;
 import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 
-import java.util.Optional;
+import java.time.Clock;
+import java.time.Duration;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * In-memory implementation of {@link CartMandateStore}.
  *
  * This implementation uses concurrent hash maps to provide thread-safe storage
- * for cart mandates and risk data.
+ * for cart mandates and risk data. It is used unless another store, such as
+ * {@link MappedCartMandateStore}, is enabled when the merchant is built.
+ *
+ * Cart mandates expire at the cart expiry of their contents, and risk data
+ * expires once it has not been set for the risk data TTL. Expired entries are
+ * no longer returned, and are evicted a few at a time on each write.
+ *
+ * Compare-and-set is lock-free: each write stores a new entry with a new
+ * version, and a conditional write replaces the entry only if it is still the
+ * one that was read.
  */
 @ApplicationScoped
+@DefaultBean
 public class InMemoryCartMandateStore implements CartMandateStore {
 
-    private final ConcurrentMap<String, CartMandate> cartMandateStore = new ConcurrentHashMap<>();
-    private final ConcurrentMap<String, String> riskDataStore = new ConcurrentHashMap<>();
+    /**
+     * How long risk data is kept after it was last set.
+     */
+    @ConfigProperty(name = "ap2.cart-store.risk-data-ttl", defaultValue = "PT1H")
+    Duration riskDataTtl;
+
+    /**
+     * How long a cart mandate is kept if its cart expiry cannot be parsed.
+     */
+    @ConfigProperty(name = "ap2.cart-store.default-cart-ttl", defaultValue = "PT30M")
+    Duration defaultCartTtl;
+
+    private final ConcurrentMap<String, Entry<CartMandate>> cartMandateStore = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Entry<String>> riskDataStore = new ConcurrentHashMap<>();
+    private final AtomicLong versions = new AtomicLong();
+    private final ExpiryIndex cartMandateExpiry = new ExpiryIndex();
+    private final ExpiryIndex riskDataExpiry = new ExpiryIndex();
+    private final Clock clock;
+
+    /**
+     * Creates a new InMemoryCartMandateStore, configured by injection.
+     */
+    public InMemoryCartMandateStore() {
+        this.clock = Clock.systemUTC();
+    }
+
+    /**
+     * Creates a new InMemoryCartMandateStore.
+     *
+     * @param riskDataTtl how long risk data is kept after it was last set
+     * @param defaultCartTtl how long a cart mandate is kept if its cart expiry cannot be parsed
+     * @param clock the clock that entries expire by
+     */
+    InMemoryCartMandateStore(Duration riskDataTtl, Duration defaultCartTtl, Clock clock) {
+        this.riskDataTtl = riskDataTtl;
+        this.defaultCartTtl = defaultCartTtl;
+        this.clock = clock;
+    }
 
     @Override
     public CartMandate getCartMandate(String cartId) {
-        return cartMandateStore.get(cartId);
+        Entry<CartMandate> entry = liveEntry(cartMandateStore.get(cartId));
+        return entry == null ? null : entry.value;
     }
 
     @Override
     public void setCartMandate(String cartId, CartMandate cartMandate) {
-        cartMandateStore.put(cartId, cartMandate);
+        long now = clock.millis();
+        Entry<CartMandate> entry = newCartEntry(cartMandate, now);
+        Entry<CartMandate> previous = cartMandateStore.put(cartId, entry);
+        cartMandateWritten(cartId, previous, entry, now);
+    }
+
+    @Override
+    public VersionedCartMandate getVersionedCartMandate(String cartId) {
+        Entry<CartMandate> entry = liveEntry(cartMandateStore.get(cartId));
+        return entry == null ? null : new VersionedCartMandate(entry.value, entry.version);
+    }
+
+    @Override
+    public boolean compareAndSetCartMandate(String cartId, long expectedVersion, CartMandate cartMandate) {
+        Entry<CartMandate> current = liveEntry(cartMandateStore.get(cartId));
+        if (current == null || current.version != expectedVersion) {
+            return false;
+        }
+        long now = clock.millis();
+        Entry<CartMandate> entry = newCartEntry(cartMandate, now);
+        // Entries compare by identity, so this only succeeds if the entry read is still current
+        if (!cartMandateStore.replace(cartId, current, entry)) {
+            return false;
+        }
+        cartMandateWritten(cartId, current, entry, now);
+        return true;
     }
 
     @Override
     public void setRiskData(String contextId, String riskData) {
-        riskDataStore.put(contextId, riskData);
+        long now = clock.millis();
+        long expiresAtMillis = now + riskDataTtl.toMillis();
+        riskDataStore.put(contextId, new Entry<>(riskData, expiresAtMillis, 0));
+        riskDataExpiry.schedule(contextId, expiresAtMillis);
+        evictExpired(riskDataStore, riskDataExpiry, now);
     }
 
     @Override
     public String getRiskData(String contextId) {
-        return riskDataStore.get(contextId);
+        Entry<String> entry = liveEntry(riskDataStore.get(contextId));
+        return entry == null ? null : entry.value;
+    }
+
+    private Entry<CartMandate> newCartEntry(CartMandate cartMandate, long now) {
+        long expiresAtMillis = ExpiryIndex.cartExpiresAtMillis(cartMandate, now + defaultCartTtl.toMillis());
+        return new Entry<>(cartMandate, expiresAtMillis, versions.incrementAndGet());
+    }
+
+    private void cartMandateWritten(String cartId, Entry<CartMandate> previous, Entry<CartMandate> entry, long now) {
+        if (previous == null || previous.expiresAtMillis != entry.expiresAtMillis) {
+            cartMandateExpiry.schedule(cartId, entry.expiresAtMillis);
+        }
+        evictExpired(cartMandateStore, cartMandateExpiry, now);
+    }
+
+    private <T> Entry<T> liveEntry(Entry<T> entry) {
+        if (entry == null || entry.expiresAtMillis <= clock.millis()) {
+            return null;
+        }
+        return entry;
+    }
+
+    private static <T> void evictExpired(ConcurrentMap<String, Entry<T>> store, ExpiryIndex expiryIndex,
+                                         long now) {
+        for (ExpiryIndex.Deadline deadline : expiryIndex.pollExpired(now, ExpiryIndex.MAX_EVICTIONS_PER_WRITE)) {
+            // Only evict the entry if it was not updated with a new expiry since
+            store.computeIfPresent(deadline.key(),
+                    (key, entry) -> entry.expiresAtMillis == deadline.expiresAtMillis() ? null : entry);
+        }
+    }
+
+    /**
+     * A stored value with its expiry time and version. Entries are compared by
+     * identity, which compare-and-set relies on.
+     */
+    private static final class Entry<T> {
+
+        private final T value;
+        private final long expiresAtMillis;
+        private final long version;
+
+        Entry(T value, long expiresAtMillis, long version) {
+            this.value = value;
+            this.expiresAtMillis = expiresAtMillis;
+            this.version = version;
+        }
     }
 }
@@ -0,0 +1,581 @@
+package io.ap2.a2a.extension.roles.merchant;
+
+import io.ap2.a2a.extension.common.MandateCodec;
+import io.ap2.a2a.extension.spec.AP2Exception;
+import io.ap2.a2a.extension.spec.CartMandate;
+import io.quarkus.arc.properties.IfBuildProperty;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Logger;
+import java.util.zip.CRC32C;
+
+/**
+ * Persistent implementation of {@link CartMandateStore} backed by an
+ * append-only, memory-mapped log.
+ * <p>
+ * Every update appends a record holding the {@link MandateCodec binary encoding}
+ * of the cart mandate, or the risk data, to the log. An in-memory index maps
+ * each cart ID and context ID to its latest record. On startup the index is
+ * rebuilt by scanning the record headers, without decoding any cart mandate;
+ * a torn record at the end of the log, left by a crash, is discarded.
+ * <p>
+ * Superseded records are reclaimed by compaction, which copies the live
+ * records to a new log and atomically replaces the old one. Compaction runs
+ * once the superseded records take more space than the live ones, so the log
+ * stays within about twice the size of the live data and so does the startup
+ * scan.
+ * <p>
+ * Cart mandates expire at the cart expiry of their contents, and risk data
+ * expires once it has not been set for the risk data TTL. The expiry time is
+ * stored in each record header, so expired records are skipped on startup.
+ * Expired entries are no longer returned, and are evicted from the index a few
+ * at a time on each write; compaction then reclaims their records.
+ * <p>
+ * Appends are serialized by a write lock, so compare-and-set checks the
+ * version of an entry and appends its new record in the same critical
+ * section. Versions only live in the index and are reassigned on startup.
+ * <p>
+ * How writes are flushed to disk is controlled by {@link Durability}.
+ * <p>
+ * This store is enabled with {@code ap2.cart-store.type=mapped}, which is a
+ * build-time property: it selects the store when the merchant is built, for
+ * instance with {@code -Dap2.cart-store.type=mapped} or in
+ * application.properties, and setting it when the merchant starts has no
+ * effect.
+ */
+@ApplicationScoped
+@IfBuildProperty(name = "ap2.cart-store.type", stringValue = "mapped")
+public class MappedCartMandateStore implements CartMandateStore {
+
+    private static final Logger logger = Logger.getLogger(MappedCartMandateStore.class.getName());
+
+    /**
+     * How writes to the log are flushed to disk.
+     */
+    public enum Durability {
+        /**
+         * Writes are left to the operating system to flush. A process crash
+         * loses nothing, but a machine crash may lose recent writes.
+         */
+        NONE,
+        /**
+         * Writes are flushed every sync interval. A machine crash may lose the
+         * writes made since the last flush.
+         */
+        PERIODIC,
+        /**
+         * Every write is flushed before it returns.
+         */
+        SYNC
+    }
+
+    static final String LOG_FILE_NAME = "cart-store.log";
+    private static final String COMPACTION_FILE_NAME = "cart-store.log.compact";
+
+    private static final int MAGIC = 0x41503243; // "AP2C"
+    private static final int VERSION = 1;
+    private static final int FILE_HEADER_SIZE = 8;
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final int BODY_PREFIX_SIZE = 13;
+    private static final int INITIAL_CAPACITY = 1 << 20;
+    private static final long MIN_COMPACTION_BYTES = 1 << 20;
+
+    private static final byte TYPE_CART_MANDATE = 1;
+    private static final byte TYPE_RISK_DATA = 2;
+
+    private static final long ANY_VERSION = -1;
+
+    /**
+     * The directory holding the log.
+     */
+    @ConfigProperty(name = "ap2.cart-store.directory", defaultValue = "cart-store")
+    Path directory;
+
+    /**
+     * How writes to the log are flushed to disk.
+     */
+    @ConfigProperty(name = "ap2.cart-store.durability", defaultValue = "PERIODIC")
+    Durability durability;
+
+    /**
+     * How often writes are flushed with {@link Durability#PERIODIC}.
+     */
+    @ConfigProperty(name = "ap2.cart-store.sync-interval", defaultValue = "PT1S")
+    Duration syncInterval;
+
+    /**
+     * How often the log is checked for compaction.
+     */
+    @ConfigProperty(name = "ap2.cart-store.compaction-interval", defaultValue = "PT1M")
+    Duration compactionInterval;
+
+    /**
+     * How long risk data is kept after it was last set.
+     */
+    @ConfigProperty(name = "ap2.cart-store.risk-data-ttl", defaultValue = "PT1H")
+    Duration riskDataTtl;
+
+    /**
+     * How long a cart mandate is kept if its cart expiry cannot be parsed.
+     */
+    @ConfigProperty(name = "ap2.cart-store.default-cart-ttl", defaultValue = "PT30M")
+    Duration defaultCartTtl;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Location> cartMandateIndex = new HashMap<>();
+    private final Map<String, Location> riskDataIndex = new HashMap<>();
+    private final ExpiryIndex cartMandateExpiry = new ExpiryIndex();
+    private final ExpiryIndex riskDataExpiry = new ExpiryIndex();
+
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int writePosition;
+    private long liveBytes;
+    private long lastVersion;
+    private volatile boolean dirty;
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Creates a new MappedCartMandateStore, configured by injection.
+     */
+    public MappedCartMandateStore() {
+    }
+
+    /**
+     * Creates and opens a new MappedCartMandateStore.
+     *
+     * @param directory the directory holding the log
+     * @param durability how writes to the log are flushed to disk
+     * @param syncInterval how often writes are flushed with {@link Durability#PERIODIC}
+     * @param compactionInterval how often the log is checked for compaction
+     * @param riskDataTtl how long risk data is kept after it was last set
+     * @param defaultCartTtl how long a cart mandate is kept if its cart expiry cannot be parsed
+     */
+    public MappedCartMandateStore(Path directory, Durability durability, Duration syncInterval,
+                                  Duration compactionInterval, Duration riskDataTtl, Duration defaultCartTtl) {
+        this.directory = directory;
+        this.durability = durability;
+        this.syncInterval = syncInterval;
+        this.compactionInterval = compactionInterval;
+        this.riskDataTtl = riskDataTtl;
+        this.defaultCartTtl = defaultCartTtl;
+        open();
+    }
+
+    /**
+     * Opens the log and rebuilds the index from it.
+     */
+    @PostConstruct
+    void open() {
+        try {
+            Files.createDirectories(directory);
+            Files.deleteIfExists(directory.resolve(COMPACTION_FILE_NAME));
+            Path logFile = directory.resolve(LOG_FILE_NAME);
+            channel = FileChannel.open(logFile,
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            long fileSize = channel.size();
+            if (fileSize > Integer.MAX_VALUE) {
+                throw new AP2Exception("Cart store log is too large: " + logFile);
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(INITIAL_CAPACITY, fileSize));
+            if (fileSize < FILE_HEADER_SIZE || buffer.getInt(0) == 0) {
+                buffer.putInt(0, MAGIC);
+                buffer.putInt(4, VERSION);
+                writePosition = FILE_HEADER_SIZE;
+            } else {
+                if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                    throw new AP2Exception("Not a cart store log: " + logFile);
+                }
+                recover();
+            }
+        } catch (IOException e) {
+            throw new AP2Exception("Failed to open cart store in " + directory + ": " + e.getMessage(), e);
+        }
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "cart-store-maintenance");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (durability == Durability.PERIODIC) {
+            long syncMillis = syncInterval.toMillis();
+            scheduler.scheduleWithFixedDelay(this::sync, syncMillis, syncMillis, TimeUnit.MILLISECONDS);
+        }
+        long compactionMillis = compactionInterval.toMillis();
+        scheduler.scheduleWithFixedDelay(this::compactIfNeeded, compactionMillis, compactionMillis,
+                TimeUnit.MILLISECONDS);
+        logger.info("Opened cart store in " + directory + " with " + cartMandateIndex.size()
+                + " cart mandates and " + riskDataIndex.size() + " risk data entries");
+    }
+
+    /**
+     * Flushes and closes the log.
+     */
+    @PreDestroy
+    public void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        lock.writeLock().lock();
+        try {
+            if (channel != null && channel.isOpen()) {
+                buffer.force();
+                channel.close();
+            }
+        } catch (IOException e) {
+            logger.warning("Failed to close cart store: " + e.getMessage());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public CartMandate getCartMandate(String cartId) {
+        byte[] value = read(cartMandateIndex, cartId);
+        return value == null ? null : MandateCodec.decodeCartMandate(value);
+    }
+
+    @Override
+    public void setCartMandate(String cartId, CartMandate cartMandate) {
+        long expiresAtMillis = ExpiryIndex.cartExpiresAtMillis(cartMandate,
+                System.currentTimeMillis() + defaultCartTtl.toMillis());
+        append(cartMandateIndex, cartMandateExpiry, TYPE_CART_MANDATE, cartId, expiresAtMillis,
+                MandateCodec.encodeCartMandate(cartMandate), ANY_VERSION);
+    }
+
+    @Override
+    public VersionedCartMandate getVersionedCartMandate(String cartId) {
+        lock.readLock().lock();
+        try {
+            Location location = liveLocation(cartMandateIndex, cartId);
+            if (location == null) {
+                return null;
+            }
+            return new VersionedCartMandate(MandateCodec.decodeCartMandate(readValue(location)), location.version());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean compareAndSetCartMandate(String cartId, long expectedVersion, CartMandate cartMandate) {
+        long expiresAtMillis = ExpiryIndex.cartExpiresAtMillis(cartMandate,
+                System.currentTimeMillis() + defaultCartTtl.toMillis());
+        return append(cartMandateIndex, cartMandateExpiry, TYPE_CART_MANDATE, cartId, expiresAtMillis,
+                MandateCodec.encodeCartMandate(cartMandate), expectedVersion);
+    }
+
+    @Override
+    public void setRiskData(String contextId, String riskData) {
+        append(riskDataIndex, riskDataExpiry, TYPE_RISK_DATA, contextId,
+                System.currentTimeMillis() + riskDataTtl.toMillis(), riskData.getBytes(StandardCharsets.UTF_8),
+                ANY_VERSION);
+    }
+
+    @Override
+    public String getRiskData(String contextId) {
+        byte[] value = read(riskDataIndex, contextId);
+        return value == null ? null : new String(value, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Copies the live records to a new log, which atomically replaces the current one.
+     */
+    public void compact() {
+        lock.writeLock().lock();
+        try {
+            long deadBytes = writePosition - FILE_HEADER_SIZE - liveBytes;
+            Path compactionFile = directory.resolve(COMPACTION_FILE_NAME);
+            FileChannel newChannel = FileChannel.open(compactionFile, StandardOpenOption.CREATE_NEW,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            MappedByteBuffer newBuffer;
+            Map<String, Location> newCartMandateIndex = new HashMap<>();
+            Map<String, Location> newRiskDataIndex = new HashMap<>();
+            int newPosition = FILE_HEADER_SIZE;
+            try {
+                newBuffer = newChannel.map(FileChannel.MapMode.READ_WRITE, 0,
+                        capacityFor(FILE_HEADER_SIZE + liveBytes, INITIAL_CAPACITY));
+                newBuffer.putInt(0, MAGIC);
+                newBuffer.putInt(4, VERSION);
+                newPosition = copyLiveRecords(cartMandateIndex, newCartMandateIndex, newBuffer, newPosition);
+                newPosition = copyLiveRecords(riskDataIndex, newRiskDataIndex, newBuffer, newPosition);
+                newBuffer.force();
+                Files.move(compactionFile, directory.resolve(LOG_FILE_NAME),
+                        StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException | RuntimeException e) {
+                newChannel.close();
+                Files.deleteIfExists(compactionFile);
+                throw e;
+            }
+
+            channel.close();
+            channel = newChannel;
+            buffer = newBuffer;
+            writePosition = newPosition;
+            cartMandateIndex.putAll(newCartMandateIndex);
+            riskDataIndex.putAll(newRiskDataIndex);
+            logger.info("Compacted cart store, reclaimed " + deadBytes + " bytes");
+        } catch (IOException e) {
+            throw new AP2Exception("Failed to compact cart store: " + e.getMessage(), e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void compactIfNeeded() {
+        long deadBytes;
+        long currentLiveBytes;
+        lock.readLock().lock();
+        try {
+            currentLiveBytes = liveBytes;
+            deadBytes = writePosition - FILE_HEADER_SIZE - currentLiveBytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (deadBytes > currentLiveBytes && deadBytes > MIN_COMPACTION_BYTES) {
+            try {
+                compact();
+            } catch (RuntimeException e) {
+                logger.warning(e.getMessage());
+            }
+        }
+    }
+
+    private void sync() {
+        if (!dirty) {
+            return;
+        }
+        dirty = false;
+        MappedByteBuffer current;
+        lock.readLock().lock();
+        try {
+            current = buffer;
+        } finally {
+            lock.readLock().unlock();
+        }
+        // A buffer replaced by compaction was forced before it was replaced
+        current.force();
+    }
+
+    private byte[] read(Map<String, Location> index, String key) {
+        lock.readLock().lock();
+        try {
+            Location location = liveLocation(index, key);
+            return location == null ? null : readValue(location);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Location liveLocation(Map<String, Location> index, String key) {
+        Location location = index.get(key);
+        if (location == null || location.expiresAtMillis() <= System.currentTimeMillis()) {
+            return null;
+        }
+        return location;
+    }
+
+    private byte[] readValue(Location location) {
+        byte[] value = new byte[location.valueLength()];
+        buffer.get(location.position() + location.valueOffset(), value);
+        return value;
+    }
+
+    private boolean append(Map<String, Location> index, ExpiryIndex expiryIndex, byte type, String key,
+                           long expiresAtMillis, byte[] value, long expectedVersion) {
+        // Build and checksum the record outside the lock
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        int bodyLength = BODY_PREFIX_SIZE + keyBytes.length + value.length;
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + bodyLength);
+        record.putInt(bodyLength);
+        record.putInt(0);
+        record.put(type);
+        record.putLong(expiresAtMillis);
+        record.putInt(keyBytes.length);
+        record.put(keyBytes);
+        record.put(value);
+        CRC32C crc = new CRC32C();
+        crc.update(record.array(), RECORD_HEADER_SIZE, bodyLength);
+        record.putInt(4, (int) crc.getValue());
+        int valueOffset = RECORD_HEADER_SIZE + BODY_PREFIX_SIZE + keyBytes.length;
+
+        lock.writeLock().lock();
+        try {
+            if (expectedVersion != ANY_VERSION) {
+                Location current = liveLocation(index, key);
+                if (current == null || current.version() != expectedVersion) {
+                    return false;
+                }
+            }
+            ensureCapacity(record.capacity());
+            buffer.put(writePosition, record.array());
+            Location previous = index(index, key, new Location(writePosition, record.capacity(), valueOffset,
+                    value.length, expiresAtMillis, ++lastVersion));
+            if (previous == null || previous.expiresAtMillis() != expiresAtMillis) {
+                expiryIndex.schedule(key, expiresAtMillis);
+            }
+            writePosition += record.capacity();
+            evictExpired(index, expiryIndex);
+            if (durability == Durability.SYNC) {
+                buffer.force();
+            } else {
+                dirty = true;
+            }
+            return true;
+        } catch (IOException e) {
+            throw new AP2Exception("Failed to write to cart store: " + e.getMessage(), e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private Location index(Map<String, Location> index, String key, Location location) {
+        Location previous = index.put(key, location);
+        if (previous != null) {
+            liveBytes -= previous.length();
+        }
+        liveBytes += location.length();
+        return previous;
+    }
+
+    private void unindex(Map<String, Location> index, String key) {
+        Location previous = index.remove(key);
+        if (previous != null) {
+            liveBytes -= previous.length();
+        }
+    }
+
+    private void evictExpired(Map<String, Location> index, ExpiryIndex expiryIndex) {
+        List<ExpiryIndex.Deadline> expired = expiryIndex.pollExpired(System.currentTimeMillis(),
+                ExpiryIndex.MAX_EVICTIONS_PER_WRITE);
+        for (ExpiryIndex.Deadline deadline : expired) {
+            Location location = index.get(deadline.key());
+            // Only evict the entry if it was not updated with a new expiry since
+            if (location != null && location.expiresAtMillis() == deadline.expiresAtMillis()) {
+                unindex(index, deadline.key());
+            }
+        }
+    }
+
+    private void recover() throws IOException {
+        int position = FILE_HEADER_SIZE;
+        int capacity = buffer.capacity();
+        CRC32C crc = new CRC32C();
+        long now = System.currentTimeMillis();
+        while (position + RECORD_HEADER_SIZE <= capacity) {
+            int bodyLength = buffer.getInt(position);
+            if (bodyLength <= 0 || bodyLength > capacity - position - RECORD_HEADER_SIZE) {
+                break;
+            }
+            crc.reset();
+            crc.update(buffer.slice(position + RECORD_HEADER_SIZE, bodyLength));
+            if ((int) crc.getValue() != buffer.getInt(position + 4)) {
+                break;
+            }
+
+            int bodyPosition = position + RECORD_HEADER_SIZE;
+            byte type = buffer.get(bodyPosition);
+            long expiresAtMillis = buffer.getLong(bodyPosition + 1);
+            int keyLength = buffer.getInt(bodyPosition + 9);
+            byte[] keyBytes = new byte[keyLength];
+            buffer.get(bodyPosition + BODY_PREFIX_SIZE, keyBytes);
+            int valueOffset = RECORD_HEADER_SIZE + BODY_PREFIX_SIZE + keyLength;
+            Location location = new Location(position, RECORD_HEADER_SIZE + bodyLength, valueOffset,
+                    RECORD_HEADER_SIZE + bodyLength - valueOffset, expiresAtMillis, ++lastVersion);
+            String key = new String(keyBytes, StandardCharsets.UTF_8);
+            Map<String, Location> index = type == TYPE_CART_MANDATE ? cartMandateIndex
+                    : type == TYPE_RISK_DATA ? riskDataIndex : null;
+            if (index != null) {
+                if (expiresAtMillis <= now) {
+                    // The latest record of an expired entry supersedes its earlier ones
+                    unindex(index, key);
+                } else {
+                    index(index, key, location);
+                }
+            }
+            position += location.length();
+        }
+        cartMandateIndex.forEach((key, location) -> cartMandateExpiry.schedule(key, location.expiresAtMillis()));
+        riskDataIndex.forEach((key, location) -> riskDataExpiry.schedule(key, location.expiresAtMillis()));
+
+        if (position + 4 <= capacity && buffer.getInt(position) != 0) {
+            // Clear the torn record so that it is not mistaken for a record after later appends
+            logger.warning("Discarding torn record at offset " + position + " of the cart store log");
+            for (int i = position; i < capacity; i++) {
+                buffer.put(i, (byte) 0);
+            }
+            buffer.force();
+        }
+        writePosition = position;
+    }
+
+    private int copyLiveRecords(Map<String, Location> index, Map<String, Location> newIndex,
+                                MappedByteBuffer target, int position) {
+        for (Map.Entry<String, Location> entry : index.entrySet()) {
+            Location location = entry.getValue();
+            target.put(position, buffer, location.position(), location.length());
+            newIndex.put(entry.getKey(), new Location(position, location.length(), location.valueOffset(),
+                    location.valueLength(), location.expiresAtMillis(), location.version()));
+            position += location.length();
+        }
+        return position;
+    }
+
+    private void ensureCapacity(int recordLength) throws IOException {
+        long required = (long) writePosition + recordLength;
+        if (required <= buffer.capacity()) {
+            return;
+        }
+        buffer.force();
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacityFor(required, buffer.capacity()));
+    }
+
+    private static long capacityFor(long required, long currentCapacity) {
+        long capacity = Math.max(currentCapacity, INITIAL_CAPACITY);
+        while (capacity < required) {
+            capacity *= 2;
+        }
+        if (capacity > Integer.MAX_VALUE) {
+            if (required > Integer.MAX_VALUE) {
+                throw new AP2Exception("Cart store log is full");
+            }
+            capacity = Integer.MAX_VALUE;
+        }
+        return capacity;
+    }
+
+    /**
+     * The location of a record in the log.
+     *
+     * @param position the offset of the record
+     * @param length the length of the record, including its header
+     * @param valueOffset the offset of the value, relative to the record
+     * @param valueLength the length of the value
+     * @param expiresAtMillis when the entry expires, in milliseconds since the epoch
+     * @param version the version of the entry, which is not persisted
+     */
+    private record Location(int position, int length, int valueOffset, int valueLength, long expiresAtMillis,
+                            long version) {
+    }
+}
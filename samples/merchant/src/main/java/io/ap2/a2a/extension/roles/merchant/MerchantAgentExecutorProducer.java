@@ -11,16 +11,37 @@ import io.a2a.spec.Message;
 import io.a2a.spec.Task;
 import io.a2a.spec.TextPart;
 import io.ap2.a2a.extension.common.BaseAgentExecutor;
+import io.ap2.a2a.extension.common.CachingToolSelectorAgent;
+import io.ap2.a2a.extension.common.JwsAlgorithm;
+import io.ap2.a2a.extension.common.JwtConfiguration;
+import io.ap2.a2a.extension.common.JwtSigner;
+import io.ap2.a2a.extension.common.MandateVerifier;
 import io.ap2.a2a.extension.common.MessageUtils;
+import io.ap2.a2a.extension.common.ToolRouter;
+import io.ap2.a2a.extension.common.ToolSelectionCache;
 import io.ap2.a2a.extension.spec.AP2Exception;
+import io.ap2.a2a.extension.common.IdGenerator;
+import io.ap2.a2a.extension.roles.merchant.catalog.Catalog;
+import io.ap2.a2a.extension.roles.merchant.catalog.CatalogMode;
+import io.ap2.a2a.extension.roles.merchant.catalog.CatalogReloader;
+import io.ap2.a2a.extension.roles.merchant.subagents.CachingItemGenerator;
 import io.ap2.a2a.extension.roles.merchant.subagents.CatalogAgent;
 import io.ap2.a2a.extension.roles.merchant.subagents.ItemGenerator;
+import jakarta.annotation.PreDestroy;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.enterprise.inject.Produces;
 import jakarta.inject.Inject;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.List;
+import java.util.Optional;
 import java.util.Set;
 import java.util.logging.Logger;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import static io.ap2.a2a.extension.spec.AP2Constants.INTENT_MANDATE_DATA_KEY;
+import static io.ap2.a2a.extension.spec.AP2Constants.PAYMENT_MANDATE_DATA_KEY;
 
 /**
  * Producer for merchant agent executor.
@@ -57,6 +78,12 @@ public final class MerchantAgentExecutorProducer {
     @Inject
     ItemGenerator itemGenerator;
 
+    /**
+     * The keys of the JWTs, which sign the merchant authorization of carts.
+     */
+    @Inject
+    JwtConfiguration jwtConfiguration;
+
     /**
      * The agent card.
      */
@@ -64,6 +91,64 @@ public final class MerchantAgentExecutorProducer {
     @PublicAgentCard
     AgentCard agentCard;
 
+    /**
+     * The verifier of the signatures of the mandates in a message.
+     */
+    @Inject
+    MandateVerifier mandateVerifier;
+
+    /**
+     * The maximum number of tool selections cached for the LangChain4j agent.
+     */
+    @ConfigProperty(name = "ap2.tool-selection-cache.max-entries", defaultValue = "1024")
+    int toolSelectionCacheMaxEntries;
+
+    /**
+     * How long a tool selection made by the LangChain4j agent stays cached.
+     */
+    @ConfigProperty(name = "ap2.tool-selection-cache.ttl", defaultValue = "PT10M")
+    Duration toolSelectionCacheTtl;
+
+    /**
+     * The maximum number of intents whose generated items are cached.
+     */
+    @ConfigProperty(name = "ap2.item-cache.max-entries", defaultValue = "1000")
+    int itemCacheMaxEntries;
+
+    /**
+     * How long generated items stay cached.
+     */
+    @ConfigProperty(name = "ap2.item-cache.ttl", defaultValue = "PT15M")
+    Duration itemCacheTtl;
+
+    /**
+     * The minimum Jaccard similarity of two intents that share generated items.
+     */
+    @ConfigProperty(name = "ap2.item-cache.similarity-threshold", defaultValue = "0.8")
+    double itemCacheSimilarityThreshold;
+
+    /**
+     * Whether items are generated by the LLM, searched in the local product
+     * catalog, or searched in the catalog and generated if it has no match.
+     */
+    @ConfigProperty(name = "ap2.catalog.mode", defaultValue = "GENERATED")
+    CatalogMode catalogMode;
+
+    /**
+     * The file of the local product catalog, with one JSON product per line.
+     */
+    @ConfigProperty(name = "ap2.catalog.file")
+    Optional<Path> catalogFile;
+
+    /**
+     * How often the file of the local product catalog is checked for changes,
+     * or zero to only load it at startup.
+     */
+    @ConfigProperty(name = "ap2.catalog.reload-interval", defaultValue = "PT10S")
+    Duration catalogReloadInterval;
+
+    private CatalogReloader catalogReloader;
+
     /**
      * Produces the agent executor for the merchant agent.
      *
@@ -77,12 +162,50 @@ public final class MerchantAgentExecutorProducer {
         return new MerchantAgentExecutor(
             cartMandateStore,
             agent,
-            itemGenerator,
+            new ToolSelectionCache(toolSelectionCacheMaxEntries, toolSelectionCacheTtl),
+            new CachingItemGenerator(itemGenerator, itemCacheMaxEntries, itemCacheTtl,
+                itemCacheSimilarityThreshold),
+            loadCatalog(),
+            catalogMode,
+            jwtConfiguration.signer(JwsAlgorithm.ES256),
             agentCard.capabilities().extensions(),
+            mandateVerifier,
             debugMode
         );
     }
 
+    /**
+     * Loads the local product catalog, if one is used, and reloads it whenever
+     * its file changes.
+     *
+     * @return the catalog, empty if there is no catalog file
+     */
+    private Catalog loadCatalog() {
+        if (catalogMode == CatalogMode.GENERATED || catalogFile.isEmpty()) {
+            if (catalogMode != CatalogMode.GENERATED) {
+                logger.warning("No ap2.catalog.file is configured, the product catalog is empty");
+            }
+            return new Catalog();
+        }
+        try {
+            Catalog catalog = new Catalog();
+            catalogReloader = new CatalogReloader(catalog, catalogFile.get(), catalogReloadInterval);
+            return catalog;
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to load the product catalog from " + catalogFile.get(), e);
+        }
+    }
+
+    /**
+     * Stops reloading the local product catalog.
+     */
+    @PreDestroy
+    void close() {
+        if (catalogReloader != null) {
+            catalogReloader.close();
+        }
+    }
+
     /**
      * Merchant agent executor implementation.
      *
@@ -98,6 +221,26 @@ public final class MerchantAgentExecutorProducer {
      */
     private static class MerchantAgentExecutor extends BaseAgentExecutor {
 
+        /**
+         * Routes the requests sent by the shopping agent without consulting the LLM.
+         */
+        private static final ToolRouter TOOL_ROUTER = ToolRouter.builder()
+            .exactMatch("Find products that match the user's IntentMandate.", "findItemsWorkflow")
+            .exactMatch("Update the cart with the user's shipping address.", "updateCart")
+            .exactMatch("Initiate a payment", "initiatePayment")
+            .exactMatch("Initiate a payment. Include the challenge response.", "initiatePayment")
+            .dataKeyMatch("dpcFinish", "dpc_response")
+            .dataKeyMatch("initiatePayment", PAYMENT_MANDATE_DATA_KEY)
+            .dataKeyMatch("findItemsWorkflow", INTENT_MANDATE_DATA_KEY)
+            .dataKeyMatch("updateCart", "cart_id", "shipping_address")
+            .build();
+
+        /**
+         * The names of the tools that may be selected.
+         */
+        private static final Set<String> TOOL_NAMES = Set.of(
+            "updateCart", "findItemsWorkflow", "initiatePayment", "dpcFinish");
+
         private final CartMandateStore cartMandateStore;
         private final Tools tools;
         private final boolean debugMode;
@@ -108,20 +251,33 @@ public final class MerchantAgentExecutorProducer {
          *
          * @param cartMandateStore the cart mandate store instance
          * @param agent the LangChain4j agent for tool selection
-         * @param itemGenerator the LangChain4j agent for generating product items
+         * @param toolSelectionCache the cache of tool selections made by the agent
+         * @param itemGenerator the cache in front of the LangChain4j agent for generating product items
+         * @param catalog the local product catalog
+         * @param catalogMode whether items are generated, searched in the catalog, or both
+         * @param merchantSigner the signer of the merchant authorization of carts
          * @param supportedExtensions the list of extensions from the agent card
+         * @param mandateVerifier the verifier of the signatures of the mandates in a message
          * @param debugMode whether debug mode is enabled (defaults to false)
          */
         MerchantAgentExecutor(final CartMandateStore cartMandateStore,
                               final MerchantAgent agent,
+                              final ToolSelectionCache toolSelectionCache,
                               final ItemGenerator itemGenerator,
+                              final Catalog catalog,
+                              final CatalogMode catalogMode,
+                              final JwtSigner merchantSigner,
                               final List<AgentExtension> supportedExtensions,
+                              final MandateVerifier mandateVerifier,
                               final boolean debugMode) {
-            super(supportedExtensions, agent);
+            super(supportedExtensions,
+                new CachingToolSelectorAgent("merchant_agent", agent, toolSelectionCache, TOOL_NAMES),
+                TOOL_ROUTER, mandateVerifier);
             this.cartMandateStore = cartMandateStore;
-            this.tools = new Tools();
+            this.tools = new Tools(merchantSigner);
             this.debugMode = debugMode;
-            this.catalogAgent = new CatalogAgent(cartMandateStore, itemGenerator);
+            this.catalogAgent = new CatalogAgent(cartMandateStore, itemGenerator, IdGenerator.timeOrdered(),
+                catalog, catalogMode);
         }
 
         @Override
@@ -189,9 +345,9 @@ public final class MerchantAgentExecutorProducer {
 
             logger.info("Processing request: " + prompt);
 
-            // Use the agent to determine which tool to use
+            // Use the router, or failing that the agent, to determine which tool to use
             // This mirrors the Python FunctionCallResolver.determine_tool_to_use()
-            String toolName = selectTool(prompt);
+            String toolName = selectTool(prompt, dataParts);
 
             // Invoke the selected tool
             // This mirrors the Python implementation's tool dispatch logic
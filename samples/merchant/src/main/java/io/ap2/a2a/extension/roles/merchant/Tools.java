@@ -4,16 +4,18 @@ import static io.ap2.a2a.extension.spec.AP2Constants.CART_MANDATE_DATA_KEY;
 import static io.ap2.a2a.extension.spec.AP2Constants.EXTENSION_URI;
 import static io.ap2.a2a.extension.spec.AP2Constants.PAYMENT_MANDATE_DATA_KEY;
 
+import java.time.Duration;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.UUID;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 import java.util.logging.Logger;
 
-import io.a2a.client.Client;
 import io.a2a.client.ClientEvent;
 import io.a2a.client.TaskEvent;
 import io.a2a.server.tasks.TaskUpdater;
@@ -24,8 +26,10 @@ import io.a2a.spec.Part;
 import io.a2a.spec.Task;
 import io.a2a.spec.TextPart;
 import io.ap2.a2a.extension.common.A2aMessageBuilder;
+import io.ap2.a2a.extension.common.JwtSigner;
 import io.ap2.a2a.extension.common.MessageUtils;
 import io.ap2.a2a.extension.common.PaymentRemoteA2aClient;
+import io.ap2.a2a.extension.common.PaymentRemoteA2aClientPool;
 import io.ap2.a2a.extension.spec.AP2Exception;
 import io.ap2.a2a.extension.spec.CartContents;
 import io.ap2.a2a.extension.spec.CartMandate;
@@ -35,6 +39,7 @@ import io.ap2.a2a.extension.spec.PaymentDetailsInit;
 import io.ap2.a2a.extension.spec.PaymentItem;
 import io.ap2.a2a.extension.spec.PaymentMandate;
 import io.ap2.a2a.extension.spec.PaymentRequest;
+import io.ap2.a2a.extension.util.MandateHashes;
 
 /**
  * Tools used by the merchant agent.
@@ -56,9 +61,23 @@ public class Tools {
     );
 
     /**
-     * A placeholder for a JSON Web Token (JWT) used for merchant authorization.
+     * How long the merchant authorization of an updated cart is valid.
      */
-    private static final String FAKE_JWT = "eyJhbGciOiJSUzI1NiIsImtpZIwMjQwOTA...";
+    private static final Duration MERCHANT_AUTHORIZATION_TTL = Duration.ofMinutes(15);
+
+    /**
+     * Signs the merchant authorization of carts.
+     */
+    private final JwtSigner merchantSigner;
+
+    /**
+     * Creates the tools of the merchant agent.
+     *
+     * @param merchantSigner the signer of the merchant authorization of carts
+     */
+    public Tools(JwtSigner merchantSigner) {
+        this.merchantSigner = merchantSigner;
+    }
 
     /**
      * Updates an existing cart after a shipping address is provided.
@@ -83,16 +102,15 @@ public class Tools {
             return;
         }
 
-        Map<String, Object> shippingAddressMap =
-                (Map<String, Object>) MessageUtils.findDataPart("shipping_address", dataParts);
-        if (shippingAddressMap == null) {
-            failTask(updater, "Missing shipping_address.");
+        ContactAddress shippingAddress;
+        try {
+            shippingAddress = MessageUtils.parseCanonicalObject("shipping_address", dataParts, ContactAddress.class);
+        } catch (IllegalArgumentException e) {
+            failTask(updater, e.getMessage());
             return;
         }
-
-        CartMandate cartMandate = cartMandateStore.getCartMandate(cartId);
-        if (cartMandate == null) {
-            failTask(updater, "CartMandate not found for cart_id: " + cartId);
+        if (shippingAddress == null) {
+            failTask(updater, "Missing shipping_address.");
             return;
         }
 
@@ -103,102 +121,138 @@ public class Tools {
         }
 
         // Update the CartMandate with new shipping and tax cost.
+        CartMandate updatedCartMandate;
         try {
-            // Convert shipping address map to ContactAddress
-            ContactAddress shippingAddress = convertToContactAddress(shippingAddressMap);
-
-            // Create new CartContents with updated shipping address
-            CartContents oldContents = cartMandate.contents();
-            PaymentRequest oldPaymentRequest = oldContents.paymentRequest();
-
-            PaymentRequest updatedPaymentRequest = new PaymentRequest(
-                    oldPaymentRequest.methodData(),
-                    oldPaymentRequest.details(),
-                    oldPaymentRequest.options(),
-                    shippingAddress
-            );
-
-            // Add new shipping and tax costs to the PaymentRequest (hardcoded as in Python)
-            List<PaymentItem> taxAndShippingCosts = List.of(
-                    new PaymentItem(
-                            "Shipping",
-                            new PaymentCurrencyAmount("USD", 2.00),
-                            null,
-                            null
-                    ),
-                    new PaymentItem(
-                            "Tax",
-                            new PaymentCurrencyAmount("USD", 1.50),
-                            null,
-                            null
-                    )
-            );
-
-            PaymentDetailsInit oldDetails = updatedPaymentRequest.details();
-            List<PaymentItem> displayItems = new ArrayList<>(oldDetails.displayItems());
-            displayItems.addAll(taxAndShippingCosts);
-
-            // Recompute the total amount
-            double totalAmount = displayItems.stream()
-                    .mapToDouble(item -> item.amount().value())
-                    .sum();
-
-            PaymentItem updatedTotal = new PaymentItem(
-                    oldDetails.total().label(),
-                    new PaymentCurrencyAmount(
-                            oldDetails.total().amount().currency(),
-                            totalAmount
-                    ),
-                    oldDetails.total().pending(),
-                    oldDetails.total().refundPeriod()
-            );
-
-            PaymentDetailsInit updatedDetails = new PaymentDetailsInit(
-                    oldDetails.id(),
-                    displayItems,
-                    oldDetails.shippingOptions(),
-                    oldDetails.modifiers(),
-                    updatedTotal
-            );
-
-            PaymentRequest finalPaymentRequest = new PaymentRequest(
-                    updatedPaymentRequest.methodData(),
-                    updatedDetails,
-                    updatedPaymentRequest.options(),
-                    updatedPaymentRequest.shippingAddress()
-            );
-
-            CartContents updatedContents = new CartContents(
-                    oldContents.id(),
-                    oldContents.userCartConfirmationRequired(),
-                    finalPaymentRequest,
-                    oldContents.cartExpiry(),
-                    oldContents.merchantName()
-            );
-
-            // Create updated CartMandate with merchant authorization
-            CartMandate updatedCartMandate = new CartMandate(updatedContents, FAKE_JWT);
-
-            // Store the updated cart mandate
-            cartMandateStore.setCartMandate(cartId, updatedCartMandate);
-
-            // Add artifacts and complete
-            updater.addArtifact(
-                    List.of(
-                            new DataPart(Map.of(CART_MANDATE_DATA_KEY, updatedCartMandate)),
-                            new DataPart(Map.of("risk_data", riskData))));
-            updater.complete();
-
+            // Apply the update atomically, so that concurrent updates of the same cart are not lost
+            updatedCartMandate = cartMandateStore.updateCartMandate(cartId,
+                    cartMandate -> applyShippingAddress(cartMandate, shippingAddress));
         } catch (Exception e) {
             failTask(updater, "Invalid CartMandate after update: " + e.getMessage());
+            return;
+        }
+
+        if (updatedCartMandate == null) {
+            failTask(updater, "CartMandate not found for cart_id: " + cartId);
+            return;
         }
+
+        // Add artifacts and complete
+        updater.addArtifact(
+                List.of(
+                        new DataPart(Map.of(CART_MANDATE_DATA_KEY, updatedCartMandate)),
+                        new DataPart(Map.of("risk_data", riskData))));
+        updater.complete();
+    }
+
+    /**
+     * Builds the updated cart mandate for a shipping address, adding the
+     * shipping and tax costs and recomputing the total.
+     *
+     * @param cartMandate The current cart mandate.
+     * @param shippingAddress The user's shipping address.
+     * @return The updated cart mandate.
+     */
+    private CartMandate applyShippingAddress(CartMandate cartMandate, ContactAddress shippingAddress) {
+        // Create new CartContents with updated shipping address
+        CartContents oldContents = cartMandate.contents();
+        PaymentRequest oldPaymentRequest = oldContents.paymentRequest();
+
+        PaymentRequest updatedPaymentRequest = new PaymentRequest(
+                oldPaymentRequest.methodData(),
+                oldPaymentRequest.details(),
+                oldPaymentRequest.options(),
+                shippingAddress
+        );
+
+        PaymentDetailsInit oldDetails = updatedPaymentRequest.details();
+        String currency = oldDetails.total().amount().currency();
+
+        // Add new shipping and tax costs to the PaymentRequest (hardcoded as in Python,
+        // in the currency of the cart so that they can be added up)
+        List<PaymentItem> taxAndShippingCosts = List.of(
+                new PaymentItem(
+                        "Shipping",
+                        new PaymentCurrencyAmount(currency, 2.00),
+                        null,
+                        null
+                ),
+                new PaymentItem(
+                        "Tax",
+                        new PaymentCurrencyAmount(currency, 1.50),
+                        null,
+                        null
+                )
+        );
+
+        List<PaymentItem> displayItems = new ArrayList<>(oldDetails.displayItems());
+        displayItems.addAll(taxAndShippingCosts);
+
+        // Recompute the total amount in minor units, which does not drift
+        long totalMinorUnits = PaymentItem.totalMinorUnits(currency, displayItems);
+
+        PaymentItem updatedTotal = new PaymentItem(
+                oldDetails.total().label(),
+                PaymentCurrencyAmount.ofMinorUnits(currency, totalMinorUnits),
+                oldDetails.total().pending(),
+                oldDetails.total().refundPeriod()
+        );
+
+        PaymentDetailsInit updatedDetails = new PaymentDetailsInit(
+                oldDetails.id(),
+                displayItems,
+                oldDetails.shippingOptions(),
+                oldDetails.modifiers(),
+                updatedTotal
+        );
+
+        PaymentRequest finalPaymentRequest = new PaymentRequest(
+                updatedPaymentRequest.methodData(),
+                updatedDetails,
+                updatedPaymentRequest.options(),
+                updatedPaymentRequest.shippingAddress()
+        );
+
+        CartContents updatedContents = new CartContents(
+                oldContents.id(),
+                oldContents.userCartConfirmationRequired(),
+                finalPaymentRequest,
+                oldContents.cartExpiry(),
+                oldContents.merchantName()
+        );
+
+        // Create updated CartMandate with merchant authorization, hashing only
+        // the items that changed since the previous contents. Only a store
+        // that hands out the stored instance, such as the in-memory one, keeps
+        // the hash of the previous contents; decoded copies are hashed in full
+        String cartHash = MandateHashes.cartHash(updatedContents, oldContents);
+        return new CartMandate(updatedContents, signMerchantAuthorization(updatedContents, cartHash));
+    }
+
+    /**
+     * Signs the merchant authorization of cart contents, a short-lived JWT
+     * whose {@code cart_hash} claim binds it to the contents.
+     *
+     * @param contents the cart contents
+     * @param cartHash the cart hash of the contents
+     * @return the merchant authorization
+     */
+    private String signMerchantAuthorization(CartContents contents, String cartHash) {
+        Instant now = Instant.now();
+        Map<String, Object> claims = new HashMap<>();
+        claims.put("iss", contents.merchantName());
+        claims.put("iat", now.getEpochSecond());
+        claims.put("exp", now.plus(MERCHANT_AUTHORIZATION_TTL).getEpochSecond());
+        claims.put("jti", UUID.randomUUID().toString());
+        claims.put("cart_hash", cartHash);
+        return merchantSigner.sign(claims);
     }
 
     /**
      * Initiates a payment for a given payment mandate. Use to make a payment.
      *
      * @param dataParts The data parts from the request, expected to contain a
-     *                  PaymentMandate and optionally a challenge response.
+     *                  PaymentMandate, the CartMandate it pays and optionally a
+     *                  challenge response.
      * @param updater The TaskUpdater instance for updating the task state.
      * @param currentTask The current task, used to find the processor's task ID.
      * @param cartMandateStore The cart mandate store for storing risk data.
@@ -219,6 +273,13 @@ public class Tools {
             return;
         }
 
+        CartMandate cartMandate = MessageUtils.parseCanonicalObject(
+                CART_MANDATE_DATA_KEY, dataParts, CartMandate.class);
+        if (cartMandate == null) {
+            failTask(updater, "Missing cart_mandate.");
+            return;
+        }
+
         String riskData = (String) MessageUtils.findDataPart("risk_data", dataParts);
         if (riskData == null) {
             failTask(updater, "Missing risk_data.");
@@ -234,26 +295,19 @@ public class Tools {
             return;
         }
 
-        // Create the payment processor client using PaymentRemoteA2aClient
-        PaymentRemoteA2aClient remoteClient = new PaymentRemoteA2aClient(
+        // Get the shared payment processor client from the pool
+        PaymentRemoteA2aClient remoteClient = PaymentRemoteA2aClientPool.shared().getClient(
                 "merchant_payment_processor",
                 processorUrl,
                 Set.of(EXTENSION_URI)
         );
 
-        Client paymentProcessorAgent;
-        try {
-            paymentProcessorAgent = remoteClient.getA2aClient(List.of());
-        } catch (Exception e) {
-            failTask(updater, "Failed to create payment processor client: " + e.getMessage());
-            return;
-        }
-
         // Build the message to send to the payment processor
         A2aMessageBuilder messageBuilder = new A2aMessageBuilder()
                 .setContextId(updater.getContextId())
                 .addText("initiate_payment")
                 .addData(PAYMENT_MANDATE_DATA_KEY, paymentMandate)
+                .addData(CART_MANDATE_DATA_KEY, cartMandate)
                 .addData("risk_data", riskData)
                 .addData("debug_mode", debugMode);
 
@@ -289,8 +343,16 @@ public class Tools {
             logger.severe("Error during payment processor communication: " + throwable.getMessage());
         };
 
+        PaymentRemoteA2aClient.Lease paymentProcessorAgent;
         try {
-            paymentProcessorAgent.sendMessage(messageBuilder.build(), consumers, errorHandler, null);
+            paymentProcessorAgent = remoteClient.lease();
+        } catch (Exception e) {
+            failTask(updater, "Failed to create payment processor client: " + e.getMessage());
+            return;
+        }
+
+        try (paymentProcessorAgent) {
+            paymentProcessorAgent.client().sendMessage(messageBuilder.build(), consumers, errorHandler, null);
         } catch (Exception e) {
             logger.severe("Failed to send message to payment processor: " + e.getMessage());
             throw new AP2Exception("Failed to initiate payment: " + e.getMessage(), e);
@@ -370,25 +432,4 @@ public class Tools {
         updater.fail(errorMessage);
         throw new AP2Exception(errorText);
     }
-
-    /**
-     * Converts a map representation of a ContactAddress to a ContactAddress object.
-     *
-     * @param addressMap The map containing contact address fields
-     * @return The ContactAddress object
-     */
-    private ContactAddress convertToContactAddress(Map<String, Object> addressMap) {
-        return new ContactAddress(
-                (String) addressMap.get("city"),
-                (String) addressMap.get("country"),
-                (String) addressMap.get("dependent_locality"),
-                (String) addressMap.get("organization"),
-                (String) addressMap.get("phone_number"),
-                (String) addressMap.get("postal_code"),
-                (String) addressMap.get("recipient"),
-                (String) addressMap.get("region"),
-                (String) addressMap.get("sorting_code"),
-                (List<String>) addressMap.get("address_line")
-        );
-    }
 }
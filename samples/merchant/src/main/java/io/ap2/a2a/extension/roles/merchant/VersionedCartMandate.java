@@ -0,0 +1,12 @@
+package io.ap2.a2a.extension.roles.merchant;
+
+import io.ap2.a2a.extension.spec.CartMandate;
+
+/**
+ * A cart mandate read from a {@link CartMandateStore}, with the version it was stored at.
+ *
+ * @param cartMandate the cart mandate
+ * @param version the version of the cart mandate, which changes on every update
+ */
+public record VersionedCartMandate(CartMandate cartMandate, long version) {
+}
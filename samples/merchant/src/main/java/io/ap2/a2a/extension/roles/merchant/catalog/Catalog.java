@@ -0,0 +1,672 @@
+package io.ap2.a2a.extension.roles.merchant.catalog;
+
+import io.a2a.util.Utils;
+import io.ap2.a2a.extension.spec.IntentMandate;
+import io.ap2.a2a.extension.util.Assert;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.logging.Logger;
+
+/**
+ * A searchable catalog of the merchant's products.
+ * <p>
+ * Products are indexed in an inverted index, and searches rank them by the
+ * BM25 relevance of their label and description to the query. Searches can
+ * also be restricted to given SKUs, and to refundable products.
+ * <p>
+ * The index is made of immutable {@link CatalogSegment segments}. Adding or
+ * updating products indexes them into a new segment, and marks their previous
+ * versions as deleted, then publishes a new snapshot of the segments with a
+ * single volatile write. Searches read the current snapshot once and never
+ * lock, so reindexing never blocks them, and they never see a partially
+ * applied update. Once there are more than {@link #MAX_SEGMENTS} segments,
+ * the smaller ones are merged, dropping deleted products. Deleted products
+ * are not counted in the collection statistics of the relevance scores.
+ * <p>
+ * A catalog {@link #reload(Path) reloaded} from its file only reindexes the
+ * products that changed, so reloading a large catalog after a small edit is
+ * cheap.
+ * <p>
+ * This class is thread-safe. Writes are serialized.
+ */
+public class Catalog {
+
+    private static final Logger logger = Logger.getLogger(Catalog.class.getName());
+
+    /**
+     * The number of segments above which segments are merged.
+     */
+    static final int MAX_SEGMENTS = 8;
+
+    /**
+     * The BM25 term frequency saturation.
+     */
+    private static final float K1 = 1.2f;
+
+    /**
+     * The BM25 document length normalization.
+     */
+    private static final float B = 0.75f;
+
+    private final Object writeLock = new Object();
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+
+    /**
+     * Creates an empty catalog.
+     */
+    public Catalog() {
+    }
+
+    /**
+     * Creates a catalog of the products of a file.
+     *
+     * @param file the file, with one JSON product per line
+     * @return the catalog
+     * @throws IOException if the file cannot be read, or a product is invalid
+     */
+    public static Catalog load(Path file) throws IOException {
+        Catalog catalog = new Catalog();
+        catalog.addOrUpdate(file);
+        return catalog;
+    }
+
+    /**
+     * Adds the products of a file to the catalog, replacing the products with
+     * the same SKUs.
+     * <p>
+     * Each non-blank line of the file is a JSON {@link Product}.
+     *
+     * @param file the file
+     * @return the number of products read
+     * @throws IOException if the file cannot be read, or a product is invalid
+     */
+    public int addOrUpdate(Path file) throws IOException {
+        List<Product> products = readProducts(file);
+        addOrUpdate(products);
+        logger.info("Indexed " + products.size() + " products from " + file);
+        return products.size();
+    }
+
+    /**
+     * Replaces the products of the catalog with the products of a file.
+     * <p>
+     * Only the products that are new or changed are indexed, and the products
+     * that are no longer in the file are removed. Searches see either all of
+     * the changes or none of them.
+     *
+     * @param file the file, with one JSON product per line
+     * @return the number of products read
+     * @throws IOException if the file cannot be read, or a product is invalid,
+     *                     in which case the catalog is left unchanged
+     */
+    public int reload(Path file) throws IOException {
+        Map<String, Product> bySku = bySku(readProducts(file));
+        synchronized (writeLock) {
+            Snapshot current = snapshot;
+            List<Product> changed = new ArrayList<>();
+            for (Product product : bySku.values()) {
+                if (!product.equals(current.find(product.sku()))) {
+                    changed.add(product);
+                }
+            }
+            List<String> removed = new ArrayList<>();
+            for (String sku : current.liveSkus()) {
+                if (!bySku.containsKey(sku)) {
+                    removed.add(sku);
+                }
+            }
+            if (!changed.isEmpty() || !removed.isEmpty()) {
+                List<String> deletedSkus = new ArrayList<>(removed);
+                for (Product product : changed) {
+                    deletedSkus.add(product.sku());
+                }
+                snapshot = add(current, deleteAll(current, deletedSkus), changed);
+            }
+            logger.info("Reloaded " + bySku.size() + " products from " + file + ": " + changed.size()
+                    + " added or changed, " + removed.size() + " removed");
+        }
+        return bySku.size();
+    }
+
+    private static List<Product> readProducts(Path file) throws IOException {
+        Assert.checkNotNullParam("file", file);
+        List<Product> products = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                try {
+                    products.add(Utils.OBJECT_MAPPER.readValue(line, Product.class));
+                } catch (IOException | IllegalArgumentException e) {
+                    throw new IOException("Invalid product on line " + lineNumber + " of " + file, e);
+                }
+            }
+        }
+        return products;
+    }
+
+    private static Map<String, Product> bySku(Collection<Product> products) {
+        Map<String, Product> bySku = new LinkedHashMap<>();
+        for (Product product : products) {
+            bySku.put(product.sku(), product);
+        }
+        return bySku;
+    }
+
+    /**
+     * Adds products to the catalog, replacing the products with the same SKUs.
+     * If several of the given products have the same SKU, the last one wins.
+     *
+     * @param products the products
+     */
+    public void addOrUpdate(Collection<Product> products) {
+        Assert.checkNotNullParam("products", products);
+        if (products.isEmpty()) {
+            return;
+        }
+        Map<String, Product> bySku = bySku(products);
+        // Index outside the lock, so concurrent writers only wait for the swap
+        CatalogSegment added = CatalogSegment.build(new ArrayList<>(bySku.values()));
+
+        synchronized (writeLock) {
+            Snapshot current = snapshot;
+            snapshot = add(current, deleteAll(current, bySku.keySet()), added);
+        }
+    }
+
+    /**
+     * Removes products from the catalog. Unknown SKUs are ignored.
+     *
+     * @param skus the SKUs of the products
+     */
+    public void remove(Collection<String> skus) {
+        Assert.checkNotNullParam("skus", skus);
+        synchronized (writeLock) {
+            Snapshot current = snapshot;
+            snapshot = Snapshot.of(current.segments, deleteAll(current, skus));
+        }
+    }
+
+    /**
+     * Returns the number of products in the catalog.
+     *
+     * @return the number of products
+     */
+    public int size() {
+        return (int) snapshot.liveDocs;
+    }
+
+    /**
+     * Finds the products that best match an intent mandate: its natural
+     * language description, its SKUs if any, and its refundability
+     * requirement.
+     *
+     * @param intentMandate the intent mandate
+     * @param limit the maximum number of products to return
+     * @return the products, best match first
+     */
+    public List<Product> search(IntentMandate intentMandate, int limit) {
+        Assert.checkNotNullParam("intentMandate", intentMandate);
+        return search(intentMandate.naturalLanguageDescription(), intentMandate.skus(),
+                Boolean.TRUE.equals(intentMandate.requiresRefundability()), limit);
+    }
+
+    /**
+     * Finds the products that best match a query.
+     * <p>
+     * If the query has no indexed terms, the products with the given SKUs are
+     * returned, in the order of the SKUs.
+     *
+     * @param query the query, matched against product labels and descriptions
+     * @param skus the SKUs the products must have, or null or empty for any
+     * @param refundableOnly whether only refundable products match
+     * @param limit the maximum number of products to return
+     * @return the products, best match first
+     */
+    public List<Product> search(String query, Collection<String> skus, boolean refundableOnly, int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("limit must be positive");
+        }
+        Snapshot current = snapshot;
+        Set<String> skuFilter = skus == null || skus.isEmpty() ? null : Set.copyOf(skus);
+        String[] terms = CatalogSegment.queryTerms(query == null ? "" : query);
+        if (terms.length == 0) {
+            return skuFilter == null ? List.of() : lookup(current, skus, refundableOnly, limit);
+        }
+
+        // Collection statistics span the live products of all segments, so scores are comparable
+        // across segments, and do not drift as products are updated or removed
+        long totalDocs = current.liveDocs;
+        if (totalDocs == 0) {
+            return List.of();
+        }
+        float averageLength = Math.max(1f, (float) current.liveLength / totalDocs);
+        float[] idfs = new float[terms.length];
+        for (int t = 0; t < terms.length; t++) {
+            long docFreq = 0;
+            for (int i = 0; i < current.segments.length; i++) {
+                docFreq += current.segments[i].postings(terms[t]).size() - current.deleted[i].docFreq(terms[t]);
+            }
+            idfs[t] = (float) Math.log(1 + (totalDocs - docFreq + 0.5) / (docFreq + 0.5));
+        }
+
+        TopProducts top = new TopProducts(limit);
+        for (int i = 0; i < current.segments.length; i++) {
+            searchSegment(current.segments[i], current.deleted[i], terms, idfs, averageLength,
+                    skuFilter, refundableOnly, top);
+        }
+        return top.toList();
+    }
+
+    /**
+     * Scores the products of a segment that contain query terms, and offers
+     * the best ones to the results.
+     * <p>
+     * Postings are traversed document at a time with the MaxScore algorithm.
+     * Each term has an upper bound on the score it can contribute. Once the
+     * terms with the lowest bounds cannot together score higher than the
+     * current results, they stop producing candidates: only the postings of
+     * the other terms are iterated, and the low terms are only looked up for
+     * the candidates that could still make it into the results. This is what
+     * keeps queries made of common terms fast on large catalogs.
+     */
+    private static void searchSegment(CatalogSegment segment, Deletions deleted, String[] terms, float[] idfs,
+                                      float averageLength, Set<String> skuFilter, boolean refundableOnly,
+                                      TopProducts top) {
+        Cursor[] cursors = new Cursor[terms.length];
+        int cursorCount = 0;
+        for (int t = 0; t < terms.length; t++) {
+            CatalogSegment.Postings postings = segment.postings(terms[t]);
+            if (postings.size() > 0) {
+                float maxScore = idfs[t] * termWeight(postings.maxFrequency(), postings.minDocLength(),
+                        averageLength);
+                cursors[cursorCount++] = new Cursor(postings, idfs[t], maxScore);
+            }
+        }
+        if (cursorCount == 0) {
+            return;
+        }
+        cursors = Arrays.copyOf(cursors, cursorCount);
+        Arrays.sort(cursors, Comparator.comparingDouble(cursor -> cursor.maxScore));
+        // The highest score the cursors up to each index can contribute together
+        float[] cumulativeMaxScores = new float[cursorCount];
+        float cumulative = 0f;
+        for (int c = 0; c < cursorCount; c++) {
+            cumulative += cursors[c].maxScore;
+            cumulativeMaxScores[c] = cumulative;
+        }
+
+        float threshold = top.threshold();
+        int essential = firstEssential(cumulativeMaxScores, threshold, 0);
+        while (essential < cursorCount) {
+            int doc = Cursor.END;
+            for (int c = essential; c < cursorCount; c++) {
+                doc = Math.min(doc, cursors[c].doc());
+            }
+            if (doc == Cursor.END) {
+                return;
+            }
+
+            int docLength = segment.docLength(doc);
+            float score = 0f;
+            for (int c = essential; c < cursorCount; c++) {
+                if (cursors[c].doc() == doc) {
+                    score += cursors[c].score(docLength, averageLength);
+                    cursors[c].next();
+                }
+            }
+            boolean competitive = true;
+            for (int c = essential - 1; c >= 0; c--) {
+                if (score + cumulativeMaxScores[c] <= threshold) {
+                    competitive = false;
+                    break;
+                }
+                cursors[c].advance(doc);
+                if (cursors[c].doc() == doc) {
+                    score += cursors[c].score(docLength, averageLength);
+                }
+            }
+            if (!competitive || !top.competitive(score) || deleted.get(doc)
+                    || (refundableOnly && !segment.refundable(doc))) {
+                continue;
+            }
+            Product product = segment.product(doc);
+            if (skuFilter == null || skuFilter.contains(product.sku())) {
+                top.offer(score, product);
+                threshold = top.threshold();
+                essential = firstEssential(cumulativeMaxScores, threshold, essential);
+            }
+        }
+    }
+
+    /**
+     * Returns the index of the first cursor that, with all the cursors of
+     * lower bounds, could score higher than the threshold.
+     */
+    private static int firstEssential(float[] cumulativeMaxScores, float threshold, int from) {
+        int essential = from;
+        while (essential < cumulativeMaxScores.length && cumulativeMaxScores[essential] <= threshold) {
+            essential++;
+        }
+        return essential;
+    }
+
+    /**
+     * Returns the BM25 weight of a term, before its inverse document frequency.
+     */
+    private static float termWeight(float frequency, int docLength, float averageLength) {
+        return frequency * (K1 + 1) / (frequency + K1 * (1 - B + B * docLength / averageLength));
+    }
+
+    private static List<Product> lookup(Snapshot current, Collection<String> skus, boolean refundableOnly,
+                                        int limit) {
+        List<Product> products = new ArrayList<>();
+        for (String sku : skus) {
+            Product product = current.find(sku);
+            if (product != null && matches(product, null, refundableOnly)) {
+                products.add(product);
+                if (products.size() == limit) {
+                    break;
+                }
+            }
+        }
+        return products;
+    }
+
+    private static boolean matches(Product product, Set<String> skuFilter, boolean refundableOnly) {
+        return (skuFilter == null || skuFilter.contains(product.sku()))
+                && (!refundableOnly || product.refundable());
+    }
+
+    /**
+     * Appends a segment of products to a snapshot, merging segments if needed.
+     */
+    private static Snapshot add(Snapshot current, Deletions[] deleted, Collection<Product> products) {
+        return add(current, deleted, CatalogSegment.build(new ArrayList<>(products)));
+    }
+
+    private static Snapshot add(Snapshot current, Deletions[] deleted, CatalogSegment added) {
+        CatalogSegment[] segments = Arrays.copyOf(current.segments, current.segments.length + 1);
+        deleted = Arrays.copyOf(deleted, deleted.length + 1);
+        segments[segments.length - 1] = added;
+        deleted[deleted.length - 1] = new Deletions();
+        return mergeIfNeeded(Snapshot.of(segments, deleted));
+    }
+
+    /**
+     * Marks the live products with the given SKUs as deleted, copying the
+     * deletions of the segments that change.
+     */
+    private static Deletions[] deleteAll(Snapshot current, Collection<String> skus) {
+        Deletions[] deleted = current.deleted.clone();
+        boolean[] copied = new boolean[deleted.length];
+        for (String sku : skus) {
+            for (int i = 0; i < current.segments.length; i++) {
+                int doc = current.segments[i].doc(sku);
+                if (doc >= 0 && !deleted[i].get(doc)) {
+                    if (!copied[i]) {
+                        deleted[i] = deleted[i].copy();
+                        copied[i] = true;
+                    }
+                    deleted[i].delete(current.segments[i], doc);
+                }
+            }
+        }
+        return deleted;
+    }
+
+    /**
+     * Merges all segments but the largest once there are too many, or all of
+     * them once most of the largest is deleted.
+     */
+    private static Snapshot mergeIfNeeded(Snapshot current) {
+        if (current.segments.length <= MAX_SEGMENTS) {
+            return current;
+        }
+        int largest = 0;
+        for (int i = 1; i < current.segments.length; i++) {
+            if (current.segments[i].size() > current.segments[largest].size()) {
+                largest = i;
+            }
+        }
+        int largestDeleted = current.deleted[largest].cardinality();
+        boolean mergeLargest = largestDeleted * 2 > current.segments[largest].size();
+
+        List<Product> live = new ArrayList<>();
+        for (int i = 0; i < current.segments.length; i++) {
+            if (i == largest && !mergeLargest) {
+                continue;
+            }
+            CatalogSegment segment = current.segments[i];
+            BitSet deleted = current.deleted[i].docs;
+            for (int doc = deleted.nextClearBit(0); doc < segment.size(); doc = deleted.nextClearBit(doc + 1)) {
+                live.add(segment.product(doc));
+            }
+        }
+        CatalogSegment merged = CatalogSegment.build(live);
+        if (mergeLargest) {
+            return Snapshot.of(new CatalogSegment[] {merged}, new Deletions[] {new Deletions()});
+        }
+        return Snapshot.of(new CatalogSegment[] {current.segments[largest], merged},
+                new Deletions[] {current.deleted[largest], new Deletions()});
+    }
+
+    /**
+     * An immutable view of the index, with the number and total length of its
+     * live products. The deletions of a published snapshot are never modified.
+     */
+    private record Snapshot(CatalogSegment[] segments, Deletions[] deleted, long liveDocs, long liveLength) {
+
+        static final Snapshot EMPTY = of(new CatalogSegment[0], new Deletions[0]);
+
+        static Snapshot of(CatalogSegment[] segments, Deletions[] deleted) {
+            long liveDocs = 0;
+            long liveLength = 0;
+            for (int i = 0; i < segments.length; i++) {
+                liveDocs += segments[i].size() - deleted[i].cardinality();
+                liveLength += segments[i].totalLength() - deleted[i].length();
+            }
+            return new Snapshot(segments, deleted, liveDocs, liveLength);
+        }
+
+        List<String> liveSkus() {
+            List<String> skus = new ArrayList<>();
+            for (int i = 0; i < segments.length; i++) {
+                BitSet deletedDocs = deleted[i].docs;
+                for (int doc = deletedDocs.nextClearBit(0); doc < segments[i].size();
+                     doc = deletedDocs.nextClearBit(doc + 1)) {
+                    skus.add(segments[i].product(doc).sku());
+                }
+            }
+            return skus;
+        }
+
+        Product find(String sku) {
+            // Newer segments hold the current version of a product
+            for (int i = segments.length - 1; i >= 0; i--) {
+                int doc = segments[i].doc(sku);
+                if (doc >= 0 && !deleted[i].get(doc)) {
+                    return segments[i].product(doc);
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * The deleted products of a segment, with the number of them that contain
+     * each term and their total length, so that the collection statistics of
+     * the live products are known without walking postings. The deletions of
+     * a published snapshot are never modified, but copied before deleting
+     * more products.
+     */
+    private static final class Deletions {
+
+        private final BitSet docs;
+        private final Map<String, Integer> docFreqs;
+        private long length;
+
+        Deletions() {
+            this(new BitSet(), new HashMap<>(), 0);
+        }
+
+        private Deletions(BitSet docs, Map<String, Integer> docFreqs, long length) {
+            this.docs = docs;
+            this.docFreqs = docFreqs;
+            this.length = length;
+        }
+
+        Deletions copy() {
+            return new Deletions((BitSet) docs.clone(), new HashMap<>(docFreqs), length);
+        }
+
+        /**
+         * Marks a live document as deleted.
+         */
+        void delete(CatalogSegment segment, int doc) {
+            docs.set(doc);
+            length += segment.docLength(doc);
+            for (String term : segment.terms(doc)) {
+                docFreqs.merge(term, 1, Integer::sum);
+            }
+        }
+
+        boolean get(int doc) {
+            return docs.get(doc);
+        }
+
+        int cardinality() {
+            return docs.cardinality();
+        }
+
+        /**
+         * Returns the total length of the deleted documents.
+         */
+        long length() {
+            return length;
+        }
+
+        /**
+         * Returns the number of deleted documents that contain a term.
+         */
+        int docFreq(String term) {
+            return docFreqs.getOrDefault(term, 0);
+        }
+    }
+
+    /**
+     * A position in the postings of a query term.
+     */
+    private static final class Cursor {
+
+        static final int END = Integer.MAX_VALUE;
+
+        private final int[] docs;
+        private final int[] frequencies;
+        private final float idf;
+        private final float maxScore;
+        private int position;
+
+        Cursor(CatalogSegment.Postings postings, float idf, float maxScore) {
+            this.docs = postings.docs();
+            this.frequencies = postings.frequencies();
+            this.idf = idf;
+            this.maxScore = maxScore;
+        }
+
+        int doc() {
+            return position < docs.length ? docs[position] : END;
+        }
+
+        float score(int docLength, float averageLength) {
+            return idf * termWeight(frequencies[position], docLength, averageLength);
+        }
+
+        void next() {
+            position++;
+        }
+
+        /**
+         * Moves to the first document at or after the target, galloping then
+         * searching in the range found.
+         */
+        void advance(int target) {
+            int low = position;
+            int step = 1;
+            int high = position;
+            while (high < docs.length && docs[high] < target) {
+                low = high + 1;
+                high = position + step;
+                step <<= 1;
+            }
+            if (high > docs.length) {
+                high = docs.length;
+            }
+            int found = Arrays.binarySearch(docs, low, high, target);
+            position = found >= 0 ? found : -found - 1;
+        }
+    }
+
+    /**
+     * The best products offered so far, in a bounded min-heap.
+     */
+    private static final class TopProducts {
+
+        private final int limit;
+        private final PriorityQueue<Scored> heap =
+                new PriorityQueue<>(Comparator.comparingDouble(Scored::score));
+
+        TopProducts(int limit) {
+            this.limit = limit;
+        }
+
+        float threshold() {
+            return heap.size() < limit ? 0f : heap.peek().score();
+        }
+
+        boolean competitive(float score) {
+            return heap.size() < limit || score > heap.peek().score();
+        }
+
+        void offer(float score, Product product) {
+            if (heap.size() < limit) {
+                heap.add(new Scored(score, product));
+            } else if (score > heap.peek().score()) {
+                heap.poll();
+                heap.add(new Scored(score, product));
+            }
+        }
+
+        List<Product> toList() {
+            Scored[] scored = heap.toArray(new Scored[0]);
+            Arrays.sort(scored, Comparator.comparingDouble(Scored::score).reversed());
+            List<Product> products = new ArrayList<>(scored.length);
+            for (Scored s : scored) {
+                products.add(s.product());
+            }
+            return products;
+        }
+    }
+
+    private record Scored(float score, Product product) {
+    }
+}
@@ -0,0 +1,23 @@
+package io.ap2.a2a.extension.roles.merchant.catalog;
+
+/**
+ * Where the catalog agent finds the items matching an intent.
+ */
+public enum CatalogMode {
+
+    /**
+     * Items are generated by the LLM.
+     */
+    GENERATED,
+
+    /**
+     * Items are searched in the local {@link Catalog}.
+     */
+    CATALOG,
+
+    /**
+     * Items are searched in the local {@link Catalog}, and generated by the
+     * LLM if the catalog has no match.
+     */
+    CATALOG_THEN_GENERATED
+}
@@ -0,0 +1,101 @@
+package io.ap2.a2a.extension.roles.merchant.catalog;
+
+import io.ap2.a2a.extension.util.Assert;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Keeps a {@link Catalog} in sync with its file.
+ * <p>
+ * The modification time of the file is polled, rather than watched, so that
+ * files replaced by a rename or behind a symbolic link, as mounted
+ * configuration files are, are reloaded too. When it changes, the catalog is
+ * {@link Catalog#reload(Path) reloaded}, which only reindexes the products
+ * that changed. A file that cannot be read or has an invalid product leaves
+ * the catalog unchanged, and is read again once it changes.
+ * <p>
+ * This class is thread-safe.
+ */
+public final class CatalogReloader implements AutoCloseable {
+
+    private static final Logger logger = Logger.getLogger(CatalogReloader.class.getName());
+
+    private final Catalog catalog;
+    private final Path file;
+    private final ScheduledExecutorService scheduler;
+    private FileTime lastModified;
+
+    /**
+     * Loads a catalog from its file, and reloads it whenever the file changes.
+     *
+     * @param catalog the catalog
+     * @param file the file, with one JSON product per line
+     * @param interval how often the file is checked for changes, or zero to never reload it
+     * @throws IOException if the file cannot be read, or a product is invalid
+     */
+    public CatalogReloader(Catalog catalog, Path file, Duration interval) throws IOException {
+        this.catalog = Assert.checkNotNullParam("catalog", catalog);
+        this.file = Assert.checkNotNullParam("file", file);
+        Assert.checkNotNullParam("interval", interval);
+        // Read the modification time first, so that a change made while loading is reloaded
+        lastModified = Files.getLastModifiedTime(file);
+        catalog.reload(file);
+        if (interval.isZero() || interval.isNegative()) {
+            scheduler = null;
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "catalog-reloader");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMillis = interval.toMillis();
+        scheduler.scheduleWithFixedDelay(this::reloadIfModified, intervalMillis, intervalMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Reloads the catalog if its file was modified since it was last read.
+     *
+     * @return whether the catalog was reloaded
+     */
+    public synchronized boolean reloadIfModified() {
+        FileTime modified;
+        try {
+            modified = Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            logger.warning("Failed to check the product catalog " + file + ": " + e.getMessage());
+            return false;
+        }
+        if (modified.equals(lastModified)) {
+            return false;
+        }
+        lastModified = modified;
+        try {
+            catalog.reload(file);
+            return true;
+        } catch (IOException | RuntimeException e) {
+            logger.warning("Failed to reload the product catalog " + file + ", keeping the current products: "
+                    + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Stops reloading the catalog.
+     */
+    @Override
+    public void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+}
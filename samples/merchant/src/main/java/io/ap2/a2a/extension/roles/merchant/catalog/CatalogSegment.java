@@ -0,0 +1,234 @@
+package io.ap2.a2a.extension.roles.merchant.catalog;
+
+import io.ap2.a2a.extension.common.ToolRouter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An immutable part of the inverted index of a {@link Catalog}.
+ * <p>
+ * A segment maps each term of the labels and descriptions of its products to
+ * a postings list of the documents that contain the term, in document order,
+ * with the frequency of the term in each document. Documents are numbered
+ * from zero in the order of the products given to {@link #build(List)}.
+ * <p>
+ * Segments are never modified once built, so they can be searched without
+ * locking. Products that are updated or removed are instead marked as deleted
+ * by the catalog, and dropped when segments are merged.
+ */
+final class CatalogSegment {
+
+    /**
+     * Words too common to be worth indexing, which would otherwise make the
+     * postings of a query as long as the catalog.
+     */
+    private static final Set<String> STOP_WORDS = Set.of(
+            "a", "an", "the", "and", "or", "of", "for", "with", "in", "on", "to", "at", "by",
+            "from", "is", "it", "this", "that", "i", "im", "me", "my", "we", "our", "want",
+            "need", "would", "like", "buy", "purchase", "find", "looking", "please", "some", "any");
+
+    private static final Postings NO_POSTINGS = new Postings(new int[0], new int[0], 0, 0);
+
+    private final Product[] products;
+    private final int[] docLengths;
+    private final BitSet refundable;
+    private final long totalLength;
+    private final Map<String, Postings> postings;
+    private final Map<String, Integer> docsBySku;
+
+    private CatalogSegment(Product[] products, int[] docLengths, BitSet refundable, long totalLength,
+                           Map<String, Postings> postings, Map<String, Integer> docsBySku) {
+        this.products = products;
+        this.docLengths = docLengths;
+        this.refundable = refundable;
+        this.totalLength = totalLength;
+        this.postings = postings;
+        this.docsBySku = docsBySku;
+    }
+
+    /**
+     * Indexes products into a new segment.
+     *
+     * @param products the products, with distinct SKUs
+     * @return the segment
+     */
+    static CatalogSegment build(List<Product> products) {
+        Product[] docs = products.toArray(new Product[0]);
+        int[] docLengths = new int[docs.length];
+        BitSet refundable = new BitSet(docs.length);
+        long totalLength = 0;
+        Map<String, PostingsBuilder> builders = new HashMap<>();
+        Map<String, Integer> docsBySku = new HashMap<>(docs.length * 4 / 3 + 1);
+        Map<String, Integer> frequencies = new HashMap<>();
+
+        for (int doc = 0; doc < docs.length; doc++) {
+            Product product = docs[doc];
+            docsBySku.put(product.sku(), doc);
+            refundable.set(doc, product.refundable());
+
+            frequencies.clear();
+            int length = 0;
+            for (String term : tokenize(text(product))) {
+                frequencies.merge(term, 1, Integer::sum);
+                length++;
+            }
+            docLengths[doc] = length;
+            totalLength += length;
+            for (Map.Entry<String, Integer> frequency : frequencies.entrySet()) {
+                builders.computeIfAbsent(frequency.getKey(), term -> new PostingsBuilder())
+                        .add(doc, frequency.getValue());
+            }
+        }
+
+        Map<String, Postings> postings = new HashMap<>(builders.size() * 4 / 3 + 1);
+        for (Map.Entry<String, PostingsBuilder> builder : builders.entrySet()) {
+            postings.put(builder.getKey(), builder.getValue().build(docLengths));
+        }
+        return new CatalogSegment(docs, docLengths, refundable, totalLength, postings, docsBySku);
+    }
+
+    private static String text(Product product) {
+        return product.label() + " " + (product.description() == null ? "" : product.description());
+    }
+
+    /**
+     * Splits a text into indexed terms: lowercase words, without stop words.
+     *
+     * @param text the text
+     * @return the terms, in order and with duplicates
+     */
+    static List<String> tokenize(String text) {
+        String normalized = ToolRouter.normalize(text);
+        if (normalized.isEmpty()) {
+            return List.of();
+        }
+        List<String> terms = new ArrayList<>();
+        for (String word : normalized.split(" ")) {
+            if (!STOP_WORDS.contains(word)) {
+                terms.add(word);
+            }
+        }
+        return terms;
+    }
+
+    /**
+     * Splits a query into distinct indexed terms.
+     *
+     * @param query the query
+     * @return the distinct terms, in order
+     */
+    static String[] queryTerms(String query) {
+        return new LinkedHashSet<>(tokenize(query)).toArray(new String[0]);
+    }
+
+    int size() {
+        return products.length;
+    }
+
+    long totalLength() {
+        return totalLength;
+    }
+
+    Product product(int doc) {
+        return products[doc];
+    }
+
+    int docLength(int doc) {
+        return docLengths[doc];
+    }
+
+    /**
+     * Returns the distinct terms of a document, which are the terms whose
+     * postings list it.
+     *
+     * @param doc the document
+     * @return the terms
+     */
+    Set<String> terms(int doc) {
+        return new HashSet<>(tokenize(text(products[doc])));
+    }
+
+    /**
+     * Returns whether a product can be refunded, without loading the product.
+     *
+     * @param doc the document of the product
+     * @return true if the product is refundable
+     */
+    boolean refundable(int doc) {
+        return refundable.get(doc);
+    }
+
+    /**
+     * Returns the postings of a term.
+     *
+     * @param term the term
+     * @return the postings, empty if no document contains the term
+     */
+    Postings postings(String term) {
+        return postings.getOrDefault(term, NO_POSTINGS);
+    }
+
+    /**
+     * Returns the document of a product.
+     *
+     * @param sku the SKU of the product
+     * @return the document, or -1 if the segment has no such product
+     */
+    int doc(String sku) {
+        Integer doc = docsBySku.get(sku);
+        return doc == null ? -1 : doc;
+    }
+
+    /**
+     * The documents containing a term, in document order, with the frequency
+     * of the term in each of them. The highest frequency and the shortest
+     * document bound the score the term can contribute.
+     *
+     * @param docs the documents
+     * @param frequencies the frequency of the term in each document
+     * @param maxFrequency the highest frequency
+     * @param minDocLength the length of the shortest document
+     */
+    record Postings(int[] docs, int[] frequencies, int maxFrequency, int minDocLength) {
+
+        int size() {
+            return docs.length;
+        }
+    }
+
+    private static final class PostingsBuilder {
+
+        private int[] docs = new int[4];
+        private int[] frequencies = new int[4];
+        private int size;
+
+        void add(int doc, int frequency) {
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+                frequencies = Arrays.copyOf(frequencies, size * 2);
+            }
+            docs[size] = doc;
+            frequencies[size] = frequency;
+            size++;
+        }
+
+        Postings build(int[] docLengths) {
+            int maxFrequency = 0;
+            int minDocLength = Integer.MAX_VALUE;
+            for (int i = 0; i < size; i++) {
+                maxFrequency = Math.max(maxFrequency, frequencies[i]);
+                minDocLength = Math.min(minDocLength, docLengths[docs[i]]);
+            }
+            return new Postings(Arrays.copyOf(docs, size), Arrays.copyOf(frequencies, size),
+                    maxFrequency, minDocLength);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package io.ap2.a2a.extension.roles.merchant.catalog;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.ap2.a2a.extension.spec.PaymentCurrencyAmount;
+import io.ap2.a2a.extension.spec.PaymentItem;
+import io.ap2.a2a.extension.util.Assert;
+
+/**
+ * A product of the merchant's {@link Catalog}.
+ */
+@JsonInclude(JsonInclude.Include.NON_ABSENT)
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record Product(
+        /**
+         * The stock keeping unit, which identifies the product.
+         */
+        String sku,
+        /**
+         * A human-readable name of the product.
+         */
+        String label,
+        /**
+         * A longer description of the product, which is searched along with the label.
+         */
+        String description,
+        /**
+         * The three-letter ISO 4217 currency code of the price.
+         */
+        String currency,
+        /**
+         * The price of the product.
+         */
+        Double price,
+        /**
+         * The refund duration for this product, in days. Zero if the product
+         * cannot be refunded.
+         */
+        @JsonProperty("refund_period") Integer refundPeriod
+) {
+
+    public Product {
+        Assert.checkNotNullParam("sku", sku);
+        Assert.checkNotNullParam("label", label);
+        Assert.checkNotNullParam("currency", currency);
+        Assert.checkNotNullParam("price", price);
+        if (refundPeriod == null) {
+            refundPeriod = 30;
+        }
+    }
+
+    /**
+     * Returns whether the product can be refunded.
+     *
+     * @return true if the refund period is positive
+     */
+    public boolean refundable() {
+        return refundPeriod > 0;
+    }
+
+    /**
+     * Converts the product to a payment item.
+     *
+     * @return the payment item
+     */
+    public PaymentItem toPaymentItem() {
+        return new PaymentItem(label, new PaymentCurrencyAmount(currency, price), null, refundPeriod);
+    }
+}
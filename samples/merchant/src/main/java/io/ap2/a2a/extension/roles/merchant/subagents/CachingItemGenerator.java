@@ -0,0 +1,381 @@
+package io.ap2.a2a.extension.roles.merchant.subagents;
+
+import io.ap2.a2a.extension.common.ToolRouter;
+import io.ap2.a2a.extension.util.Assert;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An {@link ItemGenerator} that caches the items generated by another one,
+ * keyed by intent.
+ * <p>
+ * The natural language description of an intent is normalized and reduced to
+ * its significant words, so that "I want to buy shoes" and "i'd like to buy
+ * some shoes!" share an entry. Descriptions without any significant word,
+ * such as empty ones, are not cached. Near-duplicate descriptions are matched too:
+ * each description is turned into a set of word shingles, a MinHash signature
+ * of the set is indexed with locality-sensitive hashing, and candidates whose
+ * Jaccard similarity reaches the similarity threshold are hits. Shingles are
+ * single words, since word order rarely changes what a shopper is after.
+ * <p>
+ * Entries expire after the time-to-live, and the least recently used entry
+ * is evicted once the cache is full. This class is thread-safe; the generator
+ * is called outside the lock.
+ */
+public class CachingItemGenerator implements ItemGenerator {
+
+    /**
+     * The default maximum number of cached intents.
+     */
+    public static final int DEFAULT_MAX_ENTRIES = 1000;
+
+    /**
+     * The default time for which generated items are cached.
+     */
+    public static final Duration DEFAULT_TTL = Duration.ofMinutes(15);
+
+    /**
+     * The default minimum Jaccard similarity of near-duplicate intents.
+     */
+    public static final double DEFAULT_SIMILARITY_THRESHOLD = 0.8;
+
+    // 16 bands of 4 rows find pairs with a similarity of 0.8 with a probability above 0.99
+    private static final int BANDS = 16;
+    private static final int ROWS = 4;
+    private static final int SIGNATURE_LENGTH = BANDS * ROWS;
+    private static final long[] SEEDS = new long[SIGNATURE_LENGTH];
+
+    static {
+        long seed = 0x2545F4914F6CDD1DL;
+        for (int i = 0; i < SIGNATURE_LENGTH; i++) {
+            seed = mix(seed + 0x9E3779B97F4A7C15L);
+            SEEDS[i] = seed;
+        }
+    }
+
+    /**
+     * Words that carry no meaning for a product search.
+     */
+    private static final Set<String> STOP_WORDS = Set.of(
+            "a", "an", "the", "some", "any", "i", "im", "id", "me", "my", "we", "our",
+            "want", "wants", "need", "needs", "would", "like", "to", "buy", "purchase",
+            "get", "find", "looking", "look", "for", "please", "of", "with", "and", "in", "on");
+
+    private final ItemGenerator delegate;
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final double similarityThreshold;
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<Long, List<Entry>> buckets = new HashMap<>();
+
+    private final LongAdder exactHits = new LongAdder();
+    private final LongAdder similarHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Creates a new CachingItemGenerator with the default settings.
+     *
+     * @param delegate the generator called on a cache miss
+     */
+    public CachingItemGenerator(ItemGenerator delegate) {
+        this(delegate, DEFAULT_MAX_ENTRIES, DEFAULT_TTL, DEFAULT_SIMILARITY_THRESHOLD);
+    }
+
+    /**
+     * Creates a new CachingItemGenerator.
+     *
+     * @param delegate the generator called on a cache miss
+     * @param maxEntries the maximum number of cached intents
+     * @param ttl how long generated items are cached
+     * @param similarityThreshold the minimum Jaccard similarity of near-duplicate intents,
+     *                            or a value above 1 to only match identical intents
+     */
+    public CachingItemGenerator(ItemGenerator delegate, int maxEntries, Duration ttl, double similarityThreshold) {
+        this.delegate = Assert.checkNotNullParam("delegate", delegate);
+        Assert.checkNotNullParam("ttl", ttl);
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("maxEntries must be positive");
+        }
+        if (ttl.isNegative() || ttl.isZero()) {
+            throw new IllegalArgumentException("ttl must be positive");
+        }
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttl.toNanos();
+        this.similarityThreshold = similarityThreshold;
+    }
+
+    /**
+     * Generates the items matching an intent, using cached items if there are any.
+     *
+     * @param intent the natural language description of what the user wants to buy
+     * @return the generated items, which may be shared with other callers and must not be modified
+     */
+    @Override
+    public GeneratedItems generateItems(String intent) {
+        String[] words = significantWords(intent);
+        if (words.length == 0) {
+            // A description without significant words would share its entry with every other such description
+            misses.increment();
+            return delegate.generateItems(intent);
+        }
+        String key = String.join(" ", words);
+        long[] shingles = shingles(words);
+        long[] signature = signature(shingles);
+
+        long now = System.nanoTime();
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null && now - entry.expiresAtNanos < 0) {
+                exactHits.increment();
+                return new GeneratedItems(entry.items);
+            }
+            entry = findSimilar(shingles, signature, now);
+            if (entry != null) {
+                similarHits.increment();
+                // Mark the matched entry as recently used
+                entries.get(entry.key);
+                return new GeneratedItems(entry.items);
+            }
+        }
+
+        misses.increment();
+        GeneratedItems generatedItems = delegate.generateItems(intent);
+        if (generatedItems == null || generatedItems.getItems() == null || generatedItems.getItems().isEmpty()) {
+            return generatedItems;
+        }
+
+        List<GeneratedItem> items = copyOf(generatedItems.getItems());
+        Entry entry = new Entry(key, shingles, signature, items, System.nanoTime() + ttlNanos);
+        synchronized (this) {
+            Entry previous = entries.put(key, entry);
+            if (previous != null) {
+                unindex(previous);
+            }
+            index(entry);
+            evict(System.nanoTime());
+        }
+        return new GeneratedItems(items);
+    }
+
+    /**
+     * Returns the number of intents answered with the items of an identical intent.
+     *
+     * @return the exact hit count
+     */
+    public long getExactHitCount() {
+        return exactHits.sum();
+    }
+
+    /**
+     * Returns the number of intents answered with the items of a near-duplicate intent.
+     *
+     * @return the similar hit count
+     */
+    public long getSimilarHitCount() {
+        return similarHits.sum();
+    }
+
+    /**
+     * Returns the number of intents that required the generator.
+     *
+     * @return the miss count
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Returns the number of cached intents, including any that have expired
+     * but have not been evicted yet.
+     *
+     * @return the number of cached intents
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Removes all cached intents.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        buckets.clear();
+    }
+
+    private Entry findSimilar(long[] shingles, long[] signature, long now) {
+        Entry best = null;
+        double bestSimilarity = similarityThreshold;
+        for (int band = 0; band < BANDS; band++) {
+            List<Entry> candidates = buckets.get(bucketKey(signature, band));
+            if (candidates == null) {
+                continue;
+            }
+            for (Entry candidate : candidates) {
+                if (now - candidate.expiresAtNanos >= 0) {
+                    continue;
+                }
+                double similarity = jaccard(shingles, candidate.shingles);
+                if (similarity >= bestSimilarity) {
+                    best = candidate;
+                    bestSimilarity = similarity;
+                }
+            }
+        }
+        return best;
+    }
+
+    private void evict(long now) {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            Entry eldest = iterator.next();
+            // Entries are in access order, so stop at the first one that is neither expired nor over the limit
+            if (entries.size() <= maxEntries && now - eldest.expiresAtNanos < 0) {
+                break;
+            }
+            iterator.remove();
+            unindex(eldest);
+        }
+    }
+
+    private void index(Entry entry) {
+        for (int band = 0; band < BANDS; band++) {
+            buckets.computeIfAbsent(bucketKey(entry.signature, band), k -> new ArrayList<>(1))
+                    .add(entry);
+        }
+    }
+
+    private void unindex(Entry entry) {
+        for (int band = 0; band < BANDS; band++) {
+            Long bucketKey = bucketKey(entry.signature, band);
+            List<Entry> bucket = buckets.get(bucketKey);
+            if (bucket != null) {
+                bucket.remove(entry);
+                if (bucket.isEmpty()) {
+                    buckets.remove(bucketKey);
+                }
+            }
+        }
+    }
+
+    /**
+     * Normalizes a description and removes its stop words.
+     *
+     * @param description the natural language description of an intent
+     * @return the significant words, in order
+     */
+    static String[] significantWords(String description) {
+        String normalized = ToolRouter.normalize(description);
+        if (normalized.isEmpty()) {
+            return new String[0];
+        }
+        return Arrays.stream(normalized.split(" "))
+                .filter(word -> !STOP_WORDS.contains(word))
+                .toArray(String[]::new);
+    }
+
+    /**
+     * Hashes the words of a description into a sorted set.
+     */
+    private static long[] shingles(String[] words) {
+        long[] shingles = new long[words.length];
+        for (int i = 0; i < words.length; i++) {
+            shingles[i] = hash(words[i]);
+        }
+        return Arrays.stream(shingles).sorted().distinct().toArray();
+    }
+
+    private static long[] signature(long[] shingles) {
+        long[] signature = new long[SIGNATURE_LENGTH];
+        Arrays.fill(signature, Long.MAX_VALUE);
+        for (long shingle : shingles) {
+            for (int i = 0; i < SIGNATURE_LENGTH; i++) {
+                long value = mix(shingle ^ SEEDS[i]);
+                if (value < signature[i]) {
+                    signature[i] = value;
+                }
+            }
+        }
+        return signature;
+    }
+
+    private static Long bucketKey(long[] signature, int band) {
+        long hash = band;
+        for (int row = band * ROWS; row < (band + 1) * ROWS; row++) {
+            hash = mix(hash ^ signature[row]);
+        }
+        return hash;
+    }
+
+    /**
+     * Computes the Jaccard similarity of two sorted sets of shingles.
+     */
+    private static double jaccard(long[] a, long[] b) {
+        int i = 0;
+        int j = 0;
+        int intersection = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] == b[j]) {
+                intersection++;
+                i++;
+                j++;
+            } else if (a[i] < b[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return (double) intersection / (a.length + b.length - intersection);
+    }
+
+    private static long hash(String word) {
+        // 64-bit FNV-1a
+        long hash = 0xCBF29CE484222325L;
+        for (int i = 0; i < word.length(); i++) {
+            hash ^= word.charAt(i);
+            hash *= 0x100000001B3L;
+        }
+        return hash;
+    }
+
+    private static long mix(long z) {
+        // The SplitMix64 finalizer
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    private static List<GeneratedItem> copyOf(List<GeneratedItem> items) {
+        List<GeneratedItem> copy = new ArrayList<>(items.size());
+        for (GeneratedItem item : items) {
+            copy.add(new GeneratedItem(item.getLabel(), item.getCurrency(), item.getPrice()));
+        }
+        return List.copyOf(copy);
+    }
+
+    private static final class Entry {
+
+        private final String key;
+        private final long[] shingles;
+        private final long[] signature;
+        private final List<GeneratedItem> items;
+        private final long expiresAtNanos;
+
+        Entry(String key, long[] shingles, long[] signature, List<GeneratedItem> items, long expiresAtNanos) {
+            this.key = key;
+            this.shingles = shingles;
+            this.signature = signature;
+            this.items = items;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+    }
+}
@@ -3,8 +3,12 @@ package io.ap2.a2a.extension.roles.merchant.subagents;
 import io.a2a.server.tasks.TaskUpdater;
 import io.a2a.spec.DataPart;
 import io.a2a.spec.Task;
+import io.ap2.a2a.extension.common.IdGenerator;
 import io.ap2.a2a.extension.common.MessageUtils;
 import io.ap2.a2a.extension.roles.merchant.CartMandateStore;
+import io.ap2.a2a.extension.roles.merchant.catalog.Catalog;
+import io.ap2.a2a.extension.roles.merchant.catalog.CatalogMode;
+import io.ap2.a2a.extension.roles.merchant.catalog.Product;
 import io.ap2.a2a.extension.spec.AP2Exception;
 import io.ap2.a2a.extension.spec.CartContents;
 import io.ap2.a2a.extension.spec.CartMandate;
@@ -15,6 +19,7 @@ import io.ap2.a2a.extension.spec.PaymentItem;
 import io.ap2.a2a.extension.spec.PaymentMethodData;
 import io.ap2.a2a.extension.spec.PaymentOptions;
 import io.ap2.a2a.extension.spec.PaymentRequest;
+import io.ap2.a2a.extension.util.MandateHashes;
 
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
@@ -32,13 +37,25 @@ import static io.ap2.a2a.extension.spec.AP2Constants.INTENT_MANDATE_DATA_KEY;
  * This agent fabricates catalog content based on the user's request using
  * LangChain4j and Gemini to generate realistic product items.
  * It mirrors the Python catalog_agent implementation.
+ *
+ * Depending on its {@link CatalogMode}, the agent may instead search a local
+ * {@link Catalog} of products, or search it first and only generate items if
+ * it has no match.
  */
 public class CatalogAgent {
 
     private static final Logger logger = Logger.getLogger(CatalogAgent.class.getName());
 
+    /**
+     * The maximum number of items offered for an intent.
+     */
+    private static final int MAX_ITEMS = 3;
+
     private final CartMandateStore cartMandateStore;
     private final ItemGenerator itemGenerator;
+    private final IdGenerator idGenerator;
+    private final Catalog catalog;
+    private final CatalogMode catalogMode;
 
     /**
      * Constructor for CatalogAgent.
@@ -47,8 +64,37 @@ public class CatalogAgent {
      * @param itemGenerator the LangChain4j AI service for generating items
      */
     public CatalogAgent(CartMandateStore cartMandateStore, ItemGenerator itemGenerator) {
+        this(cartMandateStore, itemGenerator, IdGenerator.timeOrdered());
+    }
+
+    /**
+     * Constructor for CatalogAgent.
+     *
+     * @param cartMandateStore the cart mandate store instance
+     * @param itemGenerator the LangChain4j AI service for generating items, or a cache in front of it
+     * @param idGenerator the generator of cart and order IDs
+     */
+    public CatalogAgent(CartMandateStore cartMandateStore, ItemGenerator itemGenerator,
+                        IdGenerator idGenerator) {
+        this(cartMandateStore, itemGenerator, idGenerator, new Catalog(), CatalogMode.GENERATED);
+    }
+
+    /**
+     * Constructor for CatalogAgent.
+     *
+     * @param cartMandateStore the cart mandate store instance
+     * @param itemGenerator the LangChain4j AI service for generating items, or a cache in front of it
+     * @param idGenerator the generator of cart and order IDs
+     * @param catalog the local catalog of products
+     * @param catalogMode whether items are generated, searched in the catalog, or both
+     */
+    public CatalogAgent(CartMandateStore cartMandateStore, ItemGenerator itemGenerator,
+                        IdGenerator idGenerator, Catalog catalog, CatalogMode catalogMode) {
         this.cartMandateStore = cartMandateStore;
         this.itemGenerator = itemGenerator;
+        this.idGenerator = idGenerator;
+        this.catalog = catalog;
+        this.catalogMode = catalogMode;
     }
 
     /**
@@ -76,25 +122,12 @@ public class CatalogAgent {
         String intent = intentMandate.naturalLanguageDescription();
         logger.info("Finding items for intent: " + intent);
 
-        // Use LangChain4j/Gemini to generate realistic items based on intent
-        GeneratedItems generatedItemsWrapper = itemGenerator.generateItems(intent);
-        List<GeneratedItem> generatedItems = generatedItemsWrapper.getItems();
-
-        // Convert GeneratedItems to PaymentItems
-        List<PaymentItem> items = generatedItems.stream()
-                .map(gi ->new PaymentItem(
-                        gi.getLabel(),
-                        new PaymentCurrencyAmount(gi.getCurrency(), gi.getPrice()),
-                        null,
-                        null))
-                .toList();
+        List<PaymentItem> items = findItems(intentMandate);
 
         Instant currentTime = Instant.now();
-        int itemCount = 0;
 
         for (PaymentItem item : items) {
-            itemCount++;
-            createAndAddCartMandateArtifact(item, itemCount, currentTime, updater);
+            createAndAddCartMandateArtifact(item, currentTime, updater);
         }
 
         // Collect and add risk data
@@ -104,29 +137,62 @@ public class CatalogAgent {
         updater.complete();
     }
 
+    /**
+     * Finds the items matching an intent, in the catalog or by generating them
+     * depending on the catalog mode.
+     *
+     * @param intentMandate the intent mandate
+     * @return the items
+     */
+    private List<PaymentItem> findItems(IntentMandate intentMandate) {
+        if (catalogMode != CatalogMode.GENERATED) {
+            List<PaymentItem> items = catalog.search(intentMandate, MAX_ITEMS).stream()
+                    .map(Product::toPaymentItem)
+                    .toList();
+            if (!items.isEmpty() || catalogMode == CatalogMode.CATALOG) {
+                return items;
+            }
+            logger.info("No catalog item matches the intent, generating items");
+        }
+
+        // Use LangChain4j/Gemini to generate realistic items based on intent
+        GeneratedItems generatedItemsWrapper =
+                itemGenerator.generateItems(intentMandate.naturalLanguageDescription());
+        List<GeneratedItem> generatedItems = generatedItemsWrapper.getItems();
+
+        // Convert GeneratedItems to PaymentItems
+        return generatedItems.stream()
+                .map(gi ->new PaymentItem(
+                        gi.getLabel(),
+                        new PaymentCurrencyAmount(gi.getCurrency(), gi.getPrice()),
+                        null,
+                        null))
+                .toList();
+    }
+
     /**
      * Creates a CartMandate and adds it as an artifact.
      *
      * This mirrors the Python _create_and_add_cart_mandate_artifact function.
      *
      * @param item the payment item
-     * @param itemCount the item number (for generating unique IDs)
      * @param currentTime the current timestamp
      * @param updater the task updater
      */
     private void createAndAddCartMandateArtifact(
             PaymentItem item,
-            int itemCount,
             Instant currentTime,
             TaskUpdater updater) {
 
+        // Cart IDs must be unique across shoppers, since carts share one store
+        String id = idGenerator.nextId();
         PaymentRequest paymentRequest = new PaymentRequest(
                 List.of(new PaymentMethodData(
                         "CARD",
                         Map.of("network", List.of("mastercard", "paypal", "amex"))
                 )),
                 new PaymentDetailsInit(
-                        "order_" + itemCount,
+                        "order_" + id,
                         List.of(item),
                         null,
                         null,
@@ -143,7 +209,7 @@ public class CatalogAgent {
 
         Instant cartExpiry = currentTime.plus(30, ChronoUnit.MINUTES);
         CartContents cartContents = new CartContents(
-                "cart_" + itemCount,
+                "cart_" + id,
                 true,
                 paymentRequest,
                 cartExpiry.toString(),
@@ -152,6 +218,11 @@ public class CatalogAgent {
 
         CartMandate cartMandate = new CartMandate(cartContents, null);
 
+        // Hash the contents now, so that the cart derived from them once the
+        // shipping address is known only hashes the items it adds. The unsigned
+        // cart itself is never signed, so nothing else memoizes its hash tree
+        MandateHashes.cartHash(cartContents);
+
         // Store the cart mandate
         cartMandateStore.setCartMandate(cartMandate.contents().id(), cartMandate);
 
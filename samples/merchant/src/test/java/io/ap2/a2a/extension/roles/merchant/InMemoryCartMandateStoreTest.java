@@ -0,0 +1,195 @@
+package io.ap2.a2a.extension.roles.merchant;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import io.ap2.a2a.extension.spec.CartContents;
+import io.ap2.a2a.extension.spec.CartMandate;
+import io.ap2.a2a.extension.spec.PaymentCurrencyAmount;
+import io.ap2.a2a.extension.spec.PaymentDetailsInit;
+import io.ap2.a2a.extension.spec.PaymentItem;
+import io.ap2.a2a.extension.spec.PaymentMethodData;
+import io.ap2.a2a.extension.spec.PaymentRequest;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Updates cart mandates concurrently without losing a write, and expires
+ * cart mandates and risk data.
+ */
+class InMemoryCartMandateStoreTest {
+
+    private static final Instant NOW = Instant.parse("2026-01-01T00:00:00Z");
+    private static final Instant CART_EXPIRY = NOW.plus(Duration.ofHours(1));
+    private static final Duration RISK_DATA_TTL = Duration.ofHours(1);
+    private static final Duration DEFAULT_CART_TTL = Duration.ofMinutes(30);
+
+    private final MutableClock clock = new MutableClock(NOW.toEpochMilli());
+    private final InMemoryCartMandateStore store = new InMemoryCartMandateStore(RISK_DATA_TTL, DEFAULT_CART_TTL,
+            clock);
+
+    @Test
+    void losesNoConcurrentUpdate() throws Exception {
+        int threads = 8;
+        int updatesPerThread = 500;
+        store.setCartMandate("cart_1", cartMandate("cart_1", 0));
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int j = 0; j < updatesPerThread; j++) {
+                        store.updateCartMandate("cart_1",
+                                cartMandate -> cartMandate("cart_1", count(cartMandate) + 1));
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(threads * updatesPerThread, count(store.getCartMandate("cart_1")));
+    }
+
+    @Test
+    void failsACompareAndSetAtAStaleVersion() {
+        store.setCartMandate("cart_1", cartMandate("cart_1", 0));
+        long staleVersion = store.getVersionedCartMandate("cart_1").version();
+        store.setCartMandate("cart_1", cartMandate("cart_1", 1));
+        long currentVersion = store.getVersionedCartMandate("cart_1").version();
+        assertNotEquals(staleVersion, currentVersion);
+
+        assertFalse(store.compareAndSetCartMandate("cart_1", staleVersion, cartMandate("cart_1", 2)));
+        assertEquals(1, count(store.getCartMandate("cart_1")));
+
+        assertTrue(store.compareAndSetCartMandate("cart_1", currentVersion, cartMandate("cart_1", 3)));
+        assertEquals(3, count(store.getCartMandate("cart_1")));
+        // The version read before the write is stale in turn
+        assertFalse(store.compareAndSetCartMandate("cart_1", currentVersion, cartMandate("cart_1", 4)));
+
+        assertFalse(store.compareAndSetCartMandate("cart_2", currentVersion, cartMandate("cart_2", 0)));
+        assertNull(store.getCartMandate("cart_2"));
+        assertNull(store.updateCartMandate("cart_2", cartMandate -> cartMandate));
+    }
+
+    @Test
+    void expiresACartMandateAtItsCartExpiry() {
+        store.setCartMandate("cart_1", cartMandate("cart_1", 0));
+
+        clock.set(CART_EXPIRY.toEpochMilli() - 1);
+        assertEquals(0, count(store.getCartMandate("cart_1")));
+
+        clock.set(CART_EXPIRY.toEpochMilli());
+        assertNull(store.getCartMandate("cart_1"));
+        assertNull(store.getVersionedCartMandate("cart_1"));
+        assertNull(store.updateCartMandate("cart_1", cartMandate -> cartMandate));
+
+        // Set again once evicted
+        store.setCartMandate("cart_2", cartMandate("cart_2", 0));
+        store.setCartMandate("cart_1", cartMandate("cart_1", 1, CART_EXPIRY.plus(Duration.ofHours(1)).toString()));
+        assertEquals(1, count(store.getCartMandate("cart_1")));
+    }
+
+    @Test
+    void expiresACartMandateWithAnInvalidCartExpiryAfterTheDefaultTtl() {
+        store.setCartMandate("cart_1", cartMandate("cart_1", 0, "tomorrow"));
+
+        clock.set(NOW.plus(DEFAULT_CART_TTL).toEpochMilli() - 1);
+        assertEquals(0, count(store.getCartMandate("cart_1")));
+        clock.set(NOW.plus(DEFAULT_CART_TTL).toEpochMilli());
+        assertNull(store.getCartMandate("cart_1"));
+    }
+
+    @Test
+    void expiresRiskDataOnceItWasNotSetForItsTtl() {
+        store.setRiskData("context_1", "risk");
+
+        clock.set(NOW.plus(RISK_DATA_TTL.dividedBy(2)).toEpochMilli());
+        store.setRiskData("context_1", "updated risk");
+
+        // Kept for the TTL after it was last set
+        clock.set(NOW.plus(RISK_DATA_TTL).toEpochMilli());
+        assertEquals("updated risk", store.getRiskData("context_1"));
+        clock.set(NOW.plus(RISK_DATA_TTL.multipliedBy(3).dividedBy(2)).toEpochMilli());
+        assertNull(store.getRiskData("context_1"));
+        assertNull(store.getRiskData("context_2"));
+    }
+
+    /**
+     * Returns the number of updates of a cart mandate of the test, carried by its merchant authorization.
+     */
+    private static int count(CartMandate cartMandate) {
+        return Integer.parseInt(cartMandate.merchantAuthorization());
+    }
+
+    private static CartMandate cartMandate(String cartId, int count) {
+        return cartMandate(cartId, count, CART_EXPIRY.toString());
+    }
+
+    private static CartMandate cartMandate(String cartId, int count, String cartExpiry) {
+        PaymentItem item = new PaymentItem("Item", new PaymentCurrencyAmount("USD", 12.34), null, 30);
+        PaymentRequest paymentRequest = new PaymentRequest(
+                List.of(new PaymentMethodData("CARD", Map.of("network", List.of("amex")))),
+                new PaymentDetailsInit("order_" + cartId, List.of(item), null, null, item),
+                null,
+                null);
+        CartContents contents = new CartContents(cartId, true, paymentRequest, cartExpiry, "Merchant");
+        return new CartMandate(contents, String.valueOf(count));
+    }
+
+    private static final class MutableClock extends Clock {
+
+        private volatile long millis;
+
+        private MutableClock(long millis) {
+            this.millis = millis;
+        }
+
+        private void set(long millis) {
+            this.millis = millis;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public long millis() {
+            return millis;
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(millis);
+        }
+    }
+}
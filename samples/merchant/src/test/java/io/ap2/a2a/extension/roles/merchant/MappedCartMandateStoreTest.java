@@ -0,0 +1,218 @@
+package io.ap2.a2a.extension.roles.merchant;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import io.ap2.a2a.extension.spec.CartContents;
+import io.ap2.a2a.extension.spec.CartMandate;
+import io.ap2.a2a.extension.spec.PaymentCurrencyAmount;
+import io.ap2.a2a.extension.spec.PaymentDetailsInit;
+import io.ap2.a2a.extension.spec.PaymentItem;
+import io.ap2.a2a.extension.spec.PaymentMethodData;
+import io.ap2.a2a.extension.spec.PaymentRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Reopens, recovers and compacts the log of the cart store.
+ */
+class MappedCartMandateStoreTest {
+
+    private static final int FILE_HEADER_SIZE = 8;
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final Instant CART_EXPIRY = Instant.now().plus(Duration.ofHours(1));
+
+    @TempDir
+    Path directory;
+
+    private MappedCartMandateStore store;
+
+    @AfterEach
+    void closeStore() {
+        if (store != null) {
+            store.close();
+        }
+    }
+
+    @Test
+    void reopensWithTheLatestRecords() {
+        store = open();
+        store.setCartMandate("cart_1", cartMandate("cart_1", "First"));
+        store.setCartMandate("cart_1", cartMandate("cart_1", "Second"));
+        store.setCartMandate("cart_2", cartMandate("cart_2", "Other"));
+        store.setRiskData("context_1", "risk");
+        long version = store.getVersionedCartMandate("cart_2").version();
+        assertTrue(store.compareAndSetCartMandate("cart_2", version, cartMandate("cart_2", "Updated")));
+        assertFalse(store.compareAndSetCartMandate("cart_2", version, cartMandate("cart_2", "Stale")));
+
+        reopen();
+
+        assertEquals(cartMandate("cart_1", "Second"), store.getCartMandate("cart_1"));
+        assertEquals(cartMandate("cart_2", "Updated"), store.getCartMandate("cart_2"));
+        assertEquals("risk", store.getRiskData("context_1"));
+        assertNull(store.getCartMandate("cart_3"));
+    }
+
+    @Test
+    void discardsARecordWithACorruptBody() throws IOException {
+        store = open();
+        store.setCartMandate("cart_1", cartMandate("cart_1", "Kept"));
+        store.setCartMandate("cart_2", cartMandate("cart_2", "Torn"));
+        store.close();
+
+        List<Integer> records = recordPositions();
+        assertEquals(2, records.size());
+        // Flip a byte of the body of the last record, as if it was partly written
+        int position = records.get(1) + RECORD_HEADER_SIZE + 1;
+        try (FileChannel channel = logChannel()) {
+            ByteBuffer body = ByteBuffer.allocate(1);
+            channel.read(body, position);
+            channel.write(ByteBuffer.wrap(new byte[] {(byte) ~body.get(0)}), position);
+        }
+
+        store = open();
+        assertEquals(cartMandate("cart_1", "Kept"), store.getCartMandate("cart_1"));
+        assertNull(store.getCartMandate("cart_2"));
+
+        // The torn record is cleared, so appends after it are recovered
+        store.setCartMandate("cart_3", cartMandate("cart_3", "Appended"));
+        reopen();
+        assertEquals(cartMandate("cart_1", "Kept"), store.getCartMandate("cart_1"));
+        assertEquals(cartMandate("cart_3", "Appended"), store.getCartMandate("cart_3"));
+        assertEquals(2, recordPositions().size());
+    }
+
+    @Test
+    void discardsARecordWithOnlyItsHeaderWritten() throws IOException {
+        store = open();
+        store.setCartMandate("cart_1", cartMandate("cart_1", "Kept"));
+        store.close();
+
+        List<Integer> records = recordPositions();
+        int end = records.get(0) + RECORD_HEADER_SIZE + bodyLength(records.get(0));
+        try (FileChannel channel = logChannel()) {
+            channel.write(ByteBuffer.allocate(RECORD_HEADER_SIZE).putInt(100).putInt(12345).flip(), end);
+        }
+
+        store = open();
+        assertEquals(cartMandate("cart_1", "Kept"), store.getCartMandate("cart_1"));
+        store.setCartMandate("cart_2", cartMandate("cart_2", "Appended"));
+        reopen();
+        assertEquals(cartMandate("cart_1", "Kept"), store.getCartMandate("cart_1"));
+        assertEquals(cartMandate("cart_2", "Appended"), store.getCartMandate("cart_2"));
+    }
+
+    @Test
+    void compactsToTheLiveRecords() throws IOException {
+        store = open();
+        for (int i = 0; i < 100; i++) {
+            store.setCartMandate("cart_1", cartMandate("cart_1", "Version " + i));
+            store.setRiskData("context_1", "risk " + i);
+        }
+        store.setCartMandate("cart_2", cartMandate("cart_2", "Other"));
+        assertEquals(201, recordPositions().size());
+
+        store.compact();
+
+        assertEquals(3, recordPositions().size());
+        assertEquals(cartMandate("cart_1", "Version 99"), store.getCartMandate("cart_1"));
+        assertEquals("risk 99", store.getRiskData("context_1"));
+
+        // Versions survive compaction, and appends go to the new log
+        long version = store.getVersionedCartMandate("cart_2").version();
+        assertTrue(store.compareAndSetCartMandate("cart_2", version, cartMandate("cart_2", "Updated")));
+        reopen();
+        assertEquals(cartMandate("cart_1", "Version 99"), store.getCartMandate("cart_1"));
+        assertEquals(cartMandate("cart_2", "Updated"), store.getCartMandate("cart_2"));
+        assertEquals("risk 99", store.getRiskData("context_1"));
+        assertEquals(4, recordPositions().size());
+    }
+
+    @Test
+    void skipsExpiredRecordsOnStartup() {
+        store = open();
+        store.setCartMandate("cart_1", cartMandate("cart_1", "Expired", Instant.now().minusSeconds(60)));
+        store.setCartMandate("cart_2", cartMandate("cart_2", "Live"));
+        assertNull(store.getCartMandate("cart_1"));
+
+        reopen();
+
+        assertNull(store.getCartMandate("cart_1"));
+        assertEquals(cartMandate("cart_2", "Live"), store.getCartMandate("cart_2"));
+    }
+
+    private MappedCartMandateStore open() {
+        return new MappedCartMandateStore(directory, MappedCartMandateStore.Durability.SYNC,
+                Duration.ofSeconds(1), Duration.ofHours(1), Duration.ofHours(1), Duration.ofMinutes(30));
+    }
+
+    private void reopen() {
+        store.close();
+        store = open();
+    }
+
+    private FileChannel logChannel() throws IOException {
+        return FileChannel.open(directory.resolve(MappedCartMandateStore.LOG_FILE_NAME),
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    private int bodyLength(int position) throws IOException {
+        try (FileChannel channel = logChannel()) {
+            ByteBuffer length = ByteBuffer.allocate(4);
+            channel.read(length, position);
+            return length.getInt(0);
+        }
+    }
+
+    /**
+     * Returns the offsets of the records of the log, up to the first empty record header.
+     */
+    private List<Integer> recordPositions() throws IOException {
+        List<Integer> positions = new ArrayList<>();
+        try (FileChannel channel = logChannel()) {
+            int position = FILE_HEADER_SIZE;
+            ByteBuffer length = ByteBuffer.allocate(4);
+            while (position + RECORD_HEADER_SIZE <= channel.size()) {
+                length.clear();
+                channel.read(length, position);
+                int bodyLength = length.getInt(0);
+                if (bodyLength <= 0) {
+                    break;
+                }
+                positions.add(position);
+                position += RECORD_HEADER_SIZE + bodyLength;
+            }
+        }
+        return positions;
+    }
+
+    private static CartMandate cartMandate(String cartId, String merchantName) {
+        return cartMandate(cartId, merchantName, CART_EXPIRY);
+    }
+
+    private static CartMandate cartMandate(String cartId, String merchantName, Instant cartExpiry) {
+        PaymentItem item = new PaymentItem("Item of " + merchantName, new PaymentCurrencyAmount("USD", 12.34),
+                null, 30);
+        PaymentRequest paymentRequest = new PaymentRequest(
+                List.of(new PaymentMethodData("CARD", Map.of("network", List.of("amex")))),
+                new PaymentDetailsInit("order_" + cartId, List.of(item), null, null, item),
+                null,
+                null);
+        CartContents contents = new CartContents(cartId, true, paymentRequest, cartExpiry.toString(), merchantName);
+        return new CartMandate(contents, "merchant_authorization");
+    }
+}
@@ -0,0 +1,278 @@
+package io.ap2.a2a.extension.roles.merchant.catalog;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import io.a2a.util.Utils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Ranks the products of a catalog as a brute-force BM25 over its live
+ * products does, across deletes and segment merges.
+ */
+class CatalogTest {
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    private static final String[] WORDS = {
+            "red", "blue", "green", "running", "shoes", "boots", "leather", "canvas", "jacket", "wool",
+            "cotton", "shirt", "hat", "socks", "trail", "waterproof", "light", "warm", "classic", "sport"
+    };
+
+    private static final String[] QUERIES = {
+            "red shoes", "waterproof trail running boots", "warm wool hat", "blue", "classic leather jacket",
+            "light cotton shirt and socks", "sport sport shoes", "green canvas shoes for running"
+    };
+
+    @TempDir
+    Path directory;
+
+    private final Random random = new Random(42);
+
+    @Test
+    void ranksAsBruteForceBm25() {
+        Catalog catalog = new Catalog();
+        Map<String, Product> live = new LinkedHashMap<>();
+        addAll(catalog, live, products(0, 300));
+
+        assertRanking(catalog, live, 10);
+    }
+
+    @Test
+    void excludesDeletedProductsFromResultsAndStatistics() {
+        Catalog catalog = new Catalog();
+        Map<String, Product> live = new LinkedHashMap<>();
+        addAll(catalog, live, products(0, 200));
+
+        List<String> removed = new ArrayList<>();
+        for (int i = 0; i < 200; i += 3) {
+            removed.add(sku(i));
+            live.remove(sku(i));
+        }
+        catalog.remove(removed);
+        // Updating a product deletes its previous version
+        List<Product> updated = new ArrayList<>();
+        for (int i = 1; i < 200; i += 7) {
+            if (i % 3 != 0) {
+                updated.add(product(i, "red red shoes " + i));
+            }
+        }
+        addAll(catalog, live, updated);
+
+        assertEquals(live.size(), catalog.size());
+        assertRanking(catalog, live, 200);
+        for (String sku : removed) {
+            assertTrue(catalog.search(null, List.of(sku), false, 1).isEmpty(), sku);
+        }
+        // Removing unknown or already removed SKUs changes nothing
+        catalog.remove(List.of(sku(0), "unknown"));
+        assertEquals(live.size(), catalog.size());
+    }
+
+    @Test
+    void mergesSegmentsWithoutChangingTheRanking() {
+        Catalog catalog = new Catalog();
+        Map<String, Product> live = new LinkedHashMap<>();
+        // More batches than segments, each updating some products of the previous ones
+        for (int batch = 0; batch < 3 * Catalog.MAX_SEGMENTS; batch++) {
+            List<Product> products = products(batch * 20, 30);
+            addAll(catalog, live, products);
+            if (batch % 4 == 3) {
+                List<String> removed = List.of(sku(batch * 20), sku(batch * 20 + 1));
+                catalog.remove(removed);
+                removed.forEach(live::remove);
+            }
+            assertEquals(live.size(), catalog.size());
+        }
+
+        assertRanking(catalog, live, 10);
+        assertRanking(catalog, live, live.size());
+    }
+
+    @Test
+    void returnsTheTopProductsUpToTheLimit() {
+        Catalog catalog = new Catalog();
+        Map<String, Product> live = new LinkedHashMap<>();
+        addAll(catalog, live, products(0, 500));
+
+        for (int limit : new int[] {1, 2, 5, 50}) {
+            for (String query : QUERIES) {
+                List<Product> results = catalog.search(query, null, false, limit);
+                List<Double> expected = topScores(live.values(), query, limit);
+                assertEquals(expected.size(), results.size(), query);
+                assertScores(expected, scores(live.values(), query, results), query);
+            }
+        }
+    }
+
+    @Test
+    void filtersBySkuAndRefundability() {
+        Catalog catalog = new Catalog();
+        Map<String, Product> live = new LinkedHashMap<>();
+        addAll(catalog, live, products(0, 100));
+        Set<String> skus = Set.of(sku(3), sku(10), sku(42), sku(77));
+
+        for (String query : QUERIES) {
+            List<Product> candidates = live.values().stream()
+                    .filter(product -> skus.contains(product.sku()) && product.refundable())
+                    .toList();
+            List<Product> results = catalog.search(query, skus, true, 10);
+            List<Double> expected = topScores(live.values(), candidates, query, 10);
+            assertScores(expected, scores(live.values(), query, results), query);
+            for (Product product : results) {
+                assertTrue(skus.contains(product.sku()) && product.refundable(), query);
+            }
+        }
+
+        // Without indexed terms, the products are looked up in the order of the SKUs
+        List<Product> lookedUp = catalog.search("the", List.of(sku(42), sku(3)), false, 10);
+        assertEquals(List.of(sku(42), sku(3)), lookedUp.stream().map(Product::sku).toList());
+    }
+
+    @Test
+    void reloadsOnlyWhatChanged() throws IOException {
+        Map<String, Product> live = new LinkedHashMap<>();
+        for (Product product : products(0, 50)) {
+            live.put(product.sku(), product);
+        }
+        Path file = directory.resolve("catalog.jsonl");
+        write(file, live.values());
+        Catalog catalog = Catalog.load(file);
+
+        live.remove(sku(5));
+        live.put(sku(6), product(6, "blue waterproof boots"));
+        live.put(sku(60), product(60, "green wool hat"));
+        write(file, live.values());
+        assertEquals(live.size(), catalog.reload(file));
+
+        assertEquals(live.size(), catalog.size());
+        assertRanking(catalog, live, 10);
+        assertEquals(List.of(live.get(sku(60)), live.get(sku(6))),
+                catalog.search(null, List.of(sku(5), sku(60), sku(6)), false, 10));
+    }
+
+    private void assertRanking(Catalog catalog, Map<String, Product> live, int limit) {
+        for (String query : QUERIES) {
+            List<Product> results = catalog.search(query, null, false, limit);
+            for (Product product : results) {
+                assertEquals(live.get(product.sku()), product, "a live product, for " + query);
+            }
+            assertScores(topScores(live.values(), query, limit), scores(live.values(), query, results), query);
+        }
+    }
+
+    private static void assertScores(List<Double> expected, List<Double> actual, String query) {
+        assertEquals(expected.size(), actual.size(), "number of results for " + query);
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i), actual.get(i), 1e-3, "score " + i + " for " + query);
+        }
+    }
+
+    private static List<Double> topScores(Iterable<Product> live, String query, int limit) {
+        return topScores(live, live, query, limit);
+    }
+
+    private static List<Double> topScores(Iterable<Product> live, Iterable<Product> candidates, String query,
+                                          int limit) {
+        List<Product> matching = new ArrayList<>();
+        candidates.forEach(matching::add);
+        List<Double> scores = scores(live, query, matching);
+        return scores.stream()
+                .filter(score -> score > 0)
+                .sorted(Comparator.reverseOrder())
+                .limit(limit)
+                .toList();
+    }
+
+    /**
+     * Scores products with BM25, computed from scratch over the live products.
+     */
+    private static List<Double> scores(Iterable<Product> live, String query, List<Product> products) {
+        Map<String, Integer> docFreqs = new HashMap<>();
+        long totalLength = 0;
+        int totalDocs = 0;
+        for (Product product : live) {
+            List<String> terms = terms(product);
+            totalDocs++;
+            totalLength += terms.size();
+            for (String term : Set.copyOf(terms)) {
+                docFreqs.merge(term, 1, Integer::sum);
+            }
+        }
+        double averageLength = Math.max(1.0, (double) totalLength / totalDocs);
+
+        List<Double> scores = new ArrayList<>();
+        for (Product product : products) {
+            List<String> terms = terms(product);
+            double score = 0;
+            for (String queryTerm : CatalogSegment.queryTerms(query)) {
+                long frequency = terms.stream().filter(queryTerm::equals).count();
+                if (frequency == 0) {
+                    continue;
+                }
+                int docFreq = docFreqs.getOrDefault(queryTerm, 0);
+                double idf = Math.log(1 + (totalDocs - docFreq + 0.5) / (docFreq + 0.5));
+                score += idf * frequency * (K1 + 1)
+                        / (frequency + K1 * (1 - B + B * terms.size() / averageLength));
+            }
+            scores.add(score);
+        }
+        return scores;
+    }
+
+    private static List<String> terms(Product product) {
+        return CatalogSegment.tokenize(product.label() + " "
+                + (product.description() == null ? "" : product.description()));
+    }
+
+    private static void addAll(Catalog catalog, Map<String, Product> live, List<Product> products) {
+        catalog.addOrUpdate(products);
+        for (Product product : products) {
+            live.put(product.sku(), product);
+        }
+    }
+
+    private List<Product> products(int first, int count) {
+        List<Product> products = new ArrayList<>();
+        for (int i = first; i < first + count; i++) {
+            StringBuilder description = new StringBuilder();
+            int length = 1 + random.nextInt(12);
+            for (int w = 0; w < length; w++) {
+                description.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+            }
+            products.add(new Product(sku(i), WORDS[random.nextInt(WORDS.length)] + " item " + i,
+                    description.toString().trim(), "USD", 10.0 + i, random.nextInt(4) == 0 ? 0 : 30));
+        }
+        return products;
+    }
+
+    private static Product product(int i, String label) {
+        return new Product(sku(i), label, null, "USD", 5.0, 30);
+    }
+
+    private static String sku(int i) {
+        return "SKU-" + i;
+    }
+
+    private static void write(Path file, Iterable<Product> products) throws IOException {
+        List<String> lines = new ArrayList<>();
+        for (Product product : products) {
+            lines.add(Utils.OBJECT_MAPPER.writeValueAsString(product));
+        }
+        Files.write(file, lines);
+    }
+}
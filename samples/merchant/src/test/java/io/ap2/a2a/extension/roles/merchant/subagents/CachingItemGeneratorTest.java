@@ -0,0 +1,138 @@
+package io.ap2.a2a.extension.roles.merchant.subagents;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Answers identical and near-duplicate intents from the cache, and every
+ * other intent from the generator.
+ */
+class CachingItemGeneratorTest {
+
+    private final List<String> generated = new ArrayList<>();
+
+    private final ItemGenerator generator = intent -> {
+        generated.add(intent);
+        return new GeneratedItems(List.of(new GeneratedItem("Item for " + intent, "USD", 10.0)));
+    };
+
+    @Test
+    void answersAnIdenticalIntentFromTheCache() {
+        CachingItemGenerator cache = new CachingItemGenerator(generator);
+
+        GeneratedItems items = cache.generateItems("I want to buy red running shoes");
+        // Normalized and without its stop words, this is the same intent
+        assertEquals(label(items), label(cache.generateItems("i'd like to buy some Red Running shoes!")));
+
+        assertEquals(List.of("I want to buy red running shoes"), generated);
+        assertEquals(1, cache.getExactHitCount());
+        assertEquals(0, cache.getSimilarHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    void answersANearDuplicateIntentFromTheCache() {
+        CachingItemGenerator cache = new CachingItemGenerator(generator);
+
+        GeneratedItems items = cache.generateItems("red leather running shoes size ten");
+        // Five of the six distinct significant words are shared, a similarity of 0.83
+        assertEquals(label(items), label(cache.generateItems("red leather running shoes size ten mens")));
+
+        assertEquals(1, generated.size());
+        assertEquals(1, cache.getSimilarHitCount());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void generatesItemsForADissimilarIntent() {
+        CachingItemGenerator cache = new CachingItemGenerator(generator);
+
+        cache.generateItems("red leather running shoes size ten");
+        cache.generateItems("red leather running shoes");
+        cache.generateItems("warm wool hat");
+
+        assertEquals(3, generated.size());
+        assertEquals(0, cache.getExactHitCount() + cache.getSimilarHitCount());
+        assertEquals(3, cache.getMissCount());
+        assertEquals(3, cache.size());
+    }
+
+    @Test
+    void onlyMatchesIdenticalIntentsAboveASimilarityOfOne() {
+        CachingItemGenerator cache = new CachingItemGenerator(generator, 10, Duration.ofMinutes(1), 1.1);
+
+        cache.generateItems("red leather running shoes size ten");
+        cache.generateItems("red leather running shoes size ten mens");
+        cache.generateItems("Red leather running shoes, size ten");
+
+        assertEquals(2, generated.size());
+        assertEquals(1, cache.getExactHitCount());
+        assertEquals(0, cache.getSimilarHitCount());
+    }
+
+    @Test
+    void doesNotCacheIntentsWithoutSignificantWords() {
+        CachingItemGenerator cache = new CachingItemGenerator(generator);
+
+        cache.generateItems("");
+        cache.generateItems("I want to buy");
+        cache.generateItems("I would like to buy");
+        cache.generateItems("Please find me some!");
+
+        assertEquals(4, generated.size());
+        assertEquals(4, cache.getMissCount());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void evictsTheLeastRecentlyUsedIntent() {
+        CachingItemGenerator cache = new CachingItemGenerator(generator, 2, Duration.ofMinutes(1), 0.8);
+
+        cache.generateItems("red shoes");
+        cache.generateItems("wool hat");
+        // Uses the red shoes, so the wool hat is the least recently used
+        cache.generateItems("red shoes");
+        cache.generateItems("cotton socks");
+        cache.generateItems("red shoes");
+        cache.generateItems("wool hat");
+
+        assertEquals(List.of("red shoes", "wool hat", "cotton socks", "wool hat"), generated);
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    void generatesItemsAgainOnceTheyExpire() throws InterruptedException {
+        CachingItemGenerator cache = new CachingItemGenerator(generator, 10, Duration.ofMillis(1), 0.8);
+
+        cache.generateItems("red shoes");
+        Thread.sleep(5);
+        cache.generateItems("red shoes");
+
+        assertEquals(List.of("red shoes", "red shoes"), generated);
+        assertEquals(0, cache.getExactHitCount());
+    }
+
+    @Test
+    void doesNotCacheEmptyResults() {
+        List<String> calls = new ArrayList<>();
+        CachingItemGenerator cache = new CachingItemGenerator(intent -> {
+            calls.add(intent);
+            return new GeneratedItems(List.of());
+        });
+
+        cache.generateItems("red shoes");
+        cache.generateItems("red shoes");
+
+        assertEquals(2, calls.size());
+        assertEquals(0, cache.size());
+    }
+
+    private static String label(GeneratedItems items) {
+        return items.getItems().get(0).getLabel();
+    }
+}
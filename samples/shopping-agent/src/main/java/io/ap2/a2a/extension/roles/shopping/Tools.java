@@ -3,6 +3,7 @@ package io.ap2.a2a.extension.roles.shopping;
 import static io.ap2.a2a.extension.spec.AP2Constants.CART_MANDATE_DATA_KEY;
 import static io.ap2.a2a.extension.spec.AP2Constants.PAYMENT_MANDATE_DATA_KEY;
 
+import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -19,7 +20,6 @@ import jakarta.enterprise.context.RequestScoped;
 import jakarta.inject.Inject;
 
 import dev.langchain4j.agent.tool.Tool;
-import io.a2a.client.Client;
 import io.a2a.client.ClientEvent;
 import io.a2a.client.TaskEvent;
 import io.a2a.spec.AgentCard;
@@ -28,12 +28,17 @@ import io.a2a.spec.Task;
 import io.a2a.spec.TaskStatus;
 import io.ap2.a2a.extension.common.A2aMessageBuilder;
 import io.ap2.a2a.extension.common.ArtifactUtils;
+import io.ap2.a2a.extension.common.JwsAlgorithm;
+import io.ap2.a2a.extension.common.JwtConfiguration;
+import io.ap2.a2a.extension.common.PaymentRemoteA2aClient;
+import io.ap2.a2a.extension.common.Validation;
 import io.ap2.a2a.extension.spec.AP2Exception;
 import io.ap2.a2a.extension.spec.CartMandate;
 import io.ap2.a2a.extension.spec.ContactAddress;
 import io.ap2.a2a.extension.spec.PaymentMandate;
 import io.ap2.a2a.extension.spec.PaymentMandateContents;
 import io.ap2.a2a.extension.spec.PaymentResponse;
+import io.ap2.a2a.extension.util.MandateHashes;
 import io.ap2.a2a.extension.roles.shopping.subagents.payment.method.collector.PaymentMethodCollectorAgent;
 import io.ap2.a2a.extension.roles.shopping.subagents.shipping.address.collector.ShippingAddressCollectorAgent;
 import io.ap2.a2a.extension.roles.shopping.subagents.shopper.ShopperAgent;
@@ -49,6 +54,18 @@ public class Tools {
 
     private static final Logger logger = Logger.getLogger(Tools.class.getName());
 
+    /**
+     * How long the user authorization of a payment is valid.
+     */
+    private static final Duration USER_AUTHORIZATION_TTL = Duration.ofMinutes(15);
+
+    /**
+     * The keys of the JWTs, whose signer stands in for the user's secure device
+     * to sign the user authorization of payments.
+     */
+    @Inject
+    JwtConfiguration jwtConfiguration;
+
     @Inject
     ShopperAgent shopperAgent;
 
@@ -59,40 +76,6 @@ public class Tools {
     PaymentMethodCollectorAgent paymentMethodCollectorAgent;
 
     private final Map<String, Object> state = new HashMap<>();
-    private Client merchantClient;
-    private Client credentialsProviderClient;
-
-    /**
-     * Gets or creates the merchant client from the registry.
-     *
-     * @return the merchant agent client
-     */
-    private Client getMerchantClient() {
-        if (merchantClient == null) {
-            try {
-                merchantClient = RemoteClientRegistry.MERCHANT_AGENT_CLIENT.getA2aClient(List.of());
-            } catch (Exception e) {
-                throw new RuntimeException("Failed to create merchant client", e);
-            }
-        }
-        return merchantClient;
-    }
-
-    /**
-     * Gets or creates the credentials provider client from the registry.
-     *
-     * @return the credentials provider client
-     */
-    private Client getCredentialsProviderClient() {
-        if (credentialsProviderClient == null) {
-            try {
-                credentialsProviderClient = RemoteClientRegistry.CREDENTIALS_PROVIDER_CLIENT.getA2aClient(List.of());
-            } catch (Exception e) {
-                throw new RuntimeException("Failed to create credentials provider client", e);
-            }
-        }
-        return credentialsProviderClient;
-    }
 
     /**
      * Delegates to the shopper agent to help the user shop for products.
@@ -168,8 +151,8 @@ public class Tools {
             logger.severe("Error updating cart: " + throwable.getMessage());
         };
 
-        try {
-            getMerchantClient().sendMessage(messageBuilder.build(), consumers, errorHandler, null);
+        try (PaymentRemoteA2aClient.Lease merchant = RemoteClientRegistry.MERCHANT_AGENT_CLIENT.lease()) {
+            merchant.client().sendMessage(messageBuilder.build(), consumers, errorHandler, null);
         } catch (Exception e) {
             throw new AP2Exception("Failed to update cart: " + e.getMessage(), e);
         }
@@ -179,6 +162,11 @@ public class Tools {
         }
 
         CartMandate updatedCartMandate = updatedCartMandateHolder[0];
+        try {
+            Validation.validateCartMandateSignature(updatedCartMandate);
+        } catch (IllegalArgumentException e) {
+            throw new AP2Exception("Invalid updated cart mandate: " + e.getMessage(), e);
+        }
         state.put("cart_mandate", updatedCartMandate);
         state.put("shipping_address", shippingAddress);
 
@@ -199,6 +187,12 @@ public class Tools {
             throw new AP2Exception("No signed payment mandate found in tool context state.");
         }
 
+        // Sent along, so that the recipient checks that the user authorized this cart
+        CartMandate cartMandate = (CartMandate) state.get("cart_mandate");
+        if (cartMandate == null) {
+            throw new AP2Exception("No cart mandate found in tool context state.");
+        }
+
         String riskData = (String) state.get("risk_data");
         if (riskData == null) {
             throw new AP2Exception("No risk data found in tool context state.");
@@ -210,6 +204,7 @@ public class Tools {
                 .setContextId(shoppingContextId)
                 .addText("Initiate a payment")
                 .addData(PAYMENT_MANDATE_DATA_KEY, paymentMandate)
+                .addData(CART_MANDATE_DATA_KEY, cartMandate)
                 .addData("risk_data", riskData)
                 .addData("shopping_agent_id", "trusted_shopping_agent")
                 .addData("debug_mode", false);
@@ -230,8 +225,8 @@ public class Tools {
             logger.severe("Error initiating payment: " + throwable.getMessage());
         };
 
-        try {
-            getMerchantClient().sendMessage(messageBuilder.build(), consumers, errorHandler, null);
+        try (PaymentRemoteA2aClient.Lease merchant = RemoteClientRegistry.MERCHANT_AGENT_CLIENT.lease()) {
+            merchant.client().sendMessage(messageBuilder.build(), consumers, errorHandler, null);
         } catch (Exception e) {
             throw new AP2Exception("Failed to initiate payment: " + e.getMessage(), e);
         }
@@ -260,6 +255,11 @@ public class Tools {
             throw new AP2Exception("No signed payment mandate found in tool context state.");
         }
 
+        CartMandate cartMandate = (CartMandate) state.get("cart_mandate");
+        if (cartMandate == null) {
+            throw new AP2Exception("No cart mandate found in tool context state.");
+        }
+
         String riskData = (String) state.get("risk_data");
         if (riskData == null) {
             throw new AP2Exception("No risk data found in tool context state.");
@@ -273,6 +273,7 @@ public class Tools {
                 .setTaskId(initiatePaymentTaskId)
                 .addText("Initiate a payment. Include the challenge response.")
                 .addData(PAYMENT_MANDATE_DATA_KEY, paymentMandate)
+                .addData(CART_MANDATE_DATA_KEY, cartMandate)
                 .addData("shopping_agent_id", "trusted_shopping_agent")
                 .addData("challenge_response", challengeResponse)
                 .addData("risk_data", riskData)
@@ -292,8 +293,8 @@ public class Tools {
             logger.severe("Error initiating payment with OTP: " + throwable.getMessage());
         };
 
-        try {
-            getMerchantClient().sendMessage(messageBuilder.build(), consumers, errorHandler, null);
+        try (PaymentRemoteA2aClient.Lease merchant = RemoteClientRegistry.MERCHANT_AGENT_CLIENT.lease()) {
+            merchant.client().sendMessage(messageBuilder.build(), consumers, errorHandler, null);
         } catch (Exception e) {
             throw new AP2Exception("Failed to initiate payment with OTP: " + e.getMessage(), e);
         }
@@ -356,9 +357,11 @@ public class Tools {
      * secure hardware element on the user's device (e.g., Secure Enclave) to be
      * cryptographically signed with the user's private key.
      * <p>
-     * Note: This is a placeholder implementation. It does not perform any actual
-     * cryptographic operations. It simulates the creation of a signature by
-     * concatenating the mandate hashes.
+     * Note: This is a simulation. The JWT is signed by the shopping agent
+     * rather than by a secure element, with the key configured by
+     * {@code ap2.jwt.signing-key}, whose public key the verifying agents
+     * trust. Without one, it is signed with an EdDSA key pair generated on
+     * first use, and embeds its public key.
      *
      * @return A string representing the simulated user authorization signature (JWT).
      * @throws AP2Exception if required state is missing
@@ -380,8 +383,15 @@ public class Tools {
 
         // A JWT containing the user's digital signature to authorize the transaction.
         // The payload uses hashes to bind the signature to the specific cart and
-        // payment details, and includes a nonce to prevent replay attacks.
-        String userAuthorization = cartMandateHash + "_" + paymentMandateHash;
+        // payment details, and includes a unique ID to prevent replay attacks.
+        Instant now = Instant.now();
+        Map<String, Object> claims = new HashMap<>();
+        claims.put("aud", cartMandate.contents().merchantName());
+        claims.put("iat", now.getEpochSecond());
+        claims.put("exp", now.plus(USER_AUTHORIZATION_TTL).getEpochSecond());
+        claims.put("jti", UUID.randomUUID().toString());
+        claims.put("transaction_data", List.of(cartMandateHash, paymentMandateHash));
+        String userAuthorization = jwtConfiguration.signer(JwsAlgorithm.EdDSA).sign(claims);
 
         PaymentMandate signedPaymentMandate = new PaymentMandate(
                 paymentMandate.paymentMandateContents(),
@@ -406,6 +416,11 @@ public class Tools {
             throw new AP2Exception("No signed payment mandate found in tool context state.");
         }
 
+        CartMandate cartMandate = (CartMandate) state.get("cart_mandate");
+        if (cartMandate == null) {
+            throw new AP2Exception("No cart mandate found in tool context state.");
+        }
+
         String riskData = (String) state.get("risk_data");
         if (riskData == null) {
             throw new AP2Exception("No risk data found in tool context state.");
@@ -417,6 +432,7 @@ public class Tools {
                 .setContextId(shoppingContextId)
                 .addText("This is the signed payment mandate")
                 .addData(PAYMENT_MANDATE_DATA_KEY, paymentMandate)
+                .addData(CART_MANDATE_DATA_KEY, cartMandate)
                 .addData("risk_data", riskData)
                 .addData("debug_mode", false);
 
@@ -433,8 +449,9 @@ public class Tools {
             logger.severe("Error sending signed payment mandate: " + throwable.getMessage());
         };
 
-        try {
-            getCredentialsProviderClient().sendMessage(messageBuilder.build(), consumers, errorHandler, null);
+        try (PaymentRemoteA2aClient.Lease credentialsProvider =
+                     RemoteClientRegistry.CREDENTIALS_PROVIDER_CLIENT.lease()) {
+            credentialsProvider.client().sendMessage(messageBuilder.build(), consumers, errorHandler, null);
         } catch (Exception e) {
             throw new AP2Exception("Failed to send signed payment mandate: " + e.getMessage(), e);
         }
@@ -446,34 +463,28 @@ public class Tools {
      * Generates a cryptographic hash of the CartMandate.
      * <p>
      * This hash serves as a tamper-proof reference to the specific merchant-signed
-     * cart offer that the user has approved.
-     * <p>
-     * Note: This is a placeholder implementation for development. A real
-     * implementation must use a secure hashing algorithm (e.g., SHA-256) on the
-     * canonical representation of the CartMandate object.
+     * cart offer that the user has approved. It is the SHA-256 digest of the
+     * canonical JSON representation of the CartMandate object.
      *
      * @param cartMandate The complete CartMandate object, including the merchant's authorization.
      * @return A string representing the hash of the cart mandate.
      */
     private String generateCartMandateHash(CartMandate cartMandate) {
-        return "fake_cart_mandate_hash_" + cartMandate.contents().id();
+        return MandateHashes.cartMandateHash(cartMandate);
     }
 
     /**
      * Generates a cryptographic hash of the PaymentMandateContents.
      * <p>
      * This hash creates a tamper-proof reference to the specific payment details
-     * the user is about to authorize.
-     * <p>
-     * Note: This is a placeholder implementation for development. A real
-     * implementation must use a secure hashing algorithm (e.g., SHA-256) on the
-     * canonical representation of the PaymentMandateContents object.
+     * the user is about to authorize. It is the SHA-256 digest of the canonical
+     * JSON representation of the PaymentMandateContents object.
      *
      * @param paymentMandateContents The payment mandate contents to hash.
      * @return A string representing the hash of the payment mandate contents.
      */
     private String generatePaymentMandateHash(PaymentMandateContents paymentMandateContents) {
-        return "fake_payment_mandate_hash_" + paymentMandateContents.paymentMandateId();
+        return MandateHashes.paymentMandateHash(paymentMandateContents);
     }
 
     /**
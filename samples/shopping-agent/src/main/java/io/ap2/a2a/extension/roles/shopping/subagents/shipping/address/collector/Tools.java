@@ -11,7 +11,6 @@ import java.util.function.Consumer;
 import java.util.logging.Logger;
 
 import dev.langchain4j.agent.tool.Tool;
-import io.a2a.client.Client;
 import io.a2a.client.ClientEvent;
 import io.a2a.client.TaskEvent;
 import io.a2a.spec.AgentCard;
@@ -19,6 +18,7 @@ import io.a2a.spec.Artifact;
 import io.a2a.spec.Task;
 import io.ap2.a2a.extension.common.A2aMessageBuilder;
 import io.ap2.a2a.extension.common.ArtifactUtils;
+import io.ap2.a2a.extension.common.PaymentRemoteA2aClient;
 import io.ap2.a2a.extension.roles.shopping.RemoteClientRegistry;
 import io.ap2.a2a.extension.spec.AP2Exception;
 import io.ap2.a2a.extension.spec.ContactAddress;
@@ -38,23 +38,6 @@ public class Tools {
     private static final Logger logger = Logger.getLogger(Tools.class.getName());
 
     private final Map<String, Object> state = new HashMap<>();
-    private Client credentialsProviderClient;
-
-    /**
-     * Gets or creates the credentials provider client from the registry.
-     *
-     * @return the credentials provider client
-     */
-    private Client getCredentialsProviderClient() {
-        if (credentialsProviderClient == null) {
-            try {
-                credentialsProviderClient = RemoteClientRegistry.CREDENTIALS_PROVIDER_CLIENT.getA2aClient(List.of());
-            } catch (Exception e) {
-                throw new RuntimeException("Failed to create credentials provider client", e);
-            }
-        }
-        return credentialsProviderClient;
-    }
 
     /**
      * Gets the user's shipping address from the credentials provider.
@@ -91,8 +74,9 @@ public class Tools {
             logger.severe("Error getting shipping address: " + throwable.getMessage());
         };
 
-        try {
-            getCredentialsProviderClient().sendMessage(messageBuilder.build(), consumers, errorHandler, null);
+        try (PaymentRemoteA2aClient.Lease credentialsProvider =
+                     RemoteClientRegistry.CREDENTIALS_PROVIDER_CLIENT.lease()) {
+            credentialsProvider.client().sendMessage(messageBuilder.build(), consumers, errorHandler, null);
         } catch (Exception e) {
             throw new RuntimeException("Failed to get shipping address: " + e.getMessage(), e);
         }
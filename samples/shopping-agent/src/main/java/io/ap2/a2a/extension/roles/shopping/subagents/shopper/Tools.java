@@ -14,7 +14,6 @@ import java.util.function.Consumer;
 import java.util.logging.Logger;
 
 import dev.langchain4j.agent.tool.Tool;
-import io.a2a.client.Client;
 import io.a2a.client.ClientEvent;
 import io.a2a.client.TaskEvent;
 import io.a2a.spec.AgentCard;
@@ -23,6 +22,7 @@ import io.a2a.spec.Task;
 import io.a2a.spec.TaskStatus;
 import io.ap2.a2a.extension.common.A2aMessageBuilder;
 import io.ap2.a2a.extension.common.ArtifactUtils;
+import io.ap2.a2a.extension.common.PaymentRemoteA2aClient;
 import io.ap2.a2a.extension.roles.shopping.RemoteClientRegistry;
 import io.ap2.a2a.extension.spec.AP2Exception;
 import io.ap2.a2a.extension.spec.CartMandate;
@@ -43,23 +43,6 @@ public class Tools {
     private static final Logger logger = Logger.getLogger(Tools.class.getName());
 
     private final Map<String, Object> state = new HashMap<>();
-    private Client merchantClient;
-
-    /**
-     * Gets or creates the merchant client from the registry.
-     *
-     * @return the merchant agent client
-     */
-    private Client getMerchantClient() {
-        if (merchantClient == null) {
-            try {
-                merchantClient = RemoteClientRegistry.MERCHANT_AGENT_CLIENT.getA2aClient(List.of());
-            } catch (Exception e) {
-                throw new RuntimeException("Failed to create merchant client", e);
-            }
-        }
-        return merchantClient;
-    }
 
     /**
      * Creates an IntentMandate object.
@@ -139,8 +122,8 @@ public class Tools {
             logger.severe("Error finding products: " + throwable.getMessage());
         };
 
-        try {
-            getMerchantClient().sendMessage(messageBuilder.build(), consumers, errorHandler, null);
+        try (PaymentRemoteA2aClient.Lease merchant = RemoteClientRegistry.MERCHANT_AGENT_CLIENT.lease()) {
+            merchant.client().sendMessage(messageBuilder.build(), consumers, errorHandler, null);
         } catch (Exception e) {
             throw new RuntimeException("Failed to find products: " + e.getMessage(), e);
         }
@@ -31,9 +31,17 @@ public record CartMandate(
          *   <li>iat, exp: Timestamps for the token's creation and its
          *     short-lived expiration (e.g., 5-15 minutes) to enhance security.</li>
          *   <li>jti: Unique identifier for the JWT to prevent replay attacks.</li>
-         *   <li>cart_hash: A secure hash of the CartMandate, ensuring
-         *     integrity. The hash is computed over the canonical JSON
-         *     representation of the CartContents object.</li>
+         *   <li>cart_hash: A secure hash of the CartContents, ensuring
+         *     integrity. Each of the display_items, shipping_options and
+         *     modifiers lists of payment_request.details that is present is
+         *     hashed, in list order, as an RFC 6962 Merkle tree: a leaf is the
+         *     SHA-256 of a 0x00 byte followed by the canonical (RFC 8785) JSON
+         *     of an element, a node the SHA-256 of a 0x01 byte followed by its
+         *     two children, and an empty list the SHA-256 of nothing. The
+         *     cart_hash is the base64url SHA-256 of the canonical JSON of the
+         *     CartContents with each of these lists replaced by the base64url
+         *     of its root, so that all of the other fields are bound
+         *     directly.</li>
          *   </ul>
          * </li>
          * <li>Signature: A digital signature created with the merchant's private
@@ -4,12 +4,18 @@ import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonInclude;
 
 import io.a2a.util.Assert;
+import io.ap2.a2a.extension.util.CurrencyUnits;
 
 /**
  * A PaymentCurrencyAmount is used to supply monetary amounts.
  * <p>
  * Specification:
  * https://www.w3.org/TR/payment-request/#dom-paymentcurrencyamount
+ * <p>
+ * The value is serialized as a JSON number, exactly as it was given, so that
+ * mandates hash the same after a round trip. Arithmetic on amounts should be
+ * done in minor units, with {@link #toMinorUnits()} and
+ * {@link #ofMinorUnits(String, long)}, so that it does not drift.
  */
 @JsonInclude(JsonInclude.Include.NON_ABSENT)
 @JsonIgnoreProperties(ignoreUnknown = true)
@@ -25,8 +31,39 @@ public record PaymentCurrencyAmount(
         Double value
 ) {
 
+    /**
+     * Creates an amount.
+     *
+     * @throws IllegalArgumentException if the value is not finite, or too
+     * large to be a whole number of minor units of the currency
+     */
     public PaymentCurrencyAmount {
         Assert.checkNotNullParam("currency", currency);
         Assert.checkNotNullParam("value", value);
+        // Checked when the amount is created, so that an amount received from a
+        // peer is rejected where it is read rather than where it is summed
+        CurrencyUnits.toMinorUnits(currency, value);
+    }
+
+    /**
+     * Creates an amount from a number of minor units of its currency.
+     *
+     * @param currency the three-letter ISO 4217 currency code
+     * @param minorUnits the value in minor units, such as cents for USD
+     * @return the amount
+     */
+    public static PaymentCurrencyAmount ofMinorUnits(String currency, long minorUnits) {
+        Assert.checkNotNullParam("currency", currency);
+        return new PaymentCurrencyAmount(currency, CurrencyUnits.fromMinorUnits(currency, minorUnits));
+    }
+
+    /**
+     * Returns the value as a number of minor units of the currency, rounding
+     * half to even a value more precise than the minor unit.
+     *
+     * @return the value in minor units, such as cents for USD
+     */
+    public long toMinorUnits() {
+        return CurrencyUnits.toMinorUnits(currency, value);
     }
 }
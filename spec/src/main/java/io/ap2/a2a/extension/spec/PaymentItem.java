@@ -4,6 +4,9 @@ import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
+import java.util.List;
+import java.util.RandomAccess;
+
 import io.a2a.util.Assert;
 
 /**
@@ -43,4 +46,38 @@ public record PaymentItem(
             refundPeriod = 30;
         }
     }
+
+    /**
+     * Sums the amounts of items in minor units, without allocating.
+     *
+     * @param currency the three-letter ISO 4217 currency code of the items
+     * @param items the items
+     * @return the total, in minor units of the currency
+     * @throws AP2Exception if an item is in another currency
+     * @throws ArithmeticException if the total overflows
+     */
+    public static long totalMinorUnits(String currency, List<PaymentItem> items) {
+        Assert.checkNotNullParam("currency", currency);
+        Assert.checkNotNullParam("items", items);
+        long total = 0;
+        if (items instanceof RandomAccess) {
+            // Indexed, since an iterator would be allocated for every total
+            for (int i = 0; i < items.size(); i++) {
+                total = Math.addExact(total, minorUnits(currency, items.get(i)));
+            }
+        } else {
+            for (PaymentItem item : items) {
+                total = Math.addExact(total, minorUnits(currency, item));
+            }
+        }
+        return total;
+    }
+
+    private static long minorUnits(String currency, PaymentItem item) {
+        if (!currency.equals(item.amount().currency())) {
+            throw new AP2Exception("Item '" + item.label() + "' is in " + item.amount().currency()
+                    + ", not " + currency);
+        }
+        return item.amount().toMinorUnits();
+    }
 }
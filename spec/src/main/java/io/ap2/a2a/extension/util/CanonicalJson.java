@@ -0,0 +1,654 @@
+package io.ap2.a2a.extension.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.fasterxml.jackson.core.Base64Variant;
+import com.fasterxml.jackson.core.ErrorReportConfiguration;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonStreamContext;
+import com.fasterxml.jackson.core.StreamReadConstraints;
+import com.fasterxml.jackson.core.StreamWriteConstraints;
+import com.fasterxml.jackson.core.base.GeneratorBase;
+import com.fasterxml.jackson.core.io.ContentReference;
+import com.fasterxml.jackson.core.io.IOContext;
+import com.fasterxml.jackson.core.json.JsonWriteContext;
+import com.fasterxml.jackson.core.util.BufferRecycler;
+
+import io.a2a.util.Utils;
+
+/**
+ * A serializer of the canonical JSON form of values, as defined by the JSON
+ * Canonicalization Scheme (JCS).
+ * <p>
+ * Specification:
+ * https://www.rfc-editor.org/rfc/rfc8785
+ * <p>
+ * Values are serialized by the same object mapper, and so with the same
+ * property names and inclusion rules, as the messages they are sent in, but
+ * through a generator that writes their canonical form directly: UTF-8 with
+ * object members sorted by name, no whitespace, minimal string escaping, and
+ * numbers formatted as ECMAScript does. No JSON tree or JSON text is built.
+ * The members of an object are written in the order they are serialized, and
+ * only moved into place when the object ends if they were not already sorted.
+ * The canonical bytes are then handed to an {@link OutputStream} or a
+ * {@link MessageDigest} in one call.
+ * <p>
+ * Numbers are IEEE 754 doubles in JCS, so integers beyond 2<sup>53</sup> lose
+ * precision, as they would in any JCS implementation.
+ */
+public final class CanonicalJson {
+
+    private static final int BUFFER_SIZE = 512;
+
+    private static final long MAX_EXACT_LONG = 1L << 53;
+
+    /**
+     * The number of significant digits from which several shortest digits may round trip.
+     */
+    private static final int AMBIGUOUS_DIGITS = 16;
+
+    private static final byte[] HEX_DIGITS = "0123456789abcdef".getBytes();
+
+    private CanonicalJson() {
+    }
+
+    /**
+     * Returns the canonical JSON form of a value.
+     *
+     * @param value the value, such as a record of the spec
+     * @return the canonical JSON, in UTF-8
+     * @throws IllegalArgumentException if the value has a number that is not
+     *     finite, or a string that is not valid Unicode
+     */
+    public static byte[] toBytes(Object value) {
+        Sink sink = serialize(value);
+        return Arrays.copyOf(sink.bytes, sink.size);
+    }
+
+    /**
+     * Writes the canonical JSON form of a value to a stream.
+     *
+     * @param value the value, such as a record of the spec
+     * @param out the stream
+     * @throws IOException if the stream cannot be written
+     * @throws IllegalArgumentException if the value has a number that is not
+     *     finite, or a string that is not valid Unicode
+     */
+    public static void write(Object value, OutputStream out) throws IOException {
+        Assert.checkNotNullParam("out", out);
+        Sink sink = serialize(value);
+        out.write(sink.bytes, 0, sink.size);
+    }
+
+    /**
+     * Updates a digest with the canonical JSON form of a value.
+     *
+     * @param value the value, such as a record of the spec
+     * @param digest the digest
+     * @throws IllegalArgumentException if the value has a number that is not
+     *     finite, or a string that is not valid Unicode
+     */
+    public static void digest(Object value, MessageDigest digest) {
+        Assert.checkNotNullParam("digest", digest);
+        Sink sink = serialize(value);
+        digest.update(sink.bytes, 0, sink.size);
+    }
+
+    private static Sink serialize(Object value) {
+        Assert.checkNotNullParam("value", value);
+        Sink sink = new Sink();
+        try (CanonicalGenerator generator = new CanonicalGenerator(sink)) {
+            Utils.OBJECT_MAPPER.writeValue(generator, value);
+        } catch (IOException e) {
+            // The serializers wrap the exceptions of the generator
+            if (e.getCause() instanceof IllegalArgumentException invalid) {
+                throw invalid;
+            }
+            throw new IllegalArgumentException("Cannot serialize " + value.getClass().getName() + " as JSON: "
+                    + e.getMessage(), e);
+        }
+        return sink;
+    }
+
+    private static void writeString(String value, Sink sink) {
+        sink.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                switch (c) {
+                    case '"' -> writeEscape('"', sink);
+                    case '\\' -> writeEscape('\\', sink);
+                    case '\b' -> writeEscape('b', sink);
+                    case '\f' -> writeEscape('f', sink);
+                    case '\n' -> writeEscape('n', sink);
+                    case '\r' -> writeEscape('r', sink);
+                    case '\t' -> writeEscape('t', sink);
+                    default -> {
+                        if (c < 0x20) {
+                            writeEscape('u', sink);
+                            sink.write('0');
+                            sink.write('0');
+                            sink.write(HEX_DIGITS[c >> 4]);
+                            sink.write(HEX_DIGITS[c & 0xF]);
+                        } else {
+                            sink.write(c);
+                        }
+                    }
+                }
+            } else if (c < 0x800) {
+                sink.write(0xC0 | (c >> 6));
+                sink.write(0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c)) {
+                if (i + 1 == value.length() || !Character.isLowSurrogate(value.charAt(i + 1))) {
+                    throw new IllegalArgumentException("Unpaired surrogate in JSON string");
+                }
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                sink.write(0xF0 | (codePoint >> 18));
+                sink.write(0x80 | ((codePoint >> 12) & 0x3F));
+                sink.write(0x80 | ((codePoint >> 6) & 0x3F));
+                sink.write(0x80 | (codePoint & 0x3F));
+            } else if (Character.isLowSurrogate(c)) {
+                throw new IllegalArgumentException("Unpaired surrogate in JSON string");
+            } else {
+                sink.write(0xE0 | (c >> 12));
+                sink.write(0x80 | ((c >> 6) & 0x3F));
+                sink.write(0x80 | (c & 0x3F));
+            }
+        }
+        sink.write('"');
+    }
+
+    private static void writeEscape(char c, Sink sink) {
+        sink.write('\\');
+        sink.write(c);
+    }
+
+    private static void writeNumber(long value, Sink sink) {
+        // Math.abs(Long.MIN_VALUE) overflows to Long.MIN_VALUE, which writeLong cannot negate
+        if (value != Long.MIN_VALUE && Math.abs(value) <= MAX_EXACT_LONG) {
+            writeLong(value, sink);
+        } else {
+            writeDouble(value, sink);
+        }
+    }
+
+    /**
+     * Writes a double as ECMAScript's Number.prototype.toString does.
+     */
+    private static void writeDouble(double value, Sink sink) {
+        if (!Double.isFinite(value)) {
+            throw new IllegalArgumentException("JSON numbers must be finite: " + value);
+        }
+        if (value == 0) {
+            // Including negative zero
+            sink.write('0');
+            return;
+        }
+        if (value < 0) {
+            sink.write('-');
+            value = -value;
+        }
+        if (value < MAX_EXACT_LONG && value == Math.rint(value)) {
+            // Integers below 2^53 need all their digits to round trip
+            writeLong((long) value, sink);
+            return;
+        }
+
+        // The shortest digits that round trip, and the position of the decimal point
+        // relative to them, as in ECMA-262 Number::toString
+        String shortest = Double.toString(value);
+        int exponentIndex = shortest.indexOf('E');
+        String mantissa = exponentIndex < 0 ? shortest : shortest.substring(0, exponentIndex);
+        int dot = mantissa.indexOf('.');
+        StringBuilder digits = new StringBuilder(mantissa.length());
+        digits.append(mantissa, 0, dot).append(mantissa, dot + 1, mantissa.length());
+        int point = dot + (exponentIndex < 0 ? 0 : Integer.parseInt(shortest.substring(exponentIndex + 1)));
+        while (digits.length() > 1 && digits.charAt(0) == '0') {
+            digits.deleteCharAt(0);
+            point--;
+        }
+        stripTrailingZeros(digits);
+        point = shorten(digits, point, value);
+        if (digits.length() >= AMBIGUOUS_DIGITS) {
+            point = closest(digits, point, value);
+        }
+
+        int length = digits.length();
+        if (length <= point && point <= 21) {
+            writeAscii(digits, sink);
+            for (int i = length; i < point; i++) {
+                sink.write('0');
+            }
+        } else if (0 < point && point <= 21) {
+            writeAscii(digits.subSequence(0, point), sink);
+            sink.write('.');
+            writeAscii(digits.subSequence(point, length), sink);
+        } else if (-6 < point && point <= 0) {
+            sink.write('0');
+            sink.write('.');
+            for (int i = point; i < 0; i++) {
+                sink.write('0');
+            }
+            writeAscii(digits, sink);
+        } else {
+            sink.write(digits.charAt(0));
+            if (length > 1) {
+                sink.write('.');
+                writeAscii(digits.subSequence(1, length), sink);
+            }
+            sink.write('e');
+            sink.write(point - 1 < 0 ? '-' : '+');
+            writeLong(Math.abs(point - 1), sink);
+        }
+    }
+
+    /**
+     * Drops the digits that are not needed to round trip. Double.toString
+     * returns the shortest digits from Java 19, but may return a few more
+     * before.
+     *
+     * @return the position of the decimal point relative to the digits
+     */
+    private static int shorten(StringBuilder digits, int point, double value) {
+        while (digits.length() > 1) {
+            // Try both neighbours with one digit less, the nearest first
+            StringBuilder truncated = new StringBuilder(digits);
+            truncated.setLength(digits.length() - 1);
+            StringBuilder roundedUp = new StringBuilder(truncated);
+            int roundedUpPoint = point;
+            int i = roundedUp.length() - 1;
+            while (i >= 0 && roundedUp.charAt(i) == '9') {
+                roundedUp.setCharAt(i--, '0');
+            }
+            if (i < 0) {
+                roundedUp.insert(0, '1');
+                roundedUp.setLength(roundedUp.length() - 1);
+                roundedUpPoint++;
+            } else {
+                roundedUp.setCharAt(i, (char) (roundedUp.charAt(i) + 1));
+            }
+            boolean roundUpFirst = digits.charAt(digits.length() - 1) >= '5';
+            StringBuilder first = roundUpFirst ? roundedUp : truncated;
+            int firstPoint = roundUpFirst ? roundedUpPoint : point;
+            StringBuilder second = roundUpFirst ? truncated : roundedUp;
+            int secondPoint = roundUpFirst ? point : roundedUpPoint;
+
+            if (roundTrips(first, firstPoint, value)) {
+                digits.setLength(0);
+                digits.append(first);
+                point = firstPoint;
+            } else if (roundTrips(second, secondPoint, value)) {
+                digits.setLength(0);
+                digits.append(second);
+                point = secondPoint;
+            } else {
+                break;
+            }
+            stripTrailingZeros(digits);
+        }
+        return point;
+    }
+
+    private static boolean roundTrips(CharSequence digits, int point, double value) {
+        return Double.parseDouble("0." + digits + "E" + point) == value;
+    }
+
+    /**
+     * Replaces the digits by the neighbouring digits of the same length that
+     * are closest to the exact value, if they also round trip. ECMAScript
+     * requires the closest when several shortest digits round trip, and
+     * Double.toString does not always return it before Java 19.
+     *
+     * @return the position of the decimal point relative to the digits
+     */
+    private static int closest(StringBuilder digits, int point, double value) {
+        BigDecimal exact = new BigDecimal(value);
+        BigInteger unscaled = new BigInteger(digits.toString());
+        int scale = digits.length() - point;
+        BigDecimal best = new BigDecimal(unscaled, scale);
+        BigDecimal bestDistance = best.subtract(exact).abs();
+        BigInteger[] neighbours = {unscaled.subtract(BigInteger.ONE), unscaled.add(BigInteger.ONE)};
+        for (BigInteger neighbour : neighbours) {
+            if (neighbour.toString().length() != digits.length()) {
+                continue;
+            }
+            BigDecimal candidate = new BigDecimal(neighbour, scale);
+            BigDecimal distance = candidate.subtract(exact).abs();
+            if (distance.compareTo(bestDistance) < 0 && candidate.doubleValue() == value) {
+                best = candidate;
+                bestDistance = distance;
+            }
+        }
+        digits.setLength(0);
+        digits.append(best.unscaledValue());
+        stripTrailingZeros(digits);
+        return point;
+    }
+
+    private static void stripTrailingZeros(StringBuilder digits) {
+        while (digits.length() > 1 && digits.charAt(digits.length() - 1) == '0') {
+            digits.setLength(digits.length() - 1);
+        }
+    }
+
+    private static void writeLong(long value, Sink sink) {
+        if (value < 0) {
+            sink.write('-');
+            value = -value;
+        }
+        long divisor = 1;
+        while (value / divisor >= 10) {
+            divisor *= 10;
+        }
+        for (; divisor > 0; divisor /= 10) {
+            sink.write('0' + (int) (value / divisor % 10));
+        }
+    }
+
+    private static void writeAscii(CharSequence value, Sink sink) {
+        for (int i = 0; i < value.length(); i++) {
+            sink.write(value.charAt(i));
+        }
+    }
+
+    /**
+     * The canonical bytes of a value.
+     */
+    private static final class Sink {
+
+        byte[] bytes = new byte[BUFFER_SIZE];
+        int size;
+
+        void write(int b) {
+            if (size == bytes.length) {
+                bytes = Arrays.copyOf(bytes, bytes.length * 2);
+            }
+            bytes[size++] = (byte) b;
+        }
+    }
+
+    /**
+     * A generator of canonical JSON, for the serializers of the object mapper.
+     */
+    private static final class CanonicalGenerator extends GeneratorBase {
+
+        private final Sink sink;
+        /**
+         * The members of the open objects, by depth, reused across objects.
+         */
+        private final List<Members> objects = new ArrayList<>();
+        private int objectDepth;
+
+        CanonicalGenerator(Sink sink) {
+            super(JsonGenerator.Feature.collectDefaults(), Utils.OBJECT_MAPPER,
+                    new IOContext(StreamReadConstraints.defaults(), StreamWriteConstraints.defaults(),
+                            ErrorReportConfiguration.defaults(), new BufferRecycler(), ContentReference.unknown(),
+                            false));
+            this.sink = sink;
+        }
+
+        @Override
+        public void writeStartArray() throws IOException {
+            _verifyValueWrite("start an array");
+            _writeContext = _writeContext.createChildArrayContext();
+            sink.write('[');
+        }
+
+        @Override
+        public void writeEndArray() throws IOException {
+            if (!_writeContext.inArray()) {
+                _reportError("Current context not an Array but " + _writeContext.typeDesc());
+            }
+            sink.write(']');
+            _writeContext = _writeContext.clearAndGetParent();
+        }
+
+        @Override
+        public void writeStartObject() throws IOException {
+            _verifyValueWrite("start an object");
+            _writeContext = _writeContext.createChildObjectContext();
+            sink.write('{');
+            if (objectDepth == objects.size()) {
+                objects.add(new Members());
+            }
+            objects.get(objectDepth++).clear();
+        }
+
+        @Override
+        public void writeEndObject() throws IOException {
+            if (!_writeContext.inObject()) {
+                _reportError("Current context not an Object but " + _writeContext.typeDesc());
+            }
+            Members members = objects.get(--objectDepth);
+            if (!members.sorted) {
+                members.sort(sink);
+            }
+            sink.write('}');
+            _writeContext = _writeContext.clearAndGetParent();
+        }
+
+        @Override
+        public void writeFieldName(String name) throws IOException {
+            int status = _writeContext.writeFieldName(name);
+            if (status == JsonWriteContext.STATUS_EXPECT_VALUE) {
+                _reportError("Can not write a field name, expecting a value");
+            }
+            if (status == JsonWriteContext.STATUS_OK_AFTER_COMMA) {
+                sink.write(',');
+            }
+            objects.get(objectDepth - 1).add(name, sink.size);
+            CanonicalJson.writeString(name, sink);
+            sink.write(':');
+        }
+
+        @Override
+        public void writeString(String text) throws IOException {
+            if (text == null) {
+                writeNull();
+                return;
+            }
+            _verifyValueWrite("write a string");
+            CanonicalJson.writeString(text, sink);
+        }
+
+        @Override
+        public void writeString(char[] text, int offset, int len) throws IOException {
+            writeString(new String(text, offset, len));
+        }
+
+        @Override
+        public void writeRawUTF8String(byte[] text, int offset, int length) throws IOException {
+            writeString(new String(text, offset, length, StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public void writeUTF8String(byte[] text, int offset, int length) throws IOException {
+            writeString(new String(text, offset, length, StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public void writeBinary(Base64Variant variant, byte[] data, int offset, int len) throws IOException {
+            writeString(variant.encode(Arrays.copyOfRange(data, offset, offset + len)));
+        }
+
+        @Override
+        public void writeNumber(int value) throws IOException {
+            _verifyValueWrite("write a number");
+            writeLong(value, sink);
+        }
+
+        @Override
+        public void writeNumber(long value) throws IOException {
+            _verifyValueWrite("write a number");
+            CanonicalJson.writeNumber(value, sink);
+        }
+
+        @Override
+        public void writeNumber(BigInteger value) throws IOException {
+            if (value == null) {
+                writeNull();
+            } else if (value.bitLength() < Long.SIZE) {
+                writeNumber(value.longValue());
+            } else {
+                writeNumber(value.doubleValue());
+            }
+        }
+
+        @Override
+        public void writeNumber(double value) throws IOException {
+            _verifyValueWrite("write a number");
+            writeDouble(value, sink);
+        }
+
+        @Override
+        public void writeNumber(float value) throws IOException {
+            writeNumber((double) value);
+        }
+
+        @Override
+        public void writeNumber(BigDecimal value) throws IOException {
+            if (value == null) {
+                writeNull();
+            } else {
+                writeNumber(value.doubleValue());
+            }
+        }
+
+        @Override
+        public void writeNumber(String encodedValue) throws IOException {
+            if (encodedValue == null) {
+                writeNull();
+                return;
+            }
+            try {
+                writeNumber(new BigDecimal(encodedValue));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Not a JSON number: " + encodedValue, e);
+            }
+        }
+
+        @Override
+        public void writeBoolean(boolean state) throws IOException {
+            _verifyValueWrite("write a boolean");
+            writeAscii(state ? "true" : "false", sink);
+        }
+
+        @Override
+        public void writeNull() throws IOException {
+            _verifyValueWrite("write a null");
+            writeAscii("null", sink);
+        }
+
+        @Override
+        public void writeRaw(String text) {
+            throw rawUnsupported();
+        }
+
+        @Override
+        public void writeRaw(String text, int offset, int len) {
+            throw rawUnsupported();
+        }
+
+        @Override
+        public void writeRaw(char[] text, int offset, int len) {
+            throw rawUnsupported();
+        }
+
+        @Override
+        public void writeRaw(char c) {
+            throw rawUnsupported();
+        }
+
+        private static IllegalArgumentException rawUnsupported() {
+            return new IllegalArgumentException("Raw JSON has no canonical form");
+        }
+
+        @Override
+        public JsonStreamContext getOutputContext() {
+            return _writeContext;
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        protected void _releaseBuffers() {
+        }
+
+        @Override
+        protected void _verifyValueWrite(String typeMsg) throws IOException {
+            int status = _writeContext.writeValue();
+            if (status == JsonWriteContext.STATUS_EXPECT_NAME) {
+                _reportError("Can not " + typeMsg + ", expecting a field name");
+            }
+            if (status == JsonWriteContext.STATUS_OK_AFTER_COMMA) {
+                sink.write(',');
+            }
+        }
+    }
+
+    /**
+     * The names and offsets of the members of an object, in the order they
+     * were written.
+     */
+    private static final class Members {
+
+        private String[] names = new String[8];
+        private int[] starts = new int[8];
+        private int count;
+        boolean sorted;
+
+        void clear() {
+            count = 0;
+            sorted = true;
+        }
+
+        void add(String name, int start) {
+            // String order is UTF-16 code unit order, which is the order JCS requires
+            if (count > 0 && name.compareTo(names[count - 1]) < 0) {
+                sorted = false;
+            }
+            if (count == names.length) {
+                names = Arrays.copyOf(names, count * 2);
+                starts = Arrays.copyOf(starts, count * 2);
+            }
+            names[count] = name;
+            starts[count++] = start;
+        }
+
+        /**
+         * Moves the members written since the start of the object into name
+         * order. Members are separated by commas, and each ends where the
+         * comma before the next one is.
+         */
+        void sort(Sink sink) {
+            Integer[] order = new Integer[count];
+            for (int i = 0; i < count; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> names[a].compareTo(names[b]));
+
+            int from = starts[0];
+            byte[] written = Arrays.copyOfRange(sink.bytes, from, sink.size);
+            int position = from;
+            for (int k = 0; k < count; k++) {
+                if (k > 0) {
+                    sink.bytes[position++] = ',';
+                }
+                int i = order[k];
+                int end = i + 1 < count ? starts[i + 1] - 1 : sink.size;
+                System.arraycopy(written, starts[i] - from, sink.bytes, position, end - starts[i]);
+                position += end - starts[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package io.ap2.a2a.extension.util;
+
+import java.security.MessageDigest;
+import java.util.Base64;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import io.a2a.util.Utils;
+import io.ap2.a2a.extension.spec.CartContents;
+import io.ap2.a2a.extension.spec.PaymentDetailsInit;
+import io.ap2.a2a.extension.spec.PaymentRequest;
+
+/**
+ * The {@code cart_hash} of cart contents, computed from Merkle trees over its
+ * lists so that a cart derived from another one is hashed incrementally.
+ * <p>
+ * The {@code cart_hash} is the base64url SHA-256 of the canonical JSON of the
+ * cart contents where, in {@code payment_request.details}, each of
+ * {@code display_items}, {@code shipping_options} and {@code modifiers} that
+ * is present is replaced by the base64url {@link MerkleTree Merkle tree hash}
+ * of its elements. Large carts are mostly made of these lists, so the rest of
+ * the contents is cheap to hash again.
+ * <p>
+ * Instances are immutable. {@link #update(CartContents, CartContents)}
+ * returns a new instance, sharing the hashes of the elements and subtrees that
+ * did not change. A tree does not refer to the contents it hashes, so that it
+ * can be memoized per contents without keeping them alive.
+ */
+final class CartHashTree {
+
+    private static final Base64.Encoder BASE64URL = Base64.getUrlEncoder().withoutPadding();
+
+    private final MerkleTree displayItems;
+    private final MerkleTree shippingOptions;
+    private final MerkleTree modifiers;
+    private final String cartHash;
+
+    private CartHashTree(CartContents contents, MerkleTree displayItems, MerkleTree shippingOptions,
+                         MerkleTree modifiers) {
+        this.displayItems = displayItems;
+        this.shippingOptions = shippingOptions;
+        this.modifiers = modifiers;
+        this.cartHash = computeCartHash(contents);
+    }
+
+    /**
+     * Hashes cart contents.
+     *
+     * @param contents the cart contents
+     * @return the hash tree
+     */
+    static CartHashTree of(CartContents contents) {
+        PaymentDetailsInit details = contents.paymentRequest().details();
+        return new CartHashTree(contents, tree(details.displayItems()), tree(details.shippingOptions()),
+                tree(details.modifiers()));
+    }
+
+    /**
+     * Hashes cart contents derived from the contents of this tree, only
+     * hashing the list elements that are not the same instances at the same
+     * positions, and the subtrees above them.
+     *
+     * @param contents the cart contents of this tree
+     * @param updated the updated cart contents
+     * @return the hash tree of the updated contents
+     */
+    CartHashTree update(CartContents contents, CartContents updated) {
+        PaymentDetailsInit previous = contents.paymentRequest().details();
+        PaymentDetailsInit details = updated.paymentRequest().details();
+        return new CartHashTree(updated,
+                update(displayItems, previous.displayItems(), details.displayItems()),
+                update(shippingOptions, previous.shippingOptions(), details.shippingOptions()),
+                update(modifiers, previous.modifiers(), details.modifiers()));
+    }
+
+    /**
+     * Returns the {@code cart_hash} of the contents.
+     *
+     * @return the hash, in base64url
+     */
+    String cartHash() {
+        return cartHash;
+    }
+
+    private static MerkleTree tree(List<?> values) {
+        return values == null ? null : MerkleTree.of(values);
+    }
+
+    private static MerkleTree update(MerkleTree tree, List<?> previous, List<?> values) {
+        if (values == previous) {
+            return tree;
+        }
+        if (values == null || previous == null || values.size() < previous.size()) {
+            return tree(values);
+        }
+        MerkleTree updated = tree.copy();
+        for (int i = 0; i < previous.size(); i++) {
+            if (values.get(i) != previous.get(i)) {
+                updated.set(i, MerkleTree.leafHash(values.get(i)));
+            }
+        }
+        for (int i = previous.size(); i < values.size(); i++) {
+            updated.append(MerkleTree.leafHash(values.get(i)));
+        }
+        return updated;
+    }
+
+    private String computeCartHash(CartContents contents) {
+        // The contents without the lists, which are replaced by their roots in the JSON
+        PaymentRequest paymentRequest = contents.paymentRequest();
+        PaymentDetailsInit details = paymentRequest.details();
+        CartContents skeleton = new CartContents(
+                contents.id(),
+                contents.userCartConfirmationRequired(),
+                new PaymentRequest(
+                        paymentRequest.methodData(),
+                        new PaymentDetailsInit(details.id(), List.of(), null, null, details.total()),
+                        paymentRequest.options(),
+                        paymentRequest.shippingAddress()),
+                contents.cartExpiry(),
+                contents.merchantName());
+
+        ObjectNode json = Utils.OBJECT_MAPPER.valueToTree(skeleton);
+        ObjectNode detailsJson = (ObjectNode) json.get("payment_request").get("details");
+        detailsJson.put("display_items", BASE64URL.encodeToString(displayItems.root()));
+        if (shippingOptions != null) {
+            detailsJson.put("shipping_options", BASE64URL.encodeToString(shippingOptions.root()));
+        }
+        if (modifiers != null) {
+            detailsJson.put("modifiers", BASE64URL.encodeToString(modifiers.root()));
+        }
+
+        MessageDigest digest = MandateHashes.digest();
+        CanonicalJson.digest(json, digest);
+        return BASE64URL.encodeToString(digest.digest());
+    }
+}
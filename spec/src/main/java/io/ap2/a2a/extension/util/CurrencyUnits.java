@@ -0,0 +1,116 @@
+package io.ap2.a2a.extension.util;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Currency;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Conversions between monetary values and whole numbers of currency minor
+ * units, such as cents for USD.
+ * <p>
+ * The number of minor unit digits of a currency is its ISO 4217 exponent: 2
+ * for USD, 0 for JPY, 3 for KWD. Currencies that are unknown, or have no
+ * minor unit, are given 2 digits.
+ * <p>
+ * Amounts summed as minor units do not drift the way sums of doubles do, and
+ * the conversions do not allocate for values that are exact to the minor
+ * unit, which is the case of any value parsed from a well-formed amount.
+ */
+public final class CurrencyUnits {
+
+    /**
+     * The number of minor unit digits of unknown currencies.
+     */
+    public static final int DEFAULT_MINOR_UNIT_DIGITS = 2;
+
+    private static final long[] POWERS_OF_TEN = {
+            1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L
+    };
+
+    /**
+     * The largest magnitude of minor units that doubles represent exactly.
+     */
+    private static final long MAX_EXACT_MINOR_UNITS = 1L << 53;
+
+    /**
+     * The number of minor unit digits of the currencies known to {@link Currency}.
+     * It is computed once, so that the currency codes of amounts received from
+     * peers are never added to it.
+     */
+    private static final Map<String, Integer> MINOR_UNIT_DIGITS = knownMinorUnitDigits();
+
+    private CurrencyUnits() {
+    }
+
+    /**
+     * Returns the number of minor unit digits of a currency.
+     *
+     * @param currency the three-letter ISO 4217 currency code
+     * @return the number of digits after the decimal point
+     */
+    public static int minorUnitDigits(String currency) {
+        Assert.checkNotNullParam("currency", currency);
+        return MINOR_UNIT_DIGITS.getOrDefault(currency, DEFAULT_MINOR_UNIT_DIGITS);
+    }
+
+    /**
+     * Converts a monetary value to minor units, rounding half to even values
+     * more precise than the minor unit.
+     *
+     * @param currency the three-letter ISO 4217 currency code
+     * @param value the monetary value
+     * @return the value in minor units
+     * @throws IllegalArgumentException if the value is not finite, or too large
+     */
+    public static long toMinorUnits(String currency, double value) {
+        if (!Double.isFinite(value)) {
+            throw new IllegalArgumentException("Monetary value is not finite: " + value);
+        }
+        int digits = minorUnitDigits(currency);
+        double scaled = value * POWERS_OF_TEN[digits];
+        double rounded = Math.rint(scaled);
+        // The double nearest to a value exact to the minor unit scales to within
+        // a few ulps of a whole number, anything further needs decimal rounding
+        if (Math.abs(rounded) < MAX_EXACT_MINOR_UNITS && Math.abs(scaled - rounded) <= 4 * Math.ulp(scaled)) {
+            return (long) rounded;
+        }
+        try {
+            return BigDecimal.valueOf(value)
+                    .setScale(digits, RoundingMode.HALF_EVEN)
+                    .unscaledValue()
+                    .longValueExact();
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Monetary value is too large: " + value, e);
+        }
+    }
+
+    /**
+     * Converts minor units to the nearest monetary value.
+     *
+     * @param currency the three-letter ISO 4217 currency code
+     * @param minorUnits the value in minor units
+     * @return the monetary value
+     */
+    public static double fromMinorUnits(String currency, long minorUnits) {
+        int digits = minorUnitDigits(currency);
+        if (Math.abs(minorUnits) <= MAX_EXACT_MINOR_UNITS) {
+            // Both operands are exact, so the correctly rounded quotient is the
+            // double nearest to the decimal value
+            return minorUnits / (double) POWERS_OF_TEN[digits];
+        }
+        return BigDecimal.valueOf(minorUnits, digits).doubleValue();
+    }
+
+    private static Map<String, Integer> knownMinorUnitDigits() {
+        Map<String, Integer> digits = new HashMap<>();
+        for (Currency currency : Currency.getAvailableCurrencies()) {
+            int fractionDigits = currency.getDefaultFractionDigits();
+            if (fractionDigits >= 0 && fractionDigits < POWERS_OF_TEN.length) {
+                digits.put(currency.getCurrencyCode(), fractionDigits);
+            }
+        }
+        return Map.copyOf(digits);
+    }
+}
@@ -0,0 +1,81 @@
+package io.ap2.a2a.extension.util;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Values memoized per instance of an immutable key, such as a record of the
+ * spec. Keys are compared by identity, and are not kept alive by the memo,
+ * as long as the values do not refer to them.
+ * <p>
+ * This class is thread-safe.
+ *
+ * @param <V> the type of the memoized values
+ */
+final class IdentityMemo<V> {
+
+    private final ConcurrentMap<IdentityKey, V> values = new ConcurrentHashMap<>();
+    private final ReferenceQueue<Object> collected = new ReferenceQueue<>();
+
+    /**
+     * Returns the value memoized for an instance.
+     *
+     * @param key the instance
+     * @return the value, or null if there is none
+     */
+    V get(Object key) {
+        return values.get(new IdentityKey(key, null));
+    }
+
+    /**
+     * Memoizes a value for an instance.
+     *
+     * @param key the instance
+     * @param value the value
+     */
+    void put(Object key, V value) {
+        expungeCollected();
+        values.put(new IdentityKey(key, collected), value);
+    }
+
+    private void expungeCollected() {
+        Object key;
+        while ((key = collected.poll()) != null) {
+            values.remove(key);
+        }
+    }
+
+    /**
+     * A weak reference to an instance, equal to the references to the same
+     * instance. A collected reference is only equal to itself, so that it can
+     * still be removed.
+     */
+    private static final class IdentityKey extends WeakReference<Object> {
+
+        private final int hash;
+
+        IdentityKey(Object key, ReferenceQueue<Object> queue) {
+            super(key, queue);
+            this.hash = System.identityHashCode(key);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof IdentityKey other)) {
+                return false;
+            }
+            Object key = get();
+            return key != null && key == other.get();
+        }
+    }
+}
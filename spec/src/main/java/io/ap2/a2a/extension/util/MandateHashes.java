@@ -0,0 +1,147 @@
+package io.ap2.a2a.extension.util;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+
+import io.ap2.a2a.extension.spec.CartContents;
+import io.ap2.a2a.extension.spec.CartMandate;
+import io.ap2.a2a.extension.spec.PaymentMandateContents;
+
+/**
+ * The hashes that bind signatures to mandates, such as the {@code cart_hash}
+ * of a {@link CartMandate} merchant authorization.
+ * <p>
+ * A hash is the SHA-256 digest of the {@link CanonicalJson canonical JSON}
+ * of a value, encoded in base64url without padding. The {@code cart_hash} of
+ * cart contents hashes their lists as Merkle trees instead, so that a cart
+ * derived from another one is hashed incrementally. Every signer and verifier
+ * of a mandate hashes it, so hashes are memoized per instance: the records of
+ * the spec are immutable, and hashing the same instance again only costs an
+ * identity lookup. The memo does not keep the instances alive.
+ * <p>
+ * The collections of a record must therefore not be modified once it has been
+ * hashed.
+ * <p>
+ * This class is thread-safe.
+ */
+public final class MandateHashes {
+
+    /**
+     * The hash algorithm.
+     */
+    public static final String ALGORITHM = "SHA-256";
+
+    private static final ThreadLocal<MessageDigest> DIGESTS = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance(ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(ALGORITHM + " is not available", e);
+        }
+    });
+
+    private static final IdentityMemo<String> HASHES = new IdentityMemo<>();
+    private static final IdentityMemo<CartHashTree> CART_HASH_TREES = new IdentityMemo<>();
+
+    private MandateHashes() {
+    }
+
+    /**
+     * Returns the hash of cart contents, which is the {@code cart_hash} of
+     * the merchant authorization of a cart mandate.
+     * <p>
+     * The {@code cart_hash} is the base64url SHA-256 of the canonical JSON of
+     * the cart contents where, in {@code payment_request.details}, each of
+     * {@code display_items}, {@code shipping_options} and {@code modifiers}
+     * that is present is replaced by the base64url RFC 6962 Merkle tree hash
+     * of its elements, each leaf being the canonical JSON of an element.
+     *
+     * @param contents the cart contents
+     * @return the hash
+     */
+    public static String cartHash(CartContents contents) {
+        Assert.checkNotNullParam("contents", contents);
+        CartHashTree tree = CART_HASH_TREES.get(contents);
+        if (tree == null) {
+            tree = CartHashTree.of(contents);
+            CART_HASH_TREES.put(contents, tree);
+        }
+        return tree.cartHash();
+    }
+
+    /**
+     * Returns the hash of cart contents derived from other cart contents,
+     * such as a cart with shipping costs added. If the other contents are
+     * the very instance that was hashed before, only the elements of the lists that are not the same instances
+     * at the same positions, and the Merkle subtrees above them, are hashed.
+     *
+     * @param contents the cart contents
+     * @param previous the cart contents they were derived from
+     * @return the hash, the same as {@link #cartHash(CartContents)}
+     */
+    public static String cartHash(CartContents contents, CartContents previous) {
+        Assert.checkNotNullParam("contents", contents);
+        Assert.checkNotNullParam("previous", previous);
+        CartHashTree tree = CART_HASH_TREES.get(contents);
+        if (tree == null) {
+            CartHashTree previousTree = CART_HASH_TREES.get(previous);
+            tree = previousTree == null ? CartHashTree.of(contents) : previousTree.update(previous, contents);
+            CART_HASH_TREES.put(contents, tree);
+        }
+        return tree.cartHash();
+    }
+
+    /**
+     * Returns the hash of a cart mandate, including its merchant
+     * authorization, which the user authorization refers to.
+     *
+     * @param cartMandate the cart mandate
+     * @return the hash
+     */
+    public static String cartMandateHash(CartMandate cartMandate) {
+        return hash(cartMandate);
+    }
+
+    /**
+     * Returns the hash of payment mandate contents, which the user
+     * authorization refers to.
+     *
+     * @param contents the payment mandate contents
+     * @return the hash
+     */
+    public static String paymentMandateHash(PaymentMandateContents contents) {
+        return hash(contents);
+    }
+
+    /**
+     * Returns the digest of the current thread, reset.
+     *
+     * @return the SHA-256 digest
+     */
+    static MessageDigest digest() {
+        MessageDigest digest = DIGESTS.get();
+        digest.reset();
+        return digest;
+    }
+
+    /**
+     * Returns the hash of an immutable value.
+     *
+     * @param value the value
+     * @return the SHA-256 digest of the canonical JSON of the value, in base64url
+     */
+    public static String hash(Object value) {
+        Assert.checkNotNullParam("value", value);
+        String hash = HASHES.get(value);
+        if (hash != null) {
+            return hash;
+        }
+
+        MessageDigest digest = digest();
+        CanonicalJson.digest(value, digest);
+        hash = Base64.getUrlEncoder().withoutPadding().encodeToString(digest.digest());
+
+        HASHES.put(value, hash);
+        return hash;
+    }
+}
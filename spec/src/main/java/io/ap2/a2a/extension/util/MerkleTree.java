@@ -0,0 +1,179 @@
+package io.ap2.a2a.extension.util;
+
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A Merkle tree hash over a list of values, as defined by Certificate
+ * Transparency.
+ * <p>
+ * Specification:
+ * https://www.rfc-editor.org/rfc/rfc6962#section-2.1
+ * <p>
+ * A leaf is the SHA-256 of a zero byte followed by the canonical JSON of a
+ * value, a node the SHA-256 of a one byte followed by its children, and the
+ * hash of an empty list the SHA-256 of nothing. The hashes of the complete
+ * subtrees are kept, level by level, so appending a value or replacing one
+ * only hashes the nodes above it, and the root only combines the complete
+ * subtrees of the binary decomposition of the size.
+ * <p>
+ * Leaf hashes are memoized per value instance, so values shared between
+ * lists are only hashed once.
+ * <p>
+ * This class is not thread-safe. Trees that are shared must not be modified,
+ * but {@link #copy() copied}.
+ */
+final class MerkleTree {
+
+    private static final byte LEAF_PREFIX = 0x00;
+    private static final byte NODE_PREFIX = 0x01;
+
+    private static final IdentityMemo<byte[]> LEAF_HASHES = new IdentityMemo<>();
+
+    /**
+     * The hashes of the complete subtrees of 2^h leaves, left to right, for each height h.
+     */
+    private final List<List<byte[]>> levels;
+
+    /**
+     * Creates an empty tree.
+     */
+    MerkleTree() {
+        this.levels = new ArrayList<>();
+        this.levels.add(new ArrayList<>());
+    }
+
+    private MerkleTree(List<List<byte[]>> levels) {
+        this.levels = levels;
+    }
+
+    /**
+     * Creates the tree of a list of values.
+     *
+     * @param values the values
+     * @return the tree
+     */
+    static MerkleTree of(List<?> values) {
+        MerkleTree tree = new MerkleTree();
+        for (Object value : values) {
+            tree.append(leafHash(value));
+        }
+        return tree;
+    }
+
+    /**
+     * Returns a copy of the tree, which can be modified independently. The
+     * hashes are shared, but never modified.
+     *
+     * @return the copy
+     */
+    MerkleTree copy() {
+        List<List<byte[]>> copy = new ArrayList<>(levels.size());
+        for (List<byte[]> level : levels) {
+            copy.add(new ArrayList<>(level));
+        }
+        return new MerkleTree(copy);
+    }
+
+    /**
+     * Returns the number of leaves.
+     *
+     * @return the number of leaves
+     */
+    int size() {
+        return levels.get(0).size();
+    }
+
+    /**
+     * Appends a leaf, hashing the complete subtrees it completes.
+     *
+     * @param leafHash the hash of the leaf
+     */
+    void append(byte[] leafHash) {
+        levels.get(0).add(leafHash);
+        int index = size() - 1;
+        int height = 0;
+        // A leaf at an odd index completes a subtree with its left sibling
+        while ((index & 1) == 1) {
+            List<byte[]> level = levels.get(height);
+            byte[] parent = nodeHash(level.get(index - 1), level.get(index));
+            height++;
+            if (levels.size() == height) {
+                levels.add(new ArrayList<>());
+            }
+            levels.get(height).add(parent);
+            index >>= 1;
+        }
+    }
+
+    /**
+     * Replaces a leaf, rehashing the complete subtrees that contain it.
+     *
+     * @param index the index of the leaf
+     * @param leafHash the new hash of the leaf
+     */
+    void set(int index, byte[] leafHash) {
+        levels.get(0).set(index, leafHash);
+        for (int height = 0; height + 1 < levels.size(); height++) {
+            int parent = index >> 1;
+            List<byte[]> parents = levels.get(height + 1);
+            if (parent >= parents.size()) {
+                break;
+            }
+            List<byte[]> level = levels.get(height);
+            parents.set(parent, nodeHash(level.get(parent << 1), level.get((parent << 1) + 1)));
+            index = parent;
+        }
+    }
+
+    /**
+     * Returns the root hash of the tree.
+     *
+     * @return the root hash
+     */
+    byte[] root() {
+        int size = size();
+        if (size == 0) {
+            return MandateHashes.digest().digest();
+        }
+        // The complete subtrees of the binary decomposition of the size, largest first,
+        // combined from the right as the recursive definition does
+        byte[] root = null;
+        int end = size;
+        for (int height = 0; height < levels.size() && end > 0; height++) {
+            if ((size & (1 << height)) != 0) {
+                end -= 1 << height;
+                byte[] subtree = levels.get(height).get(end >> height);
+                root = root == null ? subtree : nodeHash(subtree, root);
+            }
+        }
+        return root;
+    }
+
+    /**
+     * Returns the leaf hash of a value.
+     *
+     * @param value the value
+     * @return the SHA-256 of a zero byte followed by the canonical JSON of the value
+     */
+    static byte[] leafHash(Object value) {
+        byte[] hash = LEAF_HASHES.get(value);
+        if (hash == null) {
+            MessageDigest digest = MandateHashes.digest();
+            digest.update(LEAF_PREFIX);
+            CanonicalJson.digest(value, digest);
+            hash = digest.digest();
+            LEAF_HASHES.put(value, hash);
+        }
+        return hash;
+    }
+
+    private static byte[] nodeHash(byte[] left, byte[] right) {
+        MessageDigest digest = MandateHashes.digest();
+        digest.update(NODE_PREFIX);
+        digest.update(left);
+        digest.update(right);
+        return digest.digest();
+    }
+}
@@ -0,0 +1,62 @@
+package io.ap2.a2a.extension.spec;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Sums the amounts of items in minor units, without drifting or overflowing.
+ */
+class PaymentItemTest {
+
+    @Test
+    void sumsInMinorUnitsWithoutDrifting() {
+        List<PaymentItem> items = new ArrayList<>();
+        double sum = 0;
+        for (int i = 0; i < 10; i++) {
+            items.add(item("Item " + i, "USD", 0.1));
+            sum += 0.1;
+        }
+
+        assertNotEquals(1.0, sum);
+        assertEquals(100, PaymentItem.totalMinorUnits("USD", items));
+        // Summed the same without random access
+        assertEquals(100, PaymentItem.totalMinorUnits("USD", new LinkedList<>(items)));
+        assertEquals(0, PaymentItem.totalMinorUnits("USD", List.of()));
+    }
+
+    @Test
+    void sumsInTheMinorUnitsOfTheCurrency() {
+        assertEquals(2469, PaymentItem.totalMinorUnits("JPY",
+                List.of(item("First", "JPY", 1234), item("Second", "JPY", 1235))));
+        assertEquals(3701, PaymentItem.totalMinorUnits("KWD",
+                List.of(item("First", "KWD", 1.234), item("Second", "KWD", 2.467))));
+    }
+
+    @Test
+    void rejectsAnItemInAnotherCurrency() {
+        List<PaymentItem> items = List.of(item("First", "USD", 1.0), item("Second", "EUR", 2.0));
+
+        AP2Exception e = assertThrows(AP2Exception.class, () -> PaymentItem.totalMinorUnits("USD", items));
+        assertEquals("Item 'Second' is in EUR, not USD", e.getMessage());
+    }
+
+    @Test
+    void failsOnOverflow() {
+        // 5 * 10^18 cents each, whose sum does not fit in a long
+        List<PaymentItem> items = List.of(item("First", "USD", 5e16), item("Second", "USD", 5e16));
+
+        assertThrows(ArithmeticException.class, () -> PaymentItem.totalMinorUnits("USD", items));
+        assertThrows(ArithmeticException.class, () -> PaymentItem.totalMinorUnits("USD", new LinkedList<>(items)));
+    }
+
+    private static PaymentItem item(String label, String currency, double value) {
+        return new PaymentItem(label, new PaymentCurrencyAmount(currency, value), null, null);
+    }
+}
@@ -0,0 +1,166 @@
+package io.ap2.a2a.extension.util;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.ap2.a2a.extension.spec.PaymentCurrencyAmount;
+import io.ap2.a2a.extension.spec.PaymentItem;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+/**
+ * Serializes values to the canonical JSON of RFC 8785, against the examples
+ * of the RFC.
+ */
+class CanonicalJsonTest {
+
+    /**
+     * The number serialization samples of RFC 8785, Appendix B.
+     */
+    @ParameterizedTest
+    @CsvSource({
+            "0000000000000000, 0",
+            "8000000000000000, 0",
+            "0000000000000001, 5e-324",
+            "8000000000000001, -5e-324",
+            "7fefffffffffffff, 1.7976931348623157e+308",
+            "ffefffffffffffff, -1.7976931348623157e+308",
+            "4340000000000000, 9007199254740992",
+            "c340000000000000, -9007199254740992",
+            "4430000000000000, 295147905179352830000",
+            "44b52d02c7e14af5, 9.999999999999997e+22",
+            "44b52d02c7e14af6, 1e+23",
+            "44b52d02c7e14af7, 1.0000000000000001e+23",
+            "444b1ae4d6e2ef4e, 999999999999999700000",
+            "444b1ae4d6e2ef4f, 999999999999999900000",
+            "444b1ae4d6e2ef50, 1e+21",
+            "3eb0c6f7a0b5ed8c, 9.999999999999997e-7",
+            "3eb0c6f7a0b5ed8d, 0.000001",
+            "41b3de4355555553, 333333333.3333332",
+            "41b3de4355555554, 333333333.33333325",
+            "41b3de4355555555, 333333333.3333333",
+            "41b3de4355555556, 333333333.3333334",
+            "41b3de4355555557, 333333333.33333343",
+            "becbf647612f3696, -0.0000033333333333333333",
+            "43143ff3c1cb0959, 1424953923781206.2"
+    })
+    void serializesNumbersAsEcmaScriptDoes(String ieee754, String expected) {
+        double value = Double.longBitsToDouble(Long.parseUnsignedLong(ieee754, 16));
+        assertEquals(expected, canonical(value));
+    }
+
+    @Test
+    void rejectsNumbersThatAreNotFinite() {
+        assertThrows(IllegalArgumentException.class, () -> CanonicalJson.toBytes(Double.NaN));
+        assertThrows(IllegalArgumentException.class, () -> CanonicalJson.toBytes(Double.POSITIVE_INFINITY));
+        assertThrows(IllegalArgumentException.class, () -> CanonicalJson.toBytes(List.of(Double.NEGATIVE_INFINITY)));
+    }
+
+    @Test
+    void serializesIntegersBeyondTheExactRangeAsDoubles() {
+        assertEquals("9007199254740992", canonical(1L << 53));
+        assertEquals("9223372036854776000", canonical(Long.MAX_VALUE));
+        assertEquals("-9007199254740992", canonical(-(1L << 53)));
+        assertEquals("-9223372036854776000", canonical(Long.MIN_VALUE));
+    }
+
+    /**
+     * The sample of RFC 8785, section 3.2.2.
+     */
+    @Test
+    void serializesTheSampleOfTheRfc() {
+        Map<String, Object> value = new LinkedHashMap<>();
+        value.put("numbers", List.of(333333333.33333329, 1E30, 4.50, 2e-3, 0.000000000000000000000000001));
+        value.put("string", "\u20ac$\u000f\nA'B\"\\\\\"/");
+        value.put("literals", Arrays.asList(null, true, false));
+
+        assertEquals("{\"literals\":[null,true,false],"
+                + "\"numbers\":[333333333.3333333,1e+30,4.5,0.002,1e-27],"
+                + "\"string\":\"\u20ac$\\u000f\\nA'B\\\"\\\\\\\\\\\"/\"}", canonical(value));
+    }
+
+    /**
+     * The sorting sample of RFC 8785, section 3.2.3, whose names are sorted by
+     * their UTF-16 code units.
+     */
+    @Test
+    void sortsMembersByTheirUtf16CodeUnits() {
+        Map<String, Object> value = new LinkedHashMap<>();
+        value.put("\u20ac", "Euro Sign");
+        value.put("\r", "Carriage Return");
+        value.put("\ufb33", "Hebrew Letter Dalet With Dagesh");
+        value.put("1", "One");
+        value.put("\ud83d\ude00", "Emoji: Grinning Face");
+        value.put("\u0080", "Control");
+        value.put("\u00f6", "Latin Small Letter O With Diaeresis");
+
+        assertEquals("{\"\\r\":\"Carriage Return\","
+                + "\"1\":\"One\","
+                + "\"\u0080\":\"Control\","
+                + "\"\u00f6\":\"Latin Small Letter O With Diaeresis\","
+                + "\"\u20ac\":\"Euro Sign\","
+                + "\"\ud83d\ude00\":\"Emoji: Grinning Face\","
+                + "\"\ufb33\":\"Hebrew Letter Dalet With Dagesh\"}", canonical(value));
+    }
+
+    @Test
+    void sortsTheMembersOfNestedObjects() {
+        Map<String, Object> inner = new LinkedHashMap<>();
+        inner.put("b", 2);
+        inner.put("a", List.of(Map.of("z", 1), 3));
+        Map<String, Object> outer = new LinkedHashMap<>();
+        outer.put("y", inner);
+        outer.put("x", "");
+
+        assertEquals("{\"x\":\"\",\"y\":{\"a\":[{\"z\":1},3],\"b\":2}}", canonical(outer));
+    }
+
+    @Test
+    void escapesOnlyWhatJsonRequires() {
+        assertEquals("\"\\u0000\\u001f\\b\\t\\f <>&\u007f\u2028\"", canonical("\u0000\u001f\b\t\f <>&\u007f\u2028"));
+    }
+
+    @Test
+    void rejectsUnpairedSurrogates() {
+        assertThrows(IllegalArgumentException.class, () -> CanonicalJson.toBytes("\ud83d"));
+        assertThrows(IllegalArgumentException.class, () -> CanonicalJson.toBytes("\ude00a"));
+    }
+
+    @Test
+    void serializesRecordsWithTheirJsonPropertyNames() {
+        PaymentItem item = new PaymentItem("Shoes", new PaymentCurrencyAmount("USD", 12.5), null, 7);
+
+        assertEquals("{\"amount\":{\"currency\":\"USD\",\"value\":12.5},\"label\":\"Shoes\",\"refund_period\":7}",
+                canonical(item));
+    }
+
+    @Test
+    void writesAndDigestsTheSameBytes() throws IOException, NoSuchAlgorithmException {
+        Map<String, Object> value = Map.of("b", List.of(1.5, "text"), "a", true);
+        byte[] bytes = CanonicalJson.toBytes(value);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CanonicalJson.write(value, out);
+        assertArrayEquals(bytes, out.toByteArray());
+
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        CanonicalJson.digest(value, digest);
+        assertArrayEquals(MessageDigest.getInstance("SHA-256").digest(bytes), digest.digest());
+    }
+
+    private static String canonical(Object value) {
+        return new String(CanonicalJson.toBytes(value), StandardCharsets.UTF_8);
+    }
+}
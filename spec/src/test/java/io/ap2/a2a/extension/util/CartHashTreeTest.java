@@ -0,0 +1,150 @@
+package io.ap2.a2a.extension.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import io.a2a.util.Utils;
+import io.ap2.a2a.extension.spec.CartContents;
+import io.ap2.a2a.extension.spec.PaymentCurrencyAmount;
+import io.ap2.a2a.extension.spec.PaymentDetailsInit;
+import io.ap2.a2a.extension.spec.PaymentDetailsModifier;
+import io.ap2.a2a.extension.spec.PaymentItem;
+import io.ap2.a2a.extension.spec.PaymentMethodData;
+import io.ap2.a2a.extension.spec.PaymentRequest;
+import io.ap2.a2a.extension.spec.PaymentShippingOption;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Hashes cart contents, and carts derived from them incrementally, to the
+ * same {@code cart_hash}.
+ */
+class CartHashTreeTest {
+
+    private static final Base64.Encoder BASE64URL = Base64.getUrlEncoder().withoutPadding();
+
+    @Test
+    void hashesTheContentsWithTheirListsReplacedByTheirRoots() {
+        List<PaymentItem> items = items(0, 3);
+        List<PaymentShippingOption> shippingOptions = List.of(
+                new PaymentShippingOption("standard", "Standard", new PaymentCurrencyAmount("USD", 2.0), true));
+        CartContents contents = contents(items, shippingOptions, null);
+
+        ObjectNode json = Utils.OBJECT_MAPPER.valueToTree(contents);
+        ObjectNode details = (ObjectNode) json.get("payment_request").get("details");
+        details.put("display_items", BASE64URL.encodeToString(MerkleTree.of(items).root()));
+        details.put("shipping_options", BASE64URL.encodeToString(MerkleTree.of(shippingOptions).root()));
+        MessageDigest digest = MandateHashes.digest();
+        CanonicalJson.digest(json, digest);
+
+        assertEquals(BASE64URL.encodeToString(digest.digest()), CartHashTree.of(contents).cartHash());
+    }
+
+    @Test
+    void hashesAppendedItemsAsAFullRecompute() {
+        CartContents contents = contents(items(0, 5), null, null);
+        List<PaymentItem> displayItems = new ArrayList<>(contents.paymentRequest().details().displayItems());
+        displayItems.addAll(items(5, 2));
+        CartContents updated = contents(displayItems, null, null);
+
+        assertUpdatedHash(contents, updated);
+    }
+
+    @Test
+    void hashesReplacedItemsAsAFullRecompute() {
+        for (int size = 1; size <= 9; size++) {
+            CartContents contents = contents(items(0, size), null, null);
+            for (int index = 0; index < size; index++) {
+                List<PaymentItem> displayItems = new ArrayList<>(contents.paymentRequest().details().displayItems());
+                displayItems.set(index, item(100 + index));
+                assertUpdatedHash(contents, contents(displayItems, null, null));
+            }
+        }
+    }
+
+    @Test
+    void hashesShorterAndAddedListsAsAFullRecompute() {
+        List<PaymentItem> items = items(0, 6);
+        CartContents contents = contents(items, null, null);
+
+        assertUpdatedHash(contents, contents(items.subList(0, 3), null, null));
+        List<PaymentShippingOption> shippingOptions = List.of(
+                new PaymentShippingOption("express", "Express", new PaymentCurrencyAmount("USD", 9.5), false));
+        assertUpdatedHash(contents, contents(items, shippingOptions, null));
+        List<PaymentDetailsModifier> modifiers = List.of(
+                new PaymentDetailsModifier("CARD", item(50), null, Map.of("network", "amex")));
+        CartContents withModifiers = contents(items, null, modifiers);
+        assertUpdatedHash(contents, withModifiers);
+        assertUpdatedHash(withModifiers, contents);
+    }
+
+    @Test
+    void hashesEveryChangeOfTheContents() {
+        CartContents contents = contents(items(0, 4), null, null);
+        String cartHash = CartHashTree.of(contents).cartHash();
+
+        List<PaymentItem> displayItems = new ArrayList<>(contents.paymentRequest().details().displayItems());
+        displayItems.set(2, new PaymentItem("Item 2", new PaymentCurrencyAmount("USD", 99.0), null, null));
+        assertNotEquals(cartHash, CartHashTree.of(contents(displayItems, null, null)).cartHash());
+
+        CartContents renamed = new CartContents(contents.id(), true, contents.paymentRequest(),
+                contents.cartExpiry(), "Other Merchant");
+        assertNotEquals(cartHash, CartHashTree.of(renamed).cartHash());
+    }
+
+    @Test
+    void hashesFromTheMemoizedTreeOfThePreviousContents() {
+        CartContents contents = contents(items(0, 5), null, null);
+        String cartHash = MandateHashes.cartHash(contents);
+        List<PaymentItem> displayItems = new ArrayList<>(contents.paymentRequest().details().displayItems());
+        displayItems.add(item(5));
+        CartContents updated = contents(displayItems, null, null);
+
+        assertEquals(cartHash, MandateHashes.cartHash(contents));
+        assertEquals(CartHashTree.of(copy(updated)).cartHash(), MandateHashes.cartHash(updated, contents));
+        // The previous contents were not hashed, so the updated ones are hashed in full
+        CartContents unhashed = contents(items(0, 5), null, null);
+        assertEquals(MandateHashes.cartHash(updated), MandateHashes.cartHash(copy(updated), unhashed));
+    }
+
+    private static void assertUpdatedHash(CartContents contents, CartContents updated) {
+        CartHashTree tree = CartHashTree.of(contents);
+        // A copy, so that no element is hashed through the memo of the updated contents
+        String expected = CartHashTree.of(copy(updated)).cartHash();
+        assertEquals(expected, tree.update(contents, updated).cartHash());
+        // The tree of the previous contents is not modified by the update
+        assertEquals(CartHashTree.of(copy(contents)).cartHash(), tree.cartHash());
+    }
+
+    private static CartContents copy(CartContents contents) {
+        return Utils.OBJECT_MAPPER.convertValue(contents, CartContents.class);
+    }
+
+    private static CartContents contents(List<PaymentItem> displayItems, List<PaymentShippingOption> shippingOptions,
+                                         List<PaymentDetailsModifier> modifiers) {
+        PaymentDetailsInit details = new PaymentDetailsInit("order_1", displayItems, shippingOptions, modifiers,
+                new PaymentItem("Total", new PaymentCurrencyAmount("USD", 10.0), null, null));
+        PaymentRequest paymentRequest = new PaymentRequest(
+                List.of(new PaymentMethodData("CARD", Map.of("network", List.of("visa")))), details, null, null);
+        return new CartContents("cart_1", true, paymentRequest, "2026-01-01T00:30:00Z", "Generic Merchant");
+    }
+
+    private static List<PaymentItem> items(int first, int count) {
+        List<PaymentItem> items = new ArrayList<>();
+        for (int i = first; i < first + count; i++) {
+            items.add(item(i));
+        }
+        return items;
+    }
+
+    private static PaymentItem item(int i) {
+        return new PaymentItem("Item " + i, new PaymentCurrencyAmount("USD", i + 0.25), null, null);
+    }
+}
@@ -0,0 +1,73 @@
+package io.ap2.a2a.extension.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.math.BigDecimal;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Converts monetary values to minor units and back, exactly when the value is
+ * exact to the minor unit and rounding half to even otherwise.
+ */
+class CurrencyUnitsTest {
+
+    @Test
+    void usesTheIso4217ExponentOfTheCurrency() {
+        assertEquals(2, CurrencyUnits.minorUnitDigits("USD"));
+        assertEquals(0, CurrencyUnits.minorUnitDigits("JPY"));
+        assertEquals(3, CurrencyUnits.minorUnitDigits("KWD"));
+        // No minor unit, or unknown
+        assertEquals(CurrencyUnits.DEFAULT_MINOR_UNIT_DIGITS, CurrencyUnits.minorUnitDigits("XXX"));
+        assertEquals(CurrencyUnits.DEFAULT_MINOR_UNIT_DIGITS, CurrencyUnits.minorUnitDigits("ZZZ"));
+    }
+
+    @Test
+    void convertsValuesExactToTheMinorUnit() {
+        // 0.29 * 100 is 28.999999999999996, within a few ulps of 29
+        assertEquals(29, CurrencyUnits.toMinorUnits("USD", 0.29));
+        assertEquals(1999, CurrencyUnits.toMinorUnits("USD", 19.99));
+        assertEquals(-1234, CurrencyUnits.toMinorUnits("USD", -12.34));
+        assertEquals(1234, CurrencyUnits.toMinorUnits("JPY", 1234.0));
+        assertEquals(1234, CurrencyUnits.toMinorUnits("KWD", 1.234));
+        assertEquals(0, CurrencyUnits.toMinorUnits("USD", -0.0));
+
+        // Every value of up to a million cents round trips
+        for (long cents = 0; cents <= 1_000_000; cents++) {
+            assertEquals(cents, CurrencyUnits.toMinorUnits("USD", CurrencyUnits.fromMinorUnits("USD", cents)));
+        }
+    }
+
+    @Test
+    void roundsHalfToEvenValuesMorePreciseThanTheMinorUnit() {
+        assertEquals(12, CurrencyUnits.toMinorUnits("USD", 0.125));
+        assertEquals(14, CurrencyUnits.toMinorUnits("USD", 0.135));
+        assertEquals(-12, CurrencyUnits.toMinorUnits("USD", -0.125));
+        assertEquals(1, CurrencyUnits.toMinorUnits("USD", 0.0051));
+        assertEquals(2, CurrencyUnits.toMinorUnits("JPY", 2.5));
+        assertEquals(4, CurrencyUnits.toMinorUnits("JPY", 3.5));
+        assertEquals(1234, CurrencyUnits.toMinorUnits("KWD", 1.2345));
+        assertEquals(1236, CurrencyUnits.toMinorUnits("KWD", 1.2355));
+    }
+
+    @Test
+    void convertsValuesBeyondTheExactRangeOfDoubles() {
+        // 10^16 cents is beyond 2^53, so it is converted in decimal
+        assertEquals(10_000_000_000_000_000L, CurrencyUnits.toMinorUnits("USD", 1e14));
+        assertEquals(BigDecimal.valueOf(Long.MAX_VALUE, 2).doubleValue(),
+                CurrencyUnits.fromMinorUnits("USD", Long.MAX_VALUE));
+        assertEquals(1e14, CurrencyUnits.fromMinorUnits("USD", 10_000_000_000_000_000L));
+    }
+
+    @Test
+    void rejectsValuesThatAreNotFiniteOrTooLarge() {
+        assertThrows(IllegalArgumentException.class, () -> CurrencyUnits.toMinorUnits("USD", Double.NaN));
+        assertThrows(IllegalArgumentException.class,
+                () -> CurrencyUnits.toMinorUnits("USD", Double.POSITIVE_INFINITY));
+        // 10^19 cents does not fit in a long
+        assertThrows(IllegalArgumentException.class, () -> CurrencyUnits.toMinorUnits("USD", 1e17));
+        // 2^63 yen is one more than the largest long
+        assertThrows(IllegalArgumentException.class, () -> CurrencyUnits.toMinorUnits("JPY", 0x1p63));
+    }
+}
@@ -0,0 +1,174 @@
+package io.ap2.a2a.extension.util;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Hashes lists as RFC 6962 Merkle trees, incrementally and in full.
+ */
+class MerkleTreeTest {
+
+    private static final HexFormat HEX = HexFormat.of();
+
+    /**
+     * The leaves of the test vectors of the Certificate Transparency reference
+     * implementation.
+     */
+    private static final String[] LEAVES = {
+            "", "00", "10", "2021", "3031", "40414243", "5051525354555657", "606162636465666768696a6b6c6d6e6f"
+    };
+
+    /**
+     * The root hashes of the first 1 to 8 leaves.
+     */
+    private static final String[] ROOTS = {
+            "6e340b9cffb37a989ca544e6bb780a2c78901d3fb33738768511a30617afa01d",
+            "fac54203e7cc696cf0dfcb42c92a1d9dbaf70ad9e621f4bd8d98662f00e3c125",
+            "aeb6bcfe274b70a14fb067a5e5578264db0fa9b51af5e0ba159158f329e06e77",
+            "d37ee418976dd95753c1c73862b9398fa2a2cf9b4ff0fdfe8b30cd95209614b7",
+            "4e3bbb1f7b478dcfe71fb631631519a3bca12c9aefca1612bfce4c13a86264d4",
+            "76e67dadbcdf1e10e1b74ddc608abd2f98dfb16fbce75277b5232a127f2087ef",
+            "ddb89be403809e325750d3d263cd78929c2942b7942a34b77e122c9594a74c8c",
+            "5dc9da79a70659a9ad559cb701ded9a2ab9d823aad2f4960cfe370eff4604328"
+    };
+
+    @Test
+    void hashesTheEmptyTreeAsTheHashOfNothing() {
+        assertEquals("e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855",
+                HEX.formatHex(new MerkleTree().root()));
+    }
+
+    @Test
+    void matchesTheRfc6962TestVectors() {
+        MerkleTree tree = new MerkleTree();
+        for (int i = 0; i < LEAVES.length; i++) {
+            tree.append(rawLeafHash(HEX.parseHex(LEAVES[i])));
+            assertEquals(ROOTS[i], HEX.formatHex(tree.root()), "root of " + (i + 1) + " leaves");
+        }
+    }
+
+    @Test
+    void appendsAsAFullRecomputeHashes() {
+        List<byte[]> leaves = new ArrayList<>();
+        MerkleTree tree = new MerkleTree();
+        for (int size = 1; size <= 70; size++) {
+            byte[] leaf = leaf(size);
+            leaves.add(leaf);
+            tree.append(leaf);
+            assertEquals(size, tree.size());
+            assertArrayEquals(referenceRoot(leaves), tree.root(), "root of " + size + " leaves");
+        }
+    }
+
+    @Test
+    void setsAsAFullRecomputeHashes() {
+        // Every leaf of every size up to 33, which covers complete trees and odd leaf counts
+        for (int size = 1; size <= 33; size++) {
+            List<byte[]> leaves = new ArrayList<>();
+            for (int i = 0; i < size; i++) {
+                leaves.add(leaf(i));
+            }
+            MerkleTree tree = tree(leaves);
+            for (int index = 0; index < size; index++) {
+                byte[] replacement = leaf(1000 + index);
+                leaves.set(index, replacement);
+                tree.set(index, replacement);
+                assertArrayEquals(referenceRoot(leaves), tree.root(),
+                        "root of " + size + " leaves after setting leaf " + index);
+            }
+        }
+    }
+
+    @Test
+    void setsAndAppendsInAnyOrder() {
+        List<byte[]> leaves = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            leaves.add(leaf(i));
+        }
+        MerkleTree tree = tree(leaves);
+
+        // The last leaf of an odd tree has no sibling until the next append
+        leaves.set(4, leaf(100));
+        tree.set(4, leaf(100));
+        leaves.add(leaf(5));
+        tree.append(leaf(5));
+        leaves.set(0, leaf(101));
+        tree.set(0, leaf(101));
+        leaves.add(leaf(6));
+        tree.append(leaf(6));
+        leaves.add(leaf(7));
+        tree.append(leaf(7));
+
+        assertArrayEquals(referenceRoot(leaves), tree.root());
+    }
+
+    @Test
+    void modifiesACopyIndependently() {
+        List<byte[]> leaves = List.of(leaf(0), leaf(1), leaf(2));
+        MerkleTree tree = tree(leaves);
+        byte[] root = tree.root();
+
+        MerkleTree copy = tree.copy();
+        copy.set(1, leaf(10));
+        copy.append(leaf(11));
+
+        assertArrayEquals(root, tree.root());
+        assertEquals(3, tree.size());
+        assertArrayEquals(referenceRoot(List.of(leaf(0), leaf(10), leaf(2), leaf(11))), copy.root());
+    }
+
+    @Test
+    void hashesValuesAsTheirCanonicalJson() {
+        List<Object> values = List.of("a", 1, List.of(true));
+        List<byte[]> leaves = new ArrayList<>();
+        for (Object value : values) {
+            leaves.add(rawLeafHash(CanonicalJson.toBytes(value)));
+        }
+
+        assertArrayEquals(referenceRoot(leaves), MerkleTree.of(values).root());
+    }
+
+    private static MerkleTree tree(List<byte[]> leaves) {
+        MerkleTree tree = new MerkleTree();
+        leaves.forEach(tree::append);
+        return tree;
+    }
+
+    private static byte[] leaf(int i) {
+        return rawLeafHash(new byte[] {(byte) (i >> 8), (byte) i});
+    }
+
+    private static byte[] rawLeafHash(byte[] data) {
+        MessageDigest digest = MandateHashes.digest();
+        digest.update((byte) 0x00);
+        digest.update(data);
+        return digest.digest();
+    }
+
+    /**
+     * The Merkle tree hash as defined recursively by RFC 6962, section 2.1.
+     */
+    private static byte[] referenceRoot(List<byte[]> leaves) {
+        if (leaves.isEmpty()) {
+            return MandateHashes.digest().digest();
+        }
+        if (leaves.size() == 1) {
+            return leaves.get(0);
+        }
+        int split = Integer.highestOneBit(leaves.size() - 1);
+        byte[] left = referenceRoot(leaves.subList(0, split));
+        byte[] right = referenceRoot(leaves.subList(split, leaves.size()));
+        MessageDigest digest = MandateHashes.digest();
+        digest.update((byte) 0x01);
+        digest.update(left);
+        digest.update(right);
+        return digest.digest();
+    }
+}